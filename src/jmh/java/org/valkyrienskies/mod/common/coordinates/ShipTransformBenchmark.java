@@ -0,0 +1,105 @@
+package org.valkyrienskies.mod.common.coordinates;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valkyrienskies.mod.common.math.RotationMatrices;
+import org.valkyrienskies.mod.common.math.Vector;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Moves points between ship and world space with ShipTransform and RotationMatrices, and builds
+ * the transforms themselves like the physics tick does for every ship.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShipTransformBenchmark {
+
+    private static final int POINTS = 1000;
+
+    private ShipTransform transform;
+    private ShipTransform nextTransform;
+    private double[] rawMatrix;
+    private Vector centerCoord;
+    private Vector[] points;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        centerCoord = new Vector(8.5D, 72.5D, 8.5D);
+        transform = new ShipTransform(100.5D, 70.3D, -50.5D, 10, 30, 5, centerCoord);
+        nextTransform = new ShipTransform(100.6D, 70.3D, -50.4D, 10.1D, 30.2D, 5, centerCoord);
+        rawMatrix = RotationMatrices.rotateAndTranslate(
+            RotationMatrices.getTranslationMatrix(100.5D, 70.3D, -50.5D), 10, 30, 5, centerCoord);
+
+        Random random = new Random(420);
+        points = new Vector[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = new Vector(random.nextDouble() * 32, 64 + random.nextDouble() * 16,
+                random.nextDouble() * 32);
+        }
+    }
+
+    @Benchmark
+    public Vector[] transformRoundTrip() {
+        // Going there and back keeps the points from drifting away between invocations.
+        for (Vector point : points) {
+            transform.transform(point, TransformType.SUBSPACE_TO_GLOBAL);
+        }
+        for (Vector point : points) {
+            transform.transform(point, TransformType.GLOBAL_TO_SUBSPACE);
+        }
+        return points;
+    }
+
+    @Benchmark
+    public Vector[] rotateRoundTrip() {
+        for (Vector point : points) {
+            transform.rotate(point, TransformType.SUBSPACE_TO_GLOBAL);
+        }
+        for (Vector point : points) {
+            transform.rotate(point, TransformType.GLOBAL_TO_SUBSPACE);
+        }
+        return points;
+    }
+
+    @Benchmark
+    public double applyRawMatrix() {
+        Vector temp = new Vector();
+        double sum = 0;
+        for (Vector point : points) {
+            temp.setValue(point);
+            RotationMatrices.applyTransform(rawMatrix, temp);
+            sum += temp.X + temp.Y + temp.Z;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ShipTransform createTransform() {
+        return new ShipTransform(100.5D, 70.3D, -50.5D, 10, 30, 5, centerCoord);
+    }
+
+    @Benchmark
+    public ShipTransform createTransformBetween() {
+        return new ShipTransform(transform, nextTransform);
+    }
+
+    @Benchmark
+    public double[] invertMatrix() {
+        return RotationMatrices.inverse(rawMatrix);
+    }
+}
@@ -0,0 +1,266 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.RotationMatrices;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PhysCollisionObject;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PhysPolygonCollider;
+import org.valkyrienskies.mod.common.physics.collision.polygons.Polygon;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PolygonCollisionPointFinder;
+import org.valkyrienskies.mod.common.physics.management.ShipTransformationManager;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Compares the old way of gathering and solving collisions (a new Polygon and PhysPolygonCollider
+ * per block pair, Vector math per contact) against the CollisionContactBuffer and
+ * CollisionImpulseSolver. Uses a synthetic flat ship of side * side blocks that is yawed and sunk
+ * slightly into a flat world floor, so almost every ship block is a contact.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionContactBufferBenchmark {
+
+    private static final double MASS = 50000D;
+
+    @Param({"100", "200"})
+    public int side;
+
+    private ShipTransform transform;
+    private Vector[] normals;
+    private double[] moiTensor;
+    private double[] invMoiTensor;
+    private double drag;
+    private Vector centerOfMass;
+    // World block position then ship block position for every pair, 6 ints per pair.
+    private int[] pairs;
+    private int pairCount;
+
+    private List<PhysPolygonCollider> legacyColliders;
+    private CollisionInformationHolder collisionTester;
+    private CollisionContactBuffer contacts;
+    private CollisionImpulseSolver solver;
+
+    private Vector linearMomentum;
+    private Vector angularVelocity;
+
+    @Setup(Level.Trial)
+    public void setupShip() {
+        // The center of mass is 2 blocks above the bottom layer of the ship, which sits .2 blocks
+        // deep into the world floor.
+        Vector centerCoord = new Vector(side / 2D, 66, side / 2D);
+        centerOfMass = new Vector(1000.5D, 65.8D, -500.5D);
+        transform = new ShipTransform(centerOfMass.X, centerOfMass.Y, centerOfMass.Z, 0, 30, 0,
+            centerCoord);
+        normals = ShipTransformationManager.createCollisionNormals(transform);
+
+        double inertia = MASS * side * side / 6D;
+        moiTensor = new double[]{inertia, 0, 0, 0, inertia * 2, 0, 0, 0, inertia};
+        invMoiTensor = RotationMatrices.inverse3by3(moiTensor);
+        drag = Math.pow(.99D, .01D * 20D);
+
+        pairs = new int[side * side * 6];
+        pairCount = 0;
+        Vector inWorld = new Vector();
+        for (int x = 0; x < side; x++) {
+            for (int z = 0; z < side; z++) {
+                inWorld.setValue(x + .5D, 64.5D, z + .5D);
+                transform.transform(inWorld, TransformType.SUBSPACE_TO_GLOBAL);
+                // The world floor is at y = 63
+                pairs[pairCount * 6] = MathHelper.floor(inWorld.X);
+                pairs[pairCount * 6 + 1] = 63;
+                pairs[pairCount * 6 + 2] = MathHelper.floor(inWorld.Z);
+                pairs[pairCount * 6 + 3] = x;
+                pairs[pairCount * 6 + 4] = 64;
+                pairs[pairCount * 6 + 5] = z;
+                pairCount++;
+            }
+        }
+
+        legacyColliders = new ArrayList<>();
+        collectLegacyColliders(legacyColliders);
+        collisionTester = new CollisionInformationHolder();
+        contacts = new CollisionContactBuffer();
+        collectContacts(contacts);
+        solver = new CollisionImpulseSolver();
+    }
+
+    // The solvers modify the momentum, so reset it to make every invocation do the same work.
+    @Setup(Level.Invocation)
+    public void resetMomentum() {
+        linearMomentum = new Vector(2D * MASS, -3D * MASS, 1D * MASS);
+        angularVelocity = new Vector(.1D, .4D, -.2D);
+    }
+
+    @Benchmark
+    public void gatherLegacy(Blackhole blackhole) {
+        List<PhysPolygonCollider> colliders = new ArrayList<>();
+        collectLegacyColliders(colliders);
+        blackhole.consume(colliders);
+    }
+
+    @Benchmark
+    public int gatherContactBuffer() {
+        contacts.clear();
+        collectContacts(contacts);
+        return contacts.size();
+    }
+
+    @Benchmark
+    public Vector solveLegacy() {
+        LegacyImpulseSolver legacySolver = new LegacyImpulseSolver();
+        for (PhysPolygonCollider collider : legacyColliders) {
+            legacySolver.handleActualCollision(collider);
+        }
+        return linearMomentum;
+    }
+
+    @Benchmark
+    public Vector solveContactBuffer() {
+        solver.setRigidBody(linearMomentum, angularVelocity, moiTensor, invMoiTensor, MASS, drag,
+            centerOfMass.X, centerOfMass.Y, centerOfMass.Z);
+        solver.applyImpulses(contacts);
+        return linearMomentum;
+    }
+
+    private void collectLegacyColliders(List<PhysPolygonCollider> colliders) {
+        for (int i = 0; i < pairCount; i++) {
+            int worldX = pairs[i * 6], worldY = pairs[i * 6 + 1], worldZ = pairs[i * 6 + 2];
+            int localX = pairs[i * 6 + 3], localY = pairs[i * 6 + 4], localZ = pairs[i * 6 + 5];
+            Polygon shipInWorld = new Polygon(
+                new AxisAlignedBB(localX, localY, localZ, localX + 1, localY + 1, localZ + 1),
+                transform, TransformType.SUBSPACE_TO_GLOBAL);
+            Polygon worldPoly = new Polygon(
+                new AxisAlignedBB(worldX, worldY, worldZ, worldX + 1, worldY + 1, worldZ + 1));
+            PhysPolygonCollider collider = new PhysPolygonCollider(shipInWorld, worldPoly,
+                normals);
+            if (!collider.seperated) {
+                colliders.add(collider);
+            }
+        }
+    }
+
+    private void collectContacts(CollisionContactBuffer buffer) {
+        for (int i = 0; i < pairCount; i++) {
+            int worldX = pairs[i * 6], worldY = pairs[i * 6 + 1], worldZ = pairs[i * 6 + 2];
+            int localX = pairs[i * 6 + 3], localY = pairs[i * 6 + 4], localZ = pairs[i * 6 + 5];
+            if (collisionTester.updateCollision(transform, normals, worldX, worldY, worldZ,
+                localX, localY, localZ, null, null)) {
+                buffer.addContact(collisionTester.getCollider(), worldX, worldY, worldZ, localX,
+                    localY, localZ, null, null);
+            }
+        }
+    }
+
+    /**
+     * The Vector based impulse code WorldPhysicsCollider used before CollisionImpulseSolver,
+     * kept here as the baseline.
+     */
+    private class LegacyImpulseSolver {
+
+        void handleActualCollision(PhysPolygonCollider collider) {
+            PhysCollisionObject toCollideWith = collider.collisions[1];
+            if (toCollideWith.penetrationDistance > WorldPhysicsCollider.AXIS_TOLERANCE
+                || toCollideWith.penetrationDistance < -WorldPhysicsCollider.AXIS_TOLERANCE) {
+                toCollideWith = collider.collisions[collider.minDistanceIndex];
+            }
+            Vector[] collisionPoints = PolygonCollisionPointFinder
+                .getPointsOfCollisionForPolygons(toCollideWith);
+            for (Vector collisionPos : collisionPoints) {
+                Vector inBody = collisionPos.getSubtraction(new Vector(centerOfMass));
+                inBody.multiply(-1D);
+                Vector momentumAtPoint = angularVelocity.cross(inBody);
+                momentumAtPoint.X += linearMomentum.X * (1D / MASS);
+                momentumAtPoint.Y += linearMomentum.Y * (1D / MASS);
+                momentumAtPoint.Z += linearMomentum.Z * (1D / MASS);
+                calculateCollisionImpulseForce(inBody, momentumAtPoint,
+                    toCollideWith.collision_normal, toCollideWith.getResponse());
+            }
+        }
+
+        void calculateCollisionImpulseForce(Vector inBody, Vector velocityAtPointOfCollision,
+            Vector axis, Vector offsetVector) {
+            Vector firstCross = inBody.cross(axis);
+            RotationMatrices.applyTransform3by3(invMoiTensor, firstCross);
+            Vector secondCross = firstCross.cross(inBody);
+            double impulseMagnitude = -velocityAtPointOfCollision.dot(axis)
+                / (1D / MASS + secondCross.dot(axis));
+            if (Math.abs(velocityAtPointOfCollision.dot(axis)) > .5D) {
+                impulseMagnitude *= (1 + WorldPhysicsCollider.COEFFICIENT_OF_RESTITUTION);
+            }
+            Vector collisionImpulseForce = new Vector(axis, impulseMagnitude);
+            if (collisionImpulseForce.dot(offsetVector) < 0
+                && collisionImpulseForce.dot(inBody) < 0) {
+                addFrictionToNormalForce(velocityAtPointOfCollision, collisionImpulseForce,
+                    inBody);
+                linearMomentum.add(collisionImpulseForce);
+                Vector thirdCross = inBody.cross(collisionImpulseForce);
+                RotationMatrices.applyTransform3by3(invMoiTensor, thirdCross);
+                angularVelocity.add(thirdCross);
+            }
+        }
+
+        void addFrictionToNormalForce(Vector momentumAtPoint, Vector impulseVector,
+            Vector inBody) {
+            Vector contactNormal = new Vector(impulseVector);
+            contactNormal.normalize();
+            Vector frictionVector = new Vector(momentumAtPoint);
+            frictionVector.normalize();
+            frictionVector.multiply(
+                impulseVector.length() * WorldPhysicsCollider.KINETIC_FRICTION_COEFFICIENT);
+            if (frictionVector.dot(momentumAtPoint) > 0) {
+                frictionVector.multiply(-1D);
+            }
+            double frictionImpulseDot = frictionVector.dot(contactNormal);
+            frictionVector.subtract(contactNormal.getProduct(frictionImpulseDot));
+
+            Vector rotationAxis = new Vector(angularVelocity);
+            rotationAxis.normalize();
+            RotationMatrices.applyTransform3by3(moiTensor, rotationAxis);
+            double inertiaScalarAlongAxis = rotationAxis.length();
+
+            Vector initialVelocity = new Vector(linearMomentum, 1D / MASS);
+            Vector deltaVelocity = new Vector(frictionVector, 1D / MASS * drag);
+            double A = initialVelocity.lengthSq();
+            double B = 2 * initialVelocity.dot(deltaVelocity);
+            double C = deltaVelocity.lengthSq();
+
+            Vector deltaAngularVelocity = inBody.cross(frictionVector);
+            deltaAngularVelocity.multiply(drag / inertiaScalarAlongAxis);
+            double D = angularVelocity.lengthSq();
+            double E = 2 * deltaAngularVelocity.dot(angularVelocity);
+            double F = deltaAngularVelocity.lengthSq();
+            if (angularVelocity.lengthSq() < .05 && initialVelocity.lengthSq() < .05) {
+                D = E = F = 0;
+            }
+            double secondCoefficient = B * MASS + E * inertiaScalarAlongAxis;
+            double thirdCoefficient = C * MASS + F * inertiaScalarAlongAxis;
+            double scaleFactor = -secondCoefficient / (thirdCoefficient * 2);
+            if (!Double.isNaN(scaleFactor)) {
+                frictionVector.multiply(Math.max(0, Math.min(scaleFactor, 1)));
+            }
+            impulseVector.add(frictionVector);
+        }
+    }
+}
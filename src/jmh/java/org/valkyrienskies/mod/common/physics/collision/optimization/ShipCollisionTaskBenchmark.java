@@ -0,0 +1,199 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.multithreaded.CollisionTaskScheduler;
+import org.valkyrienskies.mod.common.physics.management.ShipTransformationManager;
+import org.valkyrienskies.mod.common.physmanagement.relocation.SpatialDetector;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Runs ShipCollisionTask on a synthetic flat ship of side * side blocks that is yawed and sunk
+ * slightly into a flat world floor. Compares running the tasks on one thread, on a fixed thread
+ * pool with tasks of 45 hits (how VSThread used to run them), and on the CollisionTaskScheduler
+ * with tasks sized by the scheduler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShipCollisionTaskBenchmark {
+
+    private static final int FIXED_TASK_SIZE = 45;
+
+    @Param({"32", "100", "300"})
+    public int side;
+
+    private SyntheticShip ship;
+    private List<ShipCollisionTask> fixedTasks;
+    private List<ShipCollisionTask> scheduledTasks;
+    private ExecutorService executor;
+    private CollisionTaskScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors() - 2);
+        executor = Executors.newFixedThreadPool(threadCount);
+        scheduler = new CollisionTaskScheduler(threadCount);
+        ship = new SyntheticShip(side);
+        fixedTasks = splitTasks(FIXED_TASK_SIZE);
+        scheduledTasks = splitTasks(scheduler.getTaskSize(ship.getCachedPotentialHitSize()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int sequential() {
+        for (ShipCollisionTask task : scheduledTasks) {
+            task.call();
+        }
+        return countContacts(scheduledTasks);
+    }
+
+    @Benchmark
+    public int fixedThreadPool() throws InterruptedException {
+        executor.invokeAll(fixedTasks);
+        return countContacts(fixedTasks);
+    }
+
+    @Benchmark
+    public int forkJoinScheduler() {
+        scheduler.invokeAll(scheduledTasks);
+        return countContacts(scheduledTasks);
+    }
+
+    private List<ShipCollisionTask> splitTasks(int taskSize) {
+        List<ShipCollisionTask> tasks = new ArrayList<>();
+        for (int index = 0; index < ship.getCachedPotentialHitSize(); index += taskSize) {
+            tasks.add(new ShipCollisionTask(ship, index, index + taskSize));
+        }
+        return tasks;
+    }
+
+    // Also clears the contacts, like WorldPhysicsCollider does once it has processed them.
+    private static int countContacts(List<ShipCollisionTask> tasks) {
+        int contacts = 0;
+        for (ShipCollisionTask task : tasks) {
+            contacts += task.getContacts().size();
+            task.clearCollisionInformation();
+        }
+        return contacts;
+    }
+
+    /**
+     * A ship with one layer of blocks at y = 64 of ship space, above a world floor at y = 63.
+     */
+    private static class SyntheticShip implements IShipCollisionSource {
+
+        private final ShipTransform transform;
+        private final Vector[] normals;
+        private final BlockPos centerPotentialHit;
+        private final TIntArrayList potentialHits;
+        // Only the y = 64 to 79 section of each chunk has blocks.
+        private final IBitOctree[][] octrees;
+
+        SyntheticShip(int side) {
+            Vector centerCoord = new Vector(side / 2D, 66, side / 2D);
+            transform = new ShipTransform(1000.5D, 65.8D, -500.5D, 0, 30, 0, centerCoord);
+            normals = ShipTransformationManager.createCollisionNormals(transform);
+            centerPotentialHit = new BlockPos(1000, 0, -500);
+
+            int chunks = (side + 15) >> 4;
+            octrees = new IBitOctree[chunks][chunks];
+            for (int chunkX = 0; chunkX < chunks; chunkX++) {
+                for (int chunkZ = 0; chunkZ < chunks; chunkZ++) {
+                    octrees[chunkX][chunkZ] = new SimpleBitOctree();
+                }
+            }
+
+            // Every floor block under the ship could be a hit.
+            TIntHashSet hits = new TIntHashSet();
+            Vector inWorld = new Vector();
+            for (int x = 0; x < side; x++) {
+                for (int z = 0; z < side; z++) {
+                    octrees[x >> 4][z >> 4].set(x & 15, 64 & 15, z & 15, true);
+                    inWorld.setValue(x + .5D, 64.5D, z + .5D);
+                    transform.transform(inWorld, TransformType.SUBSPACE_TO_GLOBAL);
+                    hits.add(SpatialDetector.getHashWithRespectTo(MathHelper.floor(inWorld.X), 63,
+                        MathHelper.floor(inWorld.Z), centerPotentialHit));
+                }
+            }
+            potentialHits = new TIntArrayList(hits.toArray());
+            potentialHits.sort();
+        }
+
+        @Override
+        public BlockPos getCenterPotentialHit() {
+            return centerPotentialHit;
+        }
+
+        @Override
+        public int getCachedPotentialHit(int offset) {
+            return potentialHits.get(offset);
+        }
+
+        @Override
+        public int getCachedPotentialHitSize() {
+            return potentialHits.size();
+        }
+
+        @Override
+        public IBlockState getWorldBlockState(BlockPos pos) {
+            return null;
+        }
+
+        @Override
+        public ShipTransform getCollisionTransform() {
+            return transform;
+        }
+
+        @Override
+        public Vector[] getCollisionNormals() {
+            return normals;
+        }
+
+        @Override
+        public IBitOctree getShipOctree(int x, int y, int z) {
+            int chunkX = x >> 4;
+            int chunkZ = z >> 4;
+            if (y >> 4 != 4 || chunkX < 0 || chunkZ < 0 || chunkX >= octrees.length
+                || chunkZ >= octrees.length) {
+                return null;
+            }
+            return octrees[chunkX][chunkZ];
+        }
+
+        @Override
+        public IBlockState getShipBlockState(int x, int y, int z) {
+            return null;
+        }
+    }
+}
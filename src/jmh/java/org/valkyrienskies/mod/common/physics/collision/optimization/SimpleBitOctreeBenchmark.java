@@ -0,0 +1,155 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sets and gets the bits of a 16x16x16 SimpleBitOctree, with a random fraction of the blocks
+ * solid. Every operation goes over the whole section in a shuffled order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleBitOctreeBenchmark {
+
+    private static final int BLOCKS = 16 * 16 * 16;
+
+    // Percentage of the blocks that are solid
+    @Param({"10", "50", "90"})
+    public int density;
+
+    // x | y << 4 | z << 8 for every block, shuffled so the branch predictor can't learn the order.
+    private int[] positions;
+    private boolean[] solid;
+    private SimpleBitOctree octree;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(420);
+        positions = new int[BLOCKS];
+        solid = new boolean[BLOCKS];
+        for (int i = 0; i < BLOCKS; i++) {
+            positions[i] = i;
+            solid[i] = random.nextInt(100) < density;
+        }
+        for (int i = BLOCKS - 1; i > 0; i--) {
+            int swap = random.nextInt(i + 1);
+            int temp = positions[i];
+            positions[i] = positions[swap];
+            positions[swap] = temp;
+        }
+        octree = new SimpleBitOctree();
+        fill(octree);
+    }
+
+    @Benchmark
+    public SimpleBitOctree setAll() {
+        SimpleBitOctree filled = new SimpleBitOctree();
+        fill(filled);
+        return filled;
+    }
+
+    // What MixinBlockStateContainer does the first time collision asks for a section's octree.
+    @Benchmark
+    public SimpleBitOctree setAllBulk() {
+        SimpleBitOctree filled = new SimpleBitOctree();
+        filled.setAll(solid);
+        return filled;
+    }
+
+    @Benchmark
+    public SimpleBitOctree setAndClear() {
+        // Every set flips the bit, so the parent octree levels get updated every time.
+        for (int i = 0; i < BLOCKS; i++) {
+            int pos = positions[i];
+            octree.set(pos & 15, (pos >> 4) & 15, pos >> 8, !solid[pos]);
+        }
+        fill(octree);
+        return octree;
+    }
+
+    @Benchmark
+    public int getAll() {
+        int count = 0;
+        for (int i = 0; i < BLOCKS; i++) {
+            int pos = positions[i];
+            if (octree.get(pos & 15, (pos >> 4) & 15, pos >> 8)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // How the collision code walked the tree before, testing every node bit by bit.
+    @Benchmark
+    public int walkBitByBit() {
+        int count = 0;
+        for (int levelThree = 0; levelThree < 8; levelThree++) {
+            int levelThreeIndex = octree.getOctreeLevelThreeIndex(levelThree);
+            if (!octree.getAtIndex(levelThreeIndex)) {
+                continue;
+            }
+            for (int levelTwo = 0; levelTwo < 8; levelTwo++) {
+                int levelTwoIndex = octree.getOctreeLevelTwoIndex(levelThreeIndex, levelTwo);
+                if (!octree.getAtIndex(levelTwoIndex)) {
+                    continue;
+                }
+                for (int levelOne = 0; levelOne < 8; levelOne++) {
+                    if (octree.getAtIndex(octree.getOctreeLevelOneIndex(levelTwoIndex, levelOne))) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // How the collision code walks the tree now, only visiting the set nodes.
+    @Benchmark
+    public int walkWithMasks() {
+        int count = 0;
+        for (int levelThreeMask = octree.getLevelThreeMask(); levelThreeMask != 0;
+            levelThreeMask &= levelThreeMask - 1) {
+            int levelThreeIndex = octree
+                .getOctreeLevelThreeIndex(Integer.numberOfTrailingZeros(levelThreeMask));
+            for (int levelTwoMask = octree.getLevelTwoMask(levelThreeIndex); levelTwoMask != 0;
+                levelTwoMask &= levelTwoMask - 1) {
+                int levelTwoIndex = octree.getOctreeLevelTwoIndex(levelThreeIndex,
+                    Integer.numberOfTrailingZeros(levelTwoMask));
+                count += Integer.bitCount(octree.getLevelOneMask(levelTwoIndex));
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int nextSolidBlock() {
+        int count = 0;
+        for (int i = octree.nextSolidBlock(0); i != -1; i = octree.nextSolidBlock(i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private void fill(SimpleBitOctree toFill) {
+        for (int i = 0; i < BLOCKS; i++) {
+            int pos = positions[i];
+            toFill.set(pos & 15, (pos >> 4) & 15, pos >> 8, solid[pos]);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the ships near an entity with SpatialGridIndex against the linear scan
+ * WorldPhysObjectManager.getNearbyPhysObjects() used to do, and measures the cost of keeping the
+ * index up to date as the ships move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialGridIndexBenchmark {
+
+    // Enough query positions that the branch predictor can't learn them.
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int ships;
+
+    private List<MovingShip> shipList;
+    private SpatialGridIndex<MovingShip> index;
+    private AxisAlignedBB[] queries;
+    private List<MovingShip> found;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(420);
+        shipList = new ArrayList<>();
+        index = new SpatialGridIndex<>();
+        // Keep the ship density about the same no matter how many ships there are.
+        double worldSize = Math.sqrt(ships) * 100;
+        for (int i = 0; i < ships; i++) {
+            MovingShip ship = new MovingShip(random, worldSize);
+            shipList.add(ship);
+            index.put(ship, ship.bounds);
+        }
+        // Entity sized boxes, grown the same way getNearbyPhysObjects() does.
+        queries = new AxisAlignedBB[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            double x = random.nextDouble() * worldSize;
+            double y = random.nextDouble() * 100 + 50;
+            double z = random.nextDouble() * worldSize;
+            queries[i] = new AxisAlignedBB(x - 2, y - 2, z - 2, x + 6.6, y + 7.8, z + 6.6);
+        }
+        found = new ArrayList<>();
+        nextQuery = 0;
+    }
+
+    @Benchmark
+    public int gridQuery() {
+        found.clear();
+        index.query(nextQuery(), found);
+        return found.size();
+    }
+
+    @Benchmark
+    public int linearScan() {
+        found.clear();
+        AxisAlignedBB query = nextQuery();
+        for (MovingShip ship : shipList) {
+            if (ship.bounds.intersects(query)) {
+                found.add(ship);
+            }
+        }
+        return found.size();
+    }
+
+    // Every ship moving for one tick, which is what the index costs the physics thread per tick.
+    @Benchmark
+    public int gridUpdate() {
+        for (MovingShip ship : shipList) {
+            ship.bounds = ship.bounds.offset(ship.velocityX, 0, ship.velocityZ);
+            index.update(ship, ship.bounds);
+        }
+        return index.size();
+    }
+
+    private AxisAlignedBB nextQuery() {
+        nextQuery = (nextQuery + 1) % QUERY_COUNT;
+        return queries[nextQuery];
+    }
+
+    private static class MovingShip {
+
+        AxisAlignedBB bounds;
+        final double velocityX, velocityZ;
+
+        MovingShip(Random random, double worldSize) {
+            double sizeX = random.nextDouble() * 40 + 5;
+            double sizeY = random.nextDouble() * 20 + 5;
+            double sizeZ = random.nextDouble() * 40 + 5;
+            double x = random.nextDouble() * worldSize;
+            double y = random.nextDouble() * 100 + 50;
+            double z = random.nextDouble() * worldSize;
+            bounds = new AxisAlignedBB(x, y, z, x + sizeX, y + sizeY, z + sizeZ);
+            // Up to 1 block per physics tick, 100 blocks per second.
+            velocityX = random.nextDouble() * 2 - 1;
+            velocityZ = random.nextDouble() * 2 - 1;
+        }
+    }
+}
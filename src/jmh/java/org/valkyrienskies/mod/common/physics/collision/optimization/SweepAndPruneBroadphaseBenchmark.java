@@ -0,0 +1,106 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares SweepAndPruneBroadphase against testing every pair of ships, with ships that move a
+ * little every physics tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepAndPruneBroadphaseBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int ships;
+
+    private List<MovingShip> shipList;
+    private SweepAndPruneBroadphase<MovingShip> broadphase;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(420);
+        shipList = new ArrayList<>();
+        // Keep the ship density about the same no matter how many ships there are.
+        double worldSize = Math.sqrt(ships) * 100;
+        for (int i = 0; i < ships; i++) {
+            shipList.add(new MovingShip(random, worldSize));
+        }
+        broadphase = new SweepAndPruneBroadphase<>(ship -> ship.bounds);
+        broadphase.update(shipList);
+    }
+
+    @Benchmark
+    public int sweepAndPrune() {
+        moveShips();
+        broadphase.update(shipList);
+        return broadphase.getCandidatePairCount();
+    }
+
+    @Benchmark
+    public int bruteForce() {
+        moveShips();
+        int pairs = 0;
+        for (int i = 0; i < shipList.size(); i++) {
+            AxisAlignedBB bounds = shipList.get(i).bounds;
+            for (int j = i + 1; j < shipList.size(); j++) {
+                if (bounds.intersects(shipList.get(j).bounds)) {
+                    pairs++;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private void moveShips() {
+        for (MovingShip ship : shipList) {
+            ship.bounds = ship.bounds.offset(ship.velocityX, ship.velocityY, ship.velocityZ);
+            // Turn around every now and then so the ships stay in the same area.
+            if (random.nextInt(200) == 0) {
+                ship.velocityX *= -1;
+                ship.velocityY *= -1;
+                ship.velocityZ *= -1;
+            }
+        }
+    }
+
+    private static class MovingShip {
+
+        AxisAlignedBB bounds;
+        double velocityX, velocityY, velocityZ;
+
+        MovingShip(Random random, double worldSize) {
+            double sizeX = random.nextDouble() * 40 + 5;
+            double sizeY = random.nextDouble() * 20 + 5;
+            double sizeZ = random.nextDouble() * 40 + 5;
+            double x = random.nextDouble() * worldSize;
+            double y = random.nextDouble() * 100 + 50;
+            double z = random.nextDouble() * worldSize;
+            bounds = new AxisAlignedBB(x, y, z, x + sizeX, y + sizeY, z + sizeZ);
+            // Up to 1 block per physics tick, 100 blocks per second.
+            velocityX = random.nextDouble() * 2 - 1;
+            velocityY = (random.nextDouble() * 2 - 1) * .1;
+            velocityZ = random.nextDouble() * 2 - 1;
+        }
+    }
+}
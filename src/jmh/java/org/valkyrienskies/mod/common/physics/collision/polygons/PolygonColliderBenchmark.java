@@ -0,0 +1,120 @@
+package org.valkyrienskies.mod.common.physics.collision.polygons;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.physics.management.ShipTransformationManager;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Builds the polygons of ship and world block pairs and runs the separating axis test on them,
+ * the way ShipCollisionTask does for every block pair near the ship. About half of the pairs are
+ * colliding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolygonColliderBenchmark {
+
+    private static final int PAIRS = 1000;
+
+    private ShipTransform transform;
+    private Vector[] normals;
+    // World block position then ship block position for every pair, 6 ints per pair.
+    private int[] pairs;
+    private Polygon shipPolygon;
+    private Polygon worldPolygon;
+    private PhysPolygonCollider collider;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        transform = new ShipTransform(100.5D, 70.3D, -50.5D, 10, 30, 5, new Vector(8, 64, 8));
+        normals = ShipTransformationManager.createCollisionNormals(transform);
+
+        Random random = new Random(420);
+        pairs = new int[PAIRS * 6];
+        Vector inWorld = new Vector();
+        for (int i = 0; i < PAIRS; i++) {
+            int localX = random.nextInt(16);
+            int localY = 64 + random.nextInt(16);
+            int localZ = random.nextInt(16);
+            inWorld.setValue(localX + .5D, localY + .5D, localZ + .5D);
+            transform.transform(inWorld, TransformType.SUBSPACE_TO_GLOBAL);
+            // Pick one of the world blocks touching the ship block.
+            pairs[i * 6] = (int) Math.floor(inWorld.X) + random.nextInt(3) - 1;
+            pairs[i * 6 + 1] = (int) Math.floor(inWorld.Y) + random.nextInt(3) - 1;
+            pairs[i * 6 + 2] = (int) Math.floor(inWorld.Z) + random.nextInt(3) - 1;
+            pairs[i * 6 + 3] = localX;
+            pairs[i * 6 + 4] = localY;
+            pairs[i * 6 + 5] = localZ;
+        }
+        shipPolygon = new Polygon();
+        worldPolygon = new Polygon();
+        collider = new PhysPolygonCollider();
+    }
+
+    @Benchmark
+    public void constructPolygons(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            int worldX = pairs[i * 6], worldY = pairs[i * 6 + 1], worldZ = pairs[i * 6 + 2];
+            int localX = pairs[i * 6 + 3], localY = pairs[i * 6 + 4], localZ = pairs[i * 6 + 5];
+            blackhole.consume(new Polygon(
+                new AxisAlignedBB(localX, localY, localZ, localX + 1, localY + 1, localZ + 1),
+                transform, TransformType.SUBSPACE_TO_GLOBAL));
+            blackhole.consume(new Polygon(
+                new AxisAlignedBB(worldX, worldY, worldZ, worldX + 1, worldY + 1, worldZ + 1)));
+        }
+    }
+
+    @Benchmark
+    public int separatingAxisTestNewObjects() {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            int worldX = pairs[i * 6], worldY = pairs[i * 6 + 1], worldZ = pairs[i * 6 + 2];
+            int localX = pairs[i * 6 + 3], localY = pairs[i * 6 + 4], localZ = pairs[i * 6 + 5];
+            Polygon ship = new Polygon(
+                new AxisAlignedBB(localX, localY, localZ, localX + 1, localY + 1, localZ + 1),
+                transform, TransformType.SUBSPACE_TO_GLOBAL);
+            Polygon world = new Polygon(
+                new AxisAlignedBB(worldX, worldY, worldZ, worldX + 1, worldY + 1, worldZ + 1));
+            if (!new PhysPolygonCollider(ship, world, normals).seperated) {
+                colliding++;
+            }
+        }
+        return colliding;
+    }
+
+    @Benchmark
+    public int separatingAxisTestReused() {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            int worldX = pairs[i * 6], worldY = pairs[i * 6 + 1], worldZ = pairs[i * 6 + 2];
+            int localX = pairs[i * 6 + 3], localY = pairs[i * 6 + 4], localZ = pairs[i * 6 + 5];
+            shipPolygon.setAABB(localX, localY, localZ, localX + 1, localY + 1, localZ + 1);
+            shipPolygon.transform(transform, TransformType.SUBSPACE_TO_GLOBAL);
+            worldPolygon.setAABB(worldX, worldY, worldZ, worldX + 1, worldY + 1, worldZ + 1);
+            collider.processData(shipPolygon, worldPolygon, normals);
+            if (!collider.seperated) {
+                colliding++;
+            }
+        }
+        return colliding;
+    }
+}
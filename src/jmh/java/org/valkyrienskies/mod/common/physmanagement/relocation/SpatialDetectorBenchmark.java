@@ -0,0 +1,153 @@
+package org.valkyrienskies.mod.common.physmanagement.relocation;
+
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Flood fills a synthetic ship of side * side * side blocks with SpatialDetector, like when a ship
+ * is assembled, and with the breadth first fill it used before. The shapes are a cube with a few
+ * percent of its blocks air, the hollow hull of a cube, and a sparse lattice of beams 4 blocks
+ * apart.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialDetectorBenchmark {
+
+    private static final int START_Y = 64;
+
+    @Param({"16", "48"})
+    public int side;
+
+    @Param({"false", "true"})
+    public boolean corners;
+
+    @Param({"cube", "hollow", "lattice"})
+    public String shape;
+
+    private boolean[] solid;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(420);
+        solid = new boolean[side * side * side];
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                for (int z = 0; z < side; z++) {
+                    solid[x + side * (y + side * z)] = isSolid(random, x, y, z);
+                }
+            }
+        }
+        // Always start on a solid block
+        solid[0] = true;
+    }
+
+    @Benchmark
+    public int floodFill() {
+        SyntheticDetector detector = new SyntheticDetector(side, corners, solid);
+        detector.startDetection();
+        return detector.foundSet.size();
+    }
+
+    @Benchmark
+    public int breadthFirstFloodFill() {
+        SyntheticDetector detector = new BreadthFirstDetector(side, corners, solid);
+        detector.startDetection();
+        return detector.foundSet.size();
+    }
+
+    private boolean isSolid(Random random, int x, int y, int z) {
+        switch (shape) {
+            case "cube":
+                return random.nextInt(100) >= 5;
+            case "hollow":
+                return x == 0 || y == 0 || z == 0 || x == side - 1 || y == side - 1
+                    || z == side - 1;
+            case "lattice":
+                int onGrid = (x % 4 == 0 ? 1 : 0) + (y % 4 == 0 ? 1 : 0) + (z % 4 == 0 ? 1 : 0);
+                return onGrid >= 2;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    private static class SyntheticDetector extends SpatialDetector {
+
+        private final int side;
+        private final boolean[] solid;
+
+        SyntheticDetector(int side, boolean corners, boolean[] solid) {
+            super(new BlockPos(0, START_Y, 0), side * side * side, corners);
+            this.side = side;
+            this.solid = solid;
+        }
+
+        @Override
+        public boolean isValidExpansion(int x, int y, int z) {
+            y -= START_Y;
+            if (x < 0 || y < 0 || z < 0 || x >= side || y >= side || z >= side) {
+                return false;
+            }
+            return solid[x + side * (y + side * z)];
+        }
+    }
+
+    /**
+     * How SpatialDetector used to fill, one breadth first layer at a time, checking every
+     * neighbor of every block against foundSet.
+     */
+    private static class BreadthFirstDetector extends SyntheticDetector {
+
+        BreadthFirstDetector(int side, boolean corners, boolean[] solid) {
+            super(side, corners, solid);
+        }
+
+        @Override
+        protected void calculateSpatialOccupation() {
+            TIntHashSet nextQueue = new TIntHashSet();
+            nextQueue.add(firstBlock.getY() + maxRange * maxRangeHalved
+                + maxRangeSquared * maxRangeHalved);
+            while (!nextQueue.isEmpty() && !cleanHouse) {
+                int[] queue = nextQueue.toArray();
+                foundSet.addAll(nextQueue);
+                nextQueue = new TIntHashSet();
+                for (int hash : queue) {
+                    setPosWithRespectTo(hash, firstBlock, tempPos);
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            for (int dz = -1; dz <= 1; dz++) {
+                                int distance = Math.abs(dx) + Math.abs(dy) + Math.abs(dz);
+                                if (distance == 0 || (!corners && distance > 1)) {
+                                    continue;
+                                }
+                                int neighbor = hash + dy + maxRange * dx + maxRangeSquared * dz;
+                                if (isValidExpansion(tempPos.getX() + dx, tempPos.getY() + dy,
+                                    tempPos.getZ() + dz) && !foundSet.contains(neighbor)
+                                    && foundSet.size() + nextQueue.size() < maxSize) {
+                                    nextQueue.add(neighbor);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
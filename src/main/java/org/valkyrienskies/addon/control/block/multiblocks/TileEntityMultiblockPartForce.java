@@ -2,6 +2,7 @@ package org.valkyrienskies.addon.control.block.multiblocks;
 
 import net.minecraft.nbt.NBTTagCompound;
 import org.valkyrienskies.addon.control.nodenetwork.IForceTile;
+import org.valkyrienskies.mod.common.util.ValkyrienUtils;
 
 public abstract class TileEntityMultiblockPartForce<E extends IMultiblockSchematic, F extends TileEntityMultiblockPartForce> extends
     TileEntityMultiblockPart<E, F> implements IForceTile {
@@ -32,6 +33,11 @@ public abstract class TileEntityMultiblockPartForce<E extends IMultiblockSchemat
 
     @Override
     public void setThrustMultiplierGoal(double thrustMultiplierGoal) {
+        if (Math.abs(thrustMultiplierGoal - this.thrustMultiplierGoal) > THRUST_CHANGE_TO_WAKE_SHIP
+            && world != null && !world.isRemote) {
+            ValkyrienUtils.getPhysicsObject(world, pos)
+                .ifPresent(ship -> ship.getPhysicsProcessor().wakeUp());
+        }
         this.thrustMultiplierGoal = thrustMultiplierGoal;
     }
 
@@ -5,6 +5,7 @@ import org.valkyrienskies.mod.common.coordinates.VectorImmutable;
 import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
 import org.valkyrienskies.mod.common.util.ValkyrienNBTUtils;
+import org.valkyrienskies.mod.common.util.ValkyrienUtils;
 
 public abstract class BasicForceNodeTileEntity extends BasicNodeTileEntity implements IForceTile {
 
@@ -71,6 +72,11 @@ public abstract class BasicForceNodeTileEntity extends BasicNodeTileEntity imple
 
     @Override
     public void setThrustMultiplierGoal(double multiplier) {
+        if (Math.abs(multiplier - thrusGoalMultiplier) > THRUST_CHANGE_TO_WAKE_SHIP
+            && world != null && !world.isRemote) {
+            ValkyrienUtils.getPhysicsObject(world, pos)
+                .ifPresent(ship -> ship.getPhysicsProcessor().wakeUp());
+        }
         thrusGoalMultiplier = multiplier;
     }
 
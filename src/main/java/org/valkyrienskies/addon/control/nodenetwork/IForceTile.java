@@ -6,6 +6,11 @@ import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
 
 public interface IForceTile {
 
+    /**
+     * Changing the thrust goal by more than this should wake up the ship the tile is on.
+     */
+    double THRUST_CHANGE_TO_WAKE_SHIP = .001D;
+
     /**
      * Used to tell what direction of force an engine will output at a given instant.
      */
@@ -45,7 +50,8 @@ public interface IForceTile {
 
     /**
      * Sets the goal for the force output, multiplier must be between 0 and 1. The actual goal
-     * thrust is the getMaxThrust() * getThrustMultiplierGoal();
+     * thrust is the getMaxThrust() * getThrustMultiplierGoal(); Changing the goal wakes up the
+     * ship if it was sleeping.
      */
     void setThrustMultiplierGoal(double thrustMultiplierGoal);
 
@@ -41,6 +41,11 @@ public abstract class TileEntityPilotableImpl extends BasicNodeTileEntity implem
     public final void onPilotControlsMessage(PilotControlsMessage message, EntityPlayerMP sender) {
         if (sender == pilotPlayerEntity) {
             processControlMessage(message, sender);
+            // The pilot might want a parked ship to start moving.
+            PhysicsWrapperEntity parentShip = getParentPhysicsEntity();
+            if (parentShip != null) {
+                parentShip.getPhysicsObject().getPhysicsProcessor().wakeUp();
+            }
         } else {
             // Wtf is this packet being sent for?
         }
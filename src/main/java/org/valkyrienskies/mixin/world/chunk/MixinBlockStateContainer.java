@@ -1,6 +1,8 @@
 package org.valkyrienskies.mixin.world.chunk;
 
+import java.lang.ref.SoftReference;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.BitArray;
 import net.minecraft.world.chunk.BlockStateContainer;
 import net.minecraft.world.chunk.IBlockStatePalette;
@@ -8,21 +10,35 @@ import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctree;
 import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctreeProvider;
 import org.valkyrienskies.mod.common.physics.collision.optimization.SimpleBitOctree;
 
+/**
+ * Gives every chunk section a bit octree of its solid blocks for collision. The octree is only
+ * built the first time collision asks for it, most sections never are, and it's only held by a
+ * SoftReference so the garbage collector can drop it when memory runs low. It's then rebuilt the
+ * next time it's needed.
+ */
 @Mixin(BlockStateContainer.class)
 public class MixinBlockStateContainer implements IBitOctreeProvider {
 
     @Shadow
     @Final
     public static IBlockState AIR_BLOCK_STATE;
-    private final IBitOctree bitOctree = new SimpleBitOctree();
+    // Null until getBitOctree() is first called.
+    private volatile SoftReference<IBitOctree> bitOctreeReference = null;
+    // Bumped by every set(), so getBitOctree() can tell a block changed while it was building.
+    private volatile int modificationCount = 0;
     @Shadow
     public IBlockStatePalette palette;
     @Shadow
     public BitArray storage;
+    @Shadow
+    private int bits;
 
     /**
      * @author thebest108
@@ -35,15 +51,82 @@ public class MixinBlockStateContainer implements IBitOctreeProvider {
         int i = this.palette.idFor(state);
         this.storage.setAt(index, i);
         // VS code starts here:
-        int x = index & 0xF;
-        int z = (index & 0xF0) >> 4;
-        int y = (index & 0xF00) >> 8;
-        boolean isStateSolid = state.getMaterial().isSolid();
-        bitOctree.set(x & 15, y & 15, z & 15, isStateSolid);
+        // Bump the count before looking for the octree. A build that read the storage before this
+        // change then either sees the new count, or has already published the octree we update.
+        modificationCount++;
+        SoftReference<IBitOctree> reference = bitOctreeReference;
+        IBitOctree bitOctree = reference == null ? null : reference.get();
+        if (bitOctree != null) {
+            int x = index & 0xF;
+            int z = (index & 0xF0) >> 4;
+            int y = (index & 0xF00) >> 8;
+            boolean isStateSolid = state.getMaterial().isSolid();
+            bitOctree.set(x & 15, y & 15, z & 15, isStateSolid);
+        }
+    }
+
+    // Chunk packets replace the storage without calling set(), so drop the octree.
+    // read() only exists on the client.
+    @Inject(method = "read", at = @At("RETURN"), require = 0)
+    private void onRead(PacketBuffer buf, CallbackInfo info) {
+        bitOctreeReference = null;
+        modificationCount++;
     }
 
     @Override
     public IBitOctree getBitOctree() {
+        SoftReference<IBitOctree> reference = bitOctreeReference;
+        IBitOctree bitOctree = reference == null ? null : reference.get();
+        if (bitOctree != null) {
+            return bitOctree;
+        }
+        synchronized (this) {
+            reference = bitOctreeReference;
+            bitOctree = reference == null ? null : reference.get();
+            if (bitOctree != null) {
+                return bitOctree;
+            }
+            // set() runs on the game thread while this builds. It skips the octree until it's
+            // published, so build again until no block changed during a build.
+            int countBeforeBuild;
+            do {
+                countBeforeBuild = modificationCount;
+                bitOctree = buildBitOctree();
+                bitOctreeReference = new SoftReference<>(bitOctree);
+            } while (modificationCount != countBeforeBuild);
+            return bitOctree;
+        }
+    }
+
+    /**
+     * Checks if each palette entry is solid once, rather than every block.
+     */
+    private IBitOctree buildBitOctree() {
+        // Read once, a resize replaces both.
+        IBlockStatePalette currentPalette = palette;
+        BitArray currentStorage = storage;
+        // Whether each palette id is solid, 0 if we haven't checked yet, 1 if solid, 2 if not.
+        byte[] paletteSolidity = new byte[1 << bits];
+        boolean[] solid = new boolean[IBitOctree.BLOCKS_TOTAL];
+        for (int index = 0; index < IBitOctree.BLOCKS_TOTAL; index++) {
+            int paletteID = currentStorage.getAt(index);
+            boolean isStateSolid;
+            if (paletteID < paletteSolidity.length && paletteSolidity[paletteID] != 0) {
+                isStateSolid = paletteSolidity[paletteID] == 1;
+            } else {
+                IBlockState state = currentPalette.getBlockState(paletteID);
+                isStateSolid = state != null && state.getMaterial().isSolid();
+                if (paletteID < paletteSolidity.length) {
+                    paletteSolidity[paletteID] = (byte) (isStateSolid ? 1 : 2);
+                }
+            }
+            int x = index & 0xF;
+            int z = (index & 0xF0) >> 4;
+            int y = (index & 0xF00) >> 8;
+            solid[x | (y << 4) | (z << 8)] = isStateSolid;
+        }
+        SimpleBitOctree bitOctree = new SimpleBitOctree();
+        bitOctree.setAll(solid);
         return bitOctree;
     }
-}
\ No newline at end of file
+}
@@ -58,6 +58,7 @@ import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
 import org.valkyrienskies.mod.common.physics.management.PhysicsTickHandler;
 import org.valkyrienskies.mod.common.physmanagement.interaction.VSWorldEventListener;
 import org.valkyrienskies.mod.common.physmanagement.shipdata.IValkyrienSkiesWorldData;
+import org.valkyrienskies.mod.common.physmanagement.shipdata.QueryableShipData;
 import org.valkyrienskies.mod.common.ship_handling.IHasShipManager;
 import org.valkyrienskies.mod.common.ship_handling.WorldClientShipManager;
 import org.valkyrienskies.mod.common.ship_handling.WorldServerShipManager;
@@ -189,6 +190,7 @@ public class EventsCommon {
         IHasShipManager shipManager = (IHasShipManager) world;
         if (!event.getWorld().isRemote) {
             ValkyrienSkiesMod.VS_CHUNK_MANAGER.initWorld(world);
+            QueryableShipData.get(world).openLog(QueryableShipData.getLogFile(world));
             shipManager.setManager(WorldServerShipManager::new);
         } else {
             shipManager.setManager(WorldClientShipManager::new);
@@ -199,6 +201,7 @@ public class EventsCommon {
     public void onWorldUnload(WorldEvent.Unload event) {
         if (!event.getWorld().isRemote) {
             ValkyrienSkiesMod.VS_CHUNK_MANAGER.removeWorld(event.getWorld());
+            QueryableShipData.get(event.getWorld()).closeLog();
         } else {
             // Fixes memory leak; @DaPorkChop please don't leave static maps lying around D:
             lastPositions.clear();
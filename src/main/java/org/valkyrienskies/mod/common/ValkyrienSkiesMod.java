@@ -25,8 +25,6 @@ import java.lang.reflect.Modifier;
 import java.util.HashSet;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import net.minecraft.block.Block;
@@ -69,11 +67,18 @@ import org.valkyrienskies.mod.common.block.BlockPhysicsInfuserDummy;
 import org.valkyrienskies.mod.common.command.framework.VSModCommandRegistry;
 import org.valkyrienskies.mod.common.config.VSConfig;
 import org.valkyrienskies.mod.common.item.ItemPhysicsCore;
+import org.valkyrienskies.mod.common.multithreaded.CollisionTaskScheduler;
 import org.valkyrienskies.mod.common.network.PhysWrapperPositionHandler;
+import org.valkyrienskies.mod.common.network.ShipChunkSnapshotHandler;
+import org.valkyrienskies.mod.common.network.ShipChunkSnapshotMessage;
 import org.valkyrienskies.mod.common.network.SubspacedEntityRecordHandler;
 import org.valkyrienskies.mod.common.network.SubspacedEntityRecordMessage;
 import org.valkyrienskies.mod.common.network.VSGuiButtonHandler;
 import org.valkyrienskies.mod.common.network.VSGuiButtonMessage;
+import org.valkyrienskies.mod.common.network.WrapperPositionAckHandler;
+import org.valkyrienskies.mod.common.network.WrapperPositionAckMessage;
+import org.valkyrienskies.mod.common.network.WrapperPositionBatchHandler;
+import org.valkyrienskies.mod.common.network.WrapperPositionBatchMessage;
 import org.valkyrienskies.mod.common.network.WrapperPositionMessage;
 import org.valkyrienskies.mod.common.physics.management.DimensionPhysObjectManager;
 import org.valkyrienskies.mod.common.physmanagement.VS_APIPhysicsEntityManager;
@@ -126,10 +131,10 @@ public class ValkyrienSkiesMod {
     public static final DimensionPhysObjectManager VS_PHYSICS_MANAGER =
         new DimensionPhysObjectManager();
     /**
-     * This service is directly responsible for running collision tasks.
+     * This scheduler is directly responsible for running collision tasks, shared by all worlds.
      */
     @Getter
-    private static ExecutorService PHYSICS_THREADS_EXECUTOR = null;
+    private static CollisionTaskScheduler PHYSICS_SCHEDULER = null;
     public Block physicsInfuser;
     public Block physicsInfuserCreative;
     public Block physicsInfuserDummy;
@@ -154,9 +159,8 @@ public class ValkyrienSkiesMod {
         log.debug("Initializing configuration");
         runConfiguration();
 
-        log.debug("Instantiating the physics thread executor");
-        ValkyrienSkiesMod.PHYSICS_THREADS_EXECUTOR = Executors
-            .newFixedThreadPool(VSConfig.threadCount);
+        log.debug("Instantiating the physics thread scheduler");
+        ValkyrienSkiesMod.PHYSICS_SCHEDULER = new CollisionTaskScheduler(VSConfig.threadCount);
 
         log.debug("Beginning asynchronous Kryo initialization");
         serializationInitAsync();
@@ -213,6 +217,12 @@ public class ValkyrienSkiesMod {
             SubspacedEntityRecordMessage.class, 2, Side.SERVER);
         physWrapperNetwork.registerMessage(VSGuiButtonHandler.class,
             VSGuiButtonMessage.class, 3, Side.SERVER);
+        physWrapperNetwork.registerMessage(WrapperPositionAckHandler.class,
+            WrapperPositionAckMessage.class, 4, Side.SERVER);
+        physWrapperNetwork.registerMessage(WrapperPositionBatchHandler.class,
+            WrapperPositionBatchMessage.class, 5, Side.CLIENT);
+        physWrapperNetwork.registerMessage(ShipChunkSnapshotHandler.class,
+            ShipChunkSnapshotMessage.class, 6, Side.CLIENT);
     }
 
     void registerBlocks(RegistryEvent.Register<Block> event) {
@@ -289,7 +299,8 @@ public class ValkyrienSkiesMod {
     }
 
     /**
-     * @return The Kryo instance for the mod. This operation is blocking!
+     * @return The Kryo instance for the mod. This operation is blocking! Kryo isn't thread safe,
+     * and ship data is saved off the server thread, so synchronize on it while using it.
      */
     public Kryo getKryo() {
         try {
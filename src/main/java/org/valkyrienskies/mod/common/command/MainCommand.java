@@ -1,5 +1,9 @@
 package org.valkyrienskies.mod.common.command;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -11,11 +15,17 @@ import net.minecraft.command.ICommandSender;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextComponentTranslation;
 import net.minecraft.world.World;
+import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
 import org.valkyrienskies.mod.common.command.autocompleters.ShipNameAutocompleter;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
+import org.valkyrienskies.mod.common.multithreaded.CollisionTaskScheduler;
+import org.valkyrienskies.mod.common.multithreaded.PhysicsTickMetrics;
+import org.valkyrienskies.mod.common.multithreaded.PhysicsTickMetrics.Phase;
+import org.valkyrienskies.mod.common.multithreaded.TickTimeHistogram;
 import org.valkyrienskies.mod.common.multithreaded.VSThread;
 import org.valkyrienskies.mod.common.physmanagement.shipdata.QueryableShipData;
 import org.valkyrienskies.mod.common.physmanagement.shipdata.ShipData;
@@ -41,6 +51,7 @@ import picocli.CommandLine.Spec;
         MainCommand.GC.class,
         MainCommand.ListShipsInactive.class,
         MainCommand.TPS.class,
+        MainCommand.PhysicsMetrics.class,
         MainCommand.KillRunaway.class,
         MainCommand.DeleteShip.class,
         MainCommand.debug.class,
@@ -101,6 +112,73 @@ public class MainCommand implements Runnable {
         }
     }
 
+    @Command(name = "physics-metrics", aliases = "pm")
+    static class PhysicsMetrics implements Runnable {
+
+        @Inject
+        ICommandSender sender;
+
+        @Option(names = {"--world", "-w"})
+        World world;
+
+        @Option(names = {"--csv", "-c"}, description = "Also write the histograms to a CSV file")
+        boolean csv;
+
+        @Option(names = {"--reset", "-r"}, description = "Clear the histograms afterwards")
+        boolean reset;
+
+        @Override
+        public void run() {
+            if (world == null) {
+                world = sender.getEntityWorld();
+            }
+
+            VSThread worldPhysicsThread = ((WorldServerShipManager) ((IHasShipManager) world)
+                .getManager()).getPhysicsThread();
+            if (worldPhysicsThread == null) {
+                sender.sendMessage(new TextComponentString("This world has no physics thread"));
+                return;
+            }
+
+            PhysicsTickMetrics metrics = worldPhysicsThread.getMetrics();
+            sender.sendMessage(new TextComponentString(
+                "Physics tick phases in microseconds (mean / p50 / p99 / p99.9 / max):"));
+            for (Phase phase : Phase.values()) {
+                TickTimeHistogram histogram = metrics.getHistogram(phase);
+                sender.sendMessage(new TextComponentString(String.format(
+                    "%s: %d / %d / %d / %d / %d over %d ticks", phase.getName(),
+                    histogram.getMeanNano() / 1000, histogram.getPercentileNano(50) / 1000,
+                    histogram.getPercentileNano(99) / 1000,
+                    histogram.getPercentileNano(99.9) / 1000, histogram.getMaxNano() / 1000,
+                    histogram.getCount())));
+            }
+            CollisionTaskScheduler scheduler = ValkyrienSkiesMod.getPHYSICS_SCHEDULER();
+            sender.sendMessage(new TextComponentString(String.format(
+                "Collision scheduler: %d threads, %d tasks run, %d steals, peak queue depth %d",
+                scheduler.getThreadCount(), scheduler.getTasksRun(), scheduler.getStealCount(),
+                scheduler.getPeakQueueDepth())));
+
+            if (csv) {
+                File csvFile = new File(world.getMinecraftServer().getDataDirectory(),
+                    "vs-physics-metrics-" + world.provider.getDimension() + "-"
+                        + System.currentTimeMillis() + ".csv");
+                try (Writer writer = new FileWriter(csvFile)) {
+                    metrics.writeCsv(writer);
+                    sender.sendMessage(new TextComponentString(
+                        "Wrote the histograms to " + csvFile.getAbsolutePath()));
+                } catch (IOException e) {
+                    sender.sendMessage(new TextComponentString(
+                        "Failed to write the histograms: " + e.getMessage()));
+                }
+            }
+            if (reset) {
+                metrics.reset();
+                scheduler.resetStatistics();
+                sender.sendMessage(new TextComponentString("Reset the physics metrics"));
+            }
+        }
+    }
+
     @Command(name = "debug")
     static class debug implements Runnable {
 
@@ -377,20 +455,7 @@ public class MainCommand implements Runnable {
                                 sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.failure", oTargetShipData.get().getUUID()));
                                 return;
                             }
-                            ShipData targetShipData = oTargetShipData.get();
-                            Optional<Entity> oEntity = world.loadedEntityList.stream()
-                                .filter(e -> e.getPersistentID().equals(targetShipData.getUUID()))
-                                .findAny();
-                            if (!oEntity.isPresent()) {
-                                throw new RuntimeException("QueryableShipData is incorrect?");
-                            }
-                            try {
-                                PhysicsWrapperEntity wrapperEntity = (PhysicsWrapperEntity) oEntity.get();
-                                wrapperEntity.destroyPhysicsObject();
-                            } catch (ClassCastException e) {
-                                throw new RuntimeException("Ship entity is not PhysicsWrapperEntity or "
-                                    + "Physics infuser is not a physics infuser?", e);
-                            }
+                            destroyRemovedShip(world, oTargetShipData.get());
                             sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.success", currentShip.getUUID()));
                         } else {
                             sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.failure", currentShip.getUUID()));
@@ -437,20 +502,7 @@ public class MainCommand implements Runnable {
                                 sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.failure", oTargetShipData.get().getUUID()));
                                 return;
                             }
-                            ShipData targetShipData = oTargetShipData.get();
-                            Optional<Entity> oEntity = world.loadedEntityList.stream()
-                                .filter(e -> e.getPersistentID().equals(targetShipData.getUUID()))
-                                .findAny();
-                            if (!oEntity.isPresent()) {
-                                throw new RuntimeException("QueryableShipData is incorrect?");
-                            }
-                            try {
-                                PhysicsWrapperEntity wrapperEntity = (PhysicsWrapperEntity) oEntity.get();
-                                wrapperEntity.destroyPhysicsObject();
-                            } catch (ClassCastException e) {
-                                throw new RuntimeException("Ship entity is not PhysicsWrapperEntity or "
-                                    + "Physics infuser is not a physics infuser?", e);
-                            }
+                            destroyRemovedShip(world, oTargetShipData.get());
                             sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.success", currentShip.getUUID()));
                         } else {
                             sender.sendMessage(new TextComponentTranslation("commands.vs.kill-runaway.failure", currentShip.getUUID()));
@@ -460,4 +512,37 @@ public class MainCommand implements Runnable {
             }
         }
     }
+
+    /**
+     * Destroys the ship of ShipData that was just removed, which frees its square of ship chunks.
+     * If the ship isn't loaded, the chunk it was last in is loaded to find it. If it still can't
+     * be found, its square is freed directly so the square doesn't stay in use forever.
+     */
+    private static void destroyRemovedShip(World world, ShipData shipData) {
+        Optional<Entity> oEntity = findLoadedEntity(world, shipData.getUUID());
+        if (!oEntity.isPresent() && shipData.getPositionData() != null) {
+            // Loading the chunk loads the entities saved in it too.
+            world.getChunk(MathHelper.floor(shipData.getPositionData().getPosX()) >> 4,
+                MathHelper.floor(shipData.getPositionData().getPosZ()) >> 4);
+            oEntity = findLoadedEntity(world, shipData.getUUID());
+        }
+        if (!oEntity.isPresent()) {
+            ValkyrienSkiesMod.VS_CHUNK_MANAGER.getManagerForWorld(world)
+                .releaseChunkSet(shipData.getChunkClaim());
+            return;
+        }
+        try {
+            PhysicsWrapperEntity wrapperEntity = (PhysicsWrapperEntity) oEntity.get();
+            wrapperEntity.destroyPhysicsObject();
+        } catch (ClassCastException e) {
+            throw new RuntimeException("Ship entity is not PhysicsWrapperEntity or "
+                + "Physics infuser is not a physics infuser?", e);
+        }
+    }
+
+    private static Optional<Entity> findLoadedEntity(World world, UUID uuid) {
+        return world.loadedEntityList.stream()
+            .filter(e -> e.getPersistentID().equals(uuid))
+            .findAny();
+    }
 }
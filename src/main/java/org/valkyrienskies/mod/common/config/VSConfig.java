@@ -41,12 +41,22 @@ public class VSConfig extends VSConfigTemplate {
 
     public static boolean doAirshipMovement = true;
 
+    @Comment("Stops simulating ships that have been still for a second, until a block change, " +
+        "pilot input, engine change or nearby world block change wakes them up.")
+    public static boolean doShipSleeping = true;
+
     @Name("Disable wrench modes")
     @Comment("Makes wrench toggle a multiblock's constructed state, removes modes.")
     public static boolean wrenchModeless = false;
 
     public static double physSpeed = 0.01D;
 
+    @Comment("Ship positions are sent to players near the ship every this many physics ticks, " +
+        "and less often to players further away. Clients interpolate between them, so higher " +
+        "values save bandwidth at the cost of a bit of extra delay.")
+    @RangeInt(min = 1, max = 20)
+    public static int shipPositionSendInterval = 1;
+
     @Comment("The number of threads to use for physics, " +
         "recommended to use your cpu's thread count minus 2. " +
         "Cannot be set at runtime.")
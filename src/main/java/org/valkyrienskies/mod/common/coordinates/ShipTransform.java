@@ -86,11 +86,11 @@ public class ShipTransform {
     }
 
     public void transform(Vector vector, TransformType transformType) {
-        RotationMatrices.applyTransform(getInternalMatrix(transformType), vector);
+        RotationMatrices.applyTransform(getInternalMatrixNoCopy(transformType), vector);
     }
 
     public void rotate(Vector vector, TransformType transformType) {
-        RotationMatrices.doRotationOnly(getInternalMatrix(transformType), vector);
+        RotationMatrices.doRotationOnly(getInternalMatrixNoCopy(transformType), vector);
     }
 
     public Vec3d transform(Vec3d vec3d, TransformType transformType) {
@@ -164,6 +164,23 @@ public class ShipTransform {
         }
     }
 
+    /**
+     * Same as getInternalMatrix() but without the defensive copy. Only for use by methods of this
+     * class that never write to the returned array; the collision code calls transform() millions
+     * of times per second and cannot afford a new array each time.
+     */
+    private double[] getInternalMatrixNoCopy(TransformType transformType) {
+        switch (transformType) {
+            case SUBSPACE_TO_GLOBAL:
+                return subspaceToGlobal;
+            case GLOBAL_TO_SUBSPACE:
+                return globalToSubspace;
+            default:
+                throw new IllegalArgumentException(
+                    "Unexpected TransformType Enum: " + transformType);
+        }
+    }
+
     @Deprecated
     public void transform(Entity entity, TransformType subspaceToGlobal) {
         RotationMatrices.applyTransform(this, entity, subspaceToGlobal);
@@ -10,6 +10,7 @@ import net.minecraftforge.fml.common.registry.IEntityAdditionalSpawnData;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 import org.valkyrienskies.mod.common.multithreaded.TickSyncCompletableFuture;
+import org.valkyrienskies.mod.common.physics.PhysicsCalculations;
 import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
 import org.valkyrienskies.mod.common.physmanagement.relocation.DetectorManager.DetectorIDs;
 import org.valkyrienskies.mod.common.physmanagement.shipdata.QueryableShipData;
@@ -195,7 +196,8 @@ public class PhysicsWrapperEntity extends Entity implements IEntityAdditionalSpa
 
     /**
      * Sets the position and rotation of the PhysicsWrapperEntity, and updates the pseudo ship AABB
-     * (not the same as the actual collision one).
+     * (not the same as the actual collision one). Wakes the ship up, since it was moved by
+     * something other than the physics thread.
      *
      * @param posX
      * @param posY
@@ -205,11 +207,23 @@ public class PhysicsWrapperEntity extends Entity implements IEntityAdditionalSpa
      * @param roll  in degrees
      */
     public void setPhysicsEntityPositionAndRotation(double posX, double posY, double posZ,
+        double pitch, double yaw, double roll) {
+        applyPhysicsPositionAndRotation(posX, posY, posZ, pitch, yaw, roll);
+        wakeUpShip();
+    }
+
+    /**
+     * Same as setPhysicsEntityPositionAndRotation(), but for the position and rotation the physics
+     * thread moved the ship to, so it doesn't wake the ship up.
+     */
+    public void applyPhysicsPositionAndRotation(double posX, double posY, double posZ,
         double pitch, double yaw, double roll) {
         this.posX = posX;
         this.posY = posY;
         this.posZ = posZ;
-        setPhysicsEntityRotation(pitch, yaw, roll);
+        this.pitch = pitch;
+        this.yaw = yaw;
+        this.roll = roll;
     }
 
     @Override
@@ -238,6 +252,15 @@ public class PhysicsWrapperEntity extends Entity implements IEntityAdditionalSpa
         this.pitch = pitch;
         this.yaw = yaw;
         this.roll = roll;
+        wakeUpShip();
+    }
+
+    // A sleeping ship doesn't notice being moved, so it has to be woken up.
+    private void wakeUpShip() {
+        PhysicsCalculations physicsProcessor = physicsObject.getPhysicsProcessor();
+        if (physicsProcessor != null) {
+            physicsProcessor.wakeUp();
+        }
     }
 
 }
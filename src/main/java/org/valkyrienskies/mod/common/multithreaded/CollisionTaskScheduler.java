@@ -0,0 +1,145 @@
+package org.valkyrienskies.mod.common.multithreaded;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Runs the collision tasks of every world's VSThread on one shared work stealing ForkJoinPool.
+ * <p>
+ * Instead of cutting every ship into tasks of a fixed size, VSThread asks getTaskSize() how big
+ * the tasks should be for the amount of work this tick, so that a huge ship is split into about
+ * as many tasks as the pool can keep busy, and small ships aren't split at all. The tasks are then
+ * recursively split in halves, so idle threads steal whole halves of the remaining work instead
+ * of taking tasks from a shared queue one at a time.
+ */
+@Log4j2
+public class CollisionTaskScheduler {
+
+    // The number of tasks we aim to give each thread, more than one so threads that finish early
+    // have something to steal.
+    public static final int TASKS_PER_THREAD = 4;
+    // Tasks never check fewer potential hits than this, below it the scheduling costs more than
+    // the collision checks.
+    public static final int MIN_HITS_PER_TASK = 64;
+    private final ForkJoinPool pool;
+    private final AtomicLong tasksRun;
+    // The most tasks seen waiting in a single worker queue since the last resetStatistics().
+    private final AtomicInteger peakQueueDepth;
+    private volatile long stealCountAtReset;
+
+    public CollisionTaskScheduler(int threadCount) {
+        this.pool = new ForkJoinPool(threadCount, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                .newThread(forkJoinPool);
+            thread.setName("VS Physics Thread " + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.tasksRun = new AtomicLong();
+        this.peakQueueDepth = new AtomicInteger();
+        this.stealCountAtReset = 0;
+    }
+
+    /**
+     * @param totalHits The number of potential hits all the ships of a world have this tick
+     * @return The number of potential hits each collision task should check
+     */
+    public int getTaskSize(int totalHits) {
+        int targetTasks = pool.getParallelism() * TASKS_PER_THREAD;
+        return Math.max(MIN_HITS_PER_TASK, (totalHits + targetTasks - 1) / targetTasks);
+    }
+
+    /**
+     * Runs all the tasks and waits for them to finish. Safe to call from several threads at once.
+     * An exception thrown by a task is logged and doesn't stop the other tasks.
+     */
+    public void invokeAll(List<? extends Callable<?>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        pool.invoke(new TaskRange(tasks, 0, tasks.size()));
+    }
+
+    /**
+     * @return The number of tasks run since the last resetStatistics().
+     */
+    public long getTasksRun() {
+        return tasksRun.get();
+    }
+
+    /**
+     * @return The number of tasks stolen by one thread from another since the last
+     * resetStatistics(). Only an estimate, see ForkJoinPool.getStealCount().
+     */
+    public long getStealCount() {
+        return pool.getStealCount() - stealCountAtReset;
+    }
+
+    /**
+     * @return The number of tasks waiting in the worker queues right now.
+     */
+    public long getQueuedTaskCount() {
+        return pool.getQueuedTaskCount();
+    }
+
+    /**
+     * @return The most tasks seen waiting in a single worker queue since the last
+     * resetStatistics().
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    public int getThreadCount() {
+        return pool.getParallelism();
+    }
+
+    public void resetStatistics() {
+        tasksRun.set(0);
+        peakQueueDepth.set(0);
+        stealCountAtReset = pool.getStealCount();
+    }
+
+    private class TaskRange extends RecursiveAction {
+
+        private final List<? extends Callable<?>> tasks;
+        private final int start;
+        private final int end;
+
+        TaskRange(List<? extends Callable<?>> tasks, int start, int end) {
+            this.tasks = tasks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                runTask(tasks.get(start));
+            } else {
+                int middle = (start + end) >>> 1;
+                TaskRange second = new TaskRange(tasks, middle, end);
+                // Leave the second half where other threads can steal it.
+                second.fork();
+                peakQueueDepth.accumulateAndGet(ForkJoinTask.getQueuedTaskCount(), Math::max);
+                new TaskRange(tasks, start, middle).compute();
+                second.join();
+            }
+        }
+
+        private void runTask(Callable<?> task) {
+            try {
+                task.call();
+            } catch (Exception e) {
+                log.error("Collision task failed", e);
+            }
+            tasksRun.incrementAndGet();
+        }
+    }
+}
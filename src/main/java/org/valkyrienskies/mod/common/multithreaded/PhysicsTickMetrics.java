@@ -0,0 +1,87 @@
+package org.valkyrienskies.mod.common.multithreaded;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The tick time histograms of every phase of a VSThread physics tick. Each phase is recorded once
+ * per physics tick with the time spent in it for all ships together.
+ */
+public class PhysicsTickMetrics {
+
+    private final Map<Phase, TickTimeHistogram> histograms;
+
+    public PhysicsTickMetrics() {
+        this.histograms = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new TickTimeHistogram());
+        }
+    }
+
+    public void record(Phase phase, long durationNano) {
+        histograms.get(phase).record(durationNano);
+    }
+
+    public TickTimeHistogram getHistogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    public void reset() {
+        for (TickTimeHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes every non empty bucket of every phase as a row of
+     * {@code phase,lower_bound_ns,upper_bound_ns,count}, after a header row.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("phase,lower_bound_ns,upper_bound_ns,count\n");
+        for (Phase phase : Phase.values()) {
+            IOException[] error = new IOException[1];
+            histograms.get(phase).forEachBucket((lowerBound, upperBound, count) -> {
+                if (error[0] == null) {
+                    try {
+                        writer.write(phase.getName() + "," + lowerBound + "," + upperBound + ","
+                            + count + "\n");
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+    }
+
+    public enum Phase {
+        // The whole physics tick, not counting the time spent waiting for the next one.
+        TICK("tick"),
+        // Integrating forces before collision, and the rotation node physics.
+        PRE_COLLISION("pre-collision"),
+        // Finding the world blocks each ship could collide with.
+        COLLISION_CACHE("collision-cache"),
+        // Running the collision tasks to find the contacts.
+        COLLISION_TASKS("collision-tasks"),
+        // Turning the contacts into impulses.
+        IMPULSE_SOLVE("impulse-solve"),
+        // Integrating the velocities and updating the transforms after collision.
+        POST_COLLISION("post-collision"),
+        // Sending the new ship positions to the players.
+        SEND_UPDATES("send-updates");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
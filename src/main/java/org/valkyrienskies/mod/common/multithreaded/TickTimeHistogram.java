@@ -0,0 +1,145 @@
+package org.valkyrienskies.mod.common.multithreaded;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds, bucketed like an HdrHistogram: every power
+ * of two is split into SUB_BUCKET_COUNT equally sized buckets, so the error of a recorded value is
+ * at most 1 / SUB_BUCKET_COUNT of it no matter how big it is.
+ * <p>
+ * record() can be called from any thread while other threads read the histogram. A read running
+ * at the same time as a record() may or may not see that value, but never sees broken state.
+ */
+public class TickTimeHistogram {
+
+    // Each power of two is split into 2^SUB_BUCKET_BITS buckets.
+    public static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Enough buckets to hold any positive long.
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong totalNano;
+    private final AtomicLong maxNano;
+
+    public TickTimeHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new AtomicLong();
+        this.totalNano = new AtomicLong();
+        this.maxNano = new AtomicLong();
+    }
+
+    /**
+     * @return The index of the bucket that holds value.
+     */
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * @return The smallest value that goes into the bucket at index.
+     */
+    static long getBucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+    }
+
+    /**
+     * @return The biggest value that goes into the bucket at index.
+     */
+    static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return getBucketLowerBound(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a duration, negative durations are recorded as 0.
+     */
+    public void record(long durationNano) {
+        long value = Math.max(0, durationNano);
+        counts.incrementAndGet(getBucketIndex(value));
+        totalCount.incrementAndGet();
+        totalNano.addAndGet(value);
+        maxNano.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNano() {
+        return maxNano.get();
+    }
+
+    /**
+     * @return The mean of the recorded durations, or 0 if nothing was recorded.
+     */
+    public long getMeanNano() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : totalNano.get() / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return A duration that at least percentile percent of the recorded durations are shorter
+     * than or equal to, rounded up to the end of its bucket. 0 if nothing was recorded.
+     */
+    public long getPercentileNano(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100D));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // Never report more than the slowest value actually recorded.
+                return Math.min(getBucketUpperBound(i), maxNano.get());
+            }
+        }
+        return maxNano.get();
+    }
+
+    /**
+     * Calls the visitor with the bounds and count of every bucket that has something in it, from
+     * the shortest durations to the longest.
+     */
+    public void forEachBucket(BucketVisitor visitor) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                visitor.visit(getBucketLowerBound(i), getBucketUpperBound(i), count);
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNano.set(0);
+        maxNano.set(0);
+    }
+
+    @FunctionalInterface
+    public interface BucketVisitor {
+
+        void visit(long lowerBoundNano, long upperBoundNano, long count);
+    }
+}
@@ -14,6 +14,10 @@ import org.valkyrienskies.addon.control.block.torque.IRotationNodeWorldProvider;
 import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
 import org.valkyrienskies.mod.common.config.VSConfig;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
+import org.valkyrienskies.mod.common.multithreaded.PhysicsTickMetrics.Phase;
+import org.valkyrienskies.mod.common.network.ShipInterestPolicy;
+import org.valkyrienskies.mod.common.network.ShipPositionBatcher;
+import org.valkyrienskies.mod.common.physics.PhysicsCalculations;
 import org.valkyrienskies.mod.common.physics.collision.optimization.ShipCollisionTask;
 import org.valkyrienskies.mod.common.physics.management.WorldPhysObjectManager;
 
@@ -25,7 +29,8 @@ import org.valkyrienskies.mod.common.physics.management.WorldPhysObjectManager;
 @Log4j2
 public class VSThread extends Thread {
 
-    private final static long NS_PER_TICK = 10000000;
+    // How long each physics tick aims to take. The tick numbers sent to clients count these.
+    public final static long NS_PER_TICK = 10000000;
     private final static long MAX_LOST_TIME_NS = 1000000000;
     // The number of physics ticks to be considered in the average tick time.
     private final static long TICK_TIME_QUEUE = 100;
@@ -33,6 +38,12 @@ public class VSThread extends Thread {
     private static int threadID = 0;
     private final World hostWorld;
     private final Queue<Long> latestPhysicsTickTimes;
+    // How long each phase of the physics tick takes, for finding the slow ticks averages hide.
+    private final PhysicsTickMetrics metrics;
+    // Collects the ship positions into one packet per player.
+    private final ShipPositionBatcher positionBatcher;
+    // Decides which players get sent which ships every time positions are sent.
+    private final ShipInterestPolicy interestPolicy;
     // The ships we will be ticking physics for every tick, and sending those
     // updates to players.
     private int physicsTicksCount;
@@ -46,6 +57,9 @@ public class VSThread extends Thread {
         this.physicsTicksCount = 0;
         this.threadRunning = true;
         this.latestPhysicsTickTimes = new ConcurrentLinkedQueue<>();
+        this.metrics = new PhysicsTickMetrics();
+        this.positionBatcher = new ShipPositionBatcher();
+        this.interestPolicy = new ShipInterestPolicy();
         log.trace(this.getName() + " thread created.");
     }
 
@@ -131,13 +145,18 @@ public class VSThread extends Thread {
     // The whole time need to be careful the game thread isn't messing with these
     // values.
     private void physicsTick() {
+        long tickStartNano = System.nanoTime();
         // TODO: Temporary fix:
         WorldPhysObjectManager manager = ValkyrienSkiesMod.VS_PHYSICS_MANAGER
             .getManagerForWorld(hostWorld);
         List<PhysicsWrapperEntity> physicsEntities = manager.getTickablePhysicsEntities();
         // Tick ship physics here
         tickThePhysicsAndCollision(physicsEntities);
+        long sendUpdatesStartNano = System.nanoTime();
         tickSendUpdatesToPlayers(physicsEntities);
+        long tickEndNano = System.nanoTime();
+        metrics.record(Phase.SEND_UPDATES, tickEndNano - sendUpdatesStartNano);
+        metrics.record(Phase.TICK, tickEndNano - tickStartNano);
     }
 
     /**
@@ -145,32 +164,67 @@ public class VSThread extends Thread {
      */
     private void tickThePhysicsAndCollision(List<PhysicsWrapperEntity> shipsWithPhysics) {
         double newPhysSpeed = VSConfig.physSpeed;
+        CollisionTaskScheduler scheduler = ValkyrienSkiesMod.getPHYSICS_SCHEDULER();
         List<ShipCollisionTask> collisionTasks = new ArrayList<>(
             shipsWithPhysics.size() * 2);
+        // Ships that have been still for a while are asleep, they don't move until something
+        // wakes them up so there's nothing to simulate.
+        List<PhysicsWrapperEntity> awakeShips = new ArrayList<>(shipsWithPhysics.size());
         for (PhysicsWrapperEntity wrapper : shipsWithPhysics) {
             if (!wrapper.firstUpdate) {
-                // Update the physics simulation
-                wrapper.getPhysicsObject().getPhysicsProcessor().rawPhysTickPreCol(newPhysSpeed);
-                // Update the collision task if necessary
-                wrapper.getPhysicsObject().getPhysicsProcessor().getWorldCollision()
-                    .tickUpdatingTheCollisionCache();
-                // Take the big collision and split into tiny ones
-                wrapper.getPhysicsObject().getPhysicsProcessor().getWorldCollision()
-                    .splitIntoCollisionTasks(collisionTasks);
+                PhysicsCalculations physicsProcessor = wrapper.getPhysicsObject()
+                    .getPhysicsProcessor();
+                physicsProcessor.updateSleepState();
+                if (!physicsProcessor.isAsleep()) {
+                    awakeShips.add(wrapper);
+                }
             }
         }
+        int totalPotentialHits = 0;
+        // The two phases are interleaved per ship, so add up the time spent in each.
+        long preCollisionNano = 0;
+        long collisionCacheNano = 0;
+        for (PhysicsWrapperEntity wrapper : awakeShips) {
+            long preCollisionStartNano = System.nanoTime();
+            // Update the physics simulation
+            wrapper.getPhysicsObject().getPhysicsProcessor().rawPhysTickPreCol(newPhysSpeed);
+            long collisionCacheStartNano = System.nanoTime();
+            // Update the collision task if necessary
+            wrapper.getPhysicsObject().getPhysicsProcessor().getWorldCollision()
+                .tickUpdatingTheCollisionCache();
+            totalPotentialHits += wrapper.getPhysicsObject().getPhysicsProcessor()
+                .getWorldCollision().getPotentialHitsCheckedPerTick();
+            preCollisionNano += collisionCacheStartNano - preCollisionStartNano;
+            collisionCacheNano += System.nanoTime() - collisionCacheStartNano;
+        }
+        metrics.record(Phase.COLLISION_CACHE, collisionCacheNano);
+        // Size the tasks by how much collision work this world has in total, so the scheduler
+        // gets enough tasks to keep every thread busy but not so many that scheduling them costs
+        // more than running them.
+        long collisionTasksStartNano = System.nanoTime();
+        int taskSize = scheduler.getTaskSize(totalPotentialHits);
+        for (PhysicsWrapperEntity wrapper : awakeShips) {
+            // Take the big collision and split into smaller ones
+            wrapper.getPhysicsObject().getPhysicsProcessor().getWorldCollision()
+                .splitIntoCollisionTasks(collisionTasks, taskSize);
+        }
 
+        long splitTasksNano = System.nanoTime() - collisionTasksStartNano;
+
+        long torquePhysicsStartNano = System.nanoTime();
         // Process gear physics simulation for the game worlds.
         IRotationNodeWorldProvider rotationNodeWorldProvider = (IRotationNodeWorldProvider) hostWorld;
         rotationNodeWorldProvider.getPhysicsRotationNodeWorld().processTorquePhysics(newPhysSpeed);
+        long invokeTasksStartNano = System.nanoTime();
+        metrics.record(Phase.PRE_COLLISION,
+            preCollisionNano + invokeTasksStartNano - torquePhysicsStartNano);
 
-        try {
-            // The individual collision tasks will sort through a lot of data to find
-            // collision points
-            ValkyrienSkiesMod.getPHYSICS_THREADS_EXECUTOR().invokeAll(collisionTasks);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        // The individual collision tasks will sort through a lot of data to find
+        // collision points
+        scheduler.invokeAll(collisionTasks);
+        long impulseSolveStartNano = System.nanoTime();
+        metrics.record(Phase.COLLISION_TASKS,
+            splitTasksNano + impulseSolveStartNano - invokeTasksStartNano);
 
         // Then those collision points have to be processed sequentially afterwards, all in
         // this thread. Thankfully this step is not cpu intensive.
@@ -180,26 +234,35 @@ public class VSThread extends Thread {
                 task.getToTask().processCollisionTask(task);
             }
         }
+        long postCollisionStartNano = System.nanoTime();
+        metrics.record(Phase.IMPULSE_SOLVE, postCollisionStartNano - impulseSolveStartNano);
 
+        for (PhysicsWrapperEntity wrapper : awakeShips) {
+            try {
+                wrapper.getPhysicsObject().getPhysicsProcessor().rawPhysTickPostCol();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
         for (PhysicsWrapperEntity wrapper : shipsWithPhysics) {
-            if (!wrapper.firstUpdate) {
-                try {
-                    wrapper.getPhysicsObject().getPhysicsProcessor().rawPhysTickPostCol();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            } else {
+            if (wrapper.firstUpdate) {
                 wrapper.getPhysicsObject()
                     .getShipTransformationManager()
                     .updateAllTransforms(false, false, false);
             }
         }
+        metrics.record(Phase.POST_COLLISION, System.nanoTime() - postCollisionStartNano);
     }
 
     private void tickSendUpdatesToPlayers(List<PhysicsWrapperEntity> ships) {
-        for (PhysicsWrapperEntity wrapper : ships) {
-            wrapper.getPhysicsObject().getShipTransformationManager()
-                .sendPositionToPlayers(physicsTicksCount);
+        if (physicsTicksCount % VSConfig.shipPositionSendInterval == 0) {
+            int sendIndex = physicsTicksCount / VSConfig.shipPositionSendInterval;
+            for (PhysicsWrapperEntity wrapper : ships) {
+                wrapper.getPhysicsObject().getShipTransformationManager()
+                    .sendPositionToPlayers(physicsTicksCount, sendIndex, interestPolicy,
+                        positionBatcher);
+            }
+            positionBatcher.sendBatches();
         }
         physicsTicksCount++;
     }
@@ -228,4 +291,11 @@ public class VSThread extends Thread {
         // tick time.
         return NS_PER_TICK;
     }
+
+    /**
+     * @return The tick time histograms of this thread, safe to read from any thread.
+     */
+    public PhysicsTickMetrics getMetrics() {
+        return metrics;
+    }
 }
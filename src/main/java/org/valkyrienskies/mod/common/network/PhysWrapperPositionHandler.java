@@ -6,7 +6,9 @@ import net.minecraft.util.IThreadListener;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
+import org.valkyrienskies.mod.common.physics.management.ShipTransformationBuffer;
 
 public class PhysWrapperPositionHandler implements
     IMessageHandler<WrapperPositionMessage, IMessage> {
@@ -22,17 +24,42 @@ public class PhysWrapperPositionHandler implements
             @Override
             public void run() {
                 if (Minecraft.getMinecraft().world != null) {
-                    Entity ent = Minecraft.getMinecraft().world
-                        .getEntityByID(message.getEntityID());
-                    if (ent instanceof PhysicsWrapperEntity) {
-                        PhysicsWrapperEntity wrapper = (PhysicsWrapperEntity) ent;
-                        wrapper.getPhysicsObject().getShipTransformationManager().serverBuffer
-                            .pushMessage(message);
-                    }
+                    applyKeyframe(message);
                 }
             }
         });
         return null;
     }
 
+    /**
+     * Gives the keyframe to its ship and acknowledges it. Must be called from the client thread.
+     */
+    static void applyKeyframe(WrapperPositionMessage message) {
+        Entity ent = Minecraft.getMinecraft().world.getEntityByID(message.getEntityID());
+        if (ent instanceof PhysicsWrapperEntity) {
+            PhysicsWrapperEntity wrapper = (PhysicsWrapperEntity) ent;
+            wrapper.getPhysicsObject().getShipTransformationManager().serverBuffer
+                .pushKeyframe(message);
+            // Let the server know it can send deltas against this message now.
+            ValkyrienSkiesMod.physWrapperNetwork.sendToServer(
+                new WrapperPositionAckMessage(message.getEntityID(), message.getKeyframeID()));
+        }
+    }
+
+    /**
+     * Decodes the delta and gives it to its ship. Must be called from the client thread.
+     */
+    static void applyDelta(WrapperPositionDeltaMessage message) {
+        Entity ent = Minecraft.getMinecraft().world.getEntityByID(message.getEntityID());
+        if (ent instanceof PhysicsWrapperEntity) {
+            ShipTransformationBuffer buffer = ((PhysicsWrapperEntity) ent)
+                .getPhysicsObject().getShipTransformationManager().serverBuffer;
+            WrapperPositionMessage keyframe = buffer.getKeyframe(message.getKeyframeID());
+            // Without the keyframe we can't decode this, just wait for the next keyframe.
+            if (keyframe != null) {
+                buffer.pushMessage(message.decode(keyframe));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,137 @@
+package org.valkyrienskies.mod.common.network;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.minecraft.entity.player.EntityPlayerMP;
+import org.valkyrienskies.mod.common.math.Vector;
+
+/**
+ * Keeps track of which position keyframes of a ship each watching player has acknowledged, and
+ * picks whether to send them a full WrapperPositionMessage or a WrapperPositionDeltaMessage.
+ * <p>
+ * Keyframes are shared by every player watching the ship, so players that acknowledged the same
+ * keyframe are sent the same delta, and each message is only encoded once per tick no matter how
+ * many players it goes to.
+ * <p>
+ * encodeMessage() is only called by the physics thread, onKeyframeAcknowledged() by the game
+ * thread.
+ */
+public class PositionKeyframeTracker {
+
+    // Physics ticks between keyframes, even when nothing forces one. Keeps the deltas small.
+    public static final int KEYFRAME_INTERVAL = 100;
+    // Keyframes waiting for an acknowledgement past this many are forgotten, so clients that never
+    // acknowledge don't make us keep them forever.
+    private static final int MAX_PENDING_KEYFRAMES = 128;
+    private final Map<EntityPlayerMP, PlayerKeyframes> players;
+    // The deltas encoded from encodedPosition so far, by the id of the keyframe they're against.
+    private final TIntObjectMap<byte[]> encodedDeltas;
+    private int nextKeyframeID;
+    // The tick of the last keyframe sent to every player.
+    private int lastKeyframeTick;
+    // The position being encoded this tick, and the keyframe made from it if anyone needed one.
+    private WrapperPositionMessage encodedPosition;
+    private WrapperPositionMessage encodedKeyframe;
+    private byte[] encodedKeyframeBytes;
+    private boolean everyoneNeedsKeyframe;
+    private long encodedRotation;
+
+    public PositionKeyframeTracker() {
+        this.players = new ConcurrentHashMap<>();
+        this.encodedDeltas = new TIntObjectHashMap<>();
+        this.nextKeyframeID = 0;
+        this.lastKeyframeTick = 0;
+    }
+
+    /**
+     * @param player  The player to send the position to
+     * @param current The full position of the ship, the same object for every player this tick
+     * @return A batch entry with either a keyframe, or the difference from the last keyframe the
+     * player acknowledged. Shared between players, so don't modify it.
+     */
+    public byte[] encodeMessage(EntityPlayerMP player, WrapperPositionMessage current) {
+        if (current != encodedPosition) {
+            startEncoding(current);
+        }
+        PlayerKeyframes keyframes = players.computeIfAbsent(player, p -> new PlayerKeyframes());
+        synchronized (keyframes) {
+            WrapperPositionMessage acknowledged = keyframes.acknowledged;
+            if (acknowledged == null || everyoneNeedsKeyframe
+                || !acknowledged.getCenterOfMass().equals(current.getCenterOfMass())) {
+                if (encodedKeyframe == null) {
+                    encodeKeyframe(current);
+                }
+                keyframes.pending.add(encodedKeyframe);
+                if (keyframes.pending.size() > MAX_PENDING_KEYFRAMES) {
+                    keyframes.pending.poll();
+                }
+                return encodedKeyframeBytes;
+            }
+            byte[] delta = encodedDeltas.get(acknowledged.getKeyframeID());
+            if (delta == null) {
+                delta = WrapperPositionBatchMessage.encodeEntry(
+                    new WrapperPositionDeltaMessage(acknowledged, current, encodedRotation));
+                encodedDeltas.put(acknowledged.getKeyframeID(), delta);
+            }
+            return delta;
+        }
+    }
+
+    public void onKeyframeAcknowledged(EntityPlayerMP player, int keyframeID) {
+        PlayerKeyframes keyframes = players.get(player);
+        if (keyframes == null) {
+            return;
+        }
+        synchronized (keyframes) {
+            // Keyframes are acknowledged in the order they were sent, so anything older than this
+            // one will never be acknowledged.
+            while (!keyframes.pending.isEmpty()
+                && keyframes.pending.peek().getKeyframeID() < keyframeID) {
+                keyframes.pending.poll();
+            }
+            if (!keyframes.pending.isEmpty()
+                && keyframes.pending.peek().getKeyframeID() == keyframeID) {
+                keyframes.acknowledged = keyframes.pending.poll();
+            }
+        }
+    }
+
+    /**
+     * Forgets the players that aren't in the given collection, so a player that starts watching
+     * the ship again gets a new keyframe first.
+     */
+    public void retainPlayers(Collection<EntityPlayerMP> watchingPlayers) {
+        players.keySet().removeIf(player -> !watchingPlayers.contains(player));
+    }
+
+    private void startEncoding(WrapperPositionMessage current) {
+        encodedPosition = current;
+        encodedKeyframe = null;
+        encodedKeyframeBytes = null;
+        encodedDeltas.clear();
+        encodedRotation = ShipPositionCodec
+            .encodeRotation(current.getPitch(), current.getYaw(), current.getRoll());
+        everyoneNeedsKeyframe = current.getRelativeTick() - lastKeyframeTick >= KEYFRAME_INTERVAL;
+        if (everyoneNeedsKeyframe) {
+            lastKeyframeTick = current.getRelativeTick();
+        }
+    }
+
+    private void encodeKeyframe(WrapperPositionMessage current) {
+        encodedKeyframe = new WrapperPositionMessage(current);
+        encodedKeyframe.setKeyframeID(nextKeyframeID++);
+        // Copied since the center of mass we were given may be changed in place later.
+        encodedKeyframe.setCenterOfMass(new Vector(current.getCenterOfMass()));
+        encodedKeyframeBytes = WrapperPositionBatchMessage.encodeEntry(encodedKeyframe);
+    }
+
+    private static class PlayerKeyframes {
+
+        final ArrayDeque<WrapperPositionMessage> pending = new ArrayDeque<>();
+        WrapperPositionMessage acknowledged = null;
+    }
+}
@@ -0,0 +1,176 @@
+package org.valkyrienskies.mod.common.network;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import io.netty.buffer.ByteBuf;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Encodes the 16x16x16 chunk sections of a ShipChunkSnapshotMessage.
+ * <p>
+ * Block states are written as a palette of the block state ids in the section, followed by the
+ * index into the palette of every block using as few bits as the palette needs. A section of only
+ * one block state takes no bits per block at all. Light that is the same everywhere in a section
+ * is written as a single value instead of 2048 bytes.
+ */
+public final class ShipChunkSnapshotCodec {
+
+    // The number of blocks in a chunk section.
+    public static final int SECTION_VOLUME = 4096;
+    // The number of bytes in the light nibble array of a chunk section.
+    public static final int LIGHT_BYTES = SECTION_VOLUME / 2;
+    private static final byte UNIFORM_LIGHT = 0;
+    private static final byte RAW_LIGHT = 1;
+
+    private ShipChunkSnapshotCodec() {
+    }
+
+    /**
+     * @param stateIDs   The block state id of every block in the section, in the same
+     *                   y << 8 | z << 4 | x order as BlockStateContainer.
+     * @param blockLight The block light nibble array of the section
+     * @param skyLight   The sky light nibble array of the section, null if the world has no sky
+     */
+    public static void writeSection(ByteBuf buf, int[] stateIDs, byte[] blockLight,
+        @Nullable byte[] skyLight) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        TIntArrayList palette = new TIntArrayList();
+        // Maps block state ids to their index in the palette.
+        TIntIntMap paletteIndices = new TIntIntHashMap(16, .5F, -1, -1);
+        int[] indices = new int[SECTION_VOLUME];
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            int index = paletteIndices.get(stateIDs[i]);
+            if (index == -1) {
+                index = palette.size();
+                palette.add(stateIDs[i]);
+                paletteIndices.put(stateIDs[i], index);
+            }
+            indices[i] = index;
+        }
+
+        packetBuffer.writeVarInt(palette.size());
+        for (int i = 0; i < palette.size(); i++) {
+            packetBuffer.writeVarInt(palette.get(i));
+        }
+        long[] packed = packIndices(indices, getBitsPerEntry(palette.size()));
+        for (long word : packed) {
+            packetBuffer.writeLong(word);
+        }
+        writeLight(buf, blockLight);
+        buf.writeBoolean(skyLight != null);
+        if (skyLight != null) {
+            writeLight(buf, skyLight);
+        }
+    }
+
+    public static SectionData readSection(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        int paletteSize = packetBuffer.readVarInt();
+        if (paletteSize < 1 || paletteSize > SECTION_VOLUME) {
+            throw new IllegalArgumentException("Invalid palette size " + paletteSize);
+        }
+        int[] palette = new int[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = packetBuffer.readVarInt();
+        }
+        int bitsPerEntry = getBitsPerEntry(paletteSize);
+        long[] packed = new long[getPackedLength(bitsPerEntry)];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = packetBuffer.readLong();
+        }
+        int[] stateIDs = unpackIndices(packed, bitsPerEntry);
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            if (stateIDs[i] >= paletteSize) {
+                throw new IllegalArgumentException("Palette index out of bounds " + stateIDs[i]);
+            }
+            stateIDs[i] = palette[stateIDs[i]];
+        }
+        byte[] blockLight = readLight(buf);
+        byte[] skyLight = buf.readBoolean() ? readLight(buf) : null;
+        return new SectionData(stateIDs, blockLight, skyLight);
+    }
+
+    /**
+     * @return The bits needed to store an index into a palette of the given size, 0 if there's
+     * only one entry.
+     */
+    static int getBitsPerEntry(int paletteSize) {
+        return 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+    // Entries never span two longs, which keeps unpacking simple.
+    static long[] packIndices(int[] indices, int bitsPerEntry) {
+        long[] packed = new long[getPackedLength(bitsPerEntry)];
+        if (bitsPerEntry == 0) {
+            return packed;
+        }
+        int entriesPerLong = 64 / bitsPerEntry;
+        for (int i = 0; i < indices.length; i++) {
+            packed[i / entriesPerLong] |=
+                (long) indices[i] << (i % entriesPerLong * bitsPerEntry);
+        }
+        return packed;
+    }
+
+    static int[] unpackIndices(long[] packed, int bitsPerEntry) {
+        int[] indices = new int[SECTION_VOLUME];
+        if (bitsPerEntry == 0) {
+            return indices;
+        }
+        int entriesPerLong = 64 / bitsPerEntry;
+        long mask = (1L << bitsPerEntry) - 1;
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            indices[i] = (int) (packed[i / entriesPerLong] >>> (i % entriesPerLong * bitsPerEntry)
+                & mask);
+        }
+        return indices;
+    }
+
+    private static int getPackedLength(int bitsPerEntry) {
+        if (bitsPerEntry == 0) {
+            return 0;
+        }
+        int entriesPerLong = 64 / bitsPerEntry;
+        return (SECTION_VOLUME + entriesPerLong - 1) / entriesPerLong;
+    }
+
+    private static void writeLight(ByteBuf buf, byte[] light) {
+        for (byte value : light) {
+            if (value != light[0]) {
+                buf.writeByte(RAW_LIGHT);
+                buf.writeBytes(light);
+                return;
+            }
+        }
+        buf.writeByte(UNIFORM_LIGHT);
+        buf.writeByte(light[0]);
+    }
+
+    private static byte[] readLight(ByteBuf buf) {
+        byte[] light = new byte[LIGHT_BYTES];
+        if (buf.readByte() == RAW_LIGHT) {
+            buf.readBytes(light);
+        } else {
+            Arrays.fill(light, buf.readByte());
+        }
+        return light;
+    }
+
+    public static class SectionData {
+
+        // The block state id of every block, in y << 8 | z << 4 | x order.
+        public final int[] stateIDs;
+        public final byte[] blockLight;
+        @Nullable
+        public final byte[] skyLight;
+
+        SectionData(int[] stateIDs, byte[] blockLight, @Nullable byte[] skyLight) {
+            this.stateIDs = stateIDs;
+            this.blockLight = blockLight;
+            this.skyLight = skyLight;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.valkyrienskies.mod.common.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.IThreadListener;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Loads the chunks of a ship the same way NetHandlerPlayClient.handleChunkData() loads a vanilla
+ * SPacketChunkData.
+ */
+public class ShipChunkSnapshotHandler implements
+    IMessageHandler<ShipChunkSnapshotMessage, IMessage> {
+
+    @Override
+    public IMessage onMessage(final ShipChunkSnapshotMessage message, MessageContext ctx) {
+        if (Minecraft.getMinecraft().player == null) {
+            return null;
+        }
+
+        IThreadListener mainThread = Minecraft.getMinecraft();
+        mainThread.addScheduledTask(() -> {
+            WorldClient world = Minecraft.getMinecraft().world;
+            if (world != null) {
+                applySnapshot(world, message);
+            }
+        });
+        return null;
+    }
+
+    private static void applySnapshot(WorldClient world, ShipChunkSnapshotMessage message) {
+        // Load every chunk of the claim, even the empty ones, so block changes sent later have
+        // somewhere to go.
+        for (int x = message.getMinChunkX(); x <= message.getMaxChunkX(); x++) {
+            for (int z = message.getMinChunkZ(); z <= message.getMaxChunkZ(); z++) {
+                world.doPreChunk(x, z, true);
+                world.getChunk(x, z).setTerrainPopulated(true);
+                world.getChunk(x, z).setLightPopulated(true);
+            }
+        }
+
+        boolean hasSkyLight = world.provider.hasSkyLight();
+        ByteBuf buf = Unpooled.wrappedBuffer(message.getEncodedChunks());
+        int chunkCount = new PacketBuffer(buf).readVarInt();
+        for (int i = 0; i < chunkCount; i++) {
+            int chunkX = buf.readInt();
+            int chunkZ = buf.readInt();
+            Chunk chunk = world.getChunk(chunkX, chunkZ);
+            ShipChunkSnapshotMessage.readChunk(buf, chunk, hasSkyLight);
+            chunk.generateHeightMap();
+            world.markBlockRangeForRenderUpdate(chunkX << 4, 0, chunkZ << 4, (chunkX << 4) + 15,
+                256, (chunkZ << 4) + 15);
+        }
+
+        for (NBTTagCompound tileEntityTag : message.getTileEntityTags()) {
+            BlockPos pos = new BlockPos(tileEntityTag.getInteger("x"),
+                tileEntityTag.getInteger("y"), tileEntityTag.getInteger("z"));
+            TileEntity tileEntity = world.getTileEntity(pos);
+            if (tileEntity != null) {
+                tileEntity.handleUpdateTag(tileEntityTag);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.valkyrienskies.mod.common.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.valkyrienskies.mod.common.physmanagement.chunk.VSChunkClaim;
+
+/**
+ * Every block of a ship, sent to players when they start watching it instead of a vanilla
+ * SPacketChunkData for every chunk of the ship's claim. Only the chunk sections that have blocks in
+ * them are sent, see ShipChunkSnapshotCodec for how they're compressed.
+ * <p>
+ * The chunk data is encoded once by encodeChunks() and shared by every player, until a block of
+ * the ship or its light changes.
+ */
+public class ShipChunkSnapshotMessage implements IMessage {
+
+    // The chunks of the ship's claim, the client loads all of them even if they're empty.
+    @Getter
+    private int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+    // From encodeChunks()
+    @Getter
+    private byte[] encodedChunks;
+    // The update tags of the tile entities on the ship.
+    @Getter
+    private List<NBTTagCompound> tileEntityTags;
+
+    public ShipChunkSnapshotMessage() {
+        this.tileEntityTags = new ArrayList<>();
+    }
+
+    /**
+     * @param encodedChunks The chunks of the claim, from encodeChunks()
+     */
+    public ShipChunkSnapshotMessage(VSChunkClaim claim, byte[] encodedChunks,
+        List<NBTTagCompound> tileEntityTags) {
+        this.minChunkX = claim.minX();
+        this.minChunkZ = claim.minZ();
+        this.maxChunkX = claim.maxX();
+        this.maxChunkZ = claim.maxZ();
+        this.encodedChunks = encodedChunks;
+        this.tileEntityTags = tileEntityTags;
+    }
+
+    /**
+     * Encodes the non-empty sections of the given chunks. The format is the number of chunks, then
+     * for each chunk its position, biomes, and sections.
+     */
+    public static byte[] encodeChunks(Chunk[][] chunks, boolean hasSkyLight) {
+        List<Chunk> nonEmptyChunks = new ArrayList<>();
+        for (Chunk[] chunkArray : chunks) {
+            for (Chunk chunk : chunkArray) {
+                if (chunk != null && countNonEmptySections(chunk) > 0) {
+                    nonEmptyChunks.add(chunk);
+                }
+            }
+        }
+
+        ByteBuf buf = Unpooled.buffer();
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        packetBuffer.writeVarInt(nonEmptyChunks.size());
+        int[] stateIDs = new int[ShipChunkSnapshotCodec.SECTION_VOLUME];
+        for (Chunk chunk : nonEmptyChunks) {
+            buf.writeInt(chunk.x);
+            buf.writeInt(chunk.z);
+            buf.writeBytes(chunk.getBiomeArray());
+            packetBuffer.writeVarInt(countNonEmptySections(chunk));
+            for (ExtendedBlockStorage storage : chunk.getBlockStorageArray()) {
+                if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty()) {
+                    continue;
+                }
+                for (int index = 0; index < stateIDs.length; index++) {
+                    stateIDs[index] = Block.getStateId(
+                        storage.get(index & 15, index >> 8 & 15, index >> 4 & 15));
+                }
+                buf.writeByte(storage.getYLocation() >> 4);
+                ShipChunkSnapshotCodec.writeSection(buf, stateIDs,
+                    storage.getBlockLight().getData(),
+                    hasSkyLight ? storage.getSkyLight().getData() : null);
+            }
+        }
+        byte[] encoded = new byte[buf.readableBytes()];
+        buf.readBytes(encoded);
+        return encoded;
+    }
+
+    private static int countNonEmptySections(Chunk chunk) {
+        int sectionCount = 0;
+        for (ExtendedBlockStorage storage : chunk.getBlockStorageArray()) {
+            if (storage != Chunk.NULL_BLOCK_STORAGE && !storage.isEmpty()) {
+                sectionCount++;
+            }
+        }
+        return sectionCount;
+    }
+
+    /**
+     * Replaces the blocks, light and biomes of the given chunk with those from the snapshot.
+     *
+     * @param buf Positioned at the biomes of the chunk in encodedChunks
+     */
+    public static void readChunk(ByteBuf buf, Chunk chunk, boolean hasSkyLight) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        buf.readBytes(chunk.getBiomeArray());
+        ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+        int airStateID = Block.getStateId(Blocks.AIR.getDefaultState());
+        int sectionCount = packetBuffer.readVarInt();
+        for (int i = 0; i < sectionCount; i++) {
+            int sectionY = buf.readByte();
+            ShipChunkSnapshotCodec.SectionData section = ShipChunkSnapshotCodec.readSection(buf);
+            ExtendedBlockStorage storage = new ExtendedBlockStorage(sectionY << 4, hasSkyLight);
+            for (int index = 0; index < section.stateIDs.length; index++) {
+                if (section.stateIDs[index] != airStateID) {
+                    storage.set(index & 15, index >> 8 & 15, index >> 4 & 15,
+                        Block.getStateById(section.stateIDs[index]));
+                }
+            }
+            storage.setBlockLight(new NibbleArray(section.blockLight));
+            if (hasSkyLight && section.skyLight != null) {
+                storage.setSkyLight(new NibbleArray(section.skyLight));
+            }
+            storageArray[sectionY] = storage;
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        minChunkX = buf.readInt();
+        minChunkZ = buf.readInt();
+        maxChunkX = buf.readInt();
+        maxChunkZ = buf.readInt();
+        encodedChunks = packetBuffer.readByteArray();
+        int tileEntityCount = packetBuffer.readVarInt();
+        for (int i = 0; i < tileEntityCount; i++) {
+            try {
+                tileEntityTags.add(packetBuffer.readCompoundTag());
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read tile entity of ship", e);
+            }
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        buf.writeInt(minChunkX);
+        buf.writeInt(minChunkZ);
+        buf.writeInt(maxChunkX);
+        buf.writeInt(maxChunkZ);
+        packetBuffer.writeByteArray(encodedChunks);
+        packetBuffer.writeVarInt(tileEntityTags.size());
+        for (NBTTagCompound tileEntityTag : tileEntityTags) {
+            packetBuffer.writeCompoundTag(tileEntityTag);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.valkyrienskies.mod.common.network;
+
+import lombok.Getter;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Decides how often a player is sent the position of a ship, based on how far away the ship is and
+ * whether the player is looking towards it. Players barely notice a far away ship moving a little
+ * late, so they get its position a lot less often than the one they're standing on.
+ * <p>
+ * Immutable, so it can be shared by every physics thread.
+ */
+public class ShipInterestPolicy {
+
+    // Ships closer than this many blocks are sent every time.
+    public static final double DEFAULT_NEAR_DISTANCE = 64D;
+    // Ships closer than this many blocks, but not near, are sent every MID.getSendInterval() times.
+    public static final double DEFAULT_MID_DISTANCE = 192D;
+    private final double nearDistanceSq;
+    private final double midDistanceSq;
+
+    public ShipInterestPolicy() {
+        this(DEFAULT_NEAR_DISTANCE, DEFAULT_MID_DISTANCE);
+    }
+
+    public ShipInterestPolicy(double nearDistance, double midDistance) {
+        if (nearDistance < 0 || midDistance < nearDistance) {
+            throw new IllegalArgumentException(
+                "Need 0 <= nearDistance <= midDistance, got " + nearDistance + " and "
+                    + midDistance);
+        }
+        this.nearDistanceSq = nearDistance * nearDistance;
+        this.midDistanceSq = midDistance * midDistance;
+    }
+
+    public InterestTier getTier(EntityPlayer player, AxisAlignedBB shipBB) {
+        Vec3d look = player.getLookVec();
+        return getTier(player.posX, player.posY + player.getEyeHeight(), player.posZ, look.x,
+            look.y, look.z, shipBB);
+    }
+
+    /**
+     * @param eyeX  The position the player is looking from
+     * @param lookX The direction the player is looking in, doesn't have to be normalized
+     */
+    public InterestTier getTier(double eyeX, double eyeY, double eyeZ, double lookX,
+        double lookY, double lookZ, AxisAlignedBB shipBB) {
+        // The distance to the closest point of the ship, 0 when the player is inside its AABB.
+        double offsetX = clamp(eyeX, shipBB.minX, shipBB.maxX) - eyeX;
+        double offsetY = clamp(eyeY, shipBB.minY, shipBB.maxY) - eyeY;
+        double offsetZ = clamp(eyeZ, shipBB.minZ, shipBB.maxZ) - eyeZ;
+        double distanceSq = offsetX * offsetX + offsetY * offsetY + offsetZ * offsetZ;
+        if (distanceSq <= nearDistanceSq) {
+            // Always keep up with the ships the player could be touching, whichever way they look.
+            return InterestTier.NEAR;
+        }
+        // No part of the ship is in front of the player, they'll only see it once they turn around.
+        boolean isBehind = offsetX * lookX + offsetY * lookY + offsetZ * lookZ < 0;
+        if (distanceSq <= midDistanceSq && !isBehind) {
+            return InterestTier.MID;
+        }
+        return InterestTier.FAR;
+    }
+
+    /**
+     * @param sendIndex The number of times ship positions have been sent so far
+     * @param shipID    Used to spread the sends of ships in the same tier over different ticks
+     * @return Whether a player with the given tier should be sent the ship this time
+     */
+    public static boolean shouldSend(InterestTier tier, int sendIndex, int shipID) {
+        return Math.floorMod(sendIndex + shipID, tier.getSendInterval()) == 0;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    public enum InterestTier {
+        NEAR(1),
+        MID(4),
+        FAR(20);
+
+        // Players in this tier are sent the ship once every this many position sends.
+        @Getter
+        private final int sendInterval;
+
+        InterestTier(int sendInterval) {
+            this.sendInterval = sendInterval;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.valkyrienskies.mod.common.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.minecraft.entity.player.EntityPlayerMP;
+import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
+
+/**
+ * Collects the ship positions each player should get this physics tick into one
+ * WrapperPositionBatchMessage per player. Only used by the physics thread.
+ */
+public class ShipPositionBatcher {
+
+    // Batches are split before they get bigger than this, to stay well under the packet size
+    // limit.
+    public static final int MAX_BATCH_BYTES = 32000;
+    private final Map<EntityPlayerMP, WrapperPositionBatchMessage> batches;
+
+    public ShipPositionBatcher() {
+        this.batches = new HashMap<>();
+    }
+
+    /**
+     * @param encodedEntry An entry from WrapperPositionBatchMessage.encodeEntry()
+     */
+    public void addEntry(EntityPlayerMP player, byte[] encodedEntry) {
+        WrapperPositionBatchMessage batch = batches
+            .computeIfAbsent(player, p -> new WrapperPositionBatchMessage());
+        if (!batch.isEmpty() && batch.getEncodedSize() + encodedEntry.length > MAX_BATCH_BYTES) {
+            ValkyrienSkiesMod.physWrapperNetwork.sendTo(batch, player);
+            batch = new WrapperPositionBatchMessage();
+            batches.put(player, batch);
+        }
+        batch.addEntry(encodedEntry);
+    }
+
+    /**
+     * Sends every player their batch, and starts over with empty ones.
+     */
+    public void sendBatches() {
+        for (Map.Entry<EntityPlayerMP, WrapperPositionBatchMessage> entry : batches.entrySet()) {
+            ValkyrienSkiesMod.physWrapperNetwork.sendTo(entry.getValue(), entry.getKey());
+        }
+        batches.clear();
+    }
+}
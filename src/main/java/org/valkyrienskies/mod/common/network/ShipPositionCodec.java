@@ -0,0 +1,125 @@
+package org.valkyrienskies.mod.common.network;
+
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Quaternion;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Quantizes ship positions for WrapperPositionDeltaMessage.
+ * <p>
+ * Positions are sent as whole numbers of 1 / POSITION_SCALE blocks away from a keyframe the client
+ * already has. Rotations are sent as the smallest three components of the rotation quaternion,
+ * since the biggest one can be worked out from the other three. Bounding boxes are sent relative
+ * to the ship position in whole numbers of 1 / BOUNDING_BOX_SCALE blocks, always rounded outwards
+ * so the decoded box still contains the ship.
+ */
+public final class ShipPositionCodec {
+
+    // Positions are rounded to the nearest 1/1024 of a block.
+    public static final double POSITION_SCALE = 1024D;
+    // Bounding boxes are rounded outwards to 1/16 of a block.
+    public static final double BOUNDING_BOX_SCALE = 16D;
+    // The bits used for each of the 3 smallest quaternion components.
+    public static final int ROTATION_COMPONENT_BITS = 20;
+    // The smallest 3 components of a unit quaternion are never bigger than this.
+    private static final double MAX_SMALL_COMPONENT = 1D / Math.sqrt(2D);
+    private static final long COMPONENT_MASK = (1L << ROTATION_COMPONENT_BITS) - 1;
+
+    private ShipPositionCodec() {
+    }
+
+    public static long quantizePosition(double value, double keyframeValue) {
+        return Math.round((value - keyframeValue) * POSITION_SCALE);
+    }
+
+    public static double dequantizePosition(long quantized, double keyframeValue) {
+        return keyframeValue + quantized / POSITION_SCALE;
+    }
+
+    public static int quantizeBoundingBoxMin(double value, double origin) {
+        return (int) Math.floor((value - origin) * BOUNDING_BOX_SCALE);
+    }
+
+    public static int quantizeBoundingBoxMax(double value, double origin) {
+        return (int) Math.ceil((value - origin) * BOUNDING_BOX_SCALE);
+    }
+
+    public static double dequantizeBoundingBox(int quantized, double origin) {
+        return origin + quantized / BOUNDING_BOX_SCALE;
+    }
+
+    /**
+     * Packs the rotation given by pitch, yaw and roll in degrees into the low 62 bits of a long; 2
+     * bits for which quaternion component was dropped, and ROTATION_COMPONENT_BITS for each of the
+     * other 3.
+     */
+    public static long encodeRotation(double pitch, double yaw, double roll) {
+        Quaternion rotation = ShipTransform.createRotationTransform(pitch, yaw, roll)
+            .createRotationQuaternion(TransformType.SUBSPACE_TO_GLOBAL);
+        double[] components = {rotation.getX(), rotation.getY(), rotation.getZ(),
+            rotation.getW()};
+        double length = Math.sqrt(components[0] * components[0] + components[1] * components[1]
+            + components[2] * components[2] + components[3] * components[3]);
+        int largest = 0;
+        for (int i = 1; i < 4; i++) {
+            if (Math.abs(components[i]) > Math.abs(components[largest])) {
+                largest = i;
+            }
+        }
+        // q and -q are the same rotation, so flip the quaternion to make the dropped component
+        // positive.
+        double sign = components[largest] < 0 ? -1 : 1;
+        long encoded = largest;
+        for (int i = 0; i < 4; i++) {
+            if (i != largest) {
+                encoded = (encoded << ROTATION_COMPONENT_BITS)
+                    | quantizeComponent(sign * components[i] / length);
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @return The pitch, yaw and roll in degrees of a rotation packed by encodeRotation().
+     */
+    public static double[] decodeRotation(long encoded) {
+        double[] components = new double[4];
+        int largest = (int) (encoded >>> (3 * ROTATION_COMPONENT_BITS)) & 3;
+        double sumOfSquares = 0;
+        int shift = 2 * ROTATION_COMPONENT_BITS;
+        for (int i = 0; i < 4; i++) {
+            if (i != largest) {
+                components[i] = dequantizeComponent((encoded >>> shift) & COMPONENT_MASK);
+                sumOfSquares += components[i] * components[i];
+                shift -= ROTATION_COMPONENT_BITS;
+            }
+        }
+        components[largest] = Math.sqrt(Math.max(0, 1 - sumOfSquares));
+        double[] radians = new Quaternion(components[0], components[1], components[2],
+            components[3]).toRadians();
+        return new double[]{Math.toDegrees(radians[0]), Math.toDegrees(radians[1]),
+            Math.toDegrees(radians[2])};
+    }
+
+    /**
+     * Maps signed numbers to unsigned ones so small negative numbers are written as small var
+     * ints too.
+     */
+    public static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long quantizeComponent(double component) {
+        double normalized = (component / MAX_SMALL_COMPONENT + 1) / 2;
+        long quantized = Math.round(normalized * COMPONENT_MASK);
+        return Math.max(0, Math.min(COMPONENT_MASK, quantized));
+    }
+
+    private static double dequantizeComponent(long quantized) {
+        return ((double) quantized / COMPONENT_MASK * 2 - 1) * MAX_SMALL_COMPONENT;
+    }
+}
@@ -0,0 +1,28 @@
+package org.valkyrienskies.mod.common.network;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.IThreadListener;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
+
+public class WrapperPositionAckHandler implements
+    IMessageHandler<WrapperPositionAckMessage, IMessage> {
+
+    @Override
+    public IMessage onMessage(WrapperPositionAckMessage message, MessageContext ctx) {
+        IThreadListener mainThread = ctx.getServerHandler().server;
+        mainThread.addScheduledTask(() -> {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            Entity ent = player.world.getEntityByID(message.getEntityID());
+            if (ent instanceof PhysicsWrapperEntity) {
+                ((PhysicsWrapperEntity) ent).getPhysicsObject().getShipTransformationManager()
+                    .getPositionKeyframes()
+                    .onKeyframeAcknowledged(player, message.getKeyframeID());
+            }
+        });
+        return null;
+    }
+}
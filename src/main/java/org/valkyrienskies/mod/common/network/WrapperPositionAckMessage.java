@@ -0,0 +1,40 @@
+package org.valkyrienskies.mod.common.network;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+/**
+ * Tells the server the client has received a WrapperPositionMessage keyframe, so the server can
+ * send the following positions as deltas against it.
+ */
+@Getter
+public class WrapperPositionAckMessage implements IMessage {
+
+    private int entityID;
+    private int keyframeID;
+
+    @SuppressWarnings("unused")
+    public WrapperPositionAckMessage() {
+    }
+
+    public WrapperPositionAckMessage(int entityID, int keyframeID) {
+        this.entityID = entityID;
+        this.keyframeID = keyframeID;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        entityID = packetBuffer.readVarInt();
+        keyframeID = packetBuffer.readVarInt();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        packetBuffer.writeVarInt(entityID);
+        packetBuffer.writeVarInt(keyframeID);
+    }
+}
@@ -0,0 +1,33 @@
+package org.valkyrienskies.mod.common.network;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.IThreadListener;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+public class WrapperPositionBatchHandler implements
+    IMessageHandler<WrapperPositionBatchMessage, IMessage> {
+
+    @Override
+    public IMessage onMessage(final WrapperPositionBatchMessage message, MessageContext ctx) {
+        if (Minecraft.getMinecraft().player == null) {
+            return null;
+        }
+
+        IThreadListener mainThread = Minecraft.getMinecraft();
+        mainThread.addScheduledTask(() -> {
+            if (Minecraft.getMinecraft().world != null) {
+                for (IMessage entry : message.getEntries()) {
+                    if (entry instanceof WrapperPositionMessage) {
+                        PhysWrapperPositionHandler.applyKeyframe((WrapperPositionMessage) entry);
+                    } else {
+                        PhysWrapperPositionHandler
+                            .applyDelta((WrapperPositionDeltaMessage) entry);
+                    }
+                }
+            }
+        });
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+package org.valkyrienskies.mod.common.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+/**
+ * The positions of every ship a player watches for one physics tick, so each player gets one
+ * packet per tick instead of one per ship.
+ * <p>
+ * Each entry is a WrapperPositionMessage keyframe or a WrapperPositionDeltaMessage, encoded once
+ * by encodeEntry() and then copied into the batch of every player it goes to.
+ */
+public class WrapperPositionBatchMessage implements IMessage {
+
+    private static final byte KEYFRAME_ENTRY = 0;
+    private static final byte DELTA_ENTRY = 1;
+    // Only used by the server
+    private final List<byte[]> encodedEntries;
+    // The number of bytes in encodedEntries.
+    @Getter
+    private int encodedSize;
+    // Only used by the client, either WrapperPositionMessage or WrapperPositionDeltaMessage.
+    @Getter
+    private final List<IMessage> entries;
+
+    public WrapperPositionBatchMessage() {
+        this.encodedEntries = new ArrayList<>();
+        this.encodedSize = 0;
+        this.entries = new ArrayList<>();
+    }
+
+    public static byte[] encodeEntry(WrapperPositionMessage keyframe) {
+        return encodeEntry(KEYFRAME_ENTRY, keyframe);
+    }
+
+    public static byte[] encodeEntry(WrapperPositionDeltaMessage delta) {
+        return encodeEntry(DELTA_ENTRY, delta);
+    }
+
+    private static byte[] encodeEntry(byte entryType, IMessage message) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(entryType);
+        message.toBytes(buf);
+        byte[] encoded = new byte[buf.readableBytes()];
+        buf.readBytes(encoded);
+        return encoded;
+    }
+
+    /**
+     * @param encodedEntry An entry from encodeEntry()
+     */
+    public void addEntry(byte[] encodedEntry) {
+        encodedEntries.add(encodedEntry);
+        encodedSize += encodedEntry.length;
+    }
+
+    public boolean isEmpty() {
+        return encodedEntries.isEmpty() && entries.isEmpty();
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        int entryCount = packetBuffer.readVarInt();
+        for (int i = 0; i < entryCount; i++) {
+            // The entries know their own length, so they're just read one after the other.
+            IMessage entry;
+            if (buf.readByte() == KEYFRAME_ENTRY) {
+                entry = new WrapperPositionMessage();
+            } else {
+                entry = new WrapperPositionDeltaMessage();
+            }
+            entry.fromBytes(buf);
+            entries.add(entry);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        packetBuffer.writeVarInt(encodedEntries.size());
+        for (byte[] encodedEntry : encodedEntries) {
+            buf.writeBytes(encodedEntry);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.valkyrienskies.mod.common.network;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.valkyrienskies.mod.common.math.Vector;
+
+/**
+ * A compact WrapperPositionMessage, sent as the difference from a keyframe the client has already
+ * acknowledged. See ShipPositionCodec for how the values are quantized. The center of mass isn't
+ * sent at all, the server sends a new keyframe whenever it changes.
+ * <p>
+ * A full WrapperPositionMessage is about 130 bytes, these are usually around 35.
+ */
+public class WrapperPositionDeltaMessage implements IMessage {
+
+    @Getter
+    private int entityID;
+    @Getter
+    private int keyframeID;
+    private int relativeTickDelta;
+    private long deltaX, deltaY, deltaZ;
+    private long rotation;
+    // minX, minY, minZ, maxX, maxY, maxZ relative to the decoded position
+    private final long[] boundingBox;
+
+    public WrapperPositionDeltaMessage() {
+        this.boundingBox = new long[6];
+    }
+
+    /**
+     * @param keyframe The last keyframe the client has acknowledged for this ship
+     * @param current  The position to send
+     * @param rotation The rotation of current, from ShipPositionCodec.encodeRotation()
+     */
+    public WrapperPositionDeltaMessage(WrapperPositionMessage keyframe,
+        WrapperPositionMessage current, long rotation) {
+        this();
+        this.entityID = current.getEntityID();
+        this.keyframeID = keyframe.getKeyframeID();
+        this.relativeTickDelta = current.getRelativeTick() - keyframe.getRelativeTick();
+        this.deltaX = ShipPositionCodec.quantizePosition(current.getPosX(), keyframe.getPosX());
+        this.deltaY = ShipPositionCodec.quantizePosition(current.getPosY(), keyframe.getPosY());
+        this.deltaZ = ShipPositionCodec.quantizePosition(current.getPosZ(), keyframe.getPosZ());
+        this.rotation = rotation;
+
+        // The client only knows the decoded position, so the box has to be relative to that.
+        double originX = ShipPositionCodec.dequantizePosition(deltaX, keyframe.getPosX());
+        double originY = ShipPositionCodec.dequantizePosition(deltaY, keyframe.getPosY());
+        double originZ = ShipPositionCodec.dequantizePosition(deltaZ, keyframe.getPosZ());
+        AxisAlignedBB shipBB = current.getShipBB();
+        boundingBox[0] = ShipPositionCodec.quantizeBoundingBoxMin(shipBB.minX, originX);
+        boundingBox[1] = ShipPositionCodec.quantizeBoundingBoxMin(shipBB.minY, originY);
+        boundingBox[2] = ShipPositionCodec.quantizeBoundingBoxMin(shipBB.minZ, originZ);
+        boundingBox[3] = ShipPositionCodec.quantizeBoundingBoxMax(shipBB.maxX, originX);
+        boundingBox[4] = ShipPositionCodec.quantizeBoundingBoxMax(shipBB.maxY, originY);
+        boundingBox[5] = ShipPositionCodec.quantizeBoundingBoxMax(shipBB.maxZ, originZ);
+    }
+
+    /**
+     * @param keyframe The keyframe with the same keyframe id as this message
+     * @return The full position message this was encoded from, give or take the quantization
+     */
+    public WrapperPositionMessage decode(WrapperPositionMessage keyframe) {
+        WrapperPositionMessage decoded = new WrapperPositionMessage(keyframe);
+        decoded.setCenterOfMass(new Vector(keyframe.getCenterOfMass()));
+        decoded.setRelativeTick(keyframe.getRelativeTick() + relativeTickDelta);
+        decoded.setPosX(ShipPositionCodec.dequantizePosition(deltaX, keyframe.getPosX()));
+        decoded.setPosY(ShipPositionCodec.dequantizePosition(deltaY, keyframe.getPosY()));
+        decoded.setPosZ(ShipPositionCodec.dequantizePosition(deltaZ, keyframe.getPosZ()));
+
+        double[] angles = ShipPositionCodec.decodeRotation(rotation);
+        decoded.setPitch(angles[0]);
+        decoded.setYaw(angles[1]);
+        decoded.setRoll(angles[2]);
+
+        decoded.setShipBB(new AxisAlignedBB(
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[0], decoded.getPosX()),
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[1], decoded.getPosY()),
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[2], decoded.getPosZ()),
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[3], decoded.getPosX()),
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[4], decoded.getPosY()),
+            ShipPositionCodec.dequantizeBoundingBox((int) boundingBox[5], decoded.getPosZ())));
+        return decoded;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        entityID = packetBuffer.readVarInt();
+        keyframeID = packetBuffer.readVarInt();
+        relativeTickDelta = (int) ShipPositionCodec.zigZagDecode(packetBuffer.readVarLong());
+        deltaX = ShipPositionCodec.zigZagDecode(packetBuffer.readVarLong());
+        deltaY = ShipPositionCodec.zigZagDecode(packetBuffer.readVarLong());
+        deltaZ = ShipPositionCodec.zigZagDecode(packetBuffer.readVarLong());
+        rotation = packetBuffer.readLong();
+        for (int i = 0; i < boundingBox.length; i++) {
+            boundingBox[i] = ShipPositionCodec.zigZagDecode(packetBuffer.readVarLong());
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer packetBuffer = new PacketBuffer(buf);
+        packetBuffer.writeVarInt(entityID);
+        packetBuffer.writeVarInt(keyframeID);
+        packetBuffer.writeVarLong(ShipPositionCodec.zigZagEncode(relativeTickDelta));
+        packetBuffer.writeVarLong(ShipPositionCodec.zigZagEncode(deltaX));
+        packetBuffer.writeVarLong(ShipPositionCodec.zigZagEncode(deltaY));
+        packetBuffer.writeVarLong(ShipPositionCodec.zigZagEncode(deltaZ));
+        packetBuffer.writeLong(rotation);
+        for (long bound : boundingBox) {
+            packetBuffer.writeVarLong(ShipPositionCodec.zigZagEncode(bound));
+        }
+    }
+}
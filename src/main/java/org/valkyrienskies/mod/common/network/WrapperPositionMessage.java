@@ -20,7 +20,8 @@ import valkyrienwarfare.api.TransformType;
  * exactly the same as the game tick; this is done so that the client can see ship movement smoothly
  * even when the server game tick is lagging.
  *
- * It also has code to apply it onto a PhysicsObject.
+ * It also has code to apply it onto a PhysicsObject. Once the client has acknowledged one of these,
+ * the server sends the following positions as a WrapperPositionDeltaMessage against it.
  *
  * @author thebest108
  */
@@ -31,6 +32,8 @@ public class WrapperPositionMessage implements IMessage {
 
     private int relativeTick;
     private int entityID;
+    // Identifies this message when the client acknowledges it as a keyframe.
+    private int keyframeID;
     private double posX, posY, posZ;
     private double pitch, yaw, roll;
     private Vector centerOfMass;
@@ -92,6 +95,7 @@ public class WrapperPositionMessage implements IMessage {
         relativeTick = wrapperMessage.getRelativeTick();
         shipBB = wrapperMessage.getShipBB();
         entityID = wrapperMessage.getEntityID();
+        keyframeID = wrapperMessage.getKeyframeID();
     }
 
     public WrapperPositionMessage(WrapperPositionMessage[] transformations,
@@ -131,6 +135,7 @@ public class WrapperPositionMessage implements IMessage {
     public void fromBytes(ByteBuf buf) {
         setEntityID(buf.readInt());
         setRelativeTick(buf.readInt());
+        setKeyframeID(buf.readInt());
 
         setPosX(buf.readDouble());
         setPosY(buf.readDouble());
@@ -150,6 +155,7 @@ public class WrapperPositionMessage implements IMessage {
     public void toBytes(ByteBuf buf) {
         buf.writeInt(getEntityID());
         buf.writeInt(getRelativeTick());
+        buf.writeInt(getKeyframeID());
 
         buf.writeDouble(getPosX());
         buf.writeDouble(getPosY());
@@ -2,6 +2,7 @@ package org.valkyrienskies.mod.common.physics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockLiquid;
@@ -33,9 +34,15 @@ public class BlockPhysicsDetails {
      */
     private static final HashMap<Material, Double> materialMass = new HashMap<>();
     /**
-     * Blocks that should not be infused with physics.
+     * Blocks that should not be infused with physics. Add to it with registerNonInfusable(), so
+     * stateTable gets rebuilt.
      */
     public static final ArrayList<Block> blocksToNotPhysicsInfuse = new ArrayList<>();
+    /**
+     * The masses and blacklist above flattened by block state id, so looking them up doesn't hash
+     * or unbox. Built the first time it's needed and thrown away whenever the config changes.
+     */
+    private static volatile StateTable stateTable = null;
 
     static {
         generateBlockMasses();
@@ -52,6 +59,7 @@ public class BlockPhysicsDetails {
             .filter(arr -> arr.length == 2)
             .map(arr -> Pair.of(Block.getBlockFromName(arr[0]), Double.parseDouble(arr[1])))
             .forEach(pair -> blockToMass.put(pair.getLeft(), pair.getRight()));
+        stateTable = null;
     }
 
     private static void generateMaterialMasses() {
@@ -111,6 +119,14 @@ public class BlockPhysicsDetails {
         blocksToNotPhysicsInfuse.add(Blocks.FLOWING_LAVA);
     }
 
+    /**
+     * Stops the given block from being infused with physics, for addons.
+     */
+    public static void registerNonInfusable(Block block) {
+        blocksToNotPhysicsInfuse.add(block);
+        stateTable = null;
+    }
+
     /**
      * Get block mass, in kg.
      */
@@ -118,9 +134,44 @@ public class BlockPhysicsDetails {
         Block block = state.getBlock();
         if (block instanceof IBlockMassProvider) {
             return ((IBlockMassProvider) block).getBlockMass(world, pos, state);
-        } else {
-            return getMassOfBlock(block);
         }
+        int stateId = Block.getStateId(state);
+        StateTable table = getStateTable(state, stateId);
+        if (table != null) {
+            return table.masses[stateId];
+        }
+        return getMassOfBlock(block);
+    }
+
+    /**
+     * Returns true if blocks of the given IBlockState are left out of ships, like air and fluids.
+     */
+    public static boolean isBlockToNotPhysicsInfuse(IBlockState state) {
+        int stateId = Block.getStateId(state);
+        StateTable table = getStateTable(state, stateId);
+        if (table != null) {
+            return table.notPhysicsInfused.get(stateId);
+        }
+        return blocksToNotPhysicsInfuse.contains(state.getBlock());
+    }
+
+    /**
+     * Returns a table that has the block of the given state at stateId, or null if the block isn't
+     * registered.
+     */
+    private static StateTable getStateTable(IBlockState state, int stateId) {
+        StateTable table = stateTable;
+        if (table != null && table.hasState(state, stateId)) {
+            return table;
+        }
+        if (Block.getIdFromBlock(state.getBlock()) < 0) {
+            return null;
+        }
+        // Either there is no table yet, or the state ids changed since it was built, like when
+        // joining a server. Two threads could both build it, but they'd build the same thing.
+        table = new StateTable();
+        stateTable = table;
+        return table.hasState(state, stateId) ? table : null;
     }
 
     private static double getMassOfMaterial(Material material) {
@@ -166,4 +217,42 @@ public class BlockPhysicsDetails {
         return block instanceof IBlockForceProvider || block instanceof IBlockTorqueProvider;
     }
 
+    /**
+     * The mass and blacklist entry of every block state id. A state id is the block id plus the
+     * metadata shifted left by 12, so every metadata of every block gets an entry, and the states
+     * that share an id always share a block.
+     */
+    private static final class StateTable {
+
+        static final int METADATA_SHIFT = 12;
+        final Block[] blocks;
+        final double[] masses;
+        final BitSet notPhysicsInfused;
+
+        StateTable() {
+            int maxBlockId = 0;
+            for (Block block : Block.REGISTRY) {
+                maxBlockId = Math.max(maxBlockId, Block.getIdFromBlock(block));
+            }
+            int size = maxBlockId + 1 + (15 << METADATA_SHIFT);
+            blocks = new Block[size];
+            masses = new double[size];
+            notPhysicsInfused = new BitSet(size);
+            for (Block block : Block.REGISTRY) {
+                int blockId = Block.getIdFromBlock(block);
+                double mass = getMassOfBlock(block);
+                boolean isNotPhysicsInfused = blocksToNotPhysicsInfuse.contains(block);
+                for (int meta = 0; meta < 16; meta++) {
+                    int stateId = blockId + (meta << METADATA_SHIFT);
+                    blocks[stateId] = block;
+                    masses[stateId] = mass;
+                    notPhysicsInfused.set(stateId, isNotPhysicsInfused);
+                }
+            }
+        }
+
+        boolean hasState(IBlockState state, int stateId) {
+            return stateId >= 0 && stateId < blocks.length && blocks[stateId] == state.getBlock();
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package org.valkyrienskies.mod.common.physics;
+
+import org.valkyrienskies.mod.common.math.Vector;
+
+/**
+ * Keeps the total mass, the first moment (sum of m * r) and the second moment (sum of m * r * r^T)
+ * of a set of point masses. Adding or removing a mass is constant time, and the center of mass and
+ * inertia tensor come out of the sums directly, instead of shifting the tensor to the new center
+ * of mass for every mass added.
+ * <p>
+ * The sums are relative to an origin near the masses, the first one added, since ships are far
+ * out in the world and the squares of their coordinates would lose most of their precision.
+ */
+public class InertiaAccumulator {
+
+    // How far from the center of a block its mass is spread, along every axis.
+    public static final double BLOCK_MASS_OFFSET = .4D;
+    // A block's mass is split evenly between its center and 8 points around it.
+    private static final double BLOCK_SPREAD =
+        8D / 9D * BLOCK_MASS_OFFSET * BLOCK_MASS_OFFSET;
+    private boolean hasOrigin;
+    private double originX, originY, originZ;
+    private double mass;
+    private double firstX, firstY, firstZ;
+    private double secondXX, secondXY, secondXZ, secondYY, secondYZ, secondZZ;
+
+    public InertiaAccumulator() {
+        clear();
+    }
+
+    public void clear() {
+        hasOrigin = false;
+        originX = originY = originZ = 0;
+        mass = 0;
+        firstX = firstY = firstZ = 0;
+        secondXX = secondXY = secondXZ = secondYY = secondYZ = secondZZ = 0;
+    }
+
+    /**
+     * Adds a point mass at xyz. A negative mass removes one.
+     */
+    public void addMassAt(double x, double y, double z, double addedMass) {
+        addMoments(x, y, z, addedMass, 0);
+    }
+
+    /**
+     * Adds the mass of a block centered at xyz, spread the same way PhysicsCalculations always has:
+     * a ninth at the center and a ninth at every corner of a cube BLOCK_MASS_OFFSET out from it.
+     * The corners cancel out of everything but the diagonal of the second moment. A negative mass
+     * removes one.
+     */
+    public void addBlockMassAt(double x, double y, double z, double addedMass) {
+        addMoments(x, y, z, addedMass, addedMass * BLOCK_SPREAD);
+    }
+
+    /**
+     * Replaces the sums with those of a body with the given mass, center of mass and inertia
+     * tensor, like one read from NBT.
+     */
+    public void setMassProperties(double newMass, Vector centerOfMass, double[] inertiaTensor) {
+        clear();
+        hasOrigin = true;
+        originX = centerOfMass.X;
+        originY = centerOfMass.Y;
+        originZ = centerOfMass.Z;
+        mass = newMass;
+        // The tensor is trace(S) * I - S, where S is the second moment about the center of mass.
+        double halfTrace = (inertiaTensor[0] + inertiaTensor[4] + inertiaTensor[8]) / 2D;
+        secondXX = halfTrace - inertiaTensor[0];
+        secondYY = halfTrace - inertiaTensor[4];
+        secondZZ = halfTrace - inertiaTensor[8];
+        secondXY = -inertiaTensor[1];
+        secondXZ = -inertiaTensor[2];
+        secondYZ = -inertiaTensor[5];
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * Sets toSet to the center of mass. Only meaningful when the mass isn't zero.
+     */
+    public void getCenterOfMass(Vector toSet) {
+        toSet.X = originX + firstX / mass;
+        toSet.Y = originY + firstY / mass;
+        toSet.Z = originZ + firstZ / mass;
+    }
+
+    /**
+     * Sets toSet, a row major 3x3 matrix, to the inertia tensor about the center of mass. Only
+     * meaningful when the mass isn't zero.
+     */
+    public void getInertiaTensor(double[] toSet) {
+        double centerX = firstX / mass;
+        double centerY = firstY / mass;
+        double centerZ = firstZ / mass;
+        // The second moment about the center of mass.
+        double xx = secondXX - firstX * centerX;
+        double xy = secondXY - firstX * centerY;
+        double xz = secondXZ - firstX * centerZ;
+        double yy = secondYY - firstY * centerY;
+        double yz = secondYZ - firstY * centerZ;
+        double zz = secondZZ - firstZ * centerZ;
+
+        toSet[0] = yy + zz;
+        toSet[1] = -xy;
+        toSet[2] = -xz;
+        toSet[3] = -xy;
+        toSet[4] = xx + zz;
+        toSet[5] = -yz;
+        toSet[6] = -xz;
+        toSet[7] = -yz;
+        toSet[8] = xx + yy;
+    }
+
+    // spread is added to the diagonal of the second moment, for masses that aren't points.
+    private void addMoments(double x, double y, double z, double addedMass, double spread) {
+        if (!hasOrigin) {
+            hasOrigin = true;
+            originX = x;
+            originY = y;
+            originZ = z;
+        }
+        x -= originX;
+        y -= originY;
+        z -= originZ;
+        double massX = addedMass * x;
+        double massY = addedMass * y;
+        double massZ = addedMass * z;
+
+        mass += addedMass;
+        firstX += massX;
+        firstY += massY;
+        firstZ += massZ;
+        secondXX += massX * x + spread;
+        secondXY += massX * y;
+        secondXZ += massX * z;
+        secondYY += massY * y + spread;
+        secondYZ += massY * z;
+        secondZZ += massZ * z + spread;
+    }
+}
@@ -36,7 +36,7 @@ import valkyrienwarfare.api.TransformType;
 public class PhysicsCalculations implements IRotationNodeWorldProvider {
 
     public static final double DRAG_CONSTANT = .99D;
-    public static final double INERTIA_OFFSET = .4D;
+    public static final double INERTIA_OFFSET = InertiaAccumulator.BLOCK_MASS_OFFSET;
     public static final double EPSILON = .00000001;
 
     private final PhysicsObject parent;
@@ -45,6 +45,8 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
     // CopyOnWrite to provide concurrency between threads.
     private final Set<BlockPos> activeForcePositions;
     private final IRotationNodeWorld physicsRotationNodeWorld;
+    // The sums that gameTickMass, gameTickCenterOfMass and gameMoITensor come from.
+    private final InertiaAccumulator inertiaAccumulator;
     public org.valkyrienskies.mod.common.math.Vector gameTickCenterOfMass;
     public org.valkyrienskies.mod.common.math.Vector linearMomentum;
     public org.valkyrienskies.mod.common.math.Vector angularVelocity;
@@ -61,6 +63,8 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
     private double[] physInvMOITensor;
     private double physRoll, physPitch, physYaw;
     private double physX, physY, physZ;
+    // A sleeping ship skips force calculation, collision and integration until it is woken up.
+    private final ShipSleepState sleepState;
 
     public PhysicsCalculations(PhysicsObject toProcess) {
         parent = toProcess;
@@ -81,86 +85,60 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
         // We need thread safe access to this.
         activeForcePositions = ConcurrentHashMap.newKeySet();
         this.physicsRotationNodeWorld = new ImplRotationNodeWorld(parent);
+        this.sleepState = new ShipSleepState();
+        this.inertiaAccumulator = new InertiaAccumulator();
     }
 
     public void onSetBlockState(IBlockState oldState, IBlockState newState, BlockPos pos) {
-        World worldObj = getParent().world();
-        if (!newState.equals(oldState)) {
-            if (BlockPhysicsDetails.isBlockProvidingForce(newState, pos, worldObj)) {
-                activeForcePositions.add(pos);
-            } else {
-                activeForcePositions.remove(pos);
-            }
-
-            double oldMass = BlockPhysicsDetails.getMassFromState(oldState, pos, worldObj);
-            double newMass = BlockPhysicsDetails.getMassFromState(newState, pos, worldObj);
-            double deltaMass = newMass - oldMass;
-            // Don't change anything if the mass is the same
-            if (Math.abs(deltaMass) > EPSILON) {
-                double x = pos.getX() + .5D;
-                double y = pos.getY() + .5D;
-                double z = pos.getZ() + .5D;
-
-                deltaMass /= 9D;
-                addMassAt(x, y, z, deltaMass);
-                addMassAt(x + INERTIA_OFFSET, y + INERTIA_OFFSET, z + INERTIA_OFFSET, deltaMass);
-                addMassAt(x + INERTIA_OFFSET, y + INERTIA_OFFSET, z - INERTIA_OFFSET, deltaMass);
-                addMassAt(x + INERTIA_OFFSET, y - INERTIA_OFFSET, z + INERTIA_OFFSET, deltaMass);
-                addMassAt(x + INERTIA_OFFSET, y - INERTIA_OFFSET, z - INERTIA_OFFSET, deltaMass);
-                addMassAt(x - INERTIA_OFFSET, y + INERTIA_OFFSET, z + INERTIA_OFFSET, deltaMass);
-                addMassAt(x - INERTIA_OFFSET, y + INERTIA_OFFSET, z - INERTIA_OFFSET, deltaMass);
-                addMassAt(x - INERTIA_OFFSET, y - INERTIA_OFFSET, z + INERTIA_OFFSET, deltaMass);
-                addMassAt(x - INERTIA_OFFSET, y - INERTIA_OFFSET, z - INERTIA_OFFSET, deltaMass);
-            }
+        if (addBlockChange(oldState, newState, pos)) {
+            updateMassProperties();
         }
     }
 
-    private void addMassAt(double x, double y, double z, double addedMass) {
-        org.valkyrienskies.mod.common.math.Vector prevCenterOfMass = new org.valkyrienskies.mod.common.math.Vector(
-            gameTickCenterOfMass);
-        if (gameTickMass > .0001D) {
-            gameTickCenterOfMass.multiply(gameTickMass);
-            gameTickCenterOfMass
-                .add(new org.valkyrienskies.mod.common.math.Vector(x, y, z).getProduct(addedMass));
-            gameTickCenterOfMass.multiply(1.0D / (gameTickMass + addedMass));
+    /**
+     * Adds the change of mass at pos to the inertiaAccumulator, without updating the mass
+     * properties from it yet.
+     *
+     * @return True if the mass changed.
+     */
+    private boolean addBlockChange(IBlockState oldState, IBlockState newState, BlockPos pos) {
+        World worldObj = getParent().world();
+        if (newState.equals(oldState)) {
+            return false;
+        }
+        wakeUp();
+        if (BlockPhysicsDetails.isBlockProvidingForce(newState, pos, worldObj)) {
+            activeForcePositions.add(pos);
         } else {
-            gameTickCenterOfMass = new org.valkyrienskies.mod.common.math.Vector(x, y, z);
-            gameMoITensor = RotationMatrices.getZeroMatrix(3);
+            activeForcePositions.remove(pos);
         }
-        double cmShiftX = prevCenterOfMass.X - gameTickCenterOfMass.X;
-        double cmShiftY = prevCenterOfMass.Y - gameTickCenterOfMass.Y;
-        double cmShiftZ = prevCenterOfMass.Z - gameTickCenterOfMass.Z;
-        double rx = x - gameTickCenterOfMass.X;
-        double ry = y - gameTickCenterOfMass.Y;
-        double rz = z - gameTickCenterOfMass.Z;
-
-        gameMoITensor[0] =
-            gameMoITensor[0] + (cmShiftY * cmShiftY + cmShiftZ * cmShiftZ) * gameTickMass
-                + (ry * ry + rz * rz) * addedMass;
-        gameMoITensor[1] =
-            gameMoITensor[1] - cmShiftX * cmShiftY * gameTickMass - rx * ry * addedMass;
-        gameMoITensor[2] =
-            gameMoITensor[2] - cmShiftX * cmShiftZ * gameTickMass - rx * rz * addedMass;
-        gameMoITensor[3] = gameMoITensor[1];
-        gameMoITensor[4] =
-            gameMoITensor[4] + (cmShiftX * cmShiftX + cmShiftZ * cmShiftZ) * gameTickMass
-                + (rx * rx + rz * rz) * addedMass;
-        gameMoITensor[5] =
-            gameMoITensor[5] - cmShiftY * cmShiftZ * gameTickMass - ry * rz * addedMass;
-        gameMoITensor[6] = gameMoITensor[2];
-        gameMoITensor[7] = gameMoITensor[5];
-        gameMoITensor[8] =
-            gameMoITensor[8] + (cmShiftX * cmShiftX + cmShiftY * cmShiftY) * gameTickMass
-                + (rx * rx + ry * ry) * addedMass;
 
+        double oldMass = BlockPhysicsDetails.getMassFromState(oldState, pos, worldObj);
+        double newMass = BlockPhysicsDetails.getMassFromState(newState, pos, worldObj);
+        double deltaMass = newMass - oldMass;
+        // Don't change anything if the mass is the same
+        if (Math.abs(deltaMass) <= EPSILON) {
+            return false;
+        }
+        inertiaAccumulator.addBlockMassAt(pos.getX() + .5D, pos.getY() + .5D, pos.getZ() + .5D,
+            deltaMass);
+        return true;
+    }
+
+    // Sets the game tick mass, center of mass and inertia tensor from the inertiaAccumulator.
+    private void updateMassProperties() {
         // Do this to avoid a mass of zero, which runs the risk of dividing by zero and
         // crashing the program.
-        if (gameTickMass + addedMass < .0001D) {
+        if (inertiaAccumulator.getMass() < .0001D) {
+            inertiaAccumulator.clear();
             gameTickMass = .0001D;
+            gameMoITensor = RotationMatrices.getZeroMatrix(3);
             getParent().setPhysicsEnabled(false);
-        } else {
-            gameTickMass += addedMass;
+            return;
         }
+        gameTickMass = inertiaAccumulator.getMass();
+        inertiaAccumulator.getCenterOfMass(gameTickCenterOfMass);
+        inertiaAccumulator.getInertiaTensor(gameMoITensor);
     }
 
     public void generatePhysicsTransform() {
@@ -206,6 +184,46 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
         }
     }
 
+    /**
+     * Wakes the ship up if something asked it to, or if it isn't allowed to sleep. Called by the
+     * physics thread at the start of every physics tick, before checking isAsleep().
+     */
+    public void updateSleepState() {
+        sleepState.updateSleepState(canSleep());
+    }
+
+    // Puts the ship to sleep once it has been still for long enough.
+    private void countTicksStill() {
+        double invMass = getInvMass();
+        if (sleepState.countTickStill(canSleep(), linearMomentum.lengthSq() * invMass * invMass,
+            angularVelocity.lengthSq())) {
+            linearMomentum.zero();
+            angularVelocity.zero();
+        }
+    }
+
+    // Only ships with physics enabled sleep, the others still need their transforms updated.
+    private boolean canSleep() {
+        return VSConfig.doShipSleeping && getParent().isPhysicsEnabled() && !parent
+            .getShipAligningToGrid();
+    }
+
+    /**
+     * Wakes the ship up at the start of the next physics tick, and restarts the count of ticks it
+     * needs to be still before it can sleep again. Safe to call from any thread.
+     */
+    public void wakeUp() {
+        sleepState.wakeUp();
+    }
+
+    /**
+     * @return True if the physics thread has stopped simulating this ship until something wakes
+     * it up.
+     */
+    public boolean isAsleep() {
+        return sleepState.isAsleep();
+    }
+
     public void rawPhysTickPostCol() {
         if (!isPhysicsBroken()) {
             if (getParent().isPhysicsEnabled()) {
@@ -233,6 +251,7 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
         getParent().getShipTransformationManager().setCurrentPhysicsTransform(finalPhysTransform);
 
         updatePhysCenterOfMass();
+        countTicksStill();
     }
 
     // If the ship is moving at these speeds, its likely something in the physics
@@ -576,6 +595,13 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
         gameTickCenterOfMass = ValkyrienNBTUtils.readVectorFromNBT("CM", compound);
         gameTickMass = compound.getDouble("mass");
         gameMoITensor = ValkyrienNBTUtils.read3x3MatrixFromNBT("MOI", compound);
+        // A ship with no mass is saved with a mass of .0001, which shouldn't stay in the sums.
+        if (gameTickMass > .0001D) {
+            inertiaAccumulator.setMassProperties(gameTickMass, gameTickCenterOfMass,
+                gameMoITensor);
+        } else {
+            inertiaAccumulator.clear();
+        }
         physicsRotationNodeWorld.readFromNBTTag(compound);
 
         if (!BlockPhysicsDetails.BLOCK_MASS_VERSION.equals(compound.getString("block_mass_ver"))) {
@@ -591,11 +617,13 @@ public class PhysicsCalculations implements IRotationNodeWorldProvider {
         gameTickCenterOfMass.zero();
         gameTickMass = 0;
         gameMoITensor = RotationMatrices.getZeroMatrix(3);
+        inertiaAccumulator.clear();
         IBlockState air = Blocks.AIR.getDefaultState();
         for (BlockPos pos : getParent().getBlockPositions()) {
-            onSetBlockState(air, getParent().getChunkAt(pos.getX() >> 4, pos.getZ() >> 4)
+            addBlockChange(air, getParent().getChunkAt(pos.getX() >> 4, pos.getZ() >> 4)
                 .getBlockState(pos), pos);
         }
+        updateMassProperties();
     }
 
     // These getter methods guarantee that only code within this class can modify
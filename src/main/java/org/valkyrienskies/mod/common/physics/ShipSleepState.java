@@ -0,0 +1,86 @@
+package org.valkyrienskies.mod.common.physics;
+
+/**
+ * Decides when a ship falls asleep and when it wakes up again. A ship with physics enabled falls
+ * asleep once it has been still for TICKS_BEFORE_SLEEP physics ticks, and stays asleep until
+ * wakeUp() is called. Ships with physics disabled never sleep, since the physics thread still has
+ * to keep their transforms up to date.
+ */
+public class ShipSleepState {
+
+    // A ship moving slower than this (in blocks per second) is considered still.
+    public static final double SLEEP_LINEAR_VELOCITY = .1D;
+    // A ship rotating slower than this (in radians per second) is considered still.
+    public static final double SLEEP_ANGULAR_VELOCITY = .05D;
+    // The number of physics ticks a ship has to be still before it falls asleep.
+    public static final int TICKS_BEFORE_SLEEP = 100;
+
+    // Only written by the physics thread, other threads go through wakeUp().
+    private volatile boolean asleep;
+    private volatile boolean wakeUpRequested;
+    private int ticksStill;
+
+    public ShipSleepState() {
+        this.asleep = false;
+        this.wakeUpRequested = false;
+        this.ticksStill = 0;
+    }
+
+    /**
+     * Wakes the ship up if something asked it to, or if it isn't allowed to sleep. Called by the
+     * physics thread at the start of every physics tick, before checking isAsleep().
+     *
+     * @param canSleep False if the ship has physics disabled, is aligning to the grid, or if
+     *                 sleeping is turned off.
+     */
+    public void updateSleepState(boolean canSleep) {
+        if (wakeUpRequested || !canSleep) {
+            wakeUpRequested = false;
+            asleep = false;
+            ticksStill = 0;
+        }
+    }
+
+    /**
+     * Counts the physics ticks the ship has been still for. Called by the physics thread at the end
+     * of every physics tick the ship was awake for.
+     *
+     * @param canSleep Same as for updateSleepState()
+     * @return True if the ship just fell asleep, in which case its velocities should be zeroed.
+     */
+    public boolean countTickStill(boolean canSleep, double linearVelocitySq,
+        double angularVelocitySq) {
+        boolean still = linearVelocitySq < SLEEP_LINEAR_VELOCITY * SLEEP_LINEAR_VELOCITY
+            && angularVelocitySq < SLEEP_ANGULAR_VELOCITY * SLEEP_ANGULAR_VELOCITY;
+        if (!canSleep || !still) {
+            ticksStill = 0;
+            return false;
+        }
+        ticksStill++;
+        if (ticksStill >= TICKS_BEFORE_SLEEP) {
+            asleep = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Wakes the ship up at the start of the next physics tick, and restarts the count of ticks it
+     * needs to be still before it can sleep again. Safe to call from any thread.
+     */
+    public void wakeUp() {
+        wakeUpRequested = true;
+    }
+
+    /**
+     * @return True if the physics thread has stopped simulating this ship until something wakes
+     * it up.
+     */
+    public boolean isAsleep() {
+        return asleep;
+    }
+
+    public int getTicksStill() {
+        return ticksStill;
+    }
+}
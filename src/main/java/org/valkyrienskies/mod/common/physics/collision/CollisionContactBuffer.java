@@ -0,0 +1,158 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import java.util.Arrays;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PhysCollisionObject;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PhysPolygonCollider;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PolygonCollisionPointFinder;
+
+/**
+ * Growable structure-of-arrays storage for the contacts found between a ship and the world. Each
+ * contact is stored as a slice of flat primitive arrays instead of as an object, so the impulse
+ * loop in {@link CollisionImpulseSolver} walks contiguous memory and no garbage is created per
+ * contact.
+ * <p>
+ * Not thread safe; every ShipCollisionTask owns its own buffer.
+ */
+public class CollisionContactBuffer {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // The collision normal; 3 doubles per contact.
+    private double[] normals;
+    // The penetration distance along the collision normal; 1 double per contact.
+    private double[] penetrationDepths;
+    // The top and bottom collision points in global coordinates; 6 doubles per contact.
+    private double[] collisionPoints;
+    // The world block and ship block positions; 6 ints per contact.
+    private int[] blockPositions;
+    // The world and ship block state ids; 2 ints per contact.
+    private int[] blockIds;
+    private int size;
+    // Reused to avoid allocating when finding collision points.
+    private final Vector[] pointsCache;
+
+    public CollisionContactBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CollisionContactBuffer(int initialCapacity) {
+        initialCapacity = Math.max(1, initialCapacity);
+        this.normals = new double[initialCapacity * 3];
+        this.penetrationDepths = new double[initialCapacity];
+        this.collisionPoints = new double[initialCapacity * 6];
+        this.blockPositions = new int[initialCapacity * 6];
+        this.blockIds = new int[initialCapacity * 2];
+        this.size = 0;
+        this.pointsCache = new Vector[2];
+    }
+
+    /**
+     * Picks the axis we collide along and adds a contact for it.
+     *
+     * @param collider A collider that isn't separated.
+     */
+    public void addContact(PhysPolygonCollider collider, int inWorldX, int inWorldY,
+        int inWorldZ, int inLocalX, int inLocalY, int inLocalZ, IBlockState inWorldState,
+        IBlockState inLocalState) {
+        PhysCollisionObject toCollideWith = collider.collisions[1];
+
+        if (toCollideWith.penetrationDistance > WorldPhysicsCollider.AXIS_TOLERANCE
+            || toCollideWith.penetrationDistance < -WorldPhysicsCollider.AXIS_TOLERANCE) {
+            toCollideWith = collider.collisions[collider.minDistanceIndex];
+        }
+        PolygonCollisionPointFinder.getPointsOfCollisionForPolygons(toCollideWith, pointsCache);
+
+        ensureCapacity(size + 1);
+        Vector normal = toCollideWith.collision_normal;
+        normals[size * 3] = normal.X;
+        normals[size * 3 + 1] = normal.Y;
+        normals[size * 3 + 2] = normal.Z;
+        penetrationDepths[size] = toCollideWith.penetrationDistance;
+
+        Vector topPoint = pointsCache[0];
+        Vector bottomPoint = pointsCache[1];
+        collisionPoints[size * 6] = topPoint.X;
+        collisionPoints[size * 6 + 1] = topPoint.Y;
+        collisionPoints[size * 6 + 2] = topPoint.Z;
+        collisionPoints[size * 6 + 3] = bottomPoint.X;
+        collisionPoints[size * 6 + 4] = bottomPoint.Y;
+        collisionPoints[size * 6 + 5] = bottomPoint.Z;
+
+        blockPositions[size * 6] = inWorldX;
+        blockPositions[size * 6 + 1] = inWorldY;
+        blockPositions[size * 6 + 2] = inWorldZ;
+        blockPositions[size * 6 + 3] = inLocalX;
+        blockPositions[size * 6 + 4] = inLocalY;
+        blockPositions[size * 6 + 5] = inLocalZ;
+
+        blockIds[size * 2] = inWorldState == null ? 0 : Block.getStateId(inWorldState);
+        blockIds[size * 2 + 1] = inLocalState == null ? 0 : Block.getStateId(inLocalState);
+
+        // Don't leave references to the polygons lying around.
+        pointsCache[0] = pointsCache[1] = null;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > penetrationDepths.length) {
+            int newCapacity = Math.max(capacity, penetrationDepths.length * 2);
+            normals = Arrays.copyOf(normals, newCapacity * 3);
+            penetrationDepths = Arrays.copyOf(penetrationDepths, newCapacity);
+            collisionPoints = Arrays.copyOf(collisionPoints, newCapacity * 6);
+            blockPositions = Arrays.copyOf(blockPositions, newCapacity * 6);
+            blockIds = Arrays.copyOf(blockIds, newCapacity * 2);
+        }
+    }
+
+    /**
+     * Removes all contacts, keeps the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The internal normal array, 3 doubles per contact. Do not modify!
+     */
+    public double[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * @return The internal penetration depth array, 1 double per contact. Do not modify!
+     */
+    public double[] getPenetrationDepths() {
+        return penetrationDepths;
+    }
+
+    /**
+     * @return The internal collision point array, 6 doubles per contact (top point then bottom
+     * point). Do not modify!
+     */
+    public double[] getCollisionPoints() {
+        return collisionPoints;
+    }
+
+    /**
+     * @return The internal block position array, 6 ints per contact (world position then ship
+     * position). Do not modify!
+     */
+    public int[] getBlockPositions() {
+        return blockPositions;
+    }
+
+    /**
+     * @return The internal block state id array, 2 ints per contact (world state then ship state).
+     * Do not modify!
+     */
+    public int[] getBlockIds() {
+        return blockIds;
+    }
+}
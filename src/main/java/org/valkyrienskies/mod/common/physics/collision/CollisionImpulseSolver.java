@@ -0,0 +1,263 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import org.valkyrienskies.mod.common.math.Vector;
+
+/**
+ * Applies the collision impulses for the contacts in a {@link CollisionContactBuffer} to a rigid
+ * body. This is the same math WorldPhysicsCollider used to do with Vector objects, just done with
+ * local doubles so that no garbage is created per contact.
+ * <p>
+ * Only depends on the rigid body state given to setRigidBody(), so it can be tested and
+ * benchmarked without a world.
+ */
+public class CollisionImpulseSolver {
+
+    // Below this speed our collision coefficient of restitution is zero.
+    private static final double SLOP_R = .5D;
+
+    private Vector linearMomentum;
+    private Vector angularVelocity;
+    private double[] moiTensor;
+    private double[] invMoiTensor;
+    private double mass;
+    private double invMass;
+    private double drag;
+    private double centerX, centerY, centerZ;
+
+    /**
+     * Sets the rigid body the impulses will be applied to. The momentum and angular velocity
+     * vectors are modified directly by applyImpulses().
+     *
+     * @param moiTensor    The moment of inertia tensor rotated into world coordinates
+     * @param invMoiTensor The inverse moment of inertia tensor rotated into world coordinates
+     * @param drag         The drag for this physics tick
+     * @param centerX      The x position of the center of mass, in global coordinates
+     */
+    public void setRigidBody(Vector linearMomentum, Vector angularVelocity, double[] moiTensor,
+        double[] invMoiTensor, double mass, double drag, double centerX, double centerY,
+        double centerZ) {
+        this.linearMomentum = linearMomentum;
+        this.angularVelocity = angularVelocity;
+        this.moiTensor = moiTensor;
+        this.invMoiTensor = invMoiTensor;
+        this.mass = mass;
+        this.invMass = 1D / mass;
+        this.drag = drag;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+    }
+
+    /**
+     * Applies the impulses of every contact in the buffer, in order.
+     */
+    public void applyImpulses(CollisionContactBuffer contacts) {
+        final double[] normals = contacts.getNormals();
+        final double[] penetrationDepths = contacts.getPenetrationDepths();
+        final double[] collisionPoints = contacts.getCollisionPoints();
+        for (int i = 0; i < contacts.size(); i++) {
+            double normalX = normals[i * 3];
+            double normalY = normals[i * 3 + 1];
+            double normalZ = normals[i * 3 + 2];
+            double penetration = penetrationDepths[i];
+            // TODO: We're oversolving for the collision here, but it prevents things going
+            //  through eachother. Each contact applies the top point, the bottom point, and then
+            //  both of them again.
+            for (int point = 0; point < 4; point++) {
+                int pointIndex = i * 6 + (point % 2) * 3;
+                applyImpulseAtPoint(collisionPoints[pointIndex], collisionPoints[pointIndex + 1],
+                    collisionPoints[pointIndex + 2], normalX, normalY, normalZ, penetration);
+            }
+        }
+    }
+
+    // Finally, the end of all this spaghetti code! This step takes all of the math
+    // generated before, and it directly adds the result to Ship velocities
+    private void applyImpulseAtPoint(double pointX, double pointY, double pointZ, double axisX,
+        double axisY, double axisZ, double penetration) {
+        // The position of the collision relative to the center of mass
+        final double inBodyX = pointX - centerX;
+        final double inBodyY = pointY - centerY;
+        final double inBodyZ = pointZ - centerZ;
+
+        // The velocity of the ship at the collision point
+        final double velocityX = angularVelocity.Y * inBodyZ - inBodyY * angularVelocity.Z
+            + linearMomentum.X * invMass;
+        final double velocityY = angularVelocity.Z * inBodyX - angularVelocity.X * inBodyZ
+            + linearMomentum.Y * invMass;
+        final double velocityZ = angularVelocity.X * inBodyY - inBodyX * angularVelocity.Y
+            + linearMomentum.Z * invMass;
+
+        // firstCross = invMoi * (inBody x axis)
+        double crossX = inBodyY * axisZ - axisY * inBodyZ;
+        double crossY = inBodyZ * axisX - inBodyX * axisZ;
+        double crossZ = inBodyX * axisY - axisX * inBodyY;
+        final double firstCrossX = crossX * invMoiTensor[0] + crossY * invMoiTensor[1]
+            + crossZ * invMoiTensor[2];
+        final double firstCrossY = crossX * invMoiTensor[3] + crossY * invMoiTensor[4]
+            + crossZ * invMoiTensor[5];
+        final double firstCrossZ = crossX * invMoiTensor[6] + crossY * invMoiTensor[7]
+            + crossZ * invMoiTensor[8];
+
+        // secondCross = firstCross x inBody
+        final double secondCrossX = firstCrossY * inBodyZ - inBodyY * firstCrossZ;
+        final double secondCrossY = firstCrossZ * inBodyX - firstCrossX * inBodyZ;
+        final double secondCrossZ = firstCrossX * inBodyY - inBodyX * firstCrossY;
+
+        final double velocityDotAxis = velocityX * axisX + velocityY * axisY + velocityZ * axisZ;
+        double impulseMagnitude = -velocityDotAxis / (invMass
+            + (secondCrossX * axisX + secondCrossY * axisY + secondCrossZ * axisZ));
+
+        double collisionSpeed = Math.abs(velocityDotAxis);
+        if (collisionSpeed > SLOP_R) {
+            impulseMagnitude *= (1 + WorldPhysicsCollider.COEFFICIENT_OF_RESTITUTION);
+        }
+
+        double impulseX = axisX * impulseMagnitude;
+        double impulseY = axisY * impulseMagnitude;
+        double impulseZ = axisZ * impulseMagnitude;
+
+        double impulseDotOffset = impulseX * (axisX * penetration)
+            + impulseY * (axisY * penetration) + impulseZ * (axisZ * penetration);
+        double impulseDotInBody = impulseX * inBodyX + impulseY * inBodyY + impulseZ * inBodyZ;
+
+        // Added impulseDotInBody < 0 to force all collision to move in the direction towards the
+        // in body vector.
+        if (impulseDotOffset < 0 && impulseDotInBody < 0) {
+            // ===== Friction Scaling Code Start =====
+            // Applies the friction force generated by the collision.
+            // The magnitude of this vector must be adjusted to minimize energy
+            double impulseLength = Math.sqrt(
+                impulseX * impulseX + impulseY * impulseY + impulseZ * impulseZ);
+            double contactNormalX = impulseX;
+            double contactNormalY = impulseY;
+            double contactNormalZ = impulseZ;
+            if (impulseLength > 1.0E-6D) {
+                contactNormalX /= impulseLength;
+                contactNormalY /= impulseLength;
+                contactNormalZ /= impulseLength;
+            } else {
+                contactNormalX = contactNormalY = contactNormalZ = 0;
+            }
+
+            double frictionX = velocityX;
+            double frictionY = velocityY;
+            double frictionZ = velocityZ;
+            double velocityLength = Math.sqrt(
+                velocityX * velocityX + velocityY * velocityY + velocityZ * velocityZ);
+            if (velocityLength > 1.0E-6D) {
+                frictionX /= velocityLength;
+                frictionY /= velocityLength;
+                frictionZ /= velocityLength;
+            } else {
+                frictionX = frictionY = frictionZ = 0;
+            }
+            double frictionMagnitude =
+                impulseLength * WorldPhysicsCollider.KINETIC_FRICTION_COEFFICIENT;
+            frictionX *= frictionMagnitude;
+            frictionY *= frictionMagnitude;
+            frictionZ *= frictionMagnitude;
+
+            if (frictionX * velocityX + frictionY * velocityY + frictionZ * velocityZ > 0) {
+                frictionX *= -1D;
+                frictionY *= -1D;
+                frictionZ *= -1D;
+            }
+
+            // Remove all friction components along the impulse vector
+            double frictionImpulseDot = frictionX * contactNormalX + frictionY * contactNormalY
+                + frictionZ * contactNormalZ;
+            frictionX -= contactNormalX * frictionImpulseDot;
+            frictionY -= contactNormalY * frictionImpulseDot;
+            frictionZ -= contactNormalZ * frictionImpulseDot;
+
+            double inertiaScalarAlongAxis = getInertiaAlongRotationAxis();
+            // The change in velocity vector
+            double initialVelocityX = linearMomentum.X * invMass;
+            double initialVelocityY = linearMomentum.Y * invMass;
+            double initialVelocityZ = linearMomentum.Z * invMass;
+            // Don't forget to multiply by delta t
+            double deltaVelocityScale = invMass * drag;
+            double deltaVelocityX = frictionX * deltaVelocityScale;
+            double deltaVelocityY = frictionY * deltaVelocityScale;
+            double deltaVelocityZ = frictionZ * deltaVelocityScale;
+
+            double initialVelocitySq = initialVelocityX * initialVelocityX
+                + initialVelocityY * initialVelocityY + initialVelocityZ * initialVelocityZ;
+            double A = initialVelocitySq;
+            double B = 2 * (initialVelocityX * deltaVelocityX + initialVelocityY * deltaVelocityY
+                + initialVelocityZ * deltaVelocityZ);
+            double C = deltaVelocityX * deltaVelocityX + deltaVelocityY * deltaVelocityY
+                + deltaVelocityZ * deltaVelocityZ;
+
+            // This might need to be 1 / inertiaScalarAlongAxis
+            double deltaAngularScale = drag / inertiaScalarAlongAxis;
+            double deltaAngularX = (inBodyY * frictionZ - frictionY * inBodyZ) * deltaAngularScale;
+            double deltaAngularY = (inBodyZ * frictionX - inBodyX * frictionZ) * deltaAngularScale;
+            double deltaAngularZ = (inBodyX * frictionY - frictionX * inBodyY) * deltaAngularScale;
+
+            double initialAngularSq = angularVelocity.lengthSq();
+            double D = initialAngularSq;
+            double E = 2 * (deltaAngularX * angularVelocity.X + deltaAngularY * angularVelocity.Y
+                + deltaAngularZ * angularVelocity.Z);
+            double F = deltaAngularX * deltaAngularX + deltaAngularY * deltaAngularY
+                + deltaAngularZ * deltaAngularZ;
+
+            // This is tied to PhysicsCalculations line 430
+            if (initialAngularSq < .05 && initialVelocitySq < .05) {
+                // Remove rotational friction if we are rotating slow enough
+                D = E = F = 0;
+            }
+
+            // The coefficients of energy as a function of energyScaleFactor in the form (A
+            // + B * k + c * k^2)
+            double firstCoefficient = A * mass + D * inertiaScalarAlongAxis;
+            double secondCoefficient = B * mass + E * inertiaScalarAlongAxis;
+            double thirdCoefficient = C * mass + F * inertiaScalarAlongAxis;
+
+            double scaleFactor = -secondCoefficient / (thirdCoefficient * 2);
+
+            if (!Double.isNaN(scaleFactor)) {
+                scaleFactor = Math.max(0, Math.min(scaleFactor, 1));
+                frictionX *= scaleFactor;
+                frictionY *= scaleFactor;
+                frictionZ *= scaleFactor;
+            }
+            // ===== Friction Scaling Code End =====
+
+            impulseX += frictionX;
+            impulseY += frictionY;
+            impulseZ += frictionZ;
+
+            linearMomentum.add(impulseX, impulseY, impulseZ);
+
+            // thirdCross = invMoi * (inBody x impulse)
+            crossX = inBodyY * impulseZ - impulseY * inBodyZ;
+            crossY = inBodyZ * impulseX - inBodyX * impulseZ;
+            crossZ = inBodyX * impulseY - impulseX * inBodyY;
+            angularVelocity.add(
+                crossX * invMoiTensor[0] + crossY * invMoiTensor[1] + crossZ * invMoiTensor[2],
+                crossX * invMoiTensor[3] + crossY * invMoiTensor[4] + crossZ * invMoiTensor[5],
+                crossX * invMoiTensor[6] + crossY * invMoiTensor[7] + crossZ * invMoiTensor[8]);
+        }
+    }
+
+    // Same as PhysicsCalculations.getInertiaAlongRotationAxis(), without creating a vector.
+    private double getInertiaAlongRotationAxis() {
+        double axisX = angularVelocity.X;
+        double axisY = angularVelocity.Y;
+        double axisZ = angularVelocity.Z;
+        double length = angularVelocity.length();
+        if (length > 1.0E-6D) {
+            axisX /= length;
+            axisY /= length;
+            axisZ /= length;
+        } else {
+            axisX = axisY = axisZ = 0;
+        }
+        double rotatedX = axisX * moiTensor[0] + axisY * moiTensor[1] + axisZ * moiTensor[2];
+        double rotatedY = axisX * moiTensor[3] + axisY * moiTensor[4] + axisZ * moiTensor[5];
+        double rotatedZ = axisX * moiTensor[6] + axisY * moiTensor[7] + axisZ * moiTensor[8];
+        return Math.sqrt(rotatedX * rotatedX + rotatedY * rotatedY + rotatedZ * rotatedZ);
+    }
+}
@@ -1,18 +1,48 @@
 package org.valkyrienskies.mod.common.physics.collision;
 
 import net.minecraft.block.state.IBlockState;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.physics.collision.polygons.PhysPolygonCollider;
+import org.valkyrienskies.mod.common.physics.collision.polygons.Polygon;
+import valkyrienwarfare.api.TransformType;
 
+/**
+ * Stores a collision between a block in the ship and a block in the world. Holders own their
+ * polygons and collider, so they can be pooled and reused by {@link #updateCollision} instead of
+ * allocating new collision objects for every block pair checked.
+ */
 public class CollisionInformationHolder {
 
+    protected final Polygon shipInWorld;
+    protected final Polygon worldPoly;
     protected final PhysPolygonCollider collider;
-    protected final int inWorldX, inWorldY, inWorldZ, inLocalX, inLocalY, inLocalZ;
-    protected final IBlockState inWorldState, inLocalState;
+    protected int inWorldX, inWorldY, inWorldZ, inLocalX, inLocalY, inLocalZ;
+    protected IBlockState inWorldState, inLocalState;
 
-    public CollisionInformationHolder(PhysPolygonCollider collider, int inWorldX, int inWorldY,
-        int inWorldZ, int inLocalX, int inLocalY, int inLocalZ, IBlockState inWorldState,
-        IBlockState inLocalState) {
-        this.collider = collider;
+    public CollisionInformationHolder() {
+        this.shipInWorld = new Polygon();
+        this.worldPoly = new Polygon();
+        this.collider = new PhysPolygonCollider();
+    }
+
+    /**
+     * Tests the ship block at inLocal against the world block at inWorld, and stores the result in
+     * this holder. Does not allocate anything.
+     *
+     * @param shipTransform The transform used to move the ship block into the world
+     * @param axes          The potential separating axes of the ship
+     * @return True if the two blocks are colliding, false if they're separated.
+     */
+    public boolean updateCollision(ShipTransform shipTransform, Vector[] axes, int inWorldX,
+        int inWorldY, int inWorldZ, int inLocalX, int inLocalY, int inLocalZ,
+        IBlockState inWorldState, IBlockState inLocalState) {
+        shipInWorld.setAABB(inLocalX, inLocalY, inLocalZ, inLocalX + 1, inLocalY + 1,
+            inLocalZ + 1);
+        shipInWorld.transform(shipTransform, TransformType.SUBSPACE_TO_GLOBAL);
+        worldPoly.setAABB(inWorldX, inWorldY, inWorldZ, inWorldX + 1, inWorldY + 1,
+            inWorldZ + 1);
+        collider.processData(shipInWorld, worldPoly, axes);
 
         this.inWorldX = inWorldX;
         this.inWorldY = inWorldY;
@@ -24,5 +54,10 @@ public class CollisionInformationHolder {
 
         this.inWorldState = inWorldState;
         this.inLocalState = inLocalState;
+        return !collider.seperated;
+    }
+
+    public PhysPolygonCollider getCollider() {
+        return collider;
     }
 }
@@ -0,0 +1,477 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.ChunkCache;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctree;
+import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctreeProvider;
+import org.valkyrienskies.mod.common.physmanagement.relocation.SpatialDetector;
+
+/**
+ * Keeps the set of solid world blocks inside the swept AABB of a ship, which are the potential hits
+ * of its collision tasks. When the AABB moves only the blocks entering or leaving it are touched,
+ * the blocks that stay inside it are never looked at again.
+ * <p>
+ * Blocks placed or broken inside the AABB must be passed to onWorldBlockChanged(), and are applied
+ * by the next update(). Chunks that weren't loaded when they entered the AABB are scanned once
+ * they are. Users must still check that the cached blocks are solid, since a block can change
+ * between update() calls.
+ */
+public class IncrementalCollisionCache {
+
+    // The most world block changes queued between updates, past that the next update() rebuilds.
+    public static final int MAX_QUEUED_BLOCK_CHANGES = 512;
+
+    // Hashes of the solid world blocks with respect to cacheOrigin, in no particular order.
+    private final TIntArrayList solidBlocks;
+    // The index of every hash in solidBlocks, so they can be removed without a search.
+    private final TIntIntMap solidBlockIndices;
+    // The chunk columns inside the bounds that weren't loaded when they were scanned.
+    private final TLongSet missingChunks;
+    private final ChunkCacheOctrees chunkCacheOctrees;
+    private BlockPos cacheOrigin;
+    private boolean hasBounds;
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+    // The world blocks changed since the last update(), written by onWorldBlockChanged().
+    private final Queue<BlockPos> changedBlocks;
+    private final AtomicInteger changedBlocksCount;
+    private volatile boolean tooManyChangedBlocks;
+    // {minX, minY, minZ, maxX, maxY, maxZ} of the blocks onWorldBlockChanged() queues, or null.
+    private volatile int[] watchedBounds;
+
+    public IncrementalCollisionCache() {
+        this.solidBlocks = new TIntArrayList();
+        this.solidBlockIndices = new TIntIntHashMap(16, .5F, -1, -1);
+        this.missingChunks = new TLongHashSet();
+        this.chunkCacheOctrees = new ChunkCacheOctrees();
+        this.cacheOrigin = null;
+        this.hasBounds = false;
+        this.changedBlocks = new ConcurrentLinkedQueue<>();
+        this.changedBlocksCount = new AtomicInteger();
+        this.tooManyChangedBlocks = false;
+        this.watchedBounds = null;
+    }
+
+    /**
+     * Moves the cached bounds to the given block bounds (inclusive), scanning only the blocks that
+     * entered them, then applies the world block changes queued since the last update.
+     */
+    public void update(ChunkCache cache, int newMinX, int newMinY, int newMinZ, int newMaxX,
+        int newMaxY, int newMaxZ) {
+        chunkCacheOctrees.cache = cache;
+        update(chunkCacheOctrees, newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+        chunkCacheOctrees.cache = null;
+    }
+
+    /**
+     * Same as update(ChunkCache, ...), but with the world blocks coming from octrees.
+     */
+    public void update(OctreeSource octrees, int newMinX, int newMinY, int newMinZ, int newMaxX,
+        int newMaxY, int newMaxZ) {
+        int overlapMinX = Math.max(newMinX, minX);
+        int overlapMinY = Math.max(newMinY, minY);
+        int overlapMinZ = Math.max(newMinZ, minZ);
+        int overlapMaxX = Math.min(newMaxX, maxX);
+        int overlapMaxY = Math.min(newMaxY, maxY);
+        int overlapMaxZ = Math.min(newMaxZ, maxZ);
+        if (!hasBounds || tooManyChangedBlocks || !isInHashRange(newMinX, newMinZ)
+            || !isInHashRange(newMaxX, newMaxZ) || overlapMinX > overlapMaxX
+            || overlapMinY > overlapMaxY || overlapMinZ > overlapMaxZ) {
+            rebuild(octrees, newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+            return;
+        }
+        // Changes in the blocks about to be scanned must be queued too, so watch both boxes.
+        watchedBounds = new int[]{Math.min(minX, newMinX), Math.min(minY, newMinY),
+            Math.min(minZ, newMinZ), Math.max(maxX, newMaxX), Math.max(maxY, newMaxY),
+            Math.max(maxZ, newMaxZ)};
+
+        // Remove the blocks that left the bounds, which is the old box minus the overlap.
+        updateSlabs(octrees, false, minX, minY, minZ, maxX, maxY, maxZ, overlapMinX, overlapMinY,
+            overlapMinZ, overlapMaxX, overlapMaxY, overlapMaxZ);
+        scanLoadedChunks(octrees, newMinX, newMinZ, newMaxX, newMaxZ, overlapMinX, overlapMinY,
+            overlapMinZ, overlapMaxX, overlapMaxY, overlapMaxZ);
+        // Then add the blocks that entered the bounds, which is the new box minus the overlap.
+        updateSlabs(octrees, true, newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ,
+            overlapMinX, overlapMinY, overlapMinZ, overlapMaxX, overlapMaxY, overlapMaxZ);
+        setBounds(newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+
+        // Blocks changed while scanning stay queued for the next update.
+        for (int i = changedBlocksCount.get(); i > 0; i--) {
+            BlockPos changed = changedBlocks.poll();
+            if (changed == null) {
+                break;
+            }
+            changedBlocksCount.decrementAndGet();
+            applyBlockChange(octrees, changed.getX(), changed.getY(), changed.getZ());
+        }
+    }
+
+    /**
+     * Queues a world block change for the next update(), if the block is inside the cached bounds.
+     * Can be called from any thread.
+     */
+    public void onWorldBlockChanged(BlockPos pos) {
+        int[] bounds = watchedBounds;
+        if (bounds == null || pos.getX() < bounds[0] || pos.getY() < bounds[1]
+            || pos.getZ() < bounds[2] || pos.getX() > bounds[3] || pos.getY() > bounds[4]
+            || pos.getZ() > bounds[5]) {
+            return;
+        }
+        if (changedBlocksCount.incrementAndGet() > MAX_QUEUED_BLOCK_CHANGES) {
+            changedBlocksCount.decrementAndGet();
+            tooManyChangedBlocks = true;
+            return;
+        }
+        changedBlocks.add(pos.toImmutable());
+    }
+
+    /**
+     * Forces the next update() to rescan all of its bounds.
+     */
+    public void invalidate() {
+        hasBounds = false;
+    }
+
+    /**
+     * Forgets every cached block, for when the ship has no potential hits at all.
+     */
+    public void clear() {
+        solidBlocks.resetQuick();
+        solidBlockIndices.clear();
+        missingChunks.clear();
+        hasBounds = false;
+    }
+
+    private void rebuild(OctreeSource octrees, int newMinX, int newMinY, int newMinZ,
+        int newMaxX, int newMaxY, int newMaxZ) {
+        // The scan below sees every change made before it, so the queued ones can be dropped.
+        watchedBounds = new int[]{newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ};
+        tooManyChangedBlocks = false;
+        for (int i = changedBlocksCount.get(); i > 0; i--) {
+            if (changedBlocks.poll() == null) {
+                break;
+            }
+            changedBlocksCount.decrementAndGet();
+        }
+        solidBlocks.resetQuick();
+        solidBlockIndices.clear();
+        missingChunks.clear();
+        cacheOrigin = new BlockPos((newMinX + newMaxX) / 2, 0, (newMinZ + newMaxZ) / 2);
+        addSolidBlocks(octrees, newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+        setBounds(newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+    }
+
+    private void setBounds(int newMinX, int newMinY, int newMinZ, int newMaxX, int newMaxY,
+        int newMaxZ) {
+        this.minX = newMinX;
+        this.minY = newMinY;
+        this.minZ = newMinZ;
+        this.maxX = newMaxX;
+        this.maxY = newMaxY;
+        this.maxZ = newMaxZ;
+        this.hasBounds = true;
+    }
+
+    // Adds or removes the blocks in the box minus the overlap box, split into at most 6 slabs.
+    // The overlap box must be inside the box.
+    private void updateSlabs(OctreeSource octrees, boolean add, int boxMinX, int boxMinY,
+        int boxMinZ, int boxMaxX, int boxMaxY, int boxMaxZ, int overlapMinX, int overlapMinY,
+        int overlapMinZ, int overlapMaxX, int overlapMaxY, int overlapMaxZ) {
+        updateRegion(octrees, add, boxMinX, boxMinY, boxMinZ, overlapMinX - 1, boxMaxY, boxMaxZ);
+        updateRegion(octrees, add, overlapMaxX + 1, boxMinY, boxMinZ, boxMaxX, boxMaxY, boxMaxZ);
+        updateRegion(octrees, add, overlapMinX, boxMinY, boxMinZ, overlapMaxX, overlapMinY - 1,
+            boxMaxZ);
+        updateRegion(octrees, add, overlapMinX, overlapMaxY + 1, boxMinZ, overlapMaxX, boxMaxY,
+            boxMaxZ);
+        updateRegion(octrees, add, overlapMinX, overlapMinY, boxMinZ, overlapMaxX, overlapMaxY,
+            overlapMinZ - 1);
+        updateRegion(octrees, add, overlapMinX, overlapMinY, overlapMaxZ + 1, overlapMaxX,
+            overlapMaxY, boxMaxZ);
+    }
+
+    private void updateRegion(OctreeSource octrees, boolean add, int regionMinX, int regionMinY,
+        int regionMinZ, int regionMaxX, int regionMaxY, int regionMaxZ) {
+        if (add) {
+            addSolidBlocks(octrees, regionMinX, regionMinY, regionMinZ, regionMaxX, regionMaxY,
+                regionMaxZ);
+        } else {
+            removeBlocks(regionMinX, regionMinY, regionMinZ, regionMaxX, regionMaxY, regionMaxZ);
+        }
+    }
+
+    // Scans the part of the overlap box in the missing chunks that have been loaded since, and
+    // forgets the missing chunks that are outside of the new bounds.
+    private void scanLoadedChunks(OctreeSource octrees, int newMinX, int newMinZ, int newMaxX,
+        int newMaxZ, int overlapMinX, int overlapMinY, int overlapMinZ, int overlapMaxX,
+        int overlapMaxY, int overlapMaxZ) {
+        TLongIterator iterator = missingChunks.iterator();
+        while (iterator.hasNext()) {
+            long chunkKey = iterator.next();
+            // ChunkPos.asLong() keeps x in the low 32 bits and z in the high 32 bits.
+            int chunkX = (int) chunkKey;
+            int chunkZ = (int) (chunkKey >> 32);
+            if ((chunkX << 4) + 15 < newMinX || chunkX << 4 > newMaxX
+                || (chunkZ << 4) + 15 < newMinZ || chunkZ << 4 > newMaxZ) {
+                iterator.remove();
+            } else if (octrees.isChunkLoaded(chunkX, chunkZ)) {
+                iterator.remove();
+                addSolidBlocks(octrees, Math.max(chunkX << 4, overlapMinX), overlapMinY,
+                    Math.max(chunkZ << 4, overlapMinZ), Math.min((chunkX << 4) + 15, overlapMaxX),
+                    overlapMaxY, Math.min((chunkZ << 4) + 15, overlapMaxZ));
+            }
+        }
+    }
+
+    // Adds or removes the block at xyz to match the world, if it's inside the cached bounds.
+    private void applyBlockChange(OctreeSource octrees, int x, int y, int z) {
+        if (x < minX || y < minY || z < minZ || x > maxX || y > maxY || z > maxZ || y < 0
+            || y > 255) {
+            return;
+        }
+        IBitOctree octree = octrees.getOctree(x >> 4, y >> 4, z >> 4);
+        int hash = SpatialDetector.getHashWithRespectTo(x, y, z, cacheOrigin);
+        if (octree != null && octree.get(x & 15, y & 15, z & 15)) {
+            addBlock(hash);
+        } else {
+            removeBlock(hash);
+        }
+    }
+
+    // The hashes can only store positions within maxRangeHalved of the origin.
+    private boolean isInHashRange(int x, int z) {
+        return cacheOrigin != null
+            && Math.abs(x - cacheOrigin.getX()) < SpatialDetector.maxRangeHalved
+            && Math.abs(z - cacheOrigin.getZ()) < SpatialDetector.maxRangeHalved;
+    }
+
+    private void addBlock(int hash) {
+        if (solidBlockIndices.putIfAbsent(hash, solidBlocks.size())
+            == solidBlockIndices.getNoEntryValue()) {
+            solidBlocks.add(hash);
+        }
+    }
+
+    // Moves the last block into the place of the removed one, so nothing has to be shifted.
+    private void removeBlock(int hash) {
+        int index = solidBlockIndices.remove(hash);
+        if (index == solidBlockIndices.getNoEntryValue()) {
+            return;
+        }
+        int last = solidBlocks.removeAt(solidBlocks.size() - 1);
+        if (index < solidBlocks.size()) {
+            solidBlocks.set(index, last);
+            solidBlockIndices.put(last, index);
+        }
+    }
+
+    // Removes every block in the given bounds (inclusive) from the set, solid or not.
+    private void removeBlocks(int regionMinX, int regionMinY, int regionMinZ, int regionMaxX,
+        int regionMaxY, int regionMaxZ) {
+        regionMinY = Math.max(regionMinY, 0);
+        regionMaxY = Math.min(regionMaxY, 255);
+        if (solidBlocks.isEmpty()) {
+            return;
+        }
+        for (int x = regionMinX; x <= regionMaxX; x++) {
+            for (int z = regionMinZ; z <= regionMaxZ; z++) {
+                for (int y = regionMinY; y <= regionMaxY; y++) {
+                    removeBlock(SpatialDetector.getHashWithRespectTo(x, y, z, cacheOrigin));
+                }
+            }
+        }
+    }
+
+    // Adds every solid block in the given bounds (inclusive) to the set.
+    private void addSolidBlocks(OctreeSource octrees, int regionMinX, int regionMinY,
+        int regionMinZ, int regionMaxX, int regionMaxY, int regionMaxZ) {
+        regionMinY = Math.max(regionMinY, 0);
+        regionMaxY = Math.min(regionMaxY, 255);
+        if (regionMinX > regionMaxX || regionMinY > regionMaxY || regionMinZ > regionMaxZ) {
+            return;
+        }
+        for (int chunkX = regionMinX >> 4; chunkX <= regionMaxX >> 4; chunkX++) {
+            for (int chunkZ = regionMinZ >> 4; chunkZ <= regionMaxZ >> 4; chunkZ++) {
+                if (!octrees.isChunkLoaded(chunkX, chunkZ)) {
+                    missingChunks.add(ChunkPos.asLong(chunkX, chunkZ));
+                    continue;
+                }
+                int minXToCheck = Math.max(chunkX << 4, regionMinX);
+                int maxXToCheck = Math.min((chunkX << 4) + 15, regionMaxX);
+                int minZToCheck = Math.max(chunkZ << 4, regionMinZ);
+                int maxZToCheck = Math.min((chunkZ << 4) + 15, regionMaxZ);
+                for (int storageY = regionMinY >> 4; storageY <= regionMaxY >> 4; storageY++) {
+                    IBitOctree octree = octrees.getOctree(chunkX, storageY, chunkZ);
+                    if (octree == null) {
+                        continue;
+                    }
+                    int minYToCheck = Math.max(storageY << 4, regionMinY);
+                    int maxYToCheck = Math.min((storageY << 4) + 15, regionMaxY);
+                    addSolidBlocksInStorage(octree, chunkX << 4, storageY << 4, chunkZ << 4,
+                        minXToCheck & 15, minYToCheck & 15, minZToCheck & 15, maxXToCheck & 15,
+                        maxYToCheck & 15, maxZToCheck & 15);
+                }
+            }
+        }
+    }
+
+    // Walks down the octree so that the empty parts of the storage get skipped. The bounds are
+    // relative to the storage.
+    private void addSolidBlocksInStorage(IBitOctree octree, int storageX, int storageY,
+        int storageZ, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        // Only visit the set nodes of each level, using masks of the set children.
+        for (int levelThreeMask = octree.getLevelThreeMask(); levelThreeMask != 0;
+            levelThreeMask &= levelThreeMask - 1) {
+            int levelThree = Integer.numberOfTrailingZeros(levelThreeMask);
+            int levelThreeIndex = octree.getOctreeLevelThreeIndex(levelThree);
+            int levelThreeX = (levelThree % 2) * 8;
+            int levelThreeY = ((levelThree >> 1) % 2) * 8;
+            int levelThreeZ = ((levelThree >> 2) % 2) * 8;
+            if (!overlaps(levelThreeX, 8, minX, maxX) || !overlaps(levelThreeY, 8, minY, maxY)
+                || !overlaps(levelThreeZ, 8, minZ, maxZ)) {
+                continue;
+            }
+            for (int levelTwoMask = octree.getLevelTwoMask(levelThreeIndex); levelTwoMask != 0;
+                levelTwoMask &= levelTwoMask - 1) {
+                int levelTwo = Integer.numberOfTrailingZeros(levelTwoMask);
+                int levelTwoIndex = octree.getOctreeLevelTwoIndex(levelThreeIndex, levelTwo);
+                int levelTwoX = levelThreeX + (levelTwo % 2) * 4;
+                int levelTwoY = levelThreeY + ((levelTwo >> 1) % 2) * 4;
+                int levelTwoZ = levelThreeZ + ((levelTwo >> 2) % 2) * 4;
+                if (!overlaps(levelTwoX, 4, minX, maxX) || !overlaps(levelTwoY, 4, minY, maxY)
+                    || !overlaps(levelTwoZ, 4, minZ, maxZ)) {
+                    continue;
+                }
+                for (int levelOneMask = octree.getLevelOneMask(levelTwoIndex); levelOneMask != 0;
+                    levelOneMask &= levelOneMask - 1) {
+                    int levelOne = Integer.numberOfTrailingZeros(levelOneMask);
+                    int baseX = levelTwoX + (levelOne % 2) * 2;
+                    int baseY = levelTwoY + ((levelOne >> 1) % 2) * 2;
+                    int baseZ = levelTwoZ + ((levelOne >> 2) % 2) * 2;
+                    for (int x = Math.max(baseX, minX); x <= Math.min(baseX + 1, maxX); x++) {
+                        for (int y = Math.max(baseY, minY); y <= Math.min(baseY + 1, maxY); y++) {
+                            for (int z = Math.max(baseZ, minZ); z <= Math.min(baseZ + 1, maxZ);
+                                z++) {
+                                if (octree.get(x, y, z)) {
+                                    addBlock(SpatialDetector.getHashWithRespectTo(storageX + x,
+                                        storageY + y, storageZ + z, cacheOrigin));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean overlaps(int start, int length, int min, int max) {
+        return start <= max && start + length - 1 >= min;
+    }
+
+    // The chunk in the cache at the given chunk coordinates, or null if the cache doesn't have it.
+    private static Chunk getChunk(ChunkCache cache, int chunkX, int chunkZ) {
+        int arrayChunkX = chunkX - cache.chunkX;
+        int arrayChunkZ = chunkZ - cache.chunkZ;
+        if (arrayChunkX < 0 || arrayChunkZ < 0 || arrayChunkX > cache.chunkArray.length - 1
+            || arrayChunkZ > cache.chunkArray[0].length - 1) {
+            return null;
+        }
+        return cache.chunkArray[arrayChunkX][arrayChunkZ];
+    }
+
+    /**
+     * Moves count randomly picked blocks to the start of the cache, for when only the first few
+     * blocks get looked at.
+     */
+    public void shuffleFirst(Random random, int count) {
+        int size = solidBlocks.size();
+        for (int i = 0; i < Math.min(count, size); i++) {
+            int other = i + random.nextInt(size - i);
+            int hash = solidBlocks.get(i);
+            int otherHash = solidBlocks.get(other);
+            solidBlocks.set(i, otherHash);
+            solidBlocks.set(other, hash);
+            solidBlockIndices.put(otherHash, i);
+            solidBlockIndices.put(hash, other);
+        }
+    }
+
+    /**
+     * Removes a block until it enters the bounds again or onWorldBlockChanged() is called for it.
+     */
+    public void remove(int hash) {
+        removeBlock(hash);
+    }
+
+    /**
+     * @return The hash of a cached solid block, use setPos() to convert it to a position.
+     */
+    public int get(int index) {
+        return solidBlocks.get(index);
+    }
+
+    public void setPos(int hash, MutableBlockPos toSet) {
+        SpatialDetector.setPosWithRespectTo(hash, cacheOrigin, toSet);
+    }
+
+    /**
+     * @return The position the hashes are relative to, which only changes when the cache gets
+     * rebuilt.
+     */
+    public BlockPos getOrigin() {
+        return cacheOrigin;
+    }
+
+    public int size() {
+        return solidBlocks.size();
+    }
+
+    /**
+     * Gives the octrees of the 16x16x16 sections of the world.
+     */
+    public interface OctreeSource {
+
+        /**
+         * @return The octree of the section, or null if it's empty or not loaded.
+         */
+        IBitOctree getOctree(int chunkX, int storageY, int chunkZ);
+
+        /**
+         * @return False if the chunk column isn't available yet, it will then be scanned again
+         * by a later update().
+         */
+        default boolean isChunkLoaded(int chunkX, int chunkZ) {
+            return true;
+        }
+    }
+
+    // Reused by update(ChunkCache, ...) so that it doesn't create a new source every update.
+    private static class ChunkCacheOctrees implements OctreeSource {
+
+        private ChunkCache cache;
+
+        @Override
+        public IBitOctree getOctree(int chunkX, int storageY, int chunkZ) {
+            Chunk chunk = getChunk(cache, chunkX, chunkZ);
+            ExtendedBlockStorage storage = chunk == null ? null : chunk.storageArrays[storageY];
+            return storage == null ? null : ((IBitOctreeProvider) storage.data).getBitOctree();
+        }
+
+        @Override
+        public boolean isChunkLoaded(int chunkX, int chunkZ) {
+            return getChunk(cache, chunkX, chunkZ) != null;
+        }
+    }
+}
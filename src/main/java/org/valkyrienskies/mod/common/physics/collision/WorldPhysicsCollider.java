@@ -1,18 +1,10 @@
 package org.valkyrienskies.mod.common.physics.collision;
 
-import gnu.trove.TCollections;
-import gnu.trove.iterator.TIntIterator;
-import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
 import java.util.Random;
-import java.util.function.Consumer;
 import net.minecraft.block.state.IBlockState;
-import net.minecraft.util.Tuple;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.BlockPos.MutableBlockPos;
@@ -21,17 +13,14 @@ import net.minecraft.world.ChunkCache;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
-import org.valkyrienskies.mod.common.math.RotationMatrices;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
 import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.multithreaded.PhysicsShipTransform;
 import org.valkyrienskies.mod.common.physics.PhysicsCalculations;
 import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctree;
 import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctreeProvider;
+import org.valkyrienskies.mod.common.physics.collision.optimization.IShipCollisionSource;
 import org.valkyrienskies.mod.common.physics.collision.optimization.ShipCollisionTask;
-import org.valkyrienskies.mod.common.physics.collision.polygons.PhysCollisionObject;
-import org.valkyrienskies.mod.common.physics.collision.polygons.PhysPolygonCollider;
-import org.valkyrienskies.mod.common.physics.collision.polygons.Polygon;
-import org.valkyrienskies.mod.common.physics.collision.polygons.PolygonCollisionPointFinder;
 import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
 import org.valkyrienskies.mod.common.physmanagement.relocation.SpatialDetector;
 import valkyrienwarfare.api.TransformType;
@@ -42,7 +31,7 @@ import valkyrienwarfare.api.TransformType;
  *
  * @author thebest108
  */
-public class WorldPhysicsCollider {
+public class WorldPhysicsCollider implements IShipCollisionSource {
 
     // Used to expand the AABB used to check for potential collisions; helps prevent
     // ships ghosting through blocks
@@ -59,97 +48,101 @@ public class WorldPhysicsCollider {
     public static final double COEFFICIENT_OF_RESTITUTION = .52D;
     // The radius which the algorithm will search for a nearby block to collide with
     public static final double COLLISION_RANGE_CHECK = .65D;
-    // If true, will use the octree assisted algorithm for finding collisions,
-    // (Approx. O(log(n)^3)).
-    // If false then this class uses the much slower iterative approach O(n^3).
-    public static final boolean USE_OCTREE_COLLISION = true;
     // How likely it is for the collision tasks to shuffle every physics tick
     // ie. (.50D => 50% chance to shuffle, .30D => 30% chance, etc.)
     public static final double COLLISION_TASK_SHUFFLE_FREQUENCY = .50D;
     // Greater coefficients result in more friction
     public static final double KINETIC_FRICTION_COEFFICIENT = .15D;
+    // The most potential hits checked for collisions every physics tick. Since the hits get
+    // shuffled, the rest of them are checked over the following ticks.
+    public static final int MAX_HITS_CHECKED_PER_TICK = 46;
     private final MutableBlockPos mutablePos;
     private final Random rand;
-    private final Collection<ShipCollisionTask> tasks;
+    private final List<ShipCollisionTask> tasks;
     private final PhysicsCalculations calculator;
     private final World worldObj;
     private final PhysicsObject parent;
-    private final TIntList cachedPotentialHits;
     private final TIntArrayList cachedHitsToRemove;
+    // The solid world blocks in the swept AABB of the ship, which are its potential hits.
+    private final IncrementalCollisionCache incrementalCache;
+    private final CollisionImpulseSolver impulseSolver;
+    // Used by handleLikelyCollision(), which tests block pairs one at a time.
+    private final CollisionInformationHolder likelyCollisionTester;
+    private final CollisionContactBuffer likelyCollisionContacts;
     // Ensures this always updates the first tick after creation
     private double ticksSinceCacheUpdate;
-    private boolean updateCollisionTasksCache;
-    private BlockPos centerPotentialHit;
+    // The number of tasks at the start of tasks that cover the current potential hits.
+    private int activeTaskCount;
 
     public WorldPhysicsCollider(PhysicsCalculations calculations) {
         this.calculator = calculations;
         this.parent = calculations.getParent();
         this.worldObj = parent.world();
-        this.cachedPotentialHits = TCollections.synchronizedList(new TIntArrayList());
         this.cachedHitsToRemove = new TIntArrayList();
+        this.incrementalCache = new IncrementalCollisionCache();
+        this.impulseSolver = new CollisionImpulseSolver();
+        this.likelyCollisionTester = new CollisionInformationHolder();
+        this.likelyCollisionContacts = new CollisionContactBuffer(1);
         this.rand = new Random();
         this.mutablePos = new MutableBlockPos();
         this.tasks = new ArrayList<ShipCollisionTask>();
         this.ticksSinceCacheUpdate = 25D;
-        this.updateCollisionTasksCache = true;
-        this.centerPotentialHit = null;
+        this.activeTaskCount = 0;
     }
 
     public void tickUpdatingTheCollisionCache() {
         // Multiply by 20 to convert seconds (physTickSpeed) into ticks
         ticksSinceCacheUpdate += calculator.getPhysicsTimeDeltaPerPhysTick();
         for (int i = 0; i < cachedHitsToRemove.size(); i++) {
-            cachedPotentialHits.remove(cachedHitsToRemove.get(i));
+            incrementalCache.remove(cachedHitsToRemove.get(i));
         }
         cachedHitsToRemove.resetQuick();
         if (ticksSinceCacheUpdate > CACHE_UPDATE_FREQUENCY || parent.isNeedsCollisionCacheUpdate()) {
             updatePotentialCollisionCache();
-            updateCollisionTasksCache = true;
         }
         if (Math.random() < COLLISION_TASK_SHUFFLE_FREQUENCY) {
-            cachedPotentialHits.shuffle(rand);
+            // Only the hits at the start get checked, so only those need shuffling.
+            incrementalCache.shuffleFirst(rand, MAX_HITS_CHECKED_PER_TICK);
         }
     }
 
-    public void splitIntoCollisionTasks(List<ShipCollisionTask> toAdd) {
-        if (updateCollisionTasksCache) {
-            tasks.clear();
-            int index = 0;
-            int size = cachedPotentialHits.size();
-            while (index < size) {
-                ShipCollisionTask task = new ShipCollisionTask(this, index);
-                index += ShipCollisionTask.MAX_TASKS_TO_CHECK;
-                tasks.add(task);
+    /**
+     * Splits the potential hits checked this tick into tasks of taskSize hits each. Done every
+     * tick since both the number of potential hits and the task size can change every tick.
+     */
+    public void splitIntoCollisionTasks(List<ShipCollisionTask> toAdd, int taskSize) {
+        // Reuse the tasks we already have, they keep their pooled collision holders around.
+        activeTaskCount = 0;
+        int index = 0;
+        int size = getPotentialHitsCheckedPerTick();
+        while (index < size) {
+            if (activeTaskCount == tasks.size()) {
+                tasks.add(new ShipCollisionTask(this, index, index + taskSize));
+            } else {
+                tasks.get(activeTaskCount).setTaskRange(index, index + taskSize);
             }
-            updateCollisionTasksCache = false;
+            index += taskSize;
+            activeTaskCount++;
         }
-        toAdd.addAll(tasks);
+        toAdd.addAll(tasks.subList(0, activeTaskCount));
     }
 
     public void processCollisionTask(ShipCollisionTask task) {
-        MutableBlockPos inWorldPos = new MutableBlockPos();
-        MutableBlockPos inLocalPos = new MutableBlockPos();
-
-        Iterator<CollisionInformationHolder> collisionIterator = task
-            .getCollisionInformationIterator();
-
-        while (collisionIterator.hasNext()) {
-            CollisionInformationHolder info = collisionIterator.next();
-            inWorldPos.setPos(info.inWorldX, info.inWorldY, info.inWorldZ);
-            inLocalPos.setPos(info.inLocalX, info.inLocalY, info.inLocalZ);
-            handleActualCollision(info.collider, inWorldPos, inLocalPos, info.inWorldState,
-                info.inLocalState);
-        }
-
-        /*
-         * for (CollisionInformationHolder info :
-         * task.getCollisionInformationGenerated()) { inWorldPos.setPos(info.inWorldX,
-         * info.inWorldY, info.inWorldZ); inLocalPos.setPos(info.inLocalX,
-         * info.inLocalY, info.inLocalZ); handleActualCollision(info.collider,
-         * inWorldPos, inLocalPos, info.inWorldState, info.inLocalState); }
-         */
+        applyCollisionImpulses(task.getContacts());
+        task.clearCollisionInformation();
+    }
 
-        task.getCollisionInformationGenerated().clear();
+    // Sends the contacts through the impulse solver, which directly adds the result to the ship
+    // velocities.
+    private void applyCollisionImpulses(CollisionContactBuffer contacts) {
+        if (contacts.size() == 0) {
+            return;
+        }
+        impulseSolver.setRigidBody(calculator.linearMomentum, calculator.angularVelocity,
+            calculator.getPhysMOITensor(), calculator.getPhysInvMOITensor(), calculator.getMass(),
+            calculator.getDragForPhysTick(), parent.getWrapperEntity().posX,
+            parent.getWrapperEntity().posY, parent.getWrapperEntity().posZ);
+        impulseSolver.applyImpulses(contacts);
     }
 
     // Runs through the cache ArrayList, checking each possible BlockPos for SOLID
@@ -162,11 +155,9 @@ public class WorldPhysicsCollider {
         final MutableBlockPos localCollisionPos = new MutableBlockPos();
         final org.valkyrienskies.mod.common.math.Vector inWorld = new org.valkyrienskies.mod.common.math.Vector();
 
-        TIntIterator cachedHitsIterator = cachedPotentialHits.iterator();
-        while (cachedHitsIterator.hasNext()) {
+        for (int i = 0; i < incrementalCache.size(); i++) {
             // Converts the int to a mutablePos
-            SpatialDetector
-                .setPosWithRespectTo(cachedHitsIterator.next(), centerPotentialHit, mutablePos);
+            incrementalCache.setPos(incrementalCache.get(i), mutablePos);
 
             inWorld.X = mutablePos.getX() + .5;
             inWorld.Y = mutablePos.getY() + .5;
@@ -249,7 +240,7 @@ public class WorldPhysicsCollider {
                                                                 mutablePos.getX(),
                                                                 mutablePos.getY(),
                                                                 mutablePos.getZ(),
-                                                                centerPotentialHit);
+                                                                getCenterPotentialHit());
                                                         cachedHitsToRemove.add(positionRemoved);
                                                         break entireLoop;
                                                     }
@@ -271,198 +262,27 @@ public class WorldPhysicsCollider {
     private boolean handleLikelyCollision(BlockPos inWorldPos, BlockPos inLocalPos,
         IBlockState inWorldState,
         IBlockState inLocalState) {
-        // System.out.println("Handling a likely collision");
-        AxisAlignedBB inLocalBB = new AxisAlignedBB(inLocalPos.getX(), inLocalPos.getY(),
-            inLocalPos.getZ(),
-            inLocalPos.getX() + 1, inLocalPos.getY() + 1, inLocalPos.getZ() + 1);
-        AxisAlignedBB inGlobalBB = new AxisAlignedBB(inWorldPos.getX(), inWorldPos.getY(),
-            inWorldPos.getZ(),
-            inWorldPos.getX() + 1, inWorldPos.getY() + 1, inWorldPos.getZ() + 1);
-
         // This changes the box bounding box to the real bounding box, not sure if this
         // is better or worse for this mod
         // List<AxisAlignedBB> colBB = worldObj.getCollisionBoxes(inLocalBB);
         // inLocalBB = colBB.get(0);
 
-        Polygon shipInWorld = new Polygon(inLocalBB,
+        boolean colliding = likelyCollisionTester.updateCollision(
             parent.getShipTransformationManager().getCurrentPhysicsTransform(),
-            TransformType.SUBSPACE_TO_GLOBAL);
-        Polygon worldPoly = new Polygon(inGlobalBB);
-        PhysPolygonCollider collider = new PhysPolygonCollider(shipInWorld, worldPoly,
-            parent.getShipTransformationManager().normals);
-        if (!collider.seperated) {
-            return handleActualCollision(collider, inWorldPos, inLocalPos, inWorldState,
-                inLocalState);
+            parent.getShipTransformationManager().normals, inWorldPos.getX(), inWorldPos.getY(),
+            inWorldPos.getZ(), inLocalPos.getX(), inLocalPos.getY(), inLocalPos.getZ(),
+            inWorldState, inLocalState);
+        if (colliding) {
+            likelyCollisionContacts.addContact(likelyCollisionTester.getCollider(),
+                inWorldPos.getX(), inWorldPos.getY(), inWorldPos.getZ(), inLocalPos.getX(),
+                inLocalPos.getY(), inLocalPos.getZ(), inWorldState, inLocalState);
+            applyCollisionImpulses(likelyCollisionContacts);
+            likelyCollisionContacts.clear();
         }
 
         return false;
     }
 
-    // Takes the collision data along all axes generated prior, and creates the
-    // ideal value that is to be followed
-    private boolean handleActualCollision(PhysPolygonCollider collider, BlockPos inWorldPos,
-        BlockPos inLocalPos,
-        IBlockState inWorldState, IBlockState inLocalState) {
-        PhysCollisionObject toCollideWith = collider.collisions[1];
-
-        if (toCollideWith.penetrationDistance > AXIS_TOLERANCE
-            || toCollideWith.penetrationDistance < -AXIS_TOLERANCE) {
-            toCollideWith = collider.collisions[collider.minDistanceIndex];
-        }
-
-        org.valkyrienskies.mod.common.math.Vector positionInBody = collider.entity.getCenter();
-        positionInBody.subtract(parent.getWrapperEntity().posX, parent.getWrapperEntity().posY,
-            parent.getWrapperEntity().posZ);
-
-        double impulseApplied = 1D;
-
-        org.valkyrienskies.mod.common.math.Vector[] collisionPoints = PolygonCollisionPointFinder
-            .getPointsOfCollisionForPolygons(toCollideWith);
-
-        impulseApplied /= collisionPoints.length;
-
-        for (org.valkyrienskies.mod.common.math.Vector collisionPos : collisionPoints) {
-            org.valkyrienskies.mod.common.math.Vector inBody = collisionPos.getSubtraction(
-                new org.valkyrienskies.mod.common.math.Vector(parent.getWrapperEntity().posX,
-                    parent.getWrapperEntity().posY, parent.getWrapperEntity().posZ));
-            inBody.multiply(-1D);
-            org.valkyrienskies.mod.common.math.Vector momentumAtPoint = calculator
-                .getVelocityAtPoint(inBody);
-            org.valkyrienskies.mod.common.math.Vector axis = toCollideWith.collision_normal;
-            org.valkyrienskies.mod.common.math.Vector offsetVector = toCollideWith.getResponse();
-            calculateCollisionImpulseForce(inBody, momentumAtPoint, axis, offsetVector, false,
-                false, impulseApplied);
-        }
-
-        return false;
-    }
-
-    // Finally, the end of all this spaghetti code! This step takes all of the math
-    // generated before, and it directly adds the result to Ship velocities
-    private void calculateCollisionImpulseForce(org.valkyrienskies.mod.common.math.Vector inBody,
-        org.valkyrienskies.mod.common.math.Vector velocityAtPointOfCollision,
-        org.valkyrienskies.mod.common.math.Vector axis,
-        org.valkyrienskies.mod.common.math.Vector offsetVector, boolean didBlockBreakInShip,
-        boolean didBlockBreakInWorld, double impulseApplied) {
-        org.valkyrienskies.mod.common.math.Vector firstCross = inBody.cross(axis);
-        RotationMatrices.applyTransform3by3(calculator.getPhysInvMOITensor(), firstCross);
-
-        org.valkyrienskies.mod.common.math.Vector secondCross = firstCross.cross(inBody);
-
-        double impulseMagnitude = -velocityAtPointOfCollision.dot(axis)
-            / (calculator.getInvMass() + secondCross.dot(axis));
-
-        // Below this speed our collision coefficient of restitution is zero.
-        final double slopR = .5D;
-        double collisionSpeed = Math.abs(velocityAtPointOfCollision.dot(axis));
-        if (collisionSpeed > slopR) {
-            impulseMagnitude *= (1 + COEFFICIENT_OF_RESTITUTION);
-        } else {
-            // TODO: Need to reduce this value by some factor
-            // impulseMagnitude *= .5D;
-        }
-
-        org.valkyrienskies.mod.common.math.Vector collisionImpulseForce = new org.valkyrienskies.mod.common.math.Vector(
-            axis, impulseMagnitude);
-
-        // This is just an optimized way to add this force as quickly as possible.
-        // Added collisionImpulseForce.dot(inBody) > 0 to force all collision to move in
-        // the direction towards the in body vector.
-        if (collisionImpulseForce.dot(offsetVector) < 0 && collisionImpulseForce.dot(inBody) < 0) {
-            // collisionImpulseForce.multiply(1.8D);
-            double collisionVelocity = velocityAtPointOfCollision.dot(axis);
-
-            addFrictionToNormalForce(velocityAtPointOfCollision, collisionImpulseForce, inBody);
-            calculator.linearMomentum.add(collisionImpulseForce);
-            org.valkyrienskies.mod.common.math.Vector thirdCross = inBody
-                .cross(collisionImpulseForce);
-
-            RotationMatrices.applyTransform3by3(calculator.getPhysInvMOITensor(), thirdCross);
-            calculator.angularVelocity.add(thirdCross);
-        }
-    }
-
-    // Applies the friction force generated by the collision.
-    // The magnitude of this vector must be adjusted to minimize energy
-    private void addFrictionToNormalForce(org.valkyrienskies.mod.common.math.Vector momentumAtPoint,
-        org.valkyrienskies.mod.common.math.Vector impulseVector,
-        org.valkyrienskies.mod.common.math.Vector inBody) {
-        org.valkyrienskies.mod.common.math.Vector contactNormal = new org.valkyrienskies.mod.common.math.Vector(
-            impulseVector);
-        contactNormal.normalize();
-
-        org.valkyrienskies.mod.common.math.Vector frictionVector = new org.valkyrienskies.mod.common.math.Vector(
-            momentumAtPoint);
-        frictionVector.normalize();
-        frictionVector.multiply(impulseVector.length() * KINETIC_FRICTION_COEFFICIENT);
-
-        if (frictionVector.dot(momentumAtPoint) > 0) {
-            frictionVector.multiply(-1D);
-        }
-
-        // Remove all friction components along the impulse vector
-        double frictionImpulseDot = frictionVector.dot(contactNormal);
-        org.valkyrienskies.mod.common.math.Vector toRemove = contactNormal
-            .getProduct(frictionImpulseDot);
-        frictionVector.subtract(toRemove);
-
-        double inertiaScalarAlongAxis = parent.getPhysicsProcessor().getInertiaAlongRotationAxis();
-        // The change in velocity vector
-        org.valkyrienskies.mod.common.math.Vector initialVelocity = new org.valkyrienskies.mod.common.math.Vector(
-            parent.getPhysicsProcessor().linearMomentum,
-            parent.getPhysicsProcessor().getInvMass());
-        // Don't forget to multiply by delta t
-        org.valkyrienskies.mod.common.math.Vector deltaVelocity = new org.valkyrienskies.mod.common.math.Vector(
-            frictionVector,
-            parent.getPhysicsProcessor().getInvMass() * parent.getPhysicsProcessor()
-                .getDragForPhysTick());
-
-        double A = initialVelocity.lengthSq();
-        double B = 2 * initialVelocity.dot(deltaVelocity);
-        double C = deltaVelocity.lengthSq();
-
-        org.valkyrienskies.mod.common.math.Vector initialAngularVelocity = parent
-            .getPhysicsProcessor().angularVelocity;
-        org.valkyrienskies.mod.common.math.Vector deltaAngularVelocity = inBody
-            .cross(frictionVector);
-        // This might need to be 1 / inertiaScalarAlongAxis
-        deltaAngularVelocity
-            .multiply(parent.getPhysicsProcessor().getDragForPhysTick() / inertiaScalarAlongAxis);
-
-        double D = initialAngularVelocity.lengthSq();
-        double E = 2 * deltaAngularVelocity.dot(initialAngularVelocity);
-        double F = deltaAngularVelocity.lengthSq();
-
-        // This is tied to PhysicsCalculations line 430
-        if (initialAngularVelocity.lengthSq() < .05 && initialVelocity.lengthSq() < .05) {
-            // Remove rotational friction if we are rotating slow enough
-            D = E = F = 0;
-        }
-
-        // The coefficients of energy as a function of energyScaleFactor in the form (A
-        // + B * k + c * k^2)
-        double firstCoefficient =
-            A * parent.getPhysicsProcessor().getMass() + D * inertiaScalarAlongAxis;
-        double secondCoefficient =
-            B * parent.getPhysicsProcessor().getMass() + E * inertiaScalarAlongAxis;
-        double thirdCoefficient =
-            C * parent.getPhysicsProcessor().getMass() + F * inertiaScalarAlongAxis;
-
-        double scaleFactor = -secondCoefficient / (thirdCoefficient * 2);
-
-        if (new Double(scaleFactor).isNaN()) {
-            scaleFactor = 0;
-        } else {
-            scaleFactor = Math.max(0, Math.min(scaleFactor, 1));
-            frictionVector.multiply(scaleFactor);
-        }
-
-        // System.out.println(scaleFactor);
-        // ===== Friction Scaling Code End =====
-
-        impulseVector.add(frictionVector);
-    }
-
     // TODO: The greatest physics lag starts here.
     private void updatePotentialCollisionCache() {
         PhysicsShipTransform currentPhysicsTransform = (PhysicsShipTransform) parent
@@ -481,7 +301,6 @@ public class WorldPhysicsCollider {
                 calculator.linearMomentum.Z * calculator.getInvMass() * calculator
                     .getPhysicsTimeDeltaPerPhysTick()
                     * 5);
-        final AxisAlignedBB shipBB = currentPhysicsTransform.getShipBoundingBox().grow(3);
         ticksSinceCacheUpdate = 0D;
         // This is being used to occasionally offset the collision cache update, in the
         // hopes this will prevent multiple ships from all updating
@@ -489,12 +308,9 @@ public class WorldPhysicsCollider {
         if (Math.random() > .5) {
             ticksSinceCacheUpdate -= .05D;
         }
-        int oldSize = cachedPotentialHits.size();
-        // Resets the potential hits array in O(1) time! Isn't that something.
-        // cachedPotentialHits.resetQuick();
-        cachedPotentialHits.clear();
         // Ship is outside of world blockSpace, just skip this all togvalkyrium
         if (collisionBB.maxY < 0 || collisionBB.minY > 255) {
+            incrementalCache.clear();
             return;
         }
 
@@ -504,24 +320,16 @@ public class WorldPhysicsCollider {
             collisionBB.minZ);
         BlockPos max = new BlockPos(collisionBB.maxX, Math.min(collisionBB.maxY, 255),
             collisionBB.maxZ);
-        centerPotentialHit = new BlockPos((min.getX() + max.getX()) / 2D,
-            (min.getY() + max.getY()) / 2D,
-            (min.getZ() + max.getZ()) / 2D);
 
         ChunkCache cache = parent.getCachedSurroundingChunks();
 
         if (cache == null) {
             System.err.println(
                 "VS Cached Surrounding Chunks was null! This is going to cause catastophric terrible events!!");
+            incrementalCache.clear();
             return;
         }
 
-        int chunkMinX = min.getX() >> 4;
-        int chunkMaxX = (max.getX() >> 4) + 1;
-        int chunkMinZ = min.getZ() >> 4;
-        int chunkMaxZ = (max.getZ() >> 4) + 1;
-        // long startTime = System.nanoTime();
-
         int minX = min.getX();
         int minY = min.getY();
         int minZ = min.getZ();
@@ -529,475 +337,68 @@ public class WorldPhysicsCollider {
         int maxY = max.getY();
         int maxZ = max.getZ();
 
-        // More multithreading!
-        if (parent.getBlockPositions().size() > 100) {
-            List<Tuple<Integer, Integer>> tasks = new ArrayList<Tuple<Integer, Integer>>();
-
-            for (int chunkX = chunkMinX; chunkX < chunkMaxX; chunkX++) {
-                for (int chunkZ = chunkMinZ; chunkZ < chunkMaxZ; chunkZ++) {
-                    tasks.add(new Tuple<Integer, Integer>(chunkX, chunkZ));
-                }
-            }
-
-            Consumer<Tuple<Integer, Integer>> consumer = i -> { // i is a Tuple<Integer, Integer>
-                // updateCollisionCacheParrallel(cache, cachedPotentialHits, i.getFirst(),
-                // i.getSecond(), minX, minY, minZ, maxX, maxY, maxZ);
-                updateCollisionCacheSequential(cache, i.getFirst(), i.getSecond(), minX, minY, minZ,
-                    maxX, maxY, maxZ,
-                    shipBB);
-            };
-            try {
-                tasks.parallelStream().forEach(consumer);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        } else {
-            // Cast to double to avoid overflow errors
-            double size = ((double) (chunkMaxX - chunkMinX)) * ((double) (chunkMaxZ - chunkMinZ));
-            if (size > 300000) {
-                // Sanity check; don't execute the rest of the code because we'll just freeze the physics thread.
-                return;
-            }
-            // TODO: VS thread freezes here.
-            for (int chunkX = chunkMinX; chunkX < chunkMaxX; chunkX++) {
-                for (int chunkZ = chunkMinZ; chunkZ < chunkMaxZ; chunkZ++) {
-                    updateCollisionCacheSequential(cache, chunkX, chunkZ, minX, minY, minZ, maxX,
-                        maxY, maxZ, shipBB);
-                }
-            }
+        if (parent.isNeedsCollisionCacheUpdate()) {
+            incrementalCache.invalidate();
         }
+        incrementalCache.update(cache, minX, minY, minZ, maxX, maxY, maxZ);
     }
 
-    private void updateCollisionCacheParrallel(ChunkCache cache, Queue<Integer> dataQueue,
-        int chunkX, int chunkZ,
-        int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
-        int arrayChunkX = chunkX - cache.chunkX;
-        int arrayChunkZ = chunkZ - cache.chunkZ;
-
-        if (cache.chunkArray[arrayChunkX][arrayChunkZ] != null && !(arrayChunkX < 0
-            || arrayChunkZ < 0
-            || arrayChunkX > cache.chunkArray.length - 1
-            || arrayChunkZ > cache.chunkArray[0].length - 1)) {
-
-            org.valkyrienskies.mod.common.math.Vector temp1 = new org.valkyrienskies.mod.common.math.Vector();
-            org.valkyrienskies.mod.common.math.Vector temp2 = new org.valkyrienskies.mod.common.math.Vector();
-            org.valkyrienskies.mod.common.math.Vector temp3 = new org.valkyrienskies.mod.common.math.Vector();
-
-            Chunk chunk = cache.chunkArray[arrayChunkX][arrayChunkZ];
-            for (int storageY = minY >> 4; storageY <= maxY >> 4; storageY++) {
-                ExtendedBlockStorage extendedblockstorage = chunk.storageArrays[storageY];
-                if (extendedblockstorage != null) {
-                    int minStorageX = chunkX << 4;
-                    int minStorageY = storageY << 4;
-                    int minStorageZ = chunkZ << 4;
-
-                    int maxStorageX = minStorageX + 16;
-                    int maxStorageY = minStorageY + 16;
-                    int maxStorageZ = minStorageZ + 16;
-
-                    IBitOctreeProvider provider = (IBitOctreeProvider) extendedblockstorage.data;
-                    IBitOctree octree = provider.getBitOctree();
-
-                    if (USE_OCTREE_COLLISION) {
-                        for (int levelThree = 0; levelThree < 8; levelThree++) {
-                            int levelThreeIndex = octree.getOctreeLevelThreeIndex(levelThree);
-                            if (octree.getAtIndex(levelThreeIndex)) {
-                                for (int levelTwo = 0; levelTwo < 8; levelTwo++) {
-                                    int levelTwoIndex = octree
-                                        .getOctreeLevelTwoIndex(levelThreeIndex, levelTwo);
-                                    if (octree.getAtIndex(levelTwoIndex)) {
-                                        for (int levelOne = 0; levelOne < 8; levelOne++) {
-                                            int levelOneIndex = octree
-                                                .getOctreeLevelOneIndex(levelTwoIndex, levelOne);
-                                            if (octree.getAtIndex(levelOneIndex)) {
-
-                                                int baseX =
-                                                    ((levelThree % 2) * 8) + ((levelTwo % 2) * 4)
-                                                        + ((levelOne % 2) * 2);
-                                                int baseY = (((levelThree >> 1) % 2) * 8) + (
-                                                    ((levelTwo >> 1) % 2) * 4)
-                                                    + (((levelOne >> 1) % 2) * 2);
-                                                int baseZ = (((levelThree >> 2) % 2) * 8) + (
-                                                    ((levelTwo >> 2) % 2) * 4)
-                                                    + (((levelOne >> 2) % 2) * 2);
-
-                                                int x = baseX + minStorageX;
-                                                int y = baseY + minStorageY;
-                                                int z = baseZ + minStorageZ;
-
-                                                dataQueue.add(0);
-
-                                                if (x >= minX && x <= maxX && y >= minY && y <= maxY
-                                                    && z >= minZ
-                                                    && z <= maxZ && false) {
-                                                    checkForCollision(x, y, z, extendedblockstorage,
-                                                        octree, temp1,
-                                                        temp2, temp3, dataQueue);
-                                                    checkForCollision(x, y, z + 1,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, dataQueue);
-                                                    checkForCollision(x, y + 1, z,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, dataQueue);
-                                                    checkForCollision(x, y + 1, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, dataQueue);
-                                                    checkForCollision(x + 1, y, z,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, dataQueue);
-                                                    checkForCollision(x + 1, y, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, dataQueue);
-                                                    checkForCollision(x + 1, y + 1, z,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, dataQueue);
-                                                    checkForCollision(x + 1, y + 1, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, dataQueue);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    } else {
-                        for (int x = minStorageX; x < maxStorageX; x++) {
-                            for (int y = minStorageY; y < maxStorageY; y++) {
-                                for (int z = minStorageZ; z < maxStorageZ; z++) {
-                                    checkForCollision(x, y, z, extendedblockstorage, octree, temp1,
-                                        temp2, temp3,
-                                        dataQueue);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    /**
+     * Lets the collision cache know that a world block changed. Can be called from any thread.
+     */
+    public void onWorldBlockChanged(BlockPos pos) {
+        incrementalCache.onWorldBlockChanged(pos);
     }
 
-    private void updateCollisionCacheSequential(ChunkCache cache, int chunkX, int chunkZ, int minX,
-        int minY, int minZ,
-        int maxX, int maxY, int maxZ, AxisAlignedBB shipBB) {
-        int arrayChunkX = chunkX - cache.chunkX;
-        int arrayChunkZ = chunkZ - cache.chunkZ;
-
-        if (!(arrayChunkX < 0 || arrayChunkZ < 0 || arrayChunkX > cache.chunkArray.length - 1
-            || arrayChunkZ > cache.chunkArray[0].length - 1)
-            && cache.chunkArray[arrayChunkX][arrayChunkZ] != null) {
-
-            org.valkyrienskies.mod.common.math.Vector temp1 = new org.valkyrienskies.mod.common.math.Vector();
-            org.valkyrienskies.mod.common.math.Vector temp2 = new org.valkyrienskies.mod.common.math.Vector();
-            org.valkyrienskies.mod.common.math.Vector temp3 = new org.valkyrienskies.mod.common.math.Vector();
-
-            Chunk chunk = cache.chunkArray[arrayChunkX][arrayChunkZ];
-            for (int storageY = minY >> 4; storageY <= maxY >> 4; storageY++) {
-                ExtendedBlockStorage extendedblockstorage = chunk.storageArrays[storageY];
-                if (extendedblockstorage != null) {
-                    int minStorageX = chunkX << 4;
-                    int minStorageY = storageY << 4;
-                    int minStorageZ = chunkZ << 4;
-
-                    int maxStorageX = minStorageX + 16;
-                    int maxStorageY = minStorageY + 16;
-                    int maxStorageZ = minStorageZ + 16;
-
-                    IBitOctreeProvider provider = (IBitOctreeProvider) extendedblockstorage.data;
-                    IBitOctree octree = provider.getBitOctree();
-
-                    if (USE_OCTREE_COLLISION) {
-                        for (int levelThree = 0; levelThree < 8; levelThree++) {
-                            int levelThreeIndex = octree.getOctreeLevelThreeIndex(levelThree);
-                            if (octree.getAtIndex(levelThreeIndex)) {
-                                for (int levelTwo = 0; levelTwo < 8; levelTwo++) {
-                                    int levelTwoIndex = octree
-                                        .getOctreeLevelTwoIndex(levelThreeIndex, levelTwo);
-                                    if (octree.getAtIndex(levelTwoIndex)) {
-                                        for (int levelOne = 0; levelOne < 8; levelOne++) {
-                                            int levelOneIndex = octree
-                                                .getOctreeLevelOneIndex(levelTwoIndex, levelOne);
-                                            if (octree.getAtIndex(levelOneIndex)) {
-
-                                                int baseX =
-                                                    ((levelThree % 2) * 8) + ((levelTwo % 2) * 4)
-                                                        + ((levelOne % 2) * 2);
-                                                int baseY = (((levelThree >> 1) % 2) * 8) + (
-                                                    ((levelTwo >> 1) % 2) * 4)
-                                                    + (((levelOne >> 1) % 2) * 2);
-                                                int baseZ = (((levelThree >> 2) % 2) * 8) + (
-                                                    ((levelTwo >> 2) % 2) * 4)
-                                                    + (((levelOne >> 2) % 2) * 2);
-
-                                                int x = baseX + minStorageX;
-                                                int y = baseY + minStorageY;
-                                                int z = baseZ + minStorageZ;
-
-                                                if (x >= minX && x <= maxX && y >= minY && y <= maxY
-                                                    && z >= minZ
-                                                    && z <= maxZ) {
-                                                    checkForCollision(x, y, z, extendedblockstorage,
-                                                        octree, temp1,
-                                                        temp2, temp3, shipBB);
-                                                    checkForCollision(x, y, z + 1,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, shipBB);
-                                                    checkForCollision(x, y + 1, z,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, shipBB);
-                                                    checkForCollision(x, y + 1, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, shipBB);
-                                                    checkForCollision(x + 1, y, z,
-                                                        extendedblockstorage, octree, temp1,
-                                                        temp2, temp3, shipBB);
-                                                    checkForCollision(x + 1, y, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, shipBB);
-                                                    checkForCollision(x + 1, y + 1, z,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, shipBB);
-                                                    checkForCollision(x + 1, y + 1, z + 1,
-                                                        extendedblockstorage, octree,
-                                                        temp1, temp2, temp3, shipBB);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    } else {
-                        for (int x = minStorageX; x < maxStorageX; x++) {
-                            for (int y = minStorageY; y < maxStorageY; y++) {
-                                for (int z = minStorageZ; z < maxStorageZ; z++) {
-                                    checkForCollision(x, y, z, extendedblockstorage, octree, temp1,
-                                        temp2, temp3,
-                                        shipBB);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    @Override
+    public BlockPos getCenterPotentialHit() {
+        return incrementalCache.getOrigin();
     }
 
-    private void checkForCollision(int x, int y, int z, ExtendedBlockStorage storage,
-        IBitOctree octree, org.valkyrienskies.mod.common.math.Vector inLocal,
-        org.valkyrienskies.mod.common.math.Vector inBody,
-        org.valkyrienskies.mod.common.math.Vector speedInBody, AxisAlignedBB shipBB) {
-        if (octree.get(x & 15, y & 15, z & 15)) {
-            inLocal.X = x + .5D;
-            inLocal.Y = y + .5D;
-            inLocal.Z = z + .5D;
-            // TODO: Something
-            // parent.coordTransform.fromGlobalToLocal(inLocal);
-            if (inLocal.X > shipBB.minX && inLocal.X < shipBB.maxX && inLocal.Y > shipBB.minY
-                && inLocal.Y < shipBB.maxY
-                && inLocal.Z > shipBB.minZ && inLocal.Z < shipBB.maxZ) {
-                parent.getShipTransformationManager().getCurrentPhysicsTransform()
-                    .transform(inLocal,
-                        TransformType.GLOBAL_TO_SUBSPACE);
-
-                inBody.setSubtraction(inLocal, parent.getCenterCoord());
-                // parent.physicsProcessor.setVectorToVelocityAtPoint(inBody, speedInBody);
-                // speedInBody.multiply(-parent.physicsProcessor.getPhysicsTimeDeltaPerGameTick());
-
-                // TODO: This isnt ideal, but we do gain a lot of performance.
-                speedInBody.zero();
-
-                // double RANGE_CHECK = 1;
-
-                int minX, minY, minZ, maxX, maxY, maxZ;
-                if (speedInBody.X > 0) {
-                    minX = MathHelper.floor(inLocal.X - RANGE_CHECK);
-                    maxX = MathHelper.floor(inLocal.X + RANGE_CHECK + speedInBody.X);
-                } else {
-                    minX = MathHelper.floor(inLocal.X - RANGE_CHECK + speedInBody.X);
-                    maxX = MathHelper.floor(inLocal.X + RANGE_CHECK);
-                }
-
-                if (speedInBody.Y > 0) {
-                    minY = MathHelper.floor(inLocal.Y - RANGE_CHECK);
-                    maxY = MathHelper.floor(inLocal.Y + RANGE_CHECK + speedInBody.Y);
-                } else {
-                    minY = MathHelper.floor(inLocal.Y - RANGE_CHECK + speedInBody.Y);
-                    maxY = MathHelper.floor(inLocal.Y + RANGE_CHECK);
-                }
-
-                if (speedInBody.Z > 0) {
-                    minZ = MathHelper.floor(inLocal.Z - RANGE_CHECK);
-                    maxZ = MathHelper.floor(inLocal.Z + RANGE_CHECK + speedInBody.Z);
-                } else {
-                    minZ = MathHelper.floor(inLocal.Z - RANGE_CHECK + speedInBody.Z);
-                    maxZ = MathHelper.floor(inLocal.Z + RANGE_CHECK);
-                }
-
-                minY = Math.min(255, Math.max(minY, 0));
-                maxY = Math.min(255, Math.max(maxY, 0));
-
-                // int localX = MathHelper.floor(inLocal.X);
-                // int localY = MathHelper.floor(inLocal.Y);
-                // int localZ = MathHelper.floor(inLocal.Z);
-
-                // tooTiredToName(localX, localY, localZ, x, y, z);
-                // if (false)
-                // maxX = Math.min(maxX, minX << 4);
-                // maxZ = Math.min(maxZ, minZ << 4);
-
-                if (parent.ownsChunk(minX >> 4, minZ >> 4) && parent
-                    .ownsChunk(maxX >> 4, maxZ >> 4)) {
-
-                    Chunk chunkIn00 = parent.getChunkAt(minX >> 4, minZ >> 4);
-                    Chunk chunkIn01 = parent.getChunkAt(minX >> 4, maxZ >> 4);
-                    Chunk chunkIn10 = parent.getChunkAt(maxX >> 4, minZ >> 4);
-                    Chunk chunkIn11 = parent.getChunkAt(maxX >> 4, maxZ >> 4);
-
-                    breakThisLoop:
-                    for (int localX = minX; localX < maxX; localX++) {
-                        for (int localZ = minZ; localZ < maxZ; localZ++) {
-                            Chunk theChunk = null;
-                            if (localX >> 4 == minX >> 4) {
-                                if (localZ >> 4 == minZ >> 4) {
-                                    theChunk = chunkIn00;
-                                } else {
-                                    theChunk = chunkIn01;
-                                }
-                            } else {
-                                if (localZ >> 4 == minZ >> 4) {
-                                    theChunk = chunkIn10;
-                                } else {
-                                    theChunk = chunkIn11;
-                                }
-                            }
-                            for (int localY = minY; localY < maxY; localY++) {
-                                boolean result = checkForCollisionFast(theChunk, localX, localY,
-                                    localZ, x, y, z);
-                                if (result) {
-                                    break breakThisLoop;
-                                }
-
-                                /*
-                                 * if (false) // TODO: This code isn't thread safe. try { boolean result =
-                                 * tooTiredToName(localX, localY, localZ, x, y, z); if (result) { break
-                                 * breakThisLoop; } } catch (Exception e) { e.printStackTrace(); }
-                                 */
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    @Override
+    public int getCachedPotentialHit(int offset) {
+        return incrementalCache.get(offset);
     }
 
-    private boolean checkForCollisionFast(final Chunk chunk, final int localX, final int localY,
-        final int localZ,
-        final int x, final int y, final int z) {
-        if (chunk.storageArrays[localY >> 4] != null) {
-            IBitOctreeProvider provider = (IBitOctreeProvider) chunk.storageArrays[localY >> 4]
-                .getData();
-            IBitOctree octreeInLocal = provider.getBitOctree();
-            if (octreeInLocal.get(localX & 15, localY & 15, localZ & 15)) {
-                int hash = SpatialDetector.getHashWithRespectTo(x, y, z, centerPotentialHit);
-                // Sometimes we end up adding to the hits array in multiple threads at once,
-                // crashing the physics.
-                try {
-                    cachedPotentialHits.add(hash);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                return true;
-                // break outermostloop;
-            }
-            // }
-        }
-        return false;
+    @Override
+    public int getCachedPotentialHitSize() {
+        return incrementalCache.size();
     }
 
-    private void checkForCollision(int x, int y, int z, ExtendedBlockStorage storage,
-        IBitOctree octree, org.valkyrienskies.mod.common.math.Vector inLocal,
-        org.valkyrienskies.mod.common.math.Vector inBody, Vector speedInBody,
-        Collection<Integer> collection) {
-        if (octree.get(x & 15, y & 15, z & 15)) {
-            inLocal.X = x + .5D;
-            inLocal.Y = y + .5D;
-            inLocal.Z = z + .5D;
-            // TODO: Something
-            // parent.coordTransform.fromGlobalToLocal(inLocal);
-            parent.getShipTransformationManager().getCurrentPhysicsTransform().transform(inLocal,
-                TransformType.GLOBAL_TO_SUBSPACE);
-
-            inBody.setSubtraction(inLocal, parent.getCenterCoord());
-            // parent.physicsProcessor.setVectorToVelocityAtPoint(inBody, speedInBody);
-            // speedInBody.multiply(-parent.physicsProcessor.getPhysicsTimeDeltaPerGameTick());
-
-            // TODO: This isnt ideal, but we do gain a lot of performance.
-            speedInBody.zero();
-
-            double RANGE_CHECK = 1.8;
-
-            int minX, minY, minZ, maxX, maxY, maxZ;
-            if (speedInBody.X > 0) {
-                minX = MathHelper.floor(inLocal.X - RANGE_CHECK);
-                maxX = MathHelper.floor(inLocal.X + RANGE_CHECK + speedInBody.X);
-            } else {
-                minX = MathHelper.floor(inLocal.X - RANGE_CHECK + speedInBody.X);
-                maxX = MathHelper.floor(inLocal.X + RANGE_CHECK);
-            }
-
-            if (speedInBody.Y > 0) {
-                minY = MathHelper.floor(inLocal.Y - RANGE_CHECK);
-                maxY = MathHelper.floor(inLocal.Y + RANGE_CHECK + speedInBody.Y);
-            } else {
-                minY = MathHelper.floor(inLocal.Y - RANGE_CHECK + speedInBody.Y);
-                maxY = MathHelper.floor(inLocal.Y + RANGE_CHECK);
-            }
+    /**
+     * @return The number of potential hits splitIntoCollisionTasks() makes tasks for.
+     */
+    public int getPotentialHitsCheckedPerTick() {
+        return Math.min(incrementalCache.size(), MAX_HITS_CHECKED_PER_TICK);
+    }
 
-            if (speedInBody.Z > 0) {
-                minZ = MathHelper.floor(inLocal.Z - RANGE_CHECK);
-                maxZ = MathHelper.floor(inLocal.Z + RANGE_CHECK + speedInBody.Z);
-            } else {
-                minZ = MathHelper.floor(inLocal.Z - RANGE_CHECK + speedInBody.Z);
-                maxZ = MathHelper.floor(inLocal.Z + RANGE_CHECK);
-            }
+    @Override
+    public IBlockState getWorldBlockState(BlockPos pos) {
+        return parent.getCachedSurroundingChunks().getBlockState(pos);
+    }
 
-            minY = Math.min(255, Math.max(minY, 0));
-
-            outermostloop:
-            for (int localX = minX; localX < maxX; localX++) {
-                for (int localZ = minZ; localZ < maxZ; localZ++) {
-                    for (int localY = minY; localY < maxY; localY++) {
-                        if (parent.ownsChunk(localX >> 4, localZ >> 4)) {
-                            Chunk chunkIn = parent.getChunkAt(localX >> 4, localZ >> 4);
-                            if (localY >> 4 < 16 && chunkIn.storageArrays[localY >> 4] != null) {
-                                IBitOctreeProvider provider = (IBitOctreeProvider) chunkIn.storageArrays[
-                                    localY >> 4].getData();
-                                IBitOctree octreeInLocal = provider.getBitOctree();
-                                if (octreeInLocal.get(localX & 15, localY & 15, localZ & 15)) {
-                                    int hash = SpatialDetector
-                                        .getHashWithRespectTo(x, y, z, centerPotentialHit);
-                                    collection.add(hash);
-                                    break outermostloop;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    @Override
+    public ShipTransform getCollisionTransform() {
+        return parent.getShipTransformationManager().getCurrentPhysicsTransform();
     }
 
-    public BlockPos getCenterPotentialHit() {
-        return centerPotentialHit;
+    @Override
+    public Vector[] getCollisionNormals() {
+        return parent.getShipTransformationManager().normals;
     }
 
-    public int getCachedPotentialHit(int offset) {
-        return cachedPotentialHits.get(offset);
+    @Override
+    public IBitOctree getShipOctree(int x, int y, int z) {
+        ExtendedBlockStorage storage = parent.getChunkAt(x >> 4, z >> 4).storageArrays[y >> 4];
+        if (storage == null) {
+            return null;
+        }
+        return ((IBitOctreeProvider) storage.data).getBitOctree();
     }
 
-    public int getCachedPotentialHitSize() {
-        return cachedPotentialHits.size();
+    @Override
+    public IBlockState getShipBlockState(int x, int y, int z) {
+        return parent.getChunkAt(x >> 4, z >> 4).getBlockState(x, y, z);
     }
 
     public PhysicsObject getParent() {
@@ -0,0 +1,132 @@
+package org.valkyrienskies.mod.common.physics.collision.meshing;
+
+import gnu.trove.set.hash.TIntHashSet;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Counts the voxels on every x, y and z plane of the field, so the bounds only move when a plane
+ * at the edge becomes empty or a voxel is added outside of them. makeVoxelFieldAABB() is constant
+ * time. Removing the last voxel of an edge plane scans inwards for the next non-empty plane, which
+ * is at most the width of the field and usually just a step or two.
+ * <p>
+ * Do not serialize.
+ */
+public class CountingVoxelFieldAABBMaker implements IVoxelFieldAABBMaker {
+
+    private static final int HORIZONTAL_BITS = 10;
+    private static final int Y_BITS = 8;
+    private final BlockPos centerPos;
+    // The voxels in local coordinates, packed by pack().
+    private final TIntHashSet voxels;
+    // The number of voxels on every plane, indexed by local coordinate - MIN.
+    private final int[] xCounts, yCounts, zCounts;
+    // Inclusive bounds in local coordinates, only meaningful when there are voxels.
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+
+    public CountingVoxelFieldAABBMaker(int x, int z) {
+        this.centerPos = new BlockPos(x, 0, z);
+        this.voxels = new TIntHashSet();
+        this.xCounts = new int[MAX_X - MIN_X + 1];
+        this.yCounts = new int[MAX_Y - MIN_Y + 1];
+        this.zCounts = new int[MAX_Z - MIN_Z + 1];
+    }
+
+    @Override
+    public AxisAlignedBB makeVoxelFieldAABB() {
+        if (voxels.isEmpty()) {
+            return null;
+        }
+        return new AxisAlignedBB(minX + centerPos.getX(), minY + centerPos.getY(),
+            minZ + centerPos.getZ(), maxX + centerPos.getX(), maxY + centerPos.getY(),
+            maxZ + centerPos.getZ());
+    }
+
+    @Override
+    public boolean addVoxel(int x, int y, int z) {
+        // Put xyz into local coordinates.
+        x -= centerPos.getX();
+        y -= centerPos.getY();
+        z -= centerPos.getZ();
+
+        assertValidInputs(x, y, z);
+
+        boolean wasEmpty = voxels.isEmpty();
+        if (!voxels.add(pack(x, y, z))) {
+            return false;
+        }
+        xCounts[x - MIN_X]++;
+        yCounts[y - MIN_Y]++;
+        zCounts[z - MIN_Z]++;
+        if (wasEmpty) {
+            minX = maxX = x;
+            minY = maxY = y;
+            minZ = maxZ = z;
+        } else {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean removeVoxel(int x, int y, int z) {
+        // Put xyz into local coordinates.
+        x -= centerPos.getX();
+        y -= centerPos.getY();
+        z -= centerPos.getZ();
+
+        assertValidInputs(x, y, z);
+
+        if (!voxels.remove(pack(x, y, z))) {
+            return false;
+        }
+        xCounts[x - MIN_X]--;
+        yCounts[y - MIN_Y]--;
+        zCounts[z - MIN_Z]--;
+        if (voxels.isEmpty()) {
+            return true;
+        }
+        // Every other plane between the bounds could be empty, but the ones on them can't be.
+        while (xCounts[minX - MIN_X] == 0) {
+            minX++;
+        }
+        while (xCounts[maxX - MIN_X] == 0) {
+            maxX--;
+        }
+        while (yCounts[minY - MIN_Y] == 0) {
+            minY++;
+        }
+        while (yCounts[maxY - MIN_Y] == 0) {
+            maxY--;
+        }
+        while (zCounts[minZ - MIN_Z] == 0) {
+            minZ++;
+        }
+        while (zCounts[maxZ - MIN_Z] == 0) {
+            maxZ--;
+        }
+        return true;
+    }
+
+    @Override
+    public BlockPos getFieldCenter() {
+        return centerPos;
+    }
+
+    private static int pack(int x, int y, int z) {
+        return (x - MIN_X) | (y - MIN_Y) << HORIZONTAL_BITS
+            | (z - MIN_Z) << (HORIZONTAL_BITS + Y_BITS);
+    }
+
+    private void assertValidInputs(int x, int y, int z) throws IllegalArgumentException {
+        if (x < MIN_X || x > MAX_X || y < MIN_Y || y > MAX_Y || z < MIN_Z || z > MAX_Z) {
+            throw new IllegalArgumentException(
+                x + ":" + y + ":" + z + " is out of range from " + getFieldCenter());
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package org.valkyrienskies.mod.common.physics.collision.meshing;
+
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MAX_X;
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MAX_Y;
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MAX_Z;
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MIN_X;
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MIN_Y;
+import static org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker.MIN_Z;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * The convex hull of the corners of every voxel in a field, over the same range as an
+ * IVoxelFieldAABBMaker. Transforming the hull vertices of a rotated ship gives a much tighter box
+ * than transforming the corners of its local AABB, since the hull follows the ship's shape.
+ * <p>
+ * The hull of a set of blocks is the hull of the top and bottom blocks of every column, so only
+ * those are kept track of. The hull is rebuilt with quickhull the next time it is asked for, but
+ * only if a change could have moved it: adding a block inside the hull or removing one that isn't
+ * on a hull vertex doesn't. All the geometry is in exact integer math, so rebuilding never fails
+ * on the many coplanar corners of block shapes.
+ * <p>
+ * Thread safe, every method is synchronized.
+ */
+public class VoxelFieldConvexHull {
+
+    // Corners go up to MAX + 1, so the packed coordinates need one more bit than blocks.
+    private static final int HORIZONTAL_BITS = 11;
+    private static final int HORIZONTAL_MASK = (1 << HORIZONTAL_BITS) - 1;
+    private static final int Y_BITS = 9;
+    private static final int Y_MASK = (1 << Y_BITS) - 1;
+    private final BlockPos centerPos;
+    // The y values of the voxels in every x, z column, as a bitset of MAX_Y - MIN_Y + 1 bits.
+    private final TIntObjectHashMap<long[]> columns;
+    // The packed corners of the current hull, and the planes of its faces as nx, ny, nz, d.
+    private final TIntHashSet hullVertices;
+    private long[] hullPlanes;
+    private int voxelCount;
+    private boolean isHullDirty;
+
+    public VoxelFieldConvexHull(int x, int z) {
+        this.centerPos = new BlockPos(x, 0, z);
+        this.columns = new TIntObjectHashMap<>();
+        this.hullVertices = new TIntHashSet();
+        this.hullPlanes = new long[0];
+        this.voxelCount = 0;
+        this.isHullDirty = false;
+    }
+
+    /**
+     * @return True if a voxel didn't already exist at xyz, false otherwise.
+     */
+    public synchronized boolean addVoxel(int x, int y, int z) throws IllegalArgumentException {
+        // Put xyz into local coordinates.
+        x -= centerPos.getX();
+        y -= centerPos.getY();
+        z -= centerPos.getZ();
+
+        assertValidInputs(x, y, z);
+
+        int columnKey = packColumn(x, z);
+        long[] column = columns.get(columnKey);
+        if (column == null) {
+            column = new long[(MAX_Y - MIN_Y + 64) >> 6];
+            columns.put(columnKey, column);
+        }
+        int bit = y - MIN_Y;
+        if ((column[bit >> 6] & (1L << bit)) != 0) {
+            return false;
+        }
+        column[bit >> 6] |= 1L << bit;
+        voxelCount++;
+        if (!isHullDirty && !isInsideHull(x, y, z)) {
+            isHullDirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * @return True if a voxel existed at xyz, false otherwise.
+     */
+    public synchronized boolean removeVoxel(int x, int y, int z) throws IllegalArgumentException {
+        // Put xyz into local coordinates.
+        x -= centerPos.getX();
+        y -= centerPos.getY();
+        z -= centerPos.getZ();
+
+        assertValidInputs(x, y, z);
+
+        int columnKey = packColumn(x, z);
+        long[] column = columns.get(columnKey);
+        int bit = y - MIN_Y;
+        if (column == null || (column[bit >> 6] & (1L << bit)) == 0) {
+            return false;
+        }
+        column[bit >> 6] &= ~(1L << bit);
+        voxelCount--;
+        if (isColumnEmpty(column)) {
+            columns.remove(columnKey);
+        }
+        if (!isHullDirty && isOnHullVertex(x, y, z)) {
+            isHullDirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * @return The hull vertices in world coordinates, as x, y, z triples. Empty if there are no
+     * voxels.
+     */
+    public synchronized int[] getHullVertices() {
+        if (isHullDirty) {
+            rebuildHull();
+            isHullDirty = false;
+        }
+        int[] vertices = new int[hullVertices.size() * 3];
+        int index = 0;
+        for (int packed : hullVertices.toArray()) {
+            vertices[index++] = unpackX(packed) + centerPos.getX();
+            vertices[index++] = unpackY(packed) + centerPos.getY();
+            vertices[index++] = unpackZ(packed) + centerPos.getZ();
+        }
+        return vertices;
+    }
+
+    public BlockPos getFieldCenter() {
+        return centerPos;
+    }
+
+    // True if all 8 corners of the voxel are inside or on the current hull.
+    private boolean isInsideHull(int x, int y, int z) {
+        if (hullPlanes.length == 0) {
+            return false;
+        }
+        for (int corner = 0; corner < 8; corner++) {
+            long cornerX = x + (corner & 1);
+            long cornerY = y + (corner >> 1 & 1);
+            long cornerZ = z + (corner >> 2);
+            for (int plane = 0; plane < hullPlanes.length; plane += 4) {
+                if (hullPlanes[plane] * cornerX + hullPlanes[plane + 1] * cornerY
+                    + hullPlanes[plane + 2] * cornerZ > hullPlanes[plane + 3]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isOnHullVertex(int x, int y, int z) {
+        for (int corner = 0; corner < 8; corner++) {
+            if (hullVertices.contains(
+                packCorner(x + (corner & 1), y + (corner >> 1 & 1), z + (corner >> 2)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rebuildHull() {
+        hullVertices.clear();
+        hullPlanes = new long[0];
+        if (voxelCount == 0) {
+            return;
+        }
+        int[] points = getCandidatePoints();
+        List<Face> faces = new QuickHull(points).build();
+        // Many faces share a plane, keep each plane once, along with the planes at every vertex.
+        List<long[]> distinctPlanes = new ArrayList<>();
+        TIntObjectHashMap<List<long[]>> vertexPlanes = new TIntObjectHashMap<>();
+        for (Face face : faces) {
+            long[] plane = face.getReducedPlane();
+            if (!containsPlane(distinctPlanes, plane)) {
+                distinctPlanes.add(plane);
+            }
+            for (int vertex : new int[]{face.a, face.b, face.c}) {
+                List<long[]> planes = vertexPlanes.get(vertex);
+                if (planes == null) {
+                    planes = new ArrayList<>();
+                    vertexPlanes.put(vertex, planes);
+                }
+                if (!containsPlane(planes, plane)) {
+                    planes.add(plane);
+                }
+            }
+        }
+        // Ties for the furthest point can leave points in the middle of an edge or face of the
+        // hull. Only keep real corners, where the planes around the point meet in just that point.
+        vertexPlanes.forEachEntry((vertex, planes) -> {
+            if (isCorner(planes)) {
+                hullVertices.add(points[vertex]);
+            }
+            return true;
+        });
+        hullPlanes = new long[distinctPlanes.size() * 4];
+        for (int i = 0; i < distinctPlanes.size(); i++) {
+            System.arraycopy(distinctPlanes.get(i), 0, hullPlanes, i * 4, 4);
+        }
+    }
+
+    /**
+     * Only the lowest and highest corner on every vertical line of block corners can be on the
+     * hull. Most of those are still nowhere near it, and a corner of the hull is also a corner of
+     * the hull of the points on any plane through it. So a point that isn't a corner of the 2D
+     * hull of its x slice, or then of its z slice, can't be a corner of the 3D hull either.
+     *
+     * @return The packed points that could be corners of the hull
+     */
+    private int[] getCandidatePoints() {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Integer.MIN_VALUE};
+        columns.forEachKey(columnKey -> {
+            bounds[0] = Math.min(bounds[0], unpackColumnX(columnKey));
+            bounds[1] = Math.min(bounds[1], unpackColumnZ(columnKey));
+            bounds[2] = Math.max(bounds[2], unpackColumnX(columnKey));
+            bounds[3] = Math.max(bounds[3], unpackColumnZ(columnKey));
+            return true;
+        });
+        int minX = bounds[0];
+        int minZ = bounds[1];
+        // The grid of corners, indexed by x * depth + z relative to the min corner.
+        int width = bounds[2] - minX + 2;
+        int depth = bounds[3] - minZ + 2;
+        int[] lows = new int[width * depth];
+        int[] highs = new int[width * depth];
+        Arrays.fill(lows, Integer.MAX_VALUE);
+        Arrays.fill(highs, Integer.MIN_VALUE);
+        columns.forEachEntry((columnKey, column) -> {
+            int x = unpackColumnX(columnKey) - minX;
+            int z = unpackColumnZ(columnKey) - minZ;
+            int low = getLowestY(column);
+            int high = getHighestY(column) + 1;
+            for (int corner = 0; corner < 4; corner++) {
+                int index = (x + (corner & 1)) * depth + z + (corner >> 1);
+                lows[index] = Math.min(lows[index], low);
+                highs[index] = Math.max(highs[index], high);
+            }
+            return true;
+        });
+
+        boolean[] keepLows = new boolean[lows.length];
+        boolean[] keepHighs = new boolean[highs.length];
+        int[] chain = new int[Math.max(width, depth) * 2];
+        for (int x = 0; x < width; x++) {
+            markSliceHull(lows, highs, null, null, keepLows, keepHighs, x * depth, 1, depth,
+                chain);
+        }
+        boolean[] finalLows = new boolean[lows.length];
+        boolean[] finalHighs = new boolean[highs.length];
+        for (int z = 0; z < depth; z++) {
+            markSliceHull(lows, highs, keepLows, keepHighs, finalLows, finalHighs, z, depth, width,
+                chain);
+        }
+
+        TIntArrayList points = new TIntArrayList();
+        for (int x = 0; x < width; x++) {
+            for (int z = 0; z < depth; z++) {
+                int index = x * depth + z;
+                if (finalLows[index]) {
+                    points.add(packCorner(x + minX, lows[index], z + minZ));
+                }
+                if (finalHighs[index] && highs[index] != lows[index]) {
+                    points.add(packCorner(x + minX, highs[index], z + minZ));
+                }
+            }
+        }
+        return points.toArray();
+    }
+
+    /**
+     * Marks the corners of the 2D hull of one slice of the corner grid. The slice is the vertical
+     * lines at start, start + step, ... start + (count - 1) * step, with a low and a high point on
+     * each. Only the points marked in isLowIn/isHighIn are part of the slice, or all of them if
+     * those are null.
+     */
+    private static void markSliceHull(int[] lows, int[] highs, boolean[] isLowIn,
+        boolean[] isHighIn, boolean[] markLows, boolean[] markHighs, int start, int step,
+        int count, int[] chain) {
+        // Andrew's monotone chain along the slice, the bottom of the hull from the lowest point
+        // of every line and the top from the highest. Collinear points get popped too, so only
+        // corners are left.
+        for (int side = 0; side < 2; side++) {
+            boolean isBottom = side == 0;
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                int index = start + i * step;
+                int y = getSliceY(lows, highs, isLowIn, isHighIn, index, isBottom);
+                if (y == Integer.MIN_VALUE) {
+                    continue;
+                }
+                while (size >= 4) {
+                    long cross = (long) (chain[size - 2] - chain[size - 4]) * (y - chain[size - 3])
+                        - (long) (chain[size - 1] - chain[size - 3]) * (i - chain[size - 4]);
+                    // The bottom turns counterclockwise, the top clockwise.
+                    if (isBottom ? cross > 0 : cross < 0) {
+                        break;
+                    }
+                    size -= 2;
+                }
+                chain[size++] = i;
+                chain[size++] = y;
+            }
+            for (int j = 0; j < size; j += 2) {
+                int index = start + chain[j] * step;
+                // Keep whichever point of the line is at that height.
+                if (chain[j + 1] == lows[index] && (isLowIn == null || isLowIn[index])) {
+                    markLows[index] = true;
+                } else {
+                    markHighs[index] = true;
+                }
+            }
+        }
+    }
+
+    // The lowest or highest y of the points in the slice on the line at index, or MIN_VALUE.
+    private static int getSliceY(int[] lows, int[] highs, boolean[] isLowIn, boolean[] isHighIn,
+        int index, boolean isBottom) {
+        if (lows[index] == Integer.MAX_VALUE) {
+            return Integer.MIN_VALUE;
+        }
+        boolean hasLow = isLowIn == null || isLowIn[index];
+        boolean hasHigh = isHighIn == null || isHighIn[index];
+        if (isBottom ? hasLow : !hasHigh && hasLow) {
+            return lows[index];
+        }
+        if (hasHigh) {
+            return highs[index];
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    // True if three of the planes have linearly independent normals.
+    private static boolean isCorner(List<long[]> planes) {
+        long[] first = planes.get(0);
+        for (int i = 1; i < planes.size(); i++) {
+            long[] second = planes.get(i);
+            long crossX = first[1] * second[2] - first[2] * second[1];
+            long crossY = first[2] * second[0] - first[0] * second[2];
+            long crossZ = first[0] * second[1] - first[1] * second[0];
+            if (crossX == 0 && crossY == 0 && crossZ == 0) {
+                continue;
+            }
+            for (int j = i + 1; j < planes.size(); j++) {
+                long[] third = planes.get(j);
+                if (crossX * third[0] + crossY * third[1] + crossZ * third[2] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsPlane(List<long[]> planes, long[] plane) {
+        for (long[] other : planes) {
+            if (other[0] == plane[0] && other[1] == plane[1] && other[2] == plane[2]
+                && other[3] == plane[3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isColumnEmpty(long[] column) {
+        for (long word : column) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getLowestY(long[] column) {
+        for (int i = 0; i < column.length; i++) {
+            if (column[i] != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(column[i]) + MIN_Y;
+            }
+        }
+        throw new IllegalStateException("Empty column");
+    }
+
+    private static int getHighestY(long[] column) {
+        for (int i = column.length - 1; i >= 0; i--) {
+            if (column[i] != 0) {
+                return (i << 6) + 63 - Long.numberOfLeadingZeros(column[i]) + MIN_Y;
+            }
+        }
+        throw new IllegalStateException("Empty column");
+    }
+
+    private static int packColumn(int x, int z) {
+        return (x - MIN_X) | (z - MIN_Z) << HORIZONTAL_BITS;
+    }
+
+    private static int unpackColumnX(int packed) {
+        return (packed & HORIZONTAL_MASK) + MIN_X;
+    }
+
+    private static int unpackColumnZ(int packed) {
+        return (packed >>> HORIZONTAL_BITS) + MIN_Z;
+    }
+
+    private static int packCorner(int x, int y, int z) {
+        return (x - MIN_X) | (y - MIN_Y) << HORIZONTAL_BITS
+            | (z - MIN_Z) << (HORIZONTAL_BITS + Y_BITS);
+    }
+
+    private static int unpackX(int packed) {
+        return (packed & HORIZONTAL_MASK) + MIN_X;
+    }
+
+    private static int unpackY(int packed) {
+        return (packed >>> HORIZONTAL_BITS & Y_MASK) + MIN_Y;
+    }
+
+    private static int unpackZ(int packed) {
+        return (packed >>> (HORIZONTAL_BITS + Y_BITS)) + MIN_Z;
+    }
+
+    private void assertValidInputs(int x, int y, int z) throws IllegalArgumentException {
+        if (x < MIN_X || x > MAX_X || y < MIN_Y || y > MAX_Y || z < MIN_Z || z > MAX_Z) {
+            throw new IllegalArgumentException(
+                x + ":" + y + ":" + z + " is out of range from " + getFieldCenter());
+        }
+    }
+
+    /**
+     * A triangle of the hull with its vertices counterclockwise seen from outside, and the points
+     * that are still outside of it.
+     */
+    private static class Face {
+
+        final int a, b, c;
+        // The outward normal (not normalized), and the normal dotted with any point on the face.
+        final long nx, ny, nz, d;
+        final TIntArrayList outsidePoints;
+        boolean isDead;
+
+        Face(int a, int b, int c, int[] xs, int[] ys, int[] zs) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            long abX = xs[b] - xs[a], abY = ys[b] - ys[a], abZ = zs[b] - zs[a];
+            long acX = xs[c] - xs[a], acY = ys[c] - ys[a], acZ = zs[c] - zs[a];
+            this.nx = abY * acZ - abZ * acY;
+            this.ny = abZ * acX - abX * acZ;
+            this.nz = abX * acY - abY * acX;
+            this.d = nx * xs[a] + ny * ys[a] + nz * zs[a];
+            this.outsidePoints = new TIntArrayList();
+            this.isDead = false;
+        }
+
+        // Positive if the point is outside, 0 if it's on the plane of the face.
+        long distance(int point, int[] xs, int[] ys, int[] zs) {
+            return nx * xs[point] + ny * ys[point] + nz * zs[point] - d;
+        }
+
+        // The plane divided by the gcd of the normal, so coplanar faces get the same plane.
+        long[] getReducedPlane() {
+            long gcd = gcd(gcd(Math.abs(nx), Math.abs(ny)), Math.abs(nz));
+            return new long[]{nx / gcd, ny / gcd, nz / gcd, d / gcd};
+        }
+
+        private static long gcd(long first, long second) {
+            while (second != 0) {
+                long temp = first % second;
+                first = second;
+                second = temp;
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Quickhull over packed corner coordinates. Orientation tests are exact, a point exactly on
+     * the plane of a face counts as inside.
+     */
+    private static class QuickHull {
+
+        final int[] xs, ys, zs;
+        final Set<Face> faces;
+        // Every live face by its directed edges, to find the neighbor across an edge.
+        final TLongObjectHashMap<Face> edgeFaces;
+        // Faces that might have outside points left.
+        final ArrayDeque<Face> pending;
+
+        QuickHull(int[] packedPoints) {
+            int count = packedPoints.length;
+            this.xs = new int[count];
+            this.ys = new int[count];
+            this.zs = new int[count];
+            for (int i = 0; i < count; i++) {
+                xs[i] = unpackX(packedPoints[i]);
+                ys[i] = unpackY(packedPoints[i]);
+                zs[i] = unpackZ(packedPoints[i]);
+            }
+            this.faces = new HashSet<>();
+            this.edgeFaces = new TLongObjectHashMap<>(64);
+            this.pending = new ArrayDeque<>();
+        }
+
+        List<Face> build() {
+            makeInitialTetrahedron();
+            while (!pending.isEmpty()) {
+                Face face = pending.poll();
+                if (!face.isDead && !face.outsidePoints.isEmpty()) {
+                    addPoint(getFurthestPoint(face), face);
+                }
+            }
+            return new ArrayList<>(faces);
+        }
+
+        private void makeInitialTetrahedron() {
+            // Voxels always have volume, so there are always 4 points not on one plane.
+            int first = 0;
+            int second = 0;
+            for (int i = 1; i < xs.length; i++) {
+                if (compare(i, first) < 0) {
+                    first = i;
+                }
+                if (compare(i, second) > 0) {
+                    second = i;
+                }
+            }
+            int third = -1;
+            long bestArea = 0;
+            for (int i = 0; i < xs.length; i++) {
+                long abX = xs[second] - xs[first], abY = ys[second] - ys[first];
+                long abZ = zs[second] - zs[first];
+                long acX = xs[i] - xs[first], acY = ys[i] - ys[first], acZ = zs[i] - zs[first];
+                long crossX = abY * acZ - abZ * acY;
+                long crossY = abZ * acX - abX * acZ;
+                long crossZ = abX * acY - abY * acX;
+                long area = crossX * crossX + crossY * crossY + crossZ * crossZ;
+                if (area > bestArea) {
+                    bestArea = area;
+                    third = i;
+                }
+            }
+            if (third == -1) {
+                throw new IllegalStateException("The points are all on one line");
+            }
+            Face base = new Face(first, second, third, xs, ys, zs);
+            int fourth = -1;
+            long bestDistance = 0;
+            for (int i = 0; i < xs.length; i++) {
+                long distance = Math.abs(base.distance(i, xs, ys, zs));
+                if (distance > bestDistance) {
+                    bestDistance = distance;
+                    fourth = i;
+                }
+            }
+            if (fourth == -1) {
+                throw new IllegalStateException("The points are all on one plane");
+            }
+            if (base.distance(fourth, xs, ys, zs) > 0) {
+                // The fourth point has to be behind the base face.
+                int temp = second;
+                second = third;
+                third = temp;
+            }
+            List<Face> initial = new ArrayList<>();
+            initial.add(new Face(first, second, third, xs, ys, zs));
+            initial.add(new Face(first, fourth, second, xs, ys, zs));
+            initial.add(new Face(second, fourth, third, xs, ys, zs));
+            initial.add(new Face(third, fourth, first, xs, ys, zs));
+            TIntArrayList allPoints = new TIntArrayList(xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                allPoints.add(i);
+            }
+            addFaces(initial, allPoints);
+        }
+
+        // Lexicographic order, so the first and last points are distinct extreme points.
+        private int compare(int first, int second) {
+            if (xs[first] != xs[second]) {
+                return Integer.compare(xs[first], xs[second]);
+            }
+            if (ys[first] != ys[second]) {
+                return Integer.compare(ys[first], ys[second]);
+            }
+            return Integer.compare(zs[first], zs[second]);
+        }
+
+        private int getFurthestPoint(Face face) {
+            int furthest = face.outsidePoints.get(0);
+            long furthestDistance = face.distance(furthest, xs, ys, zs);
+            for (int i = 1; i < face.outsidePoints.size(); i++) {
+                int point = face.outsidePoints.get(i);
+                long distance = face.distance(point, xs, ys, zs);
+                if (distance > furthestDistance) {
+                    furthest = point;
+                    furthestDistance = distance;
+                }
+            }
+            return furthest;
+        }
+
+        private void addPoint(int point, Face seenFrom) {
+            // Every face that can see the point gets replaced. They're all connected, so walk
+            // outwards from one of them until reaching faces that can't see it.
+            List<Face> visible = new ArrayList<>();
+            List<long[]> horizon = new ArrayList<>();
+            TIntArrayList orphans = new TIntArrayList();
+            ArrayDeque<Face> toVisit = new ArrayDeque<>();
+            seenFrom.isDead = true;
+            toVisit.add(seenFrom);
+            while (!toVisit.isEmpty()) {
+                Face face = toVisit.poll();
+                visible.add(face);
+                orphans.addAll(face.outsidePoints);
+                face.outsidePoints.clear();
+                int[] vertices = {face.a, face.b, face.c};
+                for (int i = 0; i < 3; i++) {
+                    int from = vertices[i];
+                    int to = vertices[(i + 1) % 3];
+                    Face neighbor = edgeFaces.get(edge(to, from));
+                    if (neighbor.isDead) {
+                        continue;
+                    }
+                    if (neighbor.distance(point, xs, ys, zs) > 0) {
+                        neighbor.isDead = true;
+                        toVisit.add(neighbor);
+                    } else {
+                        horizon.add(new long[]{from, to});
+                    }
+                }
+            }
+            for (Face face : visible) {
+                faces.remove(face);
+                edgeFaces.remove(edge(face.a, face.b));
+                edgeFaces.remove(edge(face.b, face.c));
+                edgeFaces.remove(edge(face.c, face.a));
+            }
+            // Connecting the horizon to the point keeps the faces counterclockwise.
+            List<Face> newFaces = new ArrayList<>();
+            for (long[] horizonEdge : horizon) {
+                newFaces.add(new Face((int) horizonEdge[0], (int) horizonEdge[1], point, xs, ys,
+                    zs));
+            }
+            // An orphan that isn't outside any of the new faces is inside the new hull.
+            addFaces(newFaces, orphans);
+        }
+
+        private void addFaces(List<Face> newFaces, TIntArrayList points) {
+            for (Face face : newFaces) {
+                faces.add(face);
+                edgeFaces.put(edge(face.a, face.b), face);
+                edgeFaces.put(edge(face.b, face.c), face);
+                edgeFaces.put(edge(face.c, face.a), face);
+            }
+            for (int i = 0; i < points.size(); i++) {
+                int point = points.get(i);
+                for (Face face : newFaces) {
+                    if (face.distance(point, xs, ys, zs) > 0) {
+                        face.outsidePoints.add(point);
+                        break;
+                    }
+                }
+            }
+            for (Face face : newFaces) {
+                if (!face.outsidePoints.isEmpty()) {
+                    pending.add(face);
+                }
+            }
+        }
+
+        // Unique for every pair, and small enough that Trove doesn't hash different edges the same.
+        private long edge(int from, int to) {
+            return (long) from * xs.length + to;
+        }
+    }
+}
@@ -19,4 +19,46 @@ public interface IBitOctree {
     int getOctreeLevelTwoIndex(int levelThreeIndex, int offset);
 
     int getOctreeLevelThreeIndex(int offset);
+
+    /**
+     * @return A mask with bit i set if the level three node at offset i is set, iterate the set
+     * bits with Integer.numberOfTrailingZeros().
+     */
+    default int getLevelThreeMask() {
+        int mask = 0;
+        for (int offset = 0; offset < 8; offset++) {
+            if (getAtIndex(getOctreeLevelThreeIndex(offset))) {
+                mask |= 1 << offset;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return A mask with bit i set if the level two node at offset i of the given level three node
+     * is set.
+     */
+    default int getLevelTwoMask(int levelThreeIndex) {
+        int mask = 0;
+        for (int offset = 0; offset < 8; offset++) {
+            if (getAtIndex(getOctreeLevelTwoIndex(levelThreeIndex, offset))) {
+                mask |= 1 << offset;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return A mask with bit i set if the level one node at offset i of the given level two node
+     * is set.
+     */
+    default int getLevelOneMask(int levelTwoIndex) {
+        int mask = 0;
+        for (int offset = 0; offset < 8; offset++) {
+            if (getAtIndex(getOctreeLevelOneIndex(levelTwoIndex, offset))) {
+                mask |= 1 << offset;
+            }
+        }
+        return mask;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
+
+/**
+ * Everything a ShipCollisionTask needs to know about a ship and the world around it. Implemented by
+ * WorldPhysicsCollider, this only exists so that collision tasks can also run on synthetic data
+ * without a world, for example in benchmarks.
+ */
+public interface IShipCollisionSource {
+
+    BlockPos getCenterPotentialHit();
+
+    /**
+     * @return The hash of a world block that could be colliding with the ship, with respect to
+     * getCenterPotentialHit().
+     */
+    int getCachedPotentialHit(int offset);
+
+    int getCachedPotentialHitSize();
+
+    IBlockState getWorldBlockState(BlockPos pos);
+
+    /**
+     * @return The transform used to move the ship blocks into the world.
+     */
+    ShipTransform getCollisionTransform();
+
+    /**
+     * @return The potential separating axes between the ship and the world.
+     */
+    Vector[] getCollisionNormals();
+
+    /**
+     * @return The octree of the 16x16x16 section of the ship containing the given position, or
+     * null if that section is empty.
+     */
+    IBitOctree getShipOctree(int x, int y, int z);
+
+    IBlockState getShipBlockState(int x, int y, int z);
+}
@@ -0,0 +1,105 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+/**
+ * An IBitSet stored in longs, with operations that work on a whole word at a time: reading and
+ * writing 64 bits at once, reading up to 32 bits starting anywhere, counting the set bits in a
+ * range, and finding the next set bit with Long.numberOfTrailingZeros() instead of testing bits one
+ * at a time.
+ */
+public class LongBitSet implements IBitSet {
+
+    private final long[] words;
+    private final int size;
+
+    public LongBitSet(int size) {
+        this.words = new long[(size + 63) >> 6];
+        this.size = size;
+    }
+
+    @Override
+    public void set(int index) {
+        words[index >> 6] |= 1L << index;
+    }
+
+    @Override
+    public void clear(int index) {
+        words[index >> 6] &= ~(1L << index);
+    }
+
+    @Override
+    public boolean get(int index) {
+        return (words[index >> 6] & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Bits wordIndex * 64 to wordIndex * 64 + 63, the lowest bit first.
+     */
+    public long getWord(int wordIndex) {
+        return words[wordIndex];
+    }
+
+    /**
+     * Replaces bits wordIndex * 64 to wordIndex * 64 + 63, the lowest bit first.
+     */
+    public void setWord(int wordIndex, long word) {
+        words[wordIndex] = word;
+    }
+
+    /**
+     * @param count At most 32
+     * @return Bits fromIndex to fromIndex + count - 1, the lowest bit first.
+     */
+    public int getBits(int fromIndex, int count) {
+        int wordIndex = fromIndex >> 6;
+        int shift = fromIndex & 63;
+        long bits = words[wordIndex] >>> shift;
+        if (shift + count > 64 && wordIndex + 1 < words.length) {
+            bits |= words[wordIndex + 1] << (64 - shift);
+        }
+        return (int) (bits & ((1L << count) - 1));
+    }
+
+    /**
+     * @return The index of the first set bit at or after fromIndex, or -1 if there isn't one.
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int wordIndex = fromIndex >> 6;
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+        int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        return index < size ? index : -1;
+    }
+
+    /**
+     * @return The number of set bits from fromIndex up to but not including toIndex.
+     */
+    public int cardinality(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return 0;
+        }
+        int firstWord = fromIndex >> 6;
+        int lastWord = (toIndex - 1) >> 6;
+        long firstMask = -1L << fromIndex;
+        long lastMask = -1L >>> -toIndex;
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[firstWord] & firstMask);
+        for (int wordIndex = firstWord + 1; wordIndex < lastWord; wordIndex++) {
+            count += Long.bitCount(words[wordIndex]);
+        }
+        return count + Long.bitCount(words[lastWord] & lastMask);
+    }
+}
@@ -2,10 +2,10 @@ package org.valkyrienskies.mod.common.physics.collision.optimization;
 
 public class SimpleBitOctree implements IBitOctree {
 
-    private final IBitSet bitbuffer;
+    private final LongBitSet bitbuffer;
 
     public SimpleBitOctree() {
-        bitbuffer = new SmallBitSet(BITS_TOTAL);
+        bitbuffer = new LongBitSet(BITS_TOTAL);
     }
 
     @Override
@@ -18,6 +18,47 @@ public class SimpleBitOctree implements IBitOctree {
         }
     }
 
+    /**
+     * Replaces every block bit, then builds the tree bottom up in one pass, instead of updating it
+     * for every block like set() does.
+     *
+     * @param solid Whether the block at every x | y << 4 | z << 8 index is set
+     */
+    public void setAll(boolean[] solid) {
+        if (solid.length != BLOCKS_TOTAL) {
+            throw new IllegalArgumentException("Expected " + BLOCKS_TOTAL + " blocks");
+        }
+        for (int wordIndex = 0; wordIndex < BLOCKS_TOTAL / 64; wordIndex++) {
+            long word = 0;
+            for (int bit = 0; bit < 64; bit++) {
+                if (solid[(wordIndex << 6) | bit]) {
+                    word |= 1L << bit;
+                }
+            }
+            bitbuffer.setWord(wordIndex, word);
+        }
+        for (int x = 0; x < 16; x += 2) {
+            for (int y = 0; y < 16; y += 2) {
+                for (int z = 0; z < 16; z += 2) {
+                    int levelThreeIndex = getOctreeLevelThreeIndex(x, y, z);
+                    int levelTwoIndex = getOctreeLevelTwoIndex(x, y, z, levelThreeIndex);
+                    updateOctreeLevelOne(getOctreeLevelOneIndex(x, y, z, levelTwoIndex), x, y, z);
+                }
+            }
+        }
+        for (int x = 0; x < 16; x += 4) {
+            for (int y = 0; y < 16; y += 4) {
+                for (int z = 0; z < 16; z += 4) {
+                    updateOctreeLevelTwo(
+                        getOctreeLevelTwoIndex(x, y, z, getOctreeLevelThreeIndex(x, y, z)));
+                }
+            }
+        }
+        for (int offset = 0; offset < TREE_LEVEL_THREE; offset++) {
+            updateOctreeLevelThree(getOctreeLevelThreeIndex(offset));
+        }
+    }
+
     @Override
     public boolean get(int x, int y, int z) {
         return getAtIndex(getBlockIndex(x, y, z));
@@ -29,6 +70,53 @@ public class SimpleBitOctree implements IBitOctree {
         return bitbuffer.get(index);
     }
 
+    /**
+     * @return The index of the first solid block at or after fromIndex, in the same x | y << 4 |
+     * z << 8 order as getAtIndex(), or -1 if there isn't one.
+     */
+    public int nextSolidBlock(int fromIndex) {
+        int index = bitbuffer.nextSetBit(fromIndex);
+        return index < BLOCKS_TOTAL ? index : -1;
+    }
+
+    /**
+     * @param level 0 for blocks, up to 3 for the 8 biggest nodes
+     * @return The number of set bits in that level of the tree.
+     */
+    public int countSetAtLevel(int level) {
+        switch (level) {
+            case 0:
+                return bitbuffer.cardinality(0, BLOCKS_TOTAL);
+            case 1:
+                int levelOneCount = 0;
+                for (int levelThree = 0; levelThree < 8; levelThree++) {
+                    int levelThreeIndex = getOctreeLevelThreeIndex(levelThree);
+                    for (int levelTwo = 0; levelTwo < 8; levelTwo++) {
+                        levelOneCount += Integer.bitCount(
+                            getLevelOneMask(getOctreeLevelTwoIndex(levelThreeIndex, levelTwo)));
+                    }
+                }
+                return levelOneCount;
+            case 2:
+                int levelTwoCount = 0;
+                for (int levelThree = 0; levelThree < 8; levelThree++) {
+                    levelTwoCount += Integer.bitCount(
+                        getLevelTwoMask(getOctreeLevelThreeIndex(levelThree)));
+                }
+                return levelTwoCount;
+            case 3:
+                return Integer.bitCount(getLevelThreeMask());
+            default:
+                throw new IllegalArgumentException("No octree level " + level);
+        }
+    }
+
+    // The 8 level one nodes of a level two node are the 8 bits right after it.
+    @Override
+    public int getLevelOneMask(int levelTwoIndex) {
+        return bitbuffer.getBits(levelTwoIndex + 1, 8);
+    }
+
     @Override
     public int getOctreeLevelOneIndex(int levelTwoIndex, int offset) {
         return levelTwoIndex + offset + 1;
@@ -79,11 +167,7 @@ public class SimpleBitOctree implements IBitOctree {
 
     // Returns true if the next level of octree should be updated
     private boolean updateOctreeLevelTwo(int levelTwoIndex) {
-        if (bitbuffer.get(levelTwoIndex + 1) || bitbuffer.get(levelTwoIndex + 2) || bitbuffer
-            .get(levelTwoIndex + 3)
-            || bitbuffer.get(levelTwoIndex + 4) || bitbuffer.get(levelTwoIndex + 5)
-            || bitbuffer.get(levelTwoIndex + 6) || bitbuffer.get(levelTwoIndex + 7)
-            || bitbuffer.get(levelTwoIndex + 8)) {
+        if (getLevelOneMask(levelTwoIndex) != 0) {
             if (!bitbuffer.get(levelTwoIndex)) {
                 bitbuffer.set(levelTwoIndex);
                 return true;
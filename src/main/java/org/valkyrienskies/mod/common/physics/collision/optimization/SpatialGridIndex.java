@@ -0,0 +1,201 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Finds the objects whose AABBs intersect an area, without testing every object.
+ * <p>
+ * The world is split into columns of CELL_SIZE by CELL_SIZE blocks, and every object is kept in
+ * the columns its AABB touches. A query only looks at the objects in the columns the area
+ * touches, so it takes time proportional to the number of objects nearby rather than the number
+ * of objects in the world. Columns instead of cubes since ships are spread out horizontally, not
+ * vertically.
+ * <p>
+ * Objects only move between columns when their AABB leaves the columns it was in, so the small
+ * moves ships make every tick are cheap. Objects that span more than MAX_CELLS_PER_AXIS columns are
+ * kept in a separate list that every query tests instead.
+ * <p>
+ * Thread safe, the physics thread updates ships while the game thread queries them.
+ *
+ * @param <T> The type of objects being indexed
+ */
+public class SpatialGridIndex<T> {
+
+    // The width of every column is 1 << CELL_SHIFT blocks.
+    public static final int CELL_SHIFT = 6;
+    // The width of every column, in blocks.
+    public static final int CELL_SIZE = 1 << CELL_SHIFT;
+    // Objects wider than this many columns along x or z aren't put in the columns at all.
+    public static final int MAX_CELLS_PER_AXIS = 16;
+    private final Long2ObjectMap<List<Entry<T>>> cells;
+    private final Map<T, Entry<T>> entries;
+    // The objects that are too big to put in the columns.
+    private final List<Entry<T>> oversized;
+    // Incremented every query, so objects found in several columns are only added once.
+    private int queryID;
+
+    public SpatialGridIndex() {
+        this.cells = new Long2ObjectOpenHashMap<>();
+        this.entries = new IdentityHashMap<>();
+        this.oversized = new ArrayList<>();
+        this.queryID = 0;
+    }
+
+    /**
+     * Adds the object, or moves it if it's already in the index.
+     */
+    public synchronized void put(T object, AxisAlignedBB bounds) {
+        Entry<T> entry = entries.get(object);
+        if (entry == null) {
+            entry = new Entry<>(object);
+            entries.put(object, entry);
+        } else {
+            if (entry.isInCells(bounds)) {
+                // Still in the same columns, nothing to move.
+                entry.bounds = bounds;
+                return;
+            }
+            removeFromCells(entry);
+        }
+        entry.bounds = bounds;
+        addToCells(entry);
+    }
+
+    /**
+     * Moves the object if it's in the index, otherwise does nothing.
+     */
+    public synchronized void update(T object, AxisAlignedBB bounds) {
+        if (entries.containsKey(object)) {
+            put(object, bounds);
+        }
+    }
+
+    public synchronized void remove(T object) {
+        Entry<T> entry = entries.remove(object);
+        if (entry != null) {
+            removeFromCells(entry);
+        }
+    }
+
+    /**
+     * Adds every object whose AABB intersects the area to the given list, once.
+     */
+    public synchronized void query(AxisAlignedBB area, List<T> found) {
+        queryID++;
+        int minCellX = toCell(area.minX);
+        int minCellZ = toCell(area.minZ);
+        int maxCellX = toCell(area.maxX);
+        int maxCellZ = toCell(area.maxZ);
+        if ((long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > entries.size()) {
+            // Big areas cover more columns than there are objects, just test every object.
+            for (Entry<T> entry : entries.values()) {
+                if (entry.bounds.intersects(area)) {
+                    found.add(entry.object);
+                }
+            }
+            return;
+        }
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                List<Entry<T>> cell = cells.get(getCellKey(cellX, cellZ));
+                if (cell != null) {
+                    addIntersecting(cell, area, found);
+                }
+            }
+        }
+        addIntersecting(oversized, area, found);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void addIntersecting(List<Entry<T>> cell, AxisAlignedBB area, List<T> found) {
+        for (Entry<T> entry : cell) {
+            if (entry.lastQueryID != queryID) {
+                entry.lastQueryID = queryID;
+                if (entry.bounds.intersects(area)) {
+                    found.add(entry.object);
+                }
+            }
+        }
+    }
+
+    private void addToCells(Entry<T> entry) {
+        entry.minCellX = toCell(entry.bounds.minX);
+        entry.minCellZ = toCell(entry.bounds.minZ);
+        entry.maxCellX = toCell(entry.bounds.maxX);
+        entry.maxCellZ = toCell(entry.bounds.maxZ);
+        if (entry.isOversized()) {
+            oversized.add(entry);
+            return;
+        }
+        for (int cellX = entry.minCellX; cellX <= entry.maxCellX; cellX++) {
+            for (int cellZ = entry.minCellZ; cellZ <= entry.maxCellZ; cellZ++) {
+                long key = getCellKey(cellX, cellZ);
+                List<Entry<T>> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    private void removeFromCells(Entry<T> entry) {
+        if (entry.isOversized()) {
+            oversized.remove(entry);
+            return;
+        }
+        for (int cellX = entry.minCellX; cellX <= entry.maxCellX; cellX++) {
+            for (int cellZ = entry.minCellZ; cellZ <= entry.maxCellZ; cellZ++) {
+                long key = getCellKey(cellX, cellZ);
+                List<Entry<T>> cell = cells.get(key);
+                cell.remove(entry);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private static int toCell(double coordinate) {
+        return MathHelper.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long getCellKey(int cellX, int cellZ) {
+        return (long) cellX & 4294967295L | ((long) cellZ & 4294967295L) << 32;
+    }
+
+    private static class Entry<T> {
+
+        final T object;
+        AxisAlignedBB bounds;
+        // The columns the entry is in, inclusive.
+        int minCellX, minCellZ, maxCellX, maxCellZ;
+        int lastQueryID;
+
+        Entry(T object) {
+            this.object = object;
+            this.lastQueryID = 0;
+        }
+
+        boolean isInCells(AxisAlignedBB newBounds) {
+            return toCell(newBounds.minX) == minCellX && toCell(newBounds.minZ) == minCellZ
+                && toCell(newBounds.maxX) == maxCellX && toCell(newBounds.maxZ) == maxCellZ;
+        }
+
+        boolean isOversized() {
+            return maxCellX - minCellX >= MAX_CELLS_PER_AXIS
+                || maxCellZ - minCellZ >= MAX_CELLS_PER_AXIS;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import net.minecraft.util.math.AxisAlignedBB;
+
+/**
+ * Finds the pairs of objects whose AABBs intersect using sort and sweep, instead of testing every
+ * object against every other object.
+ * <p>
+ * The objects are kept sorted by the minimum of their AABB along one axis (the one the objects are
+ * most spread out on). Because objects barely move between updates, the order from the previous
+ * update is nearly sorted already, so an insertion sort brings it up to date in close to linear
+ * time. Then each object is only tested against the objects that start before it ends on that
+ * axis.
+ * <p>
+ * Not thread safe.
+ *
+ * @param <T> The type of objects being tested
+ */
+public class SweepAndPruneBroadphase<T> {
+
+    private final Function<T, AxisAlignedBB> boundsGetter;
+    // The objects, sorted by the minimum of their AABB along sortAxis.
+    private List<T> sortedObjects;
+    // The AABB of sortedObjects.get(i) is stored at bounds[i * 6] to bounds[i * 6 + 5], as
+    // minX, minY, minZ, maxX, maxY, maxZ.
+    private double[] bounds;
+    // 0 for x, 1 for y, 2 for z
+    private int sortAxis;
+    // Pairs of indices into sortedObjects, 2 ints per pair.
+    private final TIntArrayList candidatePairs;
+    // Reused by every update, so that updating doesn't allocate once the objects stop changing.
+    private List<T> spareObjects;
+    private final Set<T> currentObjects;
+    private final double[] tempBounds;
+
+    /**
+     * @param boundsGetter Gets the current AABB of an object
+     */
+    public SweepAndPruneBroadphase(Function<T, AxisAlignedBB> boundsGetter) {
+        this.boundsGetter = boundsGetter;
+        this.sortedObjects = new ArrayList<>();
+        this.bounds = new double[0];
+        this.sortAxis = 0;
+        this.candidatePairs = new TIntArrayList();
+        this.spareObjects = new ArrayList<>();
+        this.currentObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.tempBounds = new double[6];
+    }
+
+    /**
+     * Reads the current AABB of every object and finds the pairs that intersect. The objects
+     * passed replace those of the previous update, objects that are no longer in the collection
+     * are forgotten.
+     */
+    public void update(Collection<T> objects) {
+        updateObjects(objects);
+        int count = sortedObjects.size();
+        if (bounds.length < count * 6) {
+            bounds = new double[count * 6];
+        }
+        for (int i = 0; i < count; i++) {
+            AxisAlignedBB bb = boundsGetter.apply(sortedObjects.get(i));
+            bounds[i * 6] = bb.minX;
+            bounds[i * 6 + 1] = bb.minY;
+            bounds[i * 6 + 2] = bb.minZ;
+            bounds[i * 6 + 3] = bb.maxX;
+            bounds[i * 6 + 4] = bb.maxY;
+            bounds[i * 6 + 5] = bb.maxZ;
+        }
+        sortAxis = findSortAxis(count);
+        insertionSort(count);
+        sweep(count);
+    }
+
+    // Keeps the order of the objects we still have from the last update, and adds the new ones to
+    // the end.
+    private void updateObjects(Collection<T> objects) {
+        currentObjects.addAll(objects);
+        List<T> newSortedObjects = spareObjects;
+        newSortedObjects.clear();
+        for (T object : sortedObjects) {
+            if (currentObjects.remove(object)) {
+                newSortedObjects.add(object);
+            }
+        }
+        // Whatever is left in currentObjects is new.
+        for (T object : objects) {
+            if (currentObjects.remove(object)) {
+                newSortedObjects.add(object);
+            }
+        }
+        spareObjects = sortedObjects;
+        sortedObjects = newSortedObjects;
+    }
+
+    // Picks the axis along which the centers of the AABBs have the greatest variance, which is
+    // the axis that prunes the most pairs.
+    private int findSortAxis(int count) {
+        if (count < 2) {
+            return sortAxis;
+        }
+        double bestVariance = -1;
+        int bestAxis = sortAxis;
+        for (int axis = 0; axis < 3; axis++) {
+            double sum = 0;
+            double sumSq = 0;
+            for (int i = 0; i < count; i++) {
+                double center = bounds[i * 6 + axis] + bounds[i * 6 + axis + 3];
+                sum += center;
+                sumSq += center * center;
+            }
+            double variance = sumSq - sum * sum / count;
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                bestAxis = axis;
+            }
+        }
+        return bestAxis;
+    }
+
+    private void insertionSort(int count) {
+        double[] temp = tempBounds;
+        for (int i = 1; i < count; i++) {
+            double key = bounds[i * 6 + sortAxis];
+            int j = i - 1;
+            if (bounds[j * 6 + sortAxis] <= key) {
+                continue;
+            }
+            T object = sortedObjects.get(i);
+            System.arraycopy(bounds, i * 6, temp, 0, 6);
+            while (j >= 0 && bounds[j * 6 + sortAxis] > key) {
+                System.arraycopy(bounds, j * 6, bounds, (j + 1) * 6, 6);
+                sortedObjects.set(j + 1, sortedObjects.get(j));
+                j--;
+            }
+            System.arraycopy(temp, 0, bounds, (j + 1) * 6, 6);
+            sortedObjects.set(j + 1, object);
+        }
+    }
+
+    private void sweep(int count) {
+        candidatePairs.resetQuick();
+        int otherAxisA = (sortAxis + 1) % 3;
+        int otherAxisB = (sortAxis + 2) % 3;
+        for (int i = 0; i < count; i++) {
+            double max = bounds[i * 6 + sortAxis + 3];
+            for (int j = i + 1; j < count; j++) {
+                // Everything after this starts after i ends.
+                if (bounds[j * 6 + sortAxis] >= max) {
+                    break;
+                }
+                if (overlaps(i, j, otherAxisA) && overlaps(i, j, otherAxisB)) {
+                    candidatePairs.add(i);
+                    candidatePairs.add(j);
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(int first, int second, int axis) {
+        return bounds[first * 6 + axis] < bounds[second * 6 + axis + 3]
+            && bounds[first * 6 + axis + 3] > bounds[second * 6 + axis];
+    }
+
+    /**
+     * @return The number of intersecting pairs found by the last update.
+     */
+    public int getCandidatePairCount() {
+        return candidatePairs.size() / 2;
+    }
+
+    /**
+     * @return The first object of the given pair.
+     */
+    public T getCandidateA(int pair) {
+        return sortedObjects.get(candidatePairs.get(pair * 2));
+    }
+
+    /**
+     * @return The second object of the given pair.
+     */
+    public T getCandidateB(int pair) {
+        return sortedObjects.get(candidatePairs.get(pair * 2 + 1));
+    }
+
+    /**
+     * @return The number of objects given to the last update.
+     */
+    public int getObjectCount() {
+        return sortedObjects.size();
+    }
+}
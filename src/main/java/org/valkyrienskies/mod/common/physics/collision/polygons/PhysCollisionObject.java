@@ -1,21 +1,33 @@
 package org.valkyrienskies.mod.common.physics.collision.polygons;
 
-import org.valkyrienskies.mod.common.math.VSMath;
 import org.valkyrienskies.mod.common.math.Vector;
 
 public class PhysCollisionObject {
 
-    public final Vector collision_normal;
-    public final Polygon movable, fixed;
+    public Vector collision_normal;
+    public Polygon movable, fixed;
     public double penetrationDistance;
     public boolean seperated;
-    private double[] playerMinMax;
-    private double[] blockMinMax;
+    private double playerMin, playerMax;
+    private double blockMin, blockMax;
     private double movMaxFixMin;
     private double movMinFixMax;
     private Vector firstContactPoint;
 
     public PhysCollisionObject(Polygon movable_, Polygon stationary, Vector axes) {
+        setCollisionData(movable_, stationary, axes);
+    }
+
+    /**
+     * Creates an empty PhysCollisionObject, setCollisionData() must be called before using it.
+     */
+    public PhysCollisionObject() {
+    }
+
+    /**
+     * Reuses this object to test the given polygons against the given axis.
+     */
+    public void setCollisionData(Polygon movable_, Polygon stationary, Vector axes) {
         collision_normal = axes;
         movable = movable_;
         fixed = stationary;
@@ -23,10 +35,25 @@ public class PhysCollisionObject {
     }
 
     public void generateCollision() {
-        playerMinMax = VSMath.getMinMaxOfArray(movable.getProjectionOnVector(collision_normal));
-        blockMinMax = VSMath.getMinMaxOfArray(fixed.getProjectionOnVector(collision_normal));
-        movMaxFixMin = playerMinMax[0] - blockMinMax[1];
-        movMinFixMax = playerMinMax[1] - blockMinMax[0];
+        // Project both polygons onto the normal. Done inline rather than with
+        // getProjectionOnVector() because this runs for every block pair we check, and those
+        // arrays were a big source of garbage.
+        Vector[] movableVertices = movable.getVertices();
+        playerMin = playerMax = movableVertices[0].dot(collision_normal);
+        for (int i = 1; i < movableVertices.length; i++) {
+            double projection = movableVertices[i].dot(collision_normal);
+            playerMin = Math.min(playerMin, projection);
+            playerMax = Math.max(playerMax, projection);
+        }
+        Vector[] fixedVertices = fixed.getVertices();
+        blockMin = blockMax = fixedVertices[0].dot(collision_normal);
+        for (int i = 1; i < fixedVertices.length; i++) {
+            double projection = fixedVertices[i].dot(collision_normal);
+            blockMin = Math.min(blockMin, projection);
+            blockMax = Math.max(blockMax, projection);
+        }
+        movMaxFixMin = playerMin - blockMax;
+        movMinFixMax = playerMax - blockMin;
         if (movMaxFixMin > 0 || movMinFixMax < 0) {
             seperated = true;
             penetrationDistance = 0.0D;
@@ -35,15 +62,15 @@ public class PhysCollisionObject {
         // Set the penetration to be the smaller distance
         if (Math.abs(movMaxFixMin) > Math.abs(movMinFixMax)) {
             penetrationDistance = movMinFixMax;
-            for (Vector v : movable.getVertices()) {
-                if (v.dot(collision_normal) == playerMinMax[1]) {
+            for (Vector v : movableVertices) {
+                if (v.dot(collision_normal) == playerMax) {
                     firstContactPoint = v;
                 }
             }
         } else {
             penetrationDistance = movMaxFixMin;
-            for (Vector v : movable.getVertices()) {
-                if (v.dot(collision_normal) == playerMinMax[0]) {
+            for (Vector v : movableVertices) {
+                if (v.dot(collision_normal) == playerMin) {
                     firstContactPoint = v;
                 }
             }
@@ -54,13 +81,13 @@ public class PhysCollisionObject {
     public Vector getSecondContactPoint() {
         if (Math.abs(movMaxFixMin) > Math.abs(movMinFixMax)) {
             for (Vector v : fixed.getVertices()) {
-                if (v.dot(collision_normal) == blockMinMax[0]) {
+                if (v.dot(collision_normal) == blockMin) {
                     return v;
                 }
             }
         } else {
             for (Vector v : fixed.getVertices()) {
-                if (v.dot(collision_normal) == blockMinMax[1]) {
+                if (v.dot(collision_normal) == blockMax) {
                     return v;
                 }
             }
@@ -77,4 +104,4 @@ public class PhysCollisionObject {
         v.Y = collision_normal.Y * penetrationDistance;
         v.Z = collision_normal.Z * penetrationDistance;
     }
-}
\ No newline at end of file
+}
@@ -19,14 +19,39 @@ public class PhysPolygonCollider {
         processData();
     }
 
+    /**
+     * Creates an empty collider meant to be reused through processData(Polygon, Polygon,
+     * Vector[]).
+     */
+    public PhysPolygonCollider() {
+    }
+
+    /**
+     * Reuses this collider and its PhysCollisionObjects to test the given polygons against each
+     * other. Gives the same results as creating a new PhysPolygonCollider, without the garbage.
+     */
+    public void processData(Polygon movable, Polygon stationary, Vector[] axes) {
+        potentialSeperatingAxes = axes;
+        entity = movable;
+        block = stationary;
+        processData();
+    }
+
     // TODO: Fix this, processes the penetration distances backwards from their reality
     public void processData() {
-        collisions = new PhysCollisionObject[potentialSeperatingAxes.length];
+        if (collisions == null || collisions.length != potentialSeperatingAxes.length) {
+            collisions = new PhysCollisionObject[potentialSeperatingAxes.length];
+        }
+        seperated = false;
         for (int i = 0; i < potentialSeperatingAxes.length && !seperated; i++) {
-            collisions[i] = new PhysCollisionObject(entity, block, potentialSeperatingAxes[i]);
+            if (collisions[i] == null) {
+                collisions[i] = new PhysCollisionObject();
+            }
+            collisions[i].setCollisionData(entity, block, potentialSeperatingAxes[i]);
             seperated = collisions[i].seperated;
         }
         if (!seperated) {
+            minDistanceIndex = 0;
             minDistance = 420;
             for (int i = 0; i < potentialSeperatingAxes.length; i++) {
                 // Take the collision response closest to 0
@@ -38,4 +63,4 @@ public class PhysPolygonCollider {
         }
     }
 
-}
\ No newline at end of file
+}
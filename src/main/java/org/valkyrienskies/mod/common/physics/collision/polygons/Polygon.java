@@ -28,6 +28,18 @@ public class Polygon {
         transform(transformation, transformType);
     }
 
+    /**
+     * Creates a polygon of eight zero vertices, meant to be reused through setAABB() instead of
+     * creating a new Polygon for every block checked.
+     */
+    public Polygon() {
+        this.vertices = new Vector[8];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vector();
+        }
+        this.normals = Vector.generateAxisAlignedNorms();
+    }
+
     // Copies one polygon onto another.
     protected Polygon(Polygon other) {
         this.vertices = new Vector[other.vertices.length];
@@ -42,6 +54,26 @@ public class Polygon {
             new Vector(bb.maxX, bb.minY, bb.maxZ), new Vector(bb.maxX, bb.maxY, bb.maxZ)};
     }
 
+    /**
+     * Resets this polygon to the given axis aligned box without allocating anything. Only works on
+     * polygons with eight vertices, the vertices are set in the same order as
+     * Polygon(AxisAlignedBB).
+     */
+    public void setAABB(double minX, double minY, double minZ, double maxX, double maxY,
+        double maxZ) {
+        vertices[0].setValue(minX, minY, minZ);
+        vertices[1].setValue(minX, maxY, minZ);
+        vertices[2].setValue(minX, minY, maxZ);
+        vertices[3].setValue(minX, maxY, maxZ);
+        vertices[4].setValue(maxX, minY, minZ);
+        vertices[5].setValue(maxX, maxY, minZ);
+        vertices[6].setValue(maxX, minY, maxZ);
+        vertices[7].setValue(maxX, maxY, maxZ);
+        normals[0].setValue(1.0D, 0.0D, 0.0D);
+        normals[1].setValue(0.0D, 1.0D, 0.0D);
+        normals[2].setValue(0.0D, 0.0D, 1.0D);
+    }
+
     public Vector[] getVertices() {
         return vertices;
     }
@@ -60,11 +92,19 @@ public class Polygon {
 
     public Vector getCenter() {
         Vector center = new Vector();
+        getCenter(center);
+        return center;
+    }
+
+    /**
+     * Sets dest to the center of this polygon.
+     */
+    public void getCenter(Vector dest) {
+        dest.zero();
         for (Vector v : vertices) {
-            center.add(v);
+            dest.add(v);
         }
-        center.divide(vertices.length);
-        return center;
+        dest.divide(vertices.length);
     }
 
     public void transform(ShipTransform transformation, TransformType transformType) {
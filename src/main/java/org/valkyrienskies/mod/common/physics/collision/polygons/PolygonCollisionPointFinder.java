@@ -4,6 +4,83 @@ import org.valkyrienskies.mod.common.math.Vector;
 
 public class PolygonCollisionPointFinder {
 
+    /**
+     * Allocation free version of getPointsOfCollisionForPolygons() for the fast collision case.
+     * Sets points[0] to the top point and points[1] to the bottom point of the collision, the
+     * returned Vectors are the vertices of the polygons themselves.
+     *
+     * @param points An array of at least length 2.
+     */
+    public static void getPointsOfCollisionForPolygons(PhysCollisionObject collisionInfo,
+        Vector[] points) {
+        Vector collisionNormal = collisionInfo.collision_normal;
+        Polygon topPoly;
+        Polygon bottomPoly;
+        if (getCenterDifferenceDot(collisionInfo.movable, collisionInfo.fixed, collisionNormal)
+            > 0) {
+            // Then the movable is the bottom
+            topPoly = collisionInfo.fixed;
+            bottomPoly = collisionInfo.movable;
+        } else {
+            // Then the fixed is the bottom
+            topPoly = collisionInfo.movable;
+            bottomPoly = collisionInfo.fixed;
+        }
+
+        double minDot = 99999999D;
+        int topPointIndex = -1;
+        for (int i = 0; i < topPoly.getVertices().length; i++) {
+            double dotProduct = topPoly.getVertices()[i].dot(collisionNormal);
+            if (dotProduct < minDot) {
+                minDot = dotProduct;
+                topPointIndex = i;
+            }
+        }
+
+        double maxDot = -9999999999D;
+        int bottomPointIndex = -1;
+        for (int i = 0; i < bottomPoly.getVertices().length; i++) {
+            double dotProduct = bottomPoly.getVertices()[i].dot(collisionNormal);
+            if (dotProduct > maxDot) {
+                maxDot = dotProduct;
+                bottomPointIndex = i;
+            }
+        }
+
+        points[0] = topPoly.getVertices()[topPointIndex];
+        points[1] = bottomPoly.getVertices()[bottomPointIndex];
+    }
+
+    /**
+     * Same as movable.getCenter().getSubtraction(fixed.getCenter()).dot(normal), without
+     * creating any vectors.
+     */
+    private static double getCenterDifferenceDot(Polygon movable, Polygon fixed, Vector normal) {
+        double movableX = 0, movableY = 0, movableZ = 0;
+        for (Vector v : movable.getVertices()) {
+            movableX += v.X;
+            movableY += v.Y;
+            movableZ += v.Z;
+        }
+        movableX /= movable.getVertices().length;
+        movableY /= movable.getVertices().length;
+        movableZ /= movable.getVertices().length;
+
+        double fixedX = 0, fixedY = 0, fixedZ = 0;
+        for (Vector v : fixed.getVertices()) {
+            fixedX += v.X;
+            fixedY += v.Y;
+            fixedZ += v.Z;
+        }
+        fixedX /= fixed.getVertices().length;
+        fixedY /= fixed.getVertices().length;
+        fixedZ /= fixed.getVertices().length;
+
+        // getSubtraction() returns the argument minus this vector.
+        return (fixedX - movableX) * normal.X + (fixedY - movableY) * normal.Y
+            + (fixedZ - movableZ) * normal.Z;
+    }
+
     public static Vector[] getPointsOfCollisionForPolygons(PhysCollisionObject collisionInfo) {
         Polygon topPoly = null;
         Polygon bottomPoly = null;
@@ -1,7 +1,7 @@
 package org.valkyrienskies.mod.common.physics.management;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.world.World;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 
@@ -10,7 +10,8 @@ public class DimensionPhysObjectManager {
     private final Map<World, WorldPhysObjectManager> managerPerWorld;
 
     public DimensionPhysObjectManager() {
-        managerPerWorld = new HashMap<>();
+        // Concurrent since the physics thread looks up managers when ship bounding boxes change.
+        managerPerWorld = new ConcurrentHashMap<>();
     }
 
     /**
@@ -31,9 +32,14 @@ public class DimensionPhysObjectManager {
     }
 
     public WorldPhysObjectManager getManagerForWorld(World world) {
-        if (!managerPerWorld.containsKey(world)) {
-            managerPerWorld.put(world, new WorldPhysObjectManager(world));
-        }
+        return managerPerWorld.computeIfAbsent(world, WorldPhysObjectManager::new);
+    }
+
+    /**
+     * Same as getManagerForWorld(), but returns null instead of creating a manager for the world.
+     * For callers that can run after the world was removed, which mustn't bring its manager back.
+     */
+    public WorldPhysObjectManager getExistingManagerForWorld(World world) {
         return managerPerWorld.get(world);
     }
 
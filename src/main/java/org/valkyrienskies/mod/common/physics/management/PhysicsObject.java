@@ -2,7 +2,6 @@ package org.valkyrienskies.mod.common.physics.management;
 
 import com.google.common.collect.Sets;
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.list.array.TIntArrayList;
 import io.netty.buffer.ByteBuf;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -10,7 +9,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
@@ -22,9 +20,9 @@ import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.network.play.server.SPacketChunkData;
 import net.minecraft.network.play.server.SPacketUnloadChunk;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.ClassInheritanceMultiMap;
 import net.minecraft.util.IThreadListener;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
@@ -50,11 +48,13 @@ import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 import org.valkyrienskies.mod.common.math.Quaternion;
 import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.multithreaded.TickSyncCompletableFuture;
+import org.valkyrienskies.mod.common.network.ShipChunkSnapshotMessage;
 import org.valkyrienskies.mod.common.network.WrapperPositionMessage;
 import org.valkyrienskies.mod.common.physics.BlockPhysicsDetails;
 import org.valkyrienskies.mod.common.physics.PhysicsCalculations;
+import org.valkyrienskies.mod.common.physics.collision.meshing.CountingVoxelFieldAABBMaker;
 import org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker;
-import org.valkyrienskies.mod.common.physics.collision.meshing.NaiveVoxelFieldAABBMaker;
+import org.valkyrienskies.mod.common.physics.collision.meshing.VoxelFieldConvexHull;
 import org.valkyrienskies.mod.common.physics.management.chunkcache.ClaimedChunkCacheController;
 import org.valkyrienskies.mod.common.physics.management.chunkcache.SurroundingChunkCacheController;
 import org.valkyrienskies.mod.common.physmanagement.chunk.ShipChunkAllocator;
@@ -83,9 +83,6 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
     private final ISubspace shipSubspace;
     private final Set<INodeController> physicsControllers;
     private final Set<INodeController> physicsControllersImmutable;
-    // Used to iterate over the ship blocks extremely quickly by taking advantage of the cache
-    @Getter(AccessLevel.PACKAGE)
-    private final TIntArrayList blockPositionsGameTick;
     @Getter
     private PhysObjectRenderManager shipRenderer;
     /**
@@ -107,10 +104,10 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
     /**
      * Has to be concurrent, only exists properly on the server. Do not use this for anything client
      * side! Contains all of the non-air block positions on the ship. This is used for generating
-     * AABBs and deconstructing the ship.
+     * AABBs and deconstructing the ship. Centered on the referenceBlockPos.
      */
     @Getter
-    private Set<BlockPos> blockPositions;
+    private ShipBlockPosSet blockPositions;
     @Getter
     @Setter
     private boolean isPhysicsEnabled = false;
@@ -133,7 +130,6 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
     private ClaimedChunkCacheController claimedChunkCache;
 
     @Getter
-    @Setter
     private AxisAlignedBB shipBoundingBox;
 
     /**
@@ -150,22 +146,39 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
     private boolean isFullyLoaded = false;
     @Getter
     private IVoxelFieldAABBMaker voxelFieldAABBMaker; // Used to quickly make aabb's
+    // The convex hull of the blocks, which gives a tighter world aabb than the voxel field aabb.
+    @Getter
+    private VoxelFieldConvexHull voxelFieldConvexHull;
+    // The blocks of the ship for new watchers, from ShipChunkSnapshotMessage.encodeChunks(). Null
+    // when a block or the light changed since it was last encoded. Only used by the game thread.
+    private byte[] encodedChunkSnapshot;
 
     public PhysicsObject(PhysicsWrapperEntity host) {
         this.wrapperEntity = host;
         if (host.world.isRemote) {
             this.shipRenderer = new PhysObjectRenderManager(this);
         }
-        // We need safe access to this across multiple threads.
-        this.blockPositions = ConcurrentHashMap.newKeySet();
+        // Replaced by a set centered on the referenceBlockPos once that is known.
+        this.blockPositions = new ShipBlockPosSet(0, 0);
         this.shipBoundingBox = Entity.ZERO_AABB;
         this.watchingPlayers = new ArrayList<>();
         this.shipSubspace = new ImplSubspace(this);
         this.physicsControllers = Sets.newConcurrentHashSet();
         this.physicsControllersImmutable = Collections.unmodifiableSet(this.physicsControllers);
-        this.blockPositionsGameTick = new TIntArrayList();
         this.cachedSurroundingChunks = new SurroundingChunkCacheController(this);
         this.voxelFieldAABBMaker = null;
+        this.voxelFieldConvexHull = null;
+        this.encodedChunkSnapshot = null;
+    }
+
+    /**
+     * Called when the light at a position in one of this ship's chunks changed.
+     */
+    public void onLightChanged(BlockPos pos) {
+        if (getOwnedChunks().containsBlock(pos)) {
+            // The players that start watching from now on need to see the new light.
+            encodedChunkSnapshot = null;
+        }
     }
 
     public void onSetBlockState(IBlockState oldState, IBlockState newState, BlockPos posAt) {
@@ -173,15 +186,15 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         if (world().isRemote || !getOwnedChunks().containsBlock(posAt)) {
             return;
         }
+        // The players that start watching from now on need to see the new block.
+        encodedChunkSnapshot = null;
 
         // If the block here is not to be made with physics, just treat it like you'd
         // treat AIR blocks.
-        if (oldState != null && BlockPhysicsDetails.blocksToNotPhysicsInfuse
-            .contains(oldState.getBlock())) {
+        if (oldState != null && BlockPhysicsDetails.isBlockToNotPhysicsInfuse(oldState)) {
             oldState = Blocks.AIR.getDefaultState();
         }
-        if (newState != null && BlockPhysicsDetails.blocksToNotPhysicsInfuse
-            .contains(newState.getBlock())) {
+        if (newState != null && BlockPhysicsDetails.isBlockToNotPhysicsInfuse(newState)) {
             newState = Blocks.AIR.getDefaultState();
         }
 
@@ -189,19 +202,15 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         boolean isNewAir = newState == null || newState.getBlock().equals(Blocks.AIR);
 
         if (isNewAir) {
-            boolean removed = getBlockPositions().remove(posAt);
+            getBlockPositions().remove(posAt);
             voxelFieldAABBMaker.removeVoxel(posAt.getX(), posAt.getY(), posAt.getZ());
-            if (removed) {
-                this.blockPositionsGameTick.remove(this.getBlockPosToIntRelToShip(posAt));
-            }
+            voxelFieldConvexHull.removeVoxel(posAt.getX(), posAt.getY(), posAt.getZ());
         }
 
         if (isOldAir && !isNewAir) {
-            boolean isAdded = getBlockPositions().add(posAt);
+            getBlockPositions().add(posAt);
             voxelFieldAABBMaker.addVoxel(posAt.getX(), posAt.getY(), posAt.getZ());
-            if (isAdded) {
-                this.blockPositionsGameTick.add(this.getBlockPosToIntRelToShip(posAt));
-            }
+            voxelFieldConvexHull.addVoxel(posAt.getX(), posAt.getY(), posAt.getZ());
 
             int chunkRelativeX = (posAt.getX() >> 4) - getOwnedChunks().minX();
             int chunkRelativeZ = (posAt.getZ() >> 4) - getOwnedChunks().minZ();
@@ -235,6 +244,46 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         ValkyrienSkiesMod.VS_CHUNK_MANAGER.removeShipPosition(getWrapperEntity());
         ValkyrienSkiesMod.VS_CHUNK_MANAGER.removeShipNameRegistry(getWrapperEntity());
         ValkyrienSkiesMod.VS_PHYSICS_MANAGER.onShipUnload(getWrapperEntity());
+        if (!world().isRemote && getOwnedChunks() != null) {
+            // The next ship given this square must not inherit anything from this one.
+            clearClaimedChunks();
+            ValkyrienSkiesMod.VS_CHUNK_MANAGER.getManagerForWorld(world())
+                .releaseChunkSet(getOwnedChunks());
+        }
+    }
+
+    /**
+     * Removes the tile entities and entities in the ship's chunks from the world, and replaces the
+     * chunks with empty ones.
+     */
+    private void clearClaimedChunks() {
+        if (claimedChunkCache == null) {
+            return;
+        }
+        for (int x = getOwnedChunks().minX(); x <= getOwnedChunks().maxX(); x++) {
+            for (int z = getOwnedChunks().minZ(); z <= getOwnedChunks().maxZ(); z++) {
+                Chunk oldChunk = claimedChunkCache.getChunkAt(x, z);
+                if (oldChunk != null) {
+                    // Otherwise they stay in world.loadedTileEntityList and keep ticking.
+                    for (BlockPos pos : new ArrayList<>(oldChunk.getTileEntityMap().keySet())) {
+                        world().removeTileEntity(pos);
+                    }
+                    for (ClassInheritanceMultiMap<Entity> entities : oldChunk.getEntityLists()) {
+                        for (Entity entity : entities) {
+                            if (!(entity instanceof EntityPlayer)) {
+                                entity.setDead();
+                            }
+                        }
+                    }
+                }
+                // TODO: Used to use EMPTYCHUNK to do this but that causes crashes?
+                Chunk chunk = new Chunk(world(), x, z);
+                chunk.setTerrainPopulated(true);
+                chunk.setLightPopulated(true);
+                claimedChunkCache.injectChunkIntoWorld(chunk, x, z, true);
+                claimedChunkCache.setChunkAt(x, z, chunk);
+            }
+        }
     }
 
     public void claimNewChunks(int radius) {
@@ -317,8 +366,11 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         assignChunkPhysicObject();
 
         setReferenceBlockPos(getOwnedChunks().regionCenter());
-        voxelFieldAABBMaker = new NaiveVoxelFieldAABBMaker(referenceBlockPos.getX(),
+        voxelFieldAABBMaker = new CountingVoxelFieldAABBMaker(referenceBlockPos.getX(),
+            referenceBlockPos.getZ());
+        voxelFieldConvexHull = new VoxelFieldConvexHull(referenceBlockPos.getX(),
             referenceBlockPos.getZ());
+        blockPositions = new ShipBlockPosSet(referenceBlockPos.getX(), referenceBlockPos.getZ());
 
         setCenterCoord(new Vector(getReferenceBlockPos().getX() + .5,
             getReferenceBlockPos().getY() + .5,
@@ -343,6 +395,7 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
 
             MoveBlocks.copyBlockToPos(world(), oldPos, newPos, Optional.of(this));
             voxelFieldAABBMaker.addVoxel(newPos.getX(), newPos.getY(), newPos.getZ());
+            voxelFieldConvexHull.addVoxel(newPos.getX(), newPos.getY(), newPos.getZ());
         }
         this.physicsInfuserPos = this.physicsInfuserPos.add(centerDifference);
 
@@ -395,11 +448,30 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
 
     public void preloadNewPlayers() {
         Set<EntityPlayerMP> newWatchers = getPlayersThatJustWatched();
+        if (newWatchers.isEmpty()) {
+            return;
+        }
+        if (encodedChunkSnapshot == null) {
+            encodedChunkSnapshot = ShipChunkSnapshotMessage
+                .encodeChunks(claimedChunkCache.getCacheArray(), world().provider.hasSkyLight());
+        }
+        // Tile entities can change without a block changing, so those are never cached.
+        List<NBTTagCompound> tileEntityTags = new ArrayList<>();
+        for (Chunk[] chunkArray : claimedChunkCache.getCacheArray()) {
+            for (Chunk chunk : chunkArray) {
+                for (TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+                    tileEntityTags.add(tileEntity.getUpdateTag());
+                }
+            }
+        }
+        ShipChunkSnapshotMessage snapshot = new ShipChunkSnapshotMessage(getOwnedChunks(),
+            encodedChunkSnapshot, tileEntityTags);
+        for (EntityPlayerMP player : newWatchers) {
+            ValkyrienSkiesMod.physWrapperNetwork.sendTo(snapshot, player);
+        }
         for (Chunk[] chunkArray : claimedChunkCache.getCacheArray()) {
             for (Chunk chunk : chunkArray) {
-                SPacketChunkData data = new SPacketChunkData(chunk, 65535);
                 for (EntityPlayerMP player : newWatchers) {
-                    player.connection.sendPacket(data);
                     ((WorldServer) world()).getEntityTracker()
                         .sendLeashedEntitiesInChunk(player, chunk);
                 }
@@ -422,6 +494,16 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         }
     }
 
+    public void setShipBoundingBox(AxisAlignedBB shipBoundingBox) {
+        this.shipBoundingBox = shipBoundingBox;
+        // The physics thread can still be moving the ship after its world unloaded.
+        WorldPhysObjectManager manager = ValkyrienSkiesMod.VS_PHYSICS_MANAGER
+            .getExistingManagerForWorld(world());
+        if (manager != null) {
+            manager.onShipBoundingBoxChanged(getWrapperEntity());
+        }
+    }
+
     /**
      * Called when this entity has been unloaded from the world
      */
@@ -497,7 +579,8 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         WrapperPositionMessage toUse = getShipTransformationManager().serverBuffer
             .pollForClientTransform();
         if (toUse != null) {
-            toUse.applySmoothLerp(this, .6D);
+            // Already smoothed by the buffer, so apply all of it.
+            toUse.applySmoothLerp(this, 1D);
         }
 
         getShipTransformationManager().updateAllTransforms(false, false, true);
@@ -514,8 +597,11 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
 
         assignChunkPhysicObject();
         setReferenceBlockPos(getOwnedChunks().regionCenter());
-        voxelFieldAABBMaker = new NaiveVoxelFieldAABBMaker(referenceBlockPos.getX(),
+        voxelFieldAABBMaker = new CountingVoxelFieldAABBMaker(referenceBlockPos.getX(),
             referenceBlockPos.getZ());
+        voxelFieldConvexHull = new VoxelFieldConvexHull(referenceBlockPos.getX(),
+            referenceBlockPos.getZ());
+        blockPositions = new ShipBlockPosSet(referenceBlockPos.getX(), referenceBlockPos.getZ());
         setShipTransformationManager(new ShipTransformationManager(this));
         if (!world().isRemote) {
             createPhysicsCalculations();
@@ -555,10 +641,10 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
                                                 index * 16 + y,
                                                 chunk.z * 16 + z);
                                             getBlockPositions().add(pos);
-                                            blockPositionsGameTick
-                                                .add(this.getBlockPosToIntRelToShip(pos));
                                             voxelFieldAABBMaker
                                                 .addVoxel(pos.getX(), pos.getY(), pos.getZ());
+                                            voxelFieldConvexHull
+                                                .addVoxel(pos.getX(), pos.getY(), pos.getZ());
                                             if (BlockPhysicsDetails.isBlockProvidingForce(
                                                 world().getBlockState(pos), pos, world())) {
                                                 getPhysicsProcessor()
@@ -759,15 +845,6 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
         return physicsControllersImmutable;
     }
 
-    private int getBlockPosToIntRelToShip(BlockPos pos) {
-        return SpatialDetector
-            .getHashWithRespectTo(pos.getX(), pos.getY(), pos.getZ(), this.referenceBlockPos);
-    }
-
-    void setBlockPosFromIntRelToShop(int pos, MutableBlockPos toSet) {
-        SpatialDetector.setPosWithRespectTo(pos, this.referenceBlockPos, toSet);
-    }
-
     /**
      * Returns true if this ship is aligned close enough to the grid that it is allowed to
      * deconstruct back to the world.
@@ -801,29 +878,21 @@ public class PhysicsObject implements ISubspaceProvider, IPhysicsEntity {
             Math.round(centerCoord.Y - getWrapperEntity().posY),
             Math.round(centerCoord.Z - getWrapperEntity().posZ));
         // First copy all the blocks from ship to world.
-
-        for (BlockPos oldPos : this.blockPositions) {
+        int[] shipBlocks = blockPositions.toPackedArray();
+        MutableBlockPos oldPos = new MutableBlockPos();
+        for (int packed : shipBlocks) {
+            blockPositions.unpack(packed, oldPos);
             newPos.setPos(oldPos.getX() - centerDifference.getX(),
                 oldPos.getY() - centerDifference.getY(), oldPos.getZ() - centerDifference.getZ());
             MoveBlocks.copyBlockToPos(world(), oldPos, newPos, Optional.empty());
         }
 
         // Just delete the tile entities in ship to prevent any dupe bugs.
-        for (BlockPos oldPos : this.blockPositions) {
-            world().removeTileEntity(oldPos);
-        }
-
-        // Delete old blocks. TODO: Used to use EMPTYCHUNK to do this but that causes crashes?
-        for (int x = getOwnedChunks().minX(); x <= getOwnedChunks().maxX(); x++) {
-            for (int z = getOwnedChunks().minZ(); z <= getOwnedChunks().maxZ(); z++) {
-                Chunk chunk = new Chunk(world(), x, z);
-                chunk.setTerrainPopulated(true);
-                chunk.setLightPopulated(true);
-                claimedChunkCache.injectChunkIntoWorld(chunk, x, z, true);
-                claimedChunkCache.setChunkAt(x, z, chunk);
-            }
+        for (int packed : shipBlocks) {
+            world().removeTileEntity(blockPositions.unpack(packed, oldPos));
         }
 
+        // destroy() deletes the old blocks, along with everything else in the ship's chunks.
         this.destroy();
     }
 
@@ -29,7 +29,7 @@ public class PhysicsTickHandler {
                     .getCurrentPhysicsTransform();
 
                 wrapper.physicsUpdateLastTickPositions();
-                wrapper.setPhysicsEntityPositionAndRotation(physTransform.getPosX(),
+                wrapper.applyPhysicsPositionAndRotation(physTransform.getPosX(),
                     physTransform.getPosY(), physTransform.getPosZ(), physTransform.getPitch(),
                     physTransform.getYaw(), physTransform.getRoll());
                 wrapper.getPhysicsObject()
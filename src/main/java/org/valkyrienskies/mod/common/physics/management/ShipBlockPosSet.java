@@ -0,0 +1,158 @@
+package org.valkyrienskies.mod.common.physics.management;
+
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
+
+/**
+ * A thread safe set of the block positions of a ship, each packed into an int relative to the
+ * center of the ship's chunks. Uses a fraction of the memory of a set of BlockPos objects, which
+ * matters for ships with thousands of blocks.
+ * <p>
+ * Positions can be up to 512 blocks away from the center along x and z, the same range as an
+ * IVoxelFieldAABBMaker. Iterating goes over a snapshot, so other threads can change the set
+ * meanwhile.
+ */
+public class ShipBlockPosSet implements Iterable<BlockPos> {
+
+    // How far positions can be from the center along x and z.
+    public static final int MAX_HORIZONTAL_OFFSET = 512;
+    private static final int HORIZONTAL_BITS = 10;
+    private static final int HORIZONTAL_MASK = (1 << HORIZONTAL_BITS) - 1;
+    private static final int Y_BITS = 8;
+    private static final int Y_MASK = (1 << Y_BITS) - 1;
+    private final int centerX;
+    private final int centerZ;
+    private final TIntHashSet packedPositions;
+
+    public ShipBlockPosSet(int centerX, int centerZ) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.packedPositions = new TIntHashSet();
+    }
+
+    /**
+     * @return True if the position wasn't in the set already.
+     * @throws IllegalArgumentException If the position is out of range of the center
+     */
+    public boolean add(int x, int y, int z) {
+        int packed = pack(x, y, z);
+        synchronized (packedPositions) {
+            return packedPositions.add(packed);
+        }
+    }
+
+    public boolean add(BlockPos pos) {
+        return add(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * @return True if the position was in the set.
+     */
+    public boolean remove(int x, int y, int z) {
+        if (!isInRange(x, y, z)) {
+            return false;
+        }
+        int packed = pack(x, y, z);
+        synchronized (packedPositions) {
+            return packedPositions.remove(packed);
+        }
+    }
+
+    public boolean remove(BlockPos pos) {
+        return remove(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean contains(int x, int y, int z) {
+        if (!isInRange(x, y, z)) {
+            return false;
+        }
+        int packed = pack(x, y, z);
+        synchronized (packedPositions) {
+            return packedPositions.contains(packed);
+        }
+    }
+
+    public boolean contains(BlockPos pos) {
+        return contains(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public int size() {
+        synchronized (packedPositions) {
+            return packedPositions.size();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        synchronized (packedPositions) {
+            packedPositions.clear();
+        }
+    }
+
+    /**
+     * @return A copy of the packed positions, in no particular order. Read them with unpack().
+     */
+    public int[] toPackedArray() {
+        synchronized (packedPositions) {
+            return packedPositions.toArray();
+        }
+    }
+
+    /**
+     * Sets toSet to the position packed into an element of toPackedArray().
+     */
+    public MutableBlockPos unpack(int packed, MutableBlockPos toSet) {
+        return toSet.setPos(
+            (packed & HORIZONTAL_MASK) - MAX_HORIZONTAL_OFFSET + centerX,
+            (packed >>> HORIZONTAL_BITS) & Y_MASK,
+            (packed >>> (HORIZONTAL_BITS + Y_BITS)) - MAX_HORIZONTAL_OFFSET + centerZ);
+    }
+
+    /**
+     * Iterates over a snapshot of the set, giving a new BlockPos for every position.
+     */
+    @Override
+    public Iterator<BlockPos> iterator() {
+        int[] snapshot = toPackedArray();
+        MutableBlockPos temp = new MutableBlockPos();
+        return new Iterator<BlockPos>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            public BlockPos next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return unpack(snapshot[index++], temp).toImmutable();
+            }
+        };
+    }
+
+    private boolean isInRange(int x, int y, int z) {
+        return x - centerX >= -MAX_HORIZONTAL_OFFSET && x - centerX < MAX_HORIZONTAL_OFFSET
+            && y >= 0 && y <= Y_MASK
+            && z - centerZ >= -MAX_HORIZONTAL_OFFSET && z - centerZ < MAX_HORIZONTAL_OFFSET;
+    }
+
+    private int pack(int x, int y, int z) {
+        if (!isInRange(x, y, z)) {
+            throw new IllegalArgumentException(
+                "Position " + x + ", " + y + ", " + z + " is out of range of the ship center "
+                    + centerX + ", " + centerZ);
+        }
+        return (x - centerX + MAX_HORIZONTAL_OFFSET)
+            | y << HORIZONTAL_BITS
+            | (z - centerZ + MAX_HORIZONTAL_OFFSET) << (HORIZONTAL_BITS + Y_BITS);
+    }
+}
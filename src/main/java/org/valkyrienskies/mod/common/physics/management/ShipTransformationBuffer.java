@@ -1,83 +1,248 @@
 package org.valkyrienskies.mod.common.physics.management;
 
-import java.util.LinkedList;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Quaternion;
+import org.valkyrienskies.mod.common.multithreaded.VSThread;
 import org.valkyrienskies.mod.common.network.WrapperPositionMessage;
+import valkyrienwarfare.api.TransformType;
 
 /**
- * Ideally this would smooth out data coming from the sever, but for now it mostly does nothing
- * aside from storing the previous transforms. May possibly add something here in the future.
+ * Holds the ship positions sent by the server in a ring buffer, ordered by the physics tick they
+ * were made on, and works out where the client should show the ship.
+ * <p>
+ * The client shows the ship slightly in the past: at the physics tick the server was on a little
+ * while ago, interpolating between the snapshots on either side of it. That way late snapshots and
+ * the time between snapshots don't make the ship stutter. When the snapshots stop coming the last
+ * two are extrapolated for up to MAX_EXTRAPOLATION_TICKS, after which the ship holds still.
  *
  * @author thebest108
  */
 public class ShipTransformationBuffer {
 
-    public static final int PACKET_BUFFER_SIZE = 50;
-    public static final int TRANSFORMS_SMOOTHED = 5;
-    public static final double TRANFORMATION_DELAY = .5D;
-    private final LinkedList<WrapperPositionMessage> transformations;
-    private final BezierWeightGenerator weightGenerator;
+    // The most snapshots kept, the oldest are dropped first.
+    public static final int CAPACITY = 32;
+    // Physics ticks of delay on top of the time between snapshots, to absorb network jitter.
+    public static final double JITTER_DELAY_TICKS = 5D;
+    // Never extrapolate more than this many physics ticks past the newest snapshot.
+    public static final double MAX_EXTRAPOLATION_TICKS = 20D;
+    // Snapshots further apart than this are not interpolated between.
+    public static final int MAX_INTERPOLATION_GAP_TICKS = 100;
+    // How many physics ticks the estimate of the server clock falls back per physics tick of client
+    // time, so it follows the server when it slows down. Less than 1, so the ship never goes back.
+    public static final double CLOCK_DRIFT_PER_TICK = .01D;
+    // When snapshots arrive this many physics ticks later than expected, the server was paused or
+    // lagging so hard that we start over with the server clock estimate instead.
+    public static final double MAX_CLOCK_LAG_TICKS = 50D;
+    // The most keyframes kept around for decoding WrapperPositionDeltaMessages.
+    public static final int MAX_KEYFRAMES = 128;
+    private final WrapperPositionMessage[] snapshots;
+    // The index of the oldest snapshot in snapshots.
+    private int head;
+    private int size;
+    // Our estimate of the server physics tick minus the client time in physics ticks, based on
+    // the snapshots that took the least time to get here.
+    private double serverTickOffset;
+    private boolean hasServerTickOffset;
+    // When serverTickOffset was last updated.
+    private long serverTickOffsetNano;
+    // The last tick shown, so the ship never moves back when our estimates change.
+    private double lastRenderTick;
+    // A moving average of the physics ticks between consecutive snapshots.
+    private double snapshotSpacing;
+    // The keyframes the server may still send deltas against, by keyframe id.
+    private final TreeMap<Integer, WrapperPositionMessage> keyframes;
 
     public ShipTransformationBuffer() {
-        this.transformations = new LinkedList<WrapperPositionMessage>();
-        this.weightGenerator = new BezierWeightGenerator(TRANSFORMS_SMOOTHED);
+        this.snapshots = new WrapperPositionMessage[CAPACITY];
+        this.head = 0;
+        this.size = 0;
+        this.serverTickOffset = 0;
+        this.hasServerTickOffset = false;
+        this.serverTickOffsetNano = 0;
+        this.lastRenderTick = Double.NEGATIVE_INFINITY;
+        this.snapshotSpacing = 0;
+        this.keyframes = new TreeMap<>();
     }
 
     public void pushMessage(WrapperPositionMessage toPush) {
-        transformations.push(new WrapperPositionMessage(toPush));
-        if (transformations.size() > PACKET_BUFFER_SIZE) {
-            transformations.removeLast();
-        }
+        pushMessage(toPush, System.nanoTime());
     }
 
-    public WrapperPositionMessage pollForClientTransform() {
-        if (isSmoothTransformReady()) {
-            return generateSmoothTransform();
+    /**
+     * @param arrivalNano When the message was received, in System.nanoTime()
+     */
+    void pushMessage(WrapperPositionMessage toPush, long arrivalNano) {
+        int tick = toPush.getRelativeTick();
+        double offset = tick - arrivalNano / (double) VSThread.NS_PER_TICK;
+        if (hasServerTickOffset && offset > serverTickOffset - MAX_CLOCK_LAG_TICKS) {
+            double elapsedTicks =
+                (arrivalNano - serverTickOffsetNano) / (double) VSThread.NS_PER_TICK;
+            serverTickOffset = Math.max(offset,
+                serverTickOffset - CLOCK_DRIFT_PER_TICK * Math.max(elapsedTicks, 0));
         } else {
-            return null;
+            serverTickOffset = offset;
+            hasServerTickOffset = true;
+            // The server clock jumped back, so we have to as well.
+            lastRenderTick = Double.NEGATIVE_INFINITY;
         }
-    }
+        serverTickOffsetNano = arrivalNano;
 
-    private boolean isSmoothTransformReady() {
-        return true; /*transformations.size() > TRANSFORMS_SMOOTHED;*/
+        // Snapshots almost always arrive in order, so look for the spot starting from the newest.
+        int index = size;
+        while (index > 0 && getSnapshot(index - 1).getRelativeTick() > tick) {
+            index--;
+        }
+        if (index > 0 && getSnapshot(index - 1).getRelativeTick() == tick) {
+            // We already have this one
+            return;
+        }
+        if (index == size && size > 0) {
+            int spacing = tick - getSnapshot(size - 1).getRelativeTick();
+            // Big gaps are from the ship not being watched for a while, not the send rate.
+            if (spacing <= MAX_INTERPOLATION_GAP_TICKS) {
+                snapshotSpacing = snapshotSpacing == 0 ? spacing
+                    : snapshotSpacing * .9 + spacing * .1;
+            }
+        }
+        if (size == CAPACITY) {
+            if (index == 0) {
+                // Older than everything in a full buffer, we'll never need it.
+                return;
+            }
+            head = (head + 1) % CAPACITY;
+            size--;
+            index--;
+        }
+        for (int i = size; i > index; i--) {
+            setSnapshot(i, getSnapshot(i - 1));
+        }
+        setSnapshot(index, new WrapperPositionMessage(toPush));
+        size++;
     }
 
-    // Doesn't really do anything yet.
-    private WrapperPositionMessage generateSmoothTransform() {
-        return transformations.pollFirst();
-        /*
-        double[] weights = new double[TRANSFORMS_SMOOTHED];
-        ShipTransformationPacketHolder[] transforms = new ShipTransformationPacketHolder[TRANSFORMS_SMOOTHED];
-        for (int i = 0; i < TRANSFORMS_SMOOTHED; i++) {
-            weights[i] = weightGenerator.getTermWeight(.5, i);
-            transforms[i] = transformations.get(i);
+    /**
+     * Pushes a full position message, and keeps it to decode the deltas sent against it.
+     */
+    public void pushKeyframe(WrapperPositionMessage keyframe) {
+        pushMessage(keyframe);
+        keyframes.put(keyframe.getKeyframeID(), keyframe);
+        if (keyframes.size() > MAX_KEYFRAMES) {
+            keyframes.pollFirstEntry();
         }
-        return transforms[0]; // new ShipTransformationPacketHolder(transforms, weights);
-        */
     }
 
-    private static class BezierWeightGenerator {
+    /**
+     * @return The keyframe with the given id, or null if we don't have it (anymore).
+     */
+    @Nullable
+    public WrapperPositionMessage getKeyframe(int keyframeID) {
+        // The server only ever moves on to newer keyframes, so the older ones can go.
+        keyframes.headMap(keyframeID).clear();
+        return keyframes.get(keyframeID);
+    }
 
-        private final int order;
+    /**
+     * @return Where the ship should be shown right now, or null if we haven't received anything.
+     */
+    @Nullable
+    public WrapperPositionMessage pollForClientTransform() {
+        return pollForClientTransform(System.nanoTime());
+    }
 
-        BezierWeightGenerator(int order) {
-            this.order = order;
+    @Nullable
+    WrapperPositionMessage pollForClientTransform(long nowNano) {
+        if (size == 0) {
+            return null;
         }
+        lastRenderTick = getRenderTick(nowNano);
+        return sample(lastRenderTick);
+    }
 
-        public double getTermWeight(double deltaTime, int term) {
-            return 2 * Math.pow(deltaTime, term) * Math.pow(1 - deltaTime, order - term)
-                * binomial(TRANSFORMS_SMOOTHED - 1, term);
-        }
+    /**
+     * @return The server physics tick the ship should be shown at, at the given time.
+     */
+    double getRenderTick(long nowNano) {
+        double renderTick = nowNano / (double) VSThread.NS_PER_TICK + serverTickOffset
+            - (snapshotSpacing + JITTER_DELAY_TICKS);
+        return Math.max(renderTick, lastRenderTick);
+    }
 
-        private int binomial(int n, int k) {
-            if (k > n - k) {
-                k = n - k;
+    private WrapperPositionMessage sample(double renderTick) {
+        WrapperPositionMessage newest = getSnapshot(size - 1);
+        if (renderTick >= newest.getRelativeTick()) {
+            if (size >= 2 && canInterpolate(getSnapshot(size - 2), newest)) {
+                WrapperPositionMessage previous = getSnapshot(size - 2);
+                double extrapolatedTicks = Math
+                    .min(renderTick - newest.getRelativeTick(), MAX_EXTRAPOLATION_TICKS);
+                return interpolate(previous, newest, 1 + extrapolatedTicks
+                    / (newest.getRelativeTick() - previous.getRelativeTick()));
             }
-            int b = 1;
-            for (int i = 1, m = n; i <= k; i++, m--) {
-                b = b * m / i;
-            }
-            return b;
+            return new WrapperPositionMessage(newest);
+        }
+        // Forget the snapshots we've moved past, keeping the one just before renderTick.
+        while (size >= 2 && getSnapshot(1).getRelativeTick() <= renderTick) {
+            snapshots[head] = null;
+            head = (head + 1) % CAPACITY;
+            size--;
         }
+        WrapperPositionMessage older = getSnapshot(0);
+        if (renderTick <= older.getRelativeTick()) {
+            return new WrapperPositionMessage(older);
+        }
+        WrapperPositionMessage newer = getSnapshot(1);
+        if (!canInterpolate(older, newer)) {
+            return new WrapperPositionMessage(older);
+        }
+        return interpolate(older, newer, (renderTick - older.getRelativeTick())
+            / (newer.getRelativeTick() - older.getRelativeTick()));
+    }
+
+    // The position of a ship is the position of its center of mass, so positions with different
+    // centers of mass can't be interpolated.
+    private static boolean canInterpolate(WrapperPositionMessage older,
+        WrapperPositionMessage newer) {
+        return newer.getRelativeTick() - older.getRelativeTick() <= MAX_INTERPOLATION_GAP_TICKS
+            && older.getCenterOfMass().equals(newer.getCenterOfMass());
+    }
+
+    /**
+     * Interpolates the position linearly and the rotation with the same slerp
+     * ShipTransformationManager.updateRenderTransform() uses.
+     *
+     * @param alpha 0 for older, 1 for newer, above 1 to extrapolate past newer
+     */
+    private static WrapperPositionMessage interpolate(WrapperPositionMessage older,
+        WrapperPositionMessage newer, double alpha) {
+        WrapperPositionMessage result = new WrapperPositionMessage(newer);
+        result.setPosX(older.getPosX() + (newer.getPosX() - older.getPosX()) * alpha);
+        result.setPosY(older.getPosY() + (newer.getPosY() - older.getPosY()) * alpha);
+        result.setPosZ(older.getPosZ() + (newer.getPosZ() - older.getPosZ()) * alpha);
+
+        Quaternion olderRotation = ShipTransform
+            .createRotationTransform(older.getPitch(), older.getYaw(), older.getRoll())
+            .createRotationQuaternion(TransformType.SUBSPACE_TO_GLOBAL);
+        Quaternion newerRotation = ShipTransform
+            .createRotationTransform(newer.getPitch(), newer.getYaw(), newer.getRoll())
+            .createRotationQuaternion(TransformType.SUBSPACE_TO_GLOBAL);
+        double[] angles = Quaternion.slerpInterpolate(olderRotation, newerRotation, alpha)
+            .toRadians();
+        result.setPitch(Math.toDegrees(angles[0]));
+        result.setYaw(Math.toDegrees(angles[1]));
+        result.setRoll(Math.toDegrees(angles[2]));
+
+        // Move the bounding box along with the ship.
+        result.setShipBB(newer.getShipBB().offset(result.getPosX() - newer.getPosX(),
+            result.getPosY() - newer.getPosY(), result.getPosZ() - newer.getPosZ()));
+        return result;
+    }
+
+    private WrapperPositionMessage getSnapshot(int index) {
+        return snapshots[(head + index) % CAPACITY];
+    }
 
+    private void setSnapshot(int index, WrapperPositionMessage snapshot) {
+        snapshots[(head + index) % CAPACITY] = snapshot;
     }
 }
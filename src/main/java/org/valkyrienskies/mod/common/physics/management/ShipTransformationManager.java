@@ -4,12 +4,14 @@ import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.world.border.WorldBorder;
-import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
 import org.valkyrienskies.mod.common.coordinates.ShipTransform;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 import org.valkyrienskies.mod.common.math.Quaternion;
 import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.multithreaded.PhysicsShipTransform;
+import org.valkyrienskies.mod.common.network.PositionKeyframeTracker;
+import org.valkyrienskies.mod.common.network.ShipInterestPolicy;
+import org.valkyrienskies.mod.common.network.ShipPositionBatcher;
 import org.valkyrienskies.mod.common.network.WrapperPositionMessage;
 import org.valkyrienskies.mod.common.physics.collision.meshing.IVoxelFieldAABBMaker;
 import org.valkyrienskies.mod.common.physics.collision.polygons.Polygon;
@@ -26,6 +28,8 @@ public class ShipTransformationManager {
     public static final ShipTransform ZERO_TRANSFORM = new ShipTransform();
     // A buffer to hold ship transform data sent from server to the client.
     public final ShipTransformationBuffer serverBuffer;
+    // Which position keyframes each watching player has, so we can send them deltas instead.
+    private final PositionKeyframeTracker positionKeyframes;
     private final PhysicsObject parent;
     public Vector[] normals;
     private ShipTransform currentTickTransform;
@@ -45,6 +49,7 @@ public class ShipTransformationManager {
         this.prevPhysicsTransform = null;
         this.normals = null;
         this.serverBuffer = new ShipTransformationBuffer();
+        this.positionKeyframes = new PositionKeyframeTracker();
     }
 
     /**
@@ -118,7 +123,14 @@ public class ShipTransformationManager {
         }
     }
 
-    public void sendPositionToPlayers(int positionTickID) {
+    /**
+     * Adds the position of this ship to the batch of every player watching it that the interest
+     * policy says should get it this time.
+     *
+     * @param sendIndex The number of times ship positions have been sent so far
+     */
+    public void sendPositionToPlayers(int positionTickID, int sendIndex,
+        ShipInterestPolicy interestPolicy, ShipPositionBatcher batcher) {
         WrapperPositionMessage posMessage = null;
         if (getCurrentPhysicsTransform() != ZERO_TRANSFORM) {
             posMessage = new WrapperPositionMessage(
@@ -128,21 +140,39 @@ public class ShipTransformationManager {
             posMessage = new WrapperPositionMessage(parent.getWrapperEntity(), positionTickID);
         }
 
+        AxisAlignedBB shipBB = posMessage.getShipBB();
+        int shipID = parent.getWrapperEntity().getEntityId();
         // Do a standard loop here to avoid a concurrentModificationException. A standard for each loop could cause a crash.
         for (int i = 0; i < parent.getWatchingPlayers().size(); i++) {
             EntityPlayerMP player = parent.getWatchingPlayers().get(i);
-            if (player != null) {
-                ValkyrienSkiesMod.physWrapperNetwork.sendTo(posMessage, player);
+            if (player != null && ShipInterestPolicy
+                .shouldSend(interestPolicy.getTier(player, shipBB), sendIndex, shipID)) {
+                batcher.addEntry(player, positionKeyframes.encodeMessage(player, posMessage));
             }
         }
+        positionKeyframes.retainPlayers(parent.getWatchingPlayers());
+    }
+
+    public PositionKeyframeTracker getPositionKeyframes() {
+        return positionKeyframes;
     }
 
     private void updateParentNormals() {
         // We edit a local array instead of normals to avoid data races.
+        this.normals = createCollisionNormals(getCurrentTickTransform());
+    }
+
+    /**
+     * Creates the 15 potential separating axes used to collide a ship block with a world block;
+     * the 3 world axes, the 3 ship axes, and the 9 cross products between them.
+     *
+     * @param shipTransform The transform used to rotate the ship axes into the world.
+     */
+    public static Vector[] createCollisionNormals(ShipTransform shipTransform) {
         final Vector[] newNormals = new Vector[15];
         // Used to generate Normals for the Axis Aligned World
         final Vector[] alignedNorms = Vector.generateAxisAlignedNorms();
-        final Vector[] rotatedNorms = generateRotationNormals();
+        final Vector[] rotatedNorms = generateRotationNormals(shipTransform);
         for (int i = 0; i < 6; i++) {
             Vector currentNorm;
             if (i < 3) {
@@ -169,18 +199,17 @@ public class ShipTransformationManager {
         newNormals[1] = new Vector(0.0D, 1.0D, 0.0D);
         newNormals[2] = new Vector(0.0D, 0.0D, 1.0D);
 
-        this.normals = newNormals;
+        return newNormals;
     }
 
-    private Vector[] generateRotationNormals() {
+    private static Vector[] generateRotationNormals(ShipTransform shipTransform) {
         Vector[] norms = Vector.generateAxisAlignedNorms();
         for (int i = 0; i < 3; i++) {
-            getCurrentTickTransform().rotate(norms[i], TransformType.SUBSPACE_TO_GLOBAL);
+            shipTransform.rotate(norms[i], TransformType.SUBSPACE_TO_GLOBAL);
         }
         return norms;
     }
 
-    // TODO: Use Octrees to optimize this, or more preferably QuickHull3D.
     private void updateParentAABB() {
         IVoxelFieldAABBMaker aabbMaker = parent.getVoxelFieldAABBMaker();
         AxisAlignedBB subspaceBB = aabbMaker.makeVoxelFieldAABB();
@@ -188,6 +217,13 @@ public class ShipTransformationManager {
             // The aabbMaker didn't know what the aabb was, just don't update the aabb for now.
             return;
         }
+        // The hull vertices are block corners already, and are a much tighter fit than the
+        // corners of subspaceBB once the ship is rotated.
+        int[] hullVertices = parent.getVoxelFieldConvexHull().getHullVertices();
+        if (hullVertices.length != 0) {
+            parent.setShipBoundingBox(transformHullVertices(hullVertices));
+            return;
+        }
         // Expand subspaceBB by 1 to fit the block grid.
         subspaceBB = subspaceBB.expand(1, 1, 1);
         // Now transform the subspaceBB to world coordinates
@@ -198,6 +234,25 @@ public class ShipTransformationManager {
         parent.setShipBoundingBox(worldBB);
     }
 
+    // The world aabb of the hull vertices, given as x, y, z triples in ship coordinates.
+    private AxisAlignedBB transformHullVertices(int[] hullVertices) {
+        ShipTransform transform = getCurrentTickTransform();
+        Vector vertex = new Vector();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = 0; i < hullVertices.length; i += 3) {
+            vertex.setValue(hullVertices[i], hullVertices[i + 1], hullVertices[i + 2]);
+            transform.transform(vertex, TransformType.SUBSPACE_TO_GLOBAL);
+            minX = Math.min(minX, vertex.X);
+            minY = Math.min(minY, vertex.Y);
+            minZ = Math.min(minZ, vertex.Z);
+            maxX = Math.max(maxX, vertex.X);
+            maxY = Math.max(maxY, vertex.Y);
+            maxZ = Math.max(maxZ, vertex.Z);
+        }
+        return new AxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
     /**
      * Transforms a vector from global coordinates to local coordinates, using the
      * getCurrentTickTransform()
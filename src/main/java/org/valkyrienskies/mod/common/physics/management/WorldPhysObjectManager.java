@@ -9,8 +9,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
+import org.valkyrienskies.mod.common.physics.PhysicsCalculations;
+import org.valkyrienskies.mod.common.physics.collision.WorldPhysicsCollider;
+import org.valkyrienskies.mod.common.physics.collision.optimization.SpatialGridIndex;
 import org.valkyrienskies.mod.common.physmanagement.chunk.VSChunkClaim;
 
 /**
@@ -21,14 +25,20 @@ import org.valkyrienskies.mod.common.physmanagement.chunk.VSChunkClaim;
  */
 public class WorldPhysObjectManager {
 
+    // How far past its bounding box a ship's collision cache can reach. The cache AABB is the
+    // bounding box grown by 3 + AABB_EXPANSION, and then stretched the way the ship is moving.
+    private static final double COLLISION_CACHE_REACH = 16D;
     public final World worldObj;
     public final Set<PhysicsWrapperEntity> physicsEntities;
     private final Long2ObjectMap<PhysicsWrapperEntity> chunkPosToPhysicsEntityMap;
+    // The ships in physicsEntities by their bounding box, for finding the ships near something.
+    private final SpatialGridIndex<PhysicsWrapperEntity> shipIndex;
 
     public WorldPhysObjectManager(World toManage) {
         this.worldObj = toManage;
         this.physicsEntities = ConcurrentHashMap.newKeySet();
         this.chunkPosToPhysicsEntityMap = new Long2ObjectOpenHashMap<>();
+        this.shipIndex = new SpatialGridIndex<>();
     }
 
     /**
@@ -61,6 +71,7 @@ public class WorldPhysObjectManager {
             }
             for (PhysicsWrapperEntity caught : potentialMatches) {
                 physicsEntities.remove(caught);
+                shipIndex.remove(caught);
                 caught.getPhysicsObject().onThisUnload();
                 // System.out.println("Caught one");
             }
@@ -68,6 +79,15 @@ public class WorldPhysObjectManager {
         loaded.isDead = false;
         loaded.getPhysicsObject().resetConsecutiveProperTicks();
         physicsEntities.add(loaded);
+        shipIndex.put(loaded, loaded.getPhysicsObject().getShipBoundingBox());
+    }
+
+    /**
+     * Keeps the ship in the right place in the spatial index, should be called whenever its
+     * bounding box changes. Does nothing for ships that aren't loaded.
+     */
+    public void onShipBoundingBoxChanged(PhysicsWrapperEntity wrapper) {
+        shipIndex.update(wrapper, wrapper.getPhysicsObject().getShipBoundingBox());
     }
 
     /**
@@ -104,6 +124,7 @@ public class WorldPhysObjectManager {
         }
         // Remove this ship from all our maps, we do not want to memory leak.
         this.physicsEntities.remove(loaded);
+        shipIndex.remove(loaded);
         List<Long> keysToRemove = new ArrayList();
         for (Map.Entry<Long, PhysicsWrapperEntity> entry : chunkPosToPhysicsEntityMap.entrySet()) {
             if (entry.getValue() == loaded) {
@@ -118,21 +139,48 @@ public class WorldPhysObjectManager {
 
     public List<PhysicsWrapperEntity> getNearbyPhysObjects(AxisAlignedBB toCheck) {
         ArrayList<PhysicsWrapperEntity> ships = new ArrayList<PhysicsWrapperEntity>();
-        AxisAlignedBB expandedCheck = toCheck.expand(6, 6, 6);
+        // This is the same test as shipBB.expand(2, 2, 2).intersects(toCheck.expand(6, 6, 6)).
+        // The expand is only needed on server side, which tells me something is wrong with server
+        // side bounding boxes
+        AxisAlignedBB expandedCheck = new AxisAlignedBB(toCheck.minX - 2, toCheck.minY - 2,
+            toCheck.minZ - 2, toCheck.maxX + 6, toCheck.maxY + 6, toCheck.maxZ + 6);
+        shipIndex.query(expandedCheck, ships);
+        ships.removeIf(wrapper -> !wrapper.getPhysicsObject().isFullyLoaded());
+        return ships;
+    }
 
-        for (PhysicsWrapperEntity wrapper : physicsEntities) {
-            // This .expand() is only needed on server side, which tells me something is wrong with server side bounding
-            // boxes
-            if (wrapper.getPhysicsObject()
-                .isFullyLoaded() && wrapper.getPhysicsObject()
-                .getShipBoundingBox()
-                .expand(2, 2, 2)
-                .intersects(expandedCheck)) {
-                ships.add(wrapper);
+    /**
+     * Tells the ships near a world block that it changed, so their collision caches pick it up and
+     * the ships resting on it wake up. Should be called on the game thread.
+     */
+    public void onWorldBlockChanged(BlockPos pos) {
+        List<PhysicsWrapperEntity> ships = new ArrayList<>();
+        shipIndex.query(new AxisAlignedBB(pos).grow(COLLISION_CACHE_REACH), ships);
+        for (PhysicsWrapperEntity wrapper : ships) {
+            PhysicsCalculations physicsProcessor = wrapper.getPhysicsObject()
+                .getPhysicsProcessor();
+            if (physicsProcessor != null) {
+                physicsProcessor.getWorldCollision().onWorldBlockChanged(pos);
             }
         }
+        wakeShipsNear(pos);
+    }
 
-        return ships;
+    /**
+     * Wakes up the sleeping ships that could be touching the given world block, since the block
+     * they were resting on might be gone. Should be called on the game thread.
+     */
+    public void wakeShipsNear(BlockPos pos) {
+        double expansion = WorldPhysicsCollider.AABB_EXPANSION;
+        List<PhysicsWrapperEntity> ships = new ArrayList<>();
+        shipIndex.query(new AxisAlignedBB(pos).grow(expansion), ships);
+        for (PhysicsWrapperEntity wrapper : ships) {
+            PhysicsCalculations physicsProcessor = wrapper.getPhysicsObject()
+                .getPhysicsProcessor();
+            if (physicsProcessor != null && physicsProcessor.isAsleep()) {
+                physicsProcessor.wakeUp();
+            }
+        }
     }
 
     private long getLongFromInts(int x, int z) {
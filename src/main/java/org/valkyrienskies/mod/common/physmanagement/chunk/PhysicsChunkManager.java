@@ -44,4 +44,17 @@ public class PhysicsChunkManager {
             allocatedChunks.lowerChunkZ + ShipChunkAllocator.MAX_SHIP_CHUNK_RADIUS, radius);
     }
 
+    /**
+     * Lets the square of chunks the given claim is in be given to a new ship, once the ship that
+     * claimed it is destroyed.
+     */
+    public void releaseChunkSet(VSChunkClaim claim) {
+        IValkyrienSkiesWorldData worldDataCapability =
+            worldObj.getCapability(ValkyrienSkiesMod.VS_WORLD_DATA, null);
+
+        Objects.requireNonNull(worldDataCapability)
+            .getChunkAllocator()
+            .free(ShipChunkAllocator.ChunkAllocation.fromClaim(claim));
+    }
+
 }
@@ -1,8 +1,15 @@
 package org.valkyrienskies.mod.common.physmanagement.chunk;
 
+import java.util.BitSet;
 import lombok.extern.log4j.Log4j2;
 import net.minecraft.nbt.NBTTagCompound;
 
+/**
+ * Gives every ship its own 32x32 square of chunks. The squares are lined up along the z axis from
+ * SHIP_CHUNK_X_START, SHIP_CHUNK_Z_START, and a bitmap of which squares are in use is saved with
+ * the world. The square closest to the start that isn't in use is always given out next, so the
+ * squares of destroyed ships get reused instead of the ship region growing forever.
+ */
 @Log4j2
 public class ShipChunkAllocator {
 
@@ -17,9 +24,8 @@ public class ShipChunkAllocator {
         return chunkX >= SHIP_CHUNK_X_START && chunkZ >= SHIP_CHUNK_Z_START;
     }
 
-    private int nextChunkX = SHIP_CHUNK_X_START;
-    private int nextChunkZ = SHIP_CHUNK_Z_START;
-
+    // Bit i is set if the i'th square of chunks from the start is in use.
+    private final BitSet usedSlots = new BitSet();
 
     public ChunkAllocation allocateChunks(String shipId, int chunkRadius) {
         // Don't go over the maximum
@@ -36,26 +42,84 @@ public class ShipChunkAllocator {
     }
 
     private ChunkAllocation allocateNext() {
-        ChunkAllocation next = new ChunkAllocation(nextChunkX, nextChunkZ);
-        nextChunkZ += MAX_SHIP_CHUNK_LENGTH;
-        return next;
+        int slot = usedSlots.nextClearBit(0);
+        usedSlots.set(slot);
+        return getAllocation(slot);
+    }
+
+    /**
+     * Gives the square of chunks back, so it can be given to a new ship.
+     *
+     * @return False if the square wasn't given out by this allocator, like the chunks of ships made
+     * before it existed.
+     */
+    public boolean free(ChunkAllocation allocation) {
+        int slot = getSlot(allocation);
+        if (slot == -1 || !usedSlots.get(slot)) {
+            log.warn("Tried to free ship chunks at " + allocation.lowerChunkX + ", "
+                + allocation.lowerChunkZ + " that were never allocated");
+            return false;
+        }
+        usedSlots.clear(slot);
+        return true;
+    }
+
+    public boolean isAllocated(ChunkAllocation allocation) {
+        int slot = getSlot(allocation);
+        return slot != -1 && usedSlots.get(slot);
+    }
+
+    /**
+     * @return The number of squares of chunks in use.
+     */
+    public int getAllocatedCount() {
+        return usedSlots.cardinality();
+    }
+
+    /**
+     * @return The number of squares from the start up to and including the furthest one in use,
+     * so the size of the ship region.
+     */
+    public int getSlotsSpanned() {
+        return usedSlots.length();
+    }
+
+    private static ChunkAllocation getAllocation(int slot) {
+        return new ChunkAllocation(SHIP_CHUNK_X_START,
+            SHIP_CHUNK_Z_START + slot * MAX_SHIP_CHUNK_LENGTH);
+    }
+
+    // -1 if the allocation isn't one of our squares.
+    private static int getSlot(ChunkAllocation allocation) {
+        int offsetZ = allocation.lowerChunkZ - SHIP_CHUNK_Z_START;
+        if (allocation.lowerChunkX != SHIP_CHUNK_X_START || offsetZ < 0
+            || offsetZ % MAX_SHIP_CHUNK_LENGTH != 0) {
+            return -1;
+        }
+        return offsetZ / MAX_SHIP_CHUNK_LENGTH;
     }
 
     public void writeToNBT(NBTTagCompound toReturn) {
-        toReturn.setInteger("nextChunkX", nextChunkX);
-        toReturn.setInteger("nextChunkZ", nextChunkZ);
+        toReturn.setByteArray("usedSlots", usedSlots.toByteArray());
+        // Still written so older versions opening the world put new ships after every used square.
+        toReturn.setInteger("nextChunkX", SHIP_CHUNK_X_START);
+        toReturn.setInteger("nextChunkZ",
+            SHIP_CHUNK_Z_START + usedSlots.length() * MAX_SHIP_CHUNK_LENGTH);
     }
 
     public void readFromNBT(NBTTagCompound compound) {
+        usedSlots.clear();
         // First load the stuff that actually matters
-        if (compound.hasKey("nextChunkX") && compound.hasKey("nextChunkZ")) {
-            nextChunkX = compound.getInteger("nextChunkX");
-            nextChunkZ = compound.getInteger("nextChunkZ");
+        if (compound.hasKey("usedSlots")) {
+            usedSlots.or(BitSet.valueOf(compound.getByteArray("usedSlots")));
+        } else if (compound.hasKey("nextChunkX") && compound.hasKey("nextChunkZ")) {
+            // Saved before squares were reused, we don't know which of the squares handed out so
+            // far are still in use so assume all of them are.
+            int nextChunkZ = compound.getInteger("nextChunkZ");
+            usedSlots.set(0, Math.max(0, nextChunkZ - SHIP_CHUNK_Z_START) / MAX_SHIP_CHUNK_LENGTH);
         } else {
             log.error("Either you created a new world, or Valkyrien Skies just lost track of every "
                 + "single ship chunk! If its case #2 then good luck dude your ships are screwed.");
-            nextChunkX = SHIP_CHUNK_X_START;
-            nextChunkZ = SHIP_CHUNK_Z_START;
         }
     }
 
@@ -71,6 +135,14 @@ public class ShipChunkAllocator {
             this.lowerChunkZ = lowerChunkZ;
         }
 
+        /**
+         * @return The square of chunks the given claim was made in by PhysicsChunkManager.
+         */
+        static ChunkAllocation fromClaim(VSChunkClaim claim) {
+            return new ChunkAllocation(claim.getCenterX() - MAX_SHIP_CHUNK_RADIUS,
+                claim.getCenterZ() - MAX_SHIP_CHUNK_RADIUS);
+        }
+
         @Override
         public boolean equals(Object other) {
             if (other instanceof ChunkAllocation) {
@@ -23,6 +23,7 @@ import org.valkyrienskies.mod.common.entity.EntityMountable;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 import org.valkyrienskies.mod.common.math.Vector;
 import org.valkyrienskies.mod.common.physics.management.PhysicsObject;
+import org.valkyrienskies.mod.common.physmanagement.chunk.PhysicsChunkManager;
 import org.valkyrienskies.mod.common.util.ValkyrienUtils;
 import valkyrienwarfare.api.TransformType;
 
@@ -44,11 +45,21 @@ public class VSWorldEventListener implements IWorldEventListener {
             physicsChunk.getPhysicsObjectOptional()
                 .get()
                 .onSetBlockState(oldState, newState, pos);
+        } else if (!worldIn.isRemote && !newState.equals(oldState)) {
+            ValkyrienSkiesMod.VS_PHYSICS_MANAGER.getManagerForWorld(worldIn)
+                .onWorldBlockChanged(pos);
         }
     }
 
     @Override
-    public void notifyLightSet(BlockPos pos) { }
+    public void notifyLightSet(BlockPos pos) {
+        // The chunk snapshots of ships include the light, so they have to be encoded again.
+        if (!worldObj.isRemote && PhysicsChunkManager
+            .isLikelyShipChunk(pos.getX() >> 4, pos.getZ() >> 4) && worldObj.isBlockLoaded(pos)) {
+            ((IPhysicsChunk) worldObj.getChunk(pos)).getPhysicsObjectOptional()
+                .ifPresent(physicsObject -> physicsObject.onLightChanged(pos));
+        }
+    }
 
     @Override
     public void markBlockRangeForRenderUpdate(int minX, int minY, int minZ, int maxX, int maxY,
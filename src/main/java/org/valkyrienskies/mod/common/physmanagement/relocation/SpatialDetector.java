@@ -1,6 +1,7 @@
 package org.valkyrienskies.mod.common.physmanagement.relocation;
 
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,8 +11,7 @@ import net.minecraft.world.ChunkCache;
 import net.minecraft.world.World;
 
 /**
- * Used to efficiently detect a connected set of blocks TODO: Incorporate a scanline technique to
- * improve detection speed
+ * Used to efficiently detect a connected set of blocks, with a scanline flood fill.
  *
  * @author thebest108
  */
@@ -20,6 +20,10 @@ public abstract class SpatialDetector {
     public static final int maxRange = 512;
     public static final int maxRangeHalved = maxRange / 2;
     public static final int maxRangeSquared = maxRange * maxRange;
+    // Local coordinates in the maxRange volume, and the chunk columns along each side of it.
+    private static final int LOCAL_BITS = 9;
+    private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+    private static final int VOLUME_CHUNKS = maxRange / 16;
     public final TIntHashSet foundSet = new TIntHashSet(250);
     public final BlockPos firstBlock;
     public final MutableBlockPos tempPos = new MutableBlockPos();
@@ -27,7 +31,6 @@ public abstract class SpatialDetector {
     public final World worldObj;
     public final int maxSize;
     public final boolean corners;
-    public TIntHashSet nextQueue = new TIntHashSet();
     // public int totalCalls = 0;
     public boolean cleanHouse = false;
 
@@ -41,6 +44,18 @@ public abstract class SpatialDetector {
         cache = new ChunkCache(worldIn, minPos, maxPos, 0);
     }
 
+    /**
+     * For detectors whose isValidExpansion() doesn't look at the world, worldObj and cache are
+     * left null.
+     */
+    protected SpatialDetector(BlockPos start, int maximum, boolean checkCorners) {
+        firstBlock = start;
+        worldObj = null;
+        maxSize = maximum;
+        corners = checkCorners;
+        cache = null;
+    }
+
     public static int getHashWithRespectTo(int realX, int realY, int realZ, BlockPos start) {
         int x = realX - start.getX() + maxRangeHalved;
         int z = realZ - start.getZ() + maxRangeHalved;
@@ -87,106 +102,120 @@ public abstract class SpatialDetector {
         return detectedBlockPos;
     }
 
+    /**
+     * Scanline flood fill from firstBlock. Every seed grows into the longest vertical run of valid
+     * blocks through it, and the runs next to it in the neighboring columns become the new seeds.
+     * Blocks that were already found are tracked in a bitmap over the maxRange volume, one chunk
+     * column at a time, so only the found blocks themselves go through foundSet.
+     */
     protected void calculateSpatialOccupation() {
-        nextQueue
-            .add(firstBlock.getY() + maxRange * maxRangeHalved + maxRangeSquared * maxRangeHalved);
-        MutableBlockPos inRealWorld = new MutableBlockPos();
-        int hash;
-        while (!nextQueue.isEmpty() && !cleanHouse) {
-            TIntIterator queueIter = nextQueue.iterator();
-            foundSet.addAll(nextQueue);
-            nextQueue = new TIntHashSet();
-            while (queueIter.hasNext()) {
-                hash = queueIter.next();
-                setPosWithRespectTo(hash, firstBlock, inRealWorld);
-                if (corners) {
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() - 1,
-                        inRealWorld.getZ() - 1,
-                        hash - maxRange - 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() - 1, inRealWorld.getZ(),
-                        hash - maxRange - 1);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() - 1,
-                        inRealWorld.getZ() + 1,
-                        hash - maxRange - 1 + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY(), inRealWorld.getZ() - 1,
-                        hash - maxRange - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY(), inRealWorld.getZ(),
-                        hash - maxRange);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY(), inRealWorld.getZ() + 1,
-                        hash - maxRange + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() + 1,
-                        inRealWorld.getZ() - 1,
-                        hash - maxRange + 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() + 1, inRealWorld.getZ(),
-                        hash - maxRange + 1);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY() + 1,
-                        inRealWorld.getZ() + 1,
-                        hash - maxRange + 1 + maxRangeSquared);
-
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() - 1, inRealWorld.getZ() - 1,
-                        hash - 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() - 1, inRealWorld.getZ(),
-                        hash - 1);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() - 1, inRealWorld.getZ() + 1,
-                        hash - 1 + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY(), inRealWorld.getZ() - 1,
-                        hash - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY(), inRealWorld.getZ() + 1,
-                        hash + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() + 1, inRealWorld.getZ() - 1,
-                        hash + 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() + 1, inRealWorld.getZ(),
-                        hash + 1);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() + 1, inRealWorld.getZ() + 1,
-                        hash + 1 + maxRangeSquared);
-
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() - 1,
-                        inRealWorld.getZ() - 1,
-                        hash + maxRange - 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() - 1, inRealWorld.getZ(),
-                        hash + maxRange - 1);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() - 1,
-                        inRealWorld.getZ() + 1,
-                        hash + maxRange - 1 + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY(), inRealWorld.getZ() - 1,
-                        hash + maxRange - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY(), inRealWorld.getZ(),
-                        hash + maxRange);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY(), inRealWorld.getZ() + 1,
-                        hash + maxRange + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() + 1,
-                        inRealWorld.getZ() - 1,
-                        hash + maxRange + 1 - maxRangeSquared);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() + 1, inRealWorld.getZ(),
-                        hash + maxRange + 1);
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY() + 1,
-                        inRealWorld.getZ() + 1,
-                        hash + maxRange + 1 + maxRangeSquared);
-                } else {
-                    tryExpanding(inRealWorld.getX() + 1, inRealWorld.getY(), inRealWorld.getZ(),
-                        hash + maxRange);
-                    tryExpanding(inRealWorld.getX() - 1, inRealWorld.getY(), inRealWorld.getZ(),
-                        hash - maxRange);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() + 1, inRealWorld.getZ(),
-                        hash + 1);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY() - 1, inRealWorld.getZ(),
-                        hash - 1);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY(), inRealWorld.getZ() + 1,
-                        hash + maxRangeSquared);
-                    tryExpanding(inRealWorld.getX(), inRealWorld.getY(), inRealWorld.getZ() - 1,
-                        hash - maxRangeSquared);
+        // The seeds as x | y << 9 | z << 18, relative to the corner of the maxRange volume.
+        TIntArrayList seeds = new TIntArrayList();
+        long[][] visited = new long[VOLUME_CHUNKS * VOLUME_CHUNKS][];
+        int startX = maxRangeHalved;
+        int startY = firstBlock.getY();
+        int startZ = maxRangeHalved;
+        if (startY < 0 || startY >= maxRange) {
+            return;
+        }
+        // The first block is always found, whether it's a valid expansion or not.
+        int startTop = findRunTop(visited, startX, startY, startZ);
+        int startBottom = findRunBottom(visited, startX, startY, startZ);
+        addRun(visited, seeds, startX, startBottom, startTop, startZ);
+
+        while (!seeds.isEmpty() && !cleanHouse && foundSet.size() < maxSize) {
+            int seed = seeds.removeAt(seeds.size() - 1);
+            int x = seed & LOCAL_MASK;
+            int y = (seed >>> LOCAL_BITS) & LOCAL_MASK;
+            int z = seed >>> (2 * LOCAL_BITS);
+            if (isVisited(visited, x, y, z)) {
+                continue;
+            }
+            addRun(visited, seeds, x, findRunBottom(visited, x, y, z),
+                findRunTop(visited, x, y, z), z);
+        }
+    }
+
+    // Marks the blocks from bottom to top as found, then seeds the runs next to them.
+    private void addRun(long[][] visited, TIntArrayList seeds, int x, int bottom, int top, int z) {
+        // Don't find more than maxSize blocks.
+        top = bottom + Math.min(top - bottom, maxSize - foundSet.size() - 1);
+        for (int y = bottom; y <= top; y++) {
+            setVisited(visited, x, y, z);
+            // The same as getHashWithRespectTo(), since x and z are relative to the corner.
+            foundSet.add(y + maxRange * x + maxRangeSquared * z);
+        }
+        if (corners) {
+            // Diagonal neighbors can be one block below or above the run.
+            int scanBottom = Math.max(bottom - 1, 0);
+            int scanTop = Math.min(top + 1, maxRange - 1);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx != 0 || dz != 0) {
+                        seedRuns(visited, seeds, x + dx, scanBottom, scanTop, z + dz);
+                    }
                 }
             }
+        } else {
+            seedRuns(visited, seeds, x + 1, bottom, top, z);
+            seedRuns(visited, seeds, x - 1, bottom, top, z);
+            seedRuns(visited, seeds, x, bottom, top, z + 1);
+            seedRuns(visited, seeds, x, bottom, top, z - 1);
         }
     }
 
-    protected void tryExpanding(int x, int y, int z, int hash) {
-        if (isValidExpansion(x, y, z)) {
-            // totalCalls++;
-            if (!foundSet.contains(hash) && (foundSet.size() + nextQueue.size() < maxSize)) {
-                nextQueue.add(hash);
+    // Adds a seed for the start of every run of new valid blocks from bottom to top in column x, z.
+    private void seedRuns(long[][] visited, TIntArrayList seeds, int x, int bottom, int top,
+        int z) {
+        if (x < 0 || x >= maxRange || z < 0 || z >= maxRange) {
+            return;
+        }
+        boolean isInRun = false;
+        for (int y = bottom; y <= top; y++) {
+            boolean isNew = !isVisited(visited, x, y, z) && isValidLocalExpansion(x, y, z);
+            if (isNew && !isInRun) {
+                seeds.add(x | y << LOCAL_BITS | z << (2 * LOCAL_BITS));
             }
+            isInRun = isNew;
+        }
+    }
+
+    private int findRunBottom(long[][] visited, int x, int y, int z) {
+        while (y > 0 && !isVisited(visited, x, y - 1, z) && isValidLocalExpansion(x, y - 1, z)) {
+            y--;
+        }
+        return y;
+    }
+
+    private int findRunTop(long[][] visited, int x, int y, int z) {
+        while (y < maxRange - 1 && !isVisited(visited, x, y + 1, z)
+            && isValidLocalExpansion(x, y + 1, z)) {
+            y++;
+        }
+        return y;
+    }
+
+    private boolean isValidLocalExpansion(int x, int y, int z) {
+        return isValidExpansion(x + firstBlock.getX() - maxRangeHalved, y,
+            z + firstBlock.getZ() - maxRangeHalved);
+    }
+
+    private static boolean isVisited(long[][] visited, int x, int y, int z) {
+        long[] column = visited[(x >> 4) * VOLUME_CHUNKS + (z >> 4)];
+        int bit = y << 8 | (z & 15) << 4 | (x & 15);
+        return column != null && (column[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    private static void setVisited(long[][] visited, int x, int y, int z) {
+        int columnIndex = (x >> 4) * VOLUME_CHUNKS + (z >> 4);
+        long[] column = visited[columnIndex];
+        if (column == null) {
+            // One bit for every block of a 16 x maxRange x 16 chunk column.
+            column = new long[16 * 16 * maxRange / 64];
+            visited[columnIndex] = column;
         }
+        int bit = y << 8 | (z & 15) << 4 | (x & 15);
+        column[bit >> 6] |= 1L << bit;
     }
 
     public abstract boolean isValidExpansion(int x, int y, int z);
@@ -9,6 +9,7 @@ import com.googlecode.cqengine.index.hash.HashIndex;
 import com.googlecode.cqengine.index.unique.UniqueIndex;
 import com.googlecode.cqengine.query.Query;
 import com.googlecode.cqengine.resultset.ResultSet;
+import lombok.extern.log4j.Log4j2;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.ChunkPos;
@@ -17,10 +18,20 @@ import org.valkyrienskies.mod.common.ValkyrienSkiesMod;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 import org.valkyrienskies.mod.common.util.ValkyrienUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 import static com.googlecode.cqengine.query.QueryFactory.equal;
@@ -28,7 +39,18 @@ import static com.googlecode.cqengine.query.QueryFactory.startsWith;
 
 /**
  * A class that keeps track of ship data
+ * <p>
+ * On the server the ship data is saved to a ShipDataLog in the world directory, which only gets
+ * the ships that changed since the last save. The nbt is only read to upgrade worlds saved before
+ * the log existed.
+ * <p>
+ * Saving only takes copies of the changed ships on the server thread, they're serialized and
+ * written to the log by a background thread. The copies are shallow. Renames replace the whole
+ * ShipData, and the only field changed in place is positionData, which updateShipPosition() points
+ * at a new ShipPositionData every tick rather than changing the old one. Both happen on the server
+ * thread, so a copy keeps the position it was taken with.
  */
+@Log4j2
 @MethodsReturnNonnullByDefault
 @SuppressWarnings("WeakerAccess")
 public class QueryableShipData implements Iterable<ShipData> {
@@ -36,14 +58,35 @@ public class QueryableShipData implements Iterable<ShipData> {
     // The key used to store/read the allShips collection from nbt.
     private static final String NBT_STORAGE_KEY = ValkyrienSkiesMod.MOD_ID + "QueryableShipDataNBT";
     public static boolean debug = false;
+    // Serializes and writes the ship data of every world, one save at a time in the order the
+    // saves were made.
+    private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "VS Ship Data Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
     // Where every ship data instance is stored, regardless if the corresponding PhysicsObject is
     // loaded in the World or not.
-    private ConcurrentIndexedCollection<ShipData> allShips = new ConcurrentIndexedCollection<>();
+    private ConcurrentIndexedCollection<ShipData> allShips = createShipCollection();
+    // The UUIDs of the ships added, changed or removed since the last save.
+    private final Set<UUID> changedShips = ConcurrentHashMap.newKeySet();
+    // Null until openLog() is called, and on the client.
+    private ShipDataLog shipDataLog = null;
+    // The last save given to SAVE_EXECUTOR, every save before it is done once it is.
+    private CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+    // Set by the save thread when the next save should compact the log.
+    private volatile boolean compactionNeeded = false;
 
     public QueryableShipData() {
-        allShips.addIndex(HashIndex.onAttribute(ShipData.NAME));
-        allShips.addIndex(UniqueIndex.onAttribute(ShipData.UUID));
-        allShips.addIndex(UniqueIndex.onAttribute(ShipData.CHUNKS));
+    }
+
+    private static ConcurrentIndexedCollection<ShipData> createShipCollection() {
+        ConcurrentIndexedCollection<ShipData> ships = new ConcurrentIndexedCollection<>();
+        ships.addIndex(HashIndex.onAttribute(ShipData.NAME));
+        ships.addIndex(UniqueIndex.onAttribute(ShipData.UUID));
+        ships.addIndex(UniqueIndex.onAttribute(ShipData.CHUNKS));
+        return ships;
     }
 
     /**
@@ -73,6 +116,7 @@ public class QueryableShipData implements Iterable<ShipData> {
 
             allShips.remove(data);
             allShips.add(newData);
+            changedShips.add(newData.getUUID());
 
             return true;
         }
@@ -130,6 +174,7 @@ public class QueryableShipData implements Iterable<ShipData> {
         return data.orElseGet(() -> {
             ShipData shipData = new ShipData.Builder(wrapperEntity).build();
             allShips.add(shipData);
+            changedShips.add(shipData.getUUID());
             return shipData;
         });
     }
@@ -157,6 +202,7 @@ public class QueryableShipData implements Iterable<ShipData> {
                 ShipData CurrentShip = ShipIterator.next();
                 if (CurrentShip.getUUID() == shipOptional.get().getUUID()) {
                     allShips.remove(allShips.retrieve(equal(ShipData.UUID, uuid)).uniqueResult());
+                    changedShips.add(uuid);
                     return true;
                 }
             }
@@ -165,6 +211,7 @@ public class QueryableShipData implements Iterable<ShipData> {
 
     public void addShip(ShipData ship) {
         allShips.add(ship);
+        changedShips.add(ship.getUUID());
     }
 
     public void addShip(PhysicsWrapperEntity wrapperEntity) {
@@ -176,12 +223,153 @@ public class QueryableShipData implements Iterable<ShipData> {
         }
     }
 
+    /**
+     * Changes the ShipData in place instead of replacing it, since this runs every tick for every
+     * ship and positionData isn't indexed. Only call from the server thread.
+     */
     public void updateShipPosition(PhysicsWrapperEntity wrapper) {
         ShipData shipData = getOrCreateShip(wrapper);
-        if (shipData.positionData == null) {
-            shipData.positionData = new ShipPositionData(wrapper);
+        shipData.positionData = new ShipPositionData(wrapper);
+        changedShips.add(shipData.getUUID());
+    }
+
+    /**
+     * @return The file the ship data log of the given server world is saved in, next to the
+     * vanilla data of the dimension.
+     */
+    public static File getLogFile(World world) {
+        File directory = world.getSaveHandler().getWorldDirectory();
+        String saveFolder = world.provider.getSaveFolder();
+        if (saveFolder != null) {
+            directory = new File(directory, saveFolder);
+        }
+        return new File(directory, "data/" + ValkyrienSkiesMod.MOD_ID + "_ships.log");
+    }
+
+    /**
+     * Loads the ships from the given log, and saves them to it from now on. If the log doesn't
+     * exist yet the ships read from nbt are all written to it on the next save.
+     */
+    public void openLog(File file) {
+        long start = System.currentTimeMillis();
+        ShipDataLog newLog = new ShipDataLog(file);
+        try {
+            Map<UUID, byte[]> savedShips = newLog.load();
+            if (newLog.size() == 0) {
+                for (ShipData ship : allShips) {
+                    changedShips.add(ship.getUUID());
+                }
+            } else {
+                Kryo kryo = ValkyrienSkiesMod.INSTANCE.getKryo();
+                ConcurrentIndexedCollection<ShipData> loadedShips = createShipCollection();
+                synchronized (kryo) {
+                    for (byte[] data : savedShips.values()) {
+                        loadedShips.add(kryo.readObject(new Input(data), ShipData.class));
+                    }
+                }
+                allShips = loadedShips;
+                changedShips.clear();
+            }
+        } catch (Exception e) {
+            // Keep using nbt rather than lose the ships.
+            log.error("Failed to load ship data log " + file, e);
+            try {
+                newLog.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        shipDataLog = newLog;
+        log.info("Loaded {} ships from {} in {}ms", allShips.size(), file,
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Waits for every save of this world that hasn't been written yet, then closes the log.
+     */
+    public void closeLog() {
+        if (shipDataLog != null) {
+            pendingSave.join();
+            try {
+                shipDataLog.close();
+            } catch (IOException e) {
+                log.error("Failed to close ship data log", e);
+            }
+            shipDataLog = null;
+        }
+    }
+
+    /**
+     * Gives copies of the ships that changed since the last save to the save thread, which
+     * appends them to the log. Every ship is copied instead when the log needs compacting.
+     */
+    private void saveChangesToLog() {
+        Map<UUID, ShipData> changed = new HashMap<>();
+        List<UUID> removed = new ArrayList<>();
+        Iterator<UUID> changedIterator = changedShips.iterator();
+        while (changedIterator.hasNext()) {
+            UUID uuid = changedIterator.next();
+            changedIterator.remove();
+            Optional<ShipData> ship = getShip(uuid);
+            if (ship.isPresent()) {
+                changed.put(uuid, new ShipData.Builder(ship.get()).build());
+            } else {
+                removed.add(uuid);
+            }
+        }
+        Map<UUID, ShipData> allShipsCopy = null;
+        if (compactionNeeded) {
+            allShipsCopy = new HashMap<>();
+            for (ShipData ship : allShips) {
+                allShipsCopy.put(ship.getUUID(), new ShipData.Builder(ship).build());
+            }
+        }
+
+        ShipDataLog dataLog = shipDataLog;
+        Map<UUID, ShipData> compactedShips = allShipsCopy;
+        pendingSave = CompletableFuture.runAsync(
+            () -> writeToLog(dataLog, changed, removed, compactedShips), SAVE_EXECUTOR);
+    }
+
+    /**
+     * Runs on the save thread.
+     *
+     * @param allShipsCopy Every ship if the log should be compacted, otherwise null
+     */
+    private void writeToLog(ShipDataLog dataLog, Map<UUID, ShipData> changed, List<UUID> removed,
+        Map<UUID, ShipData> allShipsCopy) {
+        long start = System.currentTimeMillis();
+        Kryo kryo = ValkyrienSkiesMod.INSTANCE.getKryo();
+        try {
+            synchronized (kryo) {
+                if (allShipsCopy != null) {
+                    dataLog.compact(serializeShips(kryo, allShipsCopy));
+                } else {
+                    dataLog.append(serializeShips(kryo, changed), removed);
+                }
+            }
+            compactionNeeded = dataLog.shouldCompact();
+        } catch (Exception e) {
+            log.error("Failed to save ship data log", e);
+            // Try them again next save
+            changedShips.addAll(changed.keySet());
+            changedShips.addAll(removed);
+        }
+        if (debug) {
+            log.info("Ship data save of {} ships took {}ms",
+                allShipsCopy != null ? allShipsCopy.size() : changed.size() + removed.size(),
+                System.currentTimeMillis() - start);
         }
-        shipData.positionData.updateData(wrapper);
+    }
+
+    private static Map<UUID, byte[]> serializeShips(Kryo kryo, Map<UUID, ShipData> ships) {
+        Map<UUID, byte[]> serialized = new HashMap<>();
+        for (Map.Entry<UUID, ShipData> entry : ships.entrySet()) {
+            Output output = new Output(256, -1);
+            kryo.writeObject(output, entry.getValue());
+            serialized.put(entry.getKey(), output.toBytes());
+        }
+        return serialized;
     }
 
     @SuppressWarnings("unchecked")
@@ -191,7 +379,9 @@ public class QueryableShipData implements Iterable<ShipData> {
         Kryo kryo = ValkyrienSkiesMod.INSTANCE.getKryo();
         Input input = new Input(nbt.getByteArray(NBT_STORAGE_KEY));
         try {
-            allShips = kryo.readObject(input, ConcurrentIndexedCollection.class);
+            synchronized (kryo) {
+                allShips = kryo.readObject(input, ConcurrentIndexedCollection.class);
+            }
         } catch (Exception e) {
             // Error reading allShips from memory, just make a new empty one.
             e.printStackTrace();
@@ -203,21 +393,25 @@ public class QueryableShipData implements Iterable<ShipData> {
                 "Kryo read allships as null! Making a new empty allships instance");
         }
 
-        System.out.println("Price of read: " + (System.currentTimeMillis() - start) + "ms");
+        log.debug("Price of read: {}ms", System.currentTimeMillis() - start);
     }
 
     public NBTTagCompound writeToNBT(NBTTagCompound compound) {
         long start = System.currentTimeMillis();
-
-        Kryo kryo = ValkyrienSkiesMod.INSTANCE.getKryo();
-        Output output = new Output(1024, -1);
-        kryo.writeObject(output, allShips);
-        compound.setByteArray(NBT_STORAGE_KEY, output.getBuffer());
+        if (shipDataLog != null) {
+            saveChangesToLog();
+        } else {
+            Kryo kryo = ValkyrienSkiesMod.INSTANCE.getKryo();
+            Output output = new Output(1024, -1);
+            synchronized (kryo) {
+                kryo.writeObject(output, allShips);
+            }
+            compound.setByteArray(NBT_STORAGE_KEY, output.getBuffer());
+        }
         if (debug) {
-            System.out.println("Price of write: " + (System.currentTimeMillis() - start) + "ms");
+            log.info("Price of write on the server thread: {}ms",
+                System.currentTimeMillis() - start);
         }
-
-
         return compound;
     }
 
@@ -18,6 +18,8 @@ import org.valkyrienskies.mod.common.physmanagement.chunk.VSChunkClaim;
 public final class ShipData {
 
     // WARNING: Mutable! This field is NEVER indexed. DO NOT INDEX!
+    // Always replaced rather than changed, so copies of the ShipData taken for saving on another
+    // thread keep the position they were taken with.
     @Nullable
     public ShipPositionData positionData;
     private String name;
@@ -32,8 +34,16 @@ public final class ShipData {
 
         private ShipData shipData;
 
+        /**
+         * Starts from a copy of the given ship data, which is left unchanged.
+         */
         public Builder(ShipData data) {
-            shipData = data;
+            shipData = new ShipData();
+            shipData.positionData = data.positionData;
+            shipData.name = data.name;
+            shipData.uuid = data.uuid;
+            shipData.chunkLongs = data.chunkLongs;
+            shipData.chunkClaim = data.chunkClaim;
         }
 
         public Builder(PhysicsWrapperEntity wrapperEntity) {
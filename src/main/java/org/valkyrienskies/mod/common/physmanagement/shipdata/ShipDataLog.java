@@ -0,0 +1,256 @@
+package org.valkyrienskies.mod.common.physmanagement.shipdata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of serialized ShipData records by ship UUID, so a save only writes the ships
+ * that changed instead of every ship ever made. Once most of the log is old versions of records,
+ * compact() rewrites it with just the current ones.
+ * <p>
+ * Every record is its length, the CRC32 of the rest of the record, the record type, the ship UUID,
+ * and for PUT records the ship data. Every save ends with a COMMIT record. When loading, only the
+ * records up to the last intact COMMIT are used and the rest is cut off, so a save interrupted by
+ * a crash is ignored entirely rather than half applied.
+ * <p>
+ * Not thread safe.
+ */
+public class ShipDataLog implements Closeable {
+
+    // Logs smaller than this are never compacted, rewriting them would cost more than it saves.
+    public static final long MIN_COMPACTION_BYTES = 1 << 20;
+    // No record is ever this big, a length this big means the log is corrupt.
+    private static final int MAX_RECORD_BYTES = 1 << 26;
+    private static final byte PUT_RECORD = 0;
+    private static final byte REMOVE_RECORD = 1;
+    private static final byte COMMIT_RECORD = 2;
+    // The length and CRC32 in front of every record.
+    private static final int HEADER_BYTES = 8;
+    private final File file;
+    private FileChannel channel;
+    // The size in the log of the current record of every ship, for deciding when to compact.
+    private final Map<UUID, Integer> liveRecordBytes;
+    private long liveBytes;
+
+    public ShipDataLog(File file) {
+        this.file = file;
+        this.channel = null;
+        this.liveRecordBytes = new HashMap<>();
+        this.liveBytes = 0;
+    }
+
+    /**
+     * Opens the log, creating it if it doesn't exist yet, and reads back the ship data saved in
+     * it. Must be called before anything else.
+     *
+     * @return The serialized ship data of every ship, by UUID
+     */
+    public Map<UUID, byte[]> load() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create directory " + parent);
+        }
+        Map<UUID, byte[]> ships = new HashMap<>();
+        ByteBuffer contents = ByteBuffer
+            .wrap(file.exists() ? Files.readAllBytes(file.toPath()) : new byte[0]);
+        // Records since the last commit, only applied once we find its commit.
+        Map<UUID, byte[]> pending = new HashMap<>();
+        long committedLength = 0;
+        CRC32 crc = new CRC32();
+        while (contents.remaining() >= HEADER_BYTES) {
+            int length = contents.getInt();
+            int checksum = contents.getInt();
+            if (length < 1 || length > MAX_RECORD_BYTES || length > contents.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(contents.array(), contents.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(contents.array(), contents.position(), length);
+            contents.position(contents.position() + length);
+            byte type = record.get();
+            if (type == COMMIT_RECORD) {
+                for (Map.Entry<UUID, byte[]> entry : pending.entrySet()) {
+                    if (entry.getValue() == null) {
+                        ships.remove(entry.getKey());
+                        removeLiveRecord(entry.getKey());
+                    } else {
+                        ships.put(entry.getKey(), entry.getValue());
+                        setLiveRecord(entry.getKey(), getRecordBytes(entry.getValue()));
+                    }
+                }
+                pending.clear();
+                committedLength = contents.position();
+            } else if ((type == PUT_RECORD || type == REMOVE_RECORD) && length >= 17) {
+                UUID uuid = new UUID(record.getLong(), record.getLong());
+                if (type == PUT_RECORD) {
+                    byte[] data = new byte[record.remaining()];
+                    record.get(data);
+                    pending.put(uuid, data);
+                } else {
+                    pending.put(uuid, null);
+                }
+            } else {
+                break;
+            }
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Cut off whatever a crash left after the last commit, so new records follow it directly.
+        channel.truncate(committedLength);
+        channel.position(committedLength);
+        return ships;
+    }
+
+    /**
+     * Appends the given changes followed by a commit, and waits for them to reach the disk.
+     *
+     * @param changed The serialized ship data of the ships that were added or changed
+     * @param removed The UUIDs of the ships that were removed
+     */
+    public void append(Map<UUID, byte[]> changed, Collection<UUID> removed) throws IOException {
+        writeSave(channel, changed, removed);
+        for (Map.Entry<UUID, byte[]> entry : changed.entrySet()) {
+            setLiveRecord(entry.getKey(), getRecordBytes(entry.getValue()));
+        }
+        for (UUID uuid : removed) {
+            removeLiveRecord(uuid);
+        }
+    }
+
+    /**
+     * @return Whether most of the log is records that have been replaced since.
+     */
+    public boolean shouldCompact() throws IOException {
+        long size = channel.size();
+        return size > MIN_COMPACTION_BYTES && size > liveBytes * 2;
+    }
+
+    /**
+     * Replaces the log with one that only has the given ships in it. The new log is written next
+     * to the old one and then moved over it, so a crash leaves either the old or the new log. If
+     * this throws the old log is still there and can still be appended to.
+     *
+     * @param ships The serialized ship data of every ship
+     */
+    public void compact(Map<UUID, byte[]> ships) throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        try (FileChannel compactedChannel = FileChannel.open(compacted.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+            writeSave(compactedChannel, ships, Collections.emptyList());
+        }
+        // Some platforms can't replace a file that is still open.
+        channel.close();
+        try {
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The move either happened or it didn't, so the old log is still whole.
+            openForAppending();
+            throw e;
+        }
+        openForAppending();
+        liveRecordBytes.clear();
+        liveBytes = 0;
+        for (Map.Entry<UUID, byte[]> entry : ships.entrySet()) {
+            setLiveRecord(entry.getKey(), getRecordBytes(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return The size of the log file in bytes.
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void openForAppending() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    // Writes the given changes followed by a commit to the channel, and waits for them to reach
+    // the disk.
+    private static void writeSave(FileChannel channel, Map<UUID, byte[]> changed,
+        Collection<UUID> removed) throws IOException {
+        int totalBytes = HEADER_BYTES + 1;
+        for (byte[] data : changed.values()) {
+            totalBytes += getRecordBytes(data);
+        }
+        totalBytes += removed.size() * getRecordBytes(null);
+        ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+        for (Map.Entry<UUID, byte[]> entry : changed.entrySet()) {
+            writeRecord(buffer, PUT_RECORD, entry.getKey(), entry.getValue());
+        }
+        for (UUID uuid : removed) {
+            writeRecord(buffer, REMOVE_RECORD, uuid, null);
+        }
+        writeRecord(buffer, COMMIT_RECORD, null, null);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private void setLiveRecord(UUID uuid, int recordBytes) {
+        Integer previous = liveRecordBytes.put(uuid, recordBytes);
+        liveBytes += recordBytes - (previous == null ? 0 : previous);
+    }
+
+    private void removeLiveRecord(UUID uuid) {
+        Integer previous = liveRecordBytes.remove(uuid);
+        if (previous != null) {
+            liveBytes -= previous;
+        }
+    }
+
+    // The size of a PUT record with the given data, or of a REMOVE record if it's null.
+    private static int getRecordBytes(byte[] data) {
+        return HEADER_BYTES + 1 + 16 + (data == null ? 0 : data.length);
+    }
+
+    private static void writeRecord(ByteBuffer buffer, byte type, UUID uuid, byte[] data) {
+        int start = buffer.position();
+        // Leave room for the header, then go back and fill it in.
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(type);
+        if (uuid != null) {
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+        }
+        if (data != null) {
+            buffer.put(data);
+        }
+        int length = buffer.position() - start - HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + HEADER_BYTES, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+}
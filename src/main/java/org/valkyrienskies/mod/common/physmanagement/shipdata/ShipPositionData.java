@@ -6,12 +6,15 @@ import org.valkyrienskies.mod.common.coordinates.ShipTransform;
 import org.valkyrienskies.mod.common.entity.PhysicsWrapperEntity;
 import org.valkyrienskies.mod.common.math.Vector;
 
+/**
+ * Never changed once made, see ShipData.positionData.
+ */
 @NoArgsConstructor(force = true) // For Kryo
 public class ShipPositionData {
 
     private final Vector shipPosition;
     @Getter
-    private ShipTransform transform;
+    private final ShipTransform transform;
 
     ShipPositionData(PhysicsWrapperEntity wrapper) {
         shipPosition = new Vector(wrapper.posX, wrapper.posY, wrapper.posZ);
@@ -21,14 +24,6 @@ public class ShipPositionData {
                 .getCurrentTickTransform();
     }
 
-    void updateData(PhysicsWrapperEntity wrapper) {
-        shipPosition.X = wrapper.posX;
-        shipPosition.Y = wrapper.posY;
-        shipPosition.Z = wrapper.posZ;
-        transform =
-            wrapper.getPhysicsObject().getShipTransformationManager().getCurrentTickTransform();
-    }
-
     public double getPosX() {
         return shipPosition.X;
     }
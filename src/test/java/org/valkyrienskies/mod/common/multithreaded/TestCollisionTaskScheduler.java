@@ -0,0 +1,71 @@
+package org.valkyrienskies.mod.common.multithreaded;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestCollisionTaskScheduler {
+
+    @Test
+    public void runsEveryTaskOnce() {
+        CollisionTaskScheduler scheduler = new CollisionTaskScheduler(4);
+        for (int taskCount : new int[]{0, 1, 2, 3, 17, 1000}) {
+            AtomicIntegerArray runs = new AtomicIntegerArray(taskCount);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                int task = i;
+                tasks.add(() -> {
+                    runs.incrementAndGet(task);
+                    return null;
+                });
+            }
+            scheduler.resetStatistics();
+            scheduler.invokeAll(tasks);
+            for (int i = 0; i < taskCount; i++) {
+                assertEquals(1, runs.get(i));
+            }
+            assertEquals(taskCount, scheduler.getTasksRun());
+        }
+    }
+
+    @Test
+    public void failedTaskDoesntStopOthers() {
+        CollisionTaskScheduler scheduler = new CollisionTaskScheduler(2);
+        AtomicIntegerArray runs = new AtomicIntegerArray(10);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int task = i;
+            tasks.add(() -> {
+                runs.incrementAndGet(task);
+                if (task == 3) {
+                    throw new IllegalStateException("Expected by the test");
+                }
+                return null;
+            });
+        }
+        scheduler.invokeAll(tasks);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, runs.get(i));
+        }
+    }
+
+    @Test
+    public void taskSizeScalesWithWork() {
+        CollisionTaskScheduler scheduler = new CollisionTaskScheduler(4);
+        int maxTasks = 4 * CollisionTaskScheduler.TASKS_PER_THREAD;
+        assertEquals(CollisionTaskScheduler.MIN_HITS_PER_TASK, scheduler.getTaskSize(0));
+        assertEquals(CollisionTaskScheduler.MIN_HITS_PER_TASK, scheduler.getTaskSize(100));
+        for (int hits : new int[]{10000, 10001, 123456}) {
+            int taskSize = scheduler.getTaskSize(hits);
+            int tasks = (hits + taskSize - 1) / taskSize;
+            assertTrue(tasks <= maxTasks);
+            assertTrue(tasks > maxTasks - 2);
+        }
+    }
+}
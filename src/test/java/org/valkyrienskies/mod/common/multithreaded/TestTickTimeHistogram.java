@@ -0,0 +1,100 @@
+package org.valkyrienskies.mod.common.multithreaded;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.multithreaded.PhysicsTickMetrics.Phase;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestTickTimeHistogram {
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        Random random = new Random(420);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = TickTimeHistogram.getBucketIndex(value);
+            assertTrue(TickTimeHistogram.getBucketLowerBound(index) <= value);
+            assertTrue(TickTimeHistogram.getBucketUpperBound(index) >= value);
+        }
+        for (int index = 1; index < TickTimeHistogram.getBucketIndex(Long.MAX_VALUE); index++) {
+            assertEquals(TickTimeHistogram.getBucketUpperBound(index - 1) + 1,
+                TickTimeHistogram.getBucketLowerBound(index));
+        }
+        assertEquals(Long.MAX_VALUE, TickTimeHistogram.getBucketUpperBound(
+            TickTimeHistogram.getBucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        TickTimeHistogram histogram = new TickTimeHistogram();
+        // 1 to 1000 microseconds
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNano());
+        assertEquals(500500, histogram.getMeanNano());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            double expected = percentile * 10000;
+            double actual = histogram.getPercentileNano(percentile);
+            assertTrue(actual >= expected);
+            assertTrue(actual <= expected * (1 + 1D / TickTimeHistogram.SUB_BUCKET_COUNT));
+        }
+    }
+
+    @Test
+    public void spikesShowUpInTheTail() {
+        TickTimeHistogram histogram = new TickTimeHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(2000000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(50000000);
+        }
+        assertTrue(histogram.getPercentileNano(50) < 2200000);
+        assertTrue(histogram.getPercentileNano(99.5) >= 50000000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNano(99));
+    }
+
+    @Test
+    public void concurrentRecordsAreCounted() throws InterruptedException {
+        TickTimeHistogram histogram = new TickTimeHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int value = 0; value < 10000; value++) {
+                    histogram.record(value);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long[] bucketTotal = new long[1];
+        histogram.forEachBucket((lowerBound, upperBound, count) -> bucketTotal[0] += count);
+        assertEquals(40000, histogram.getCount());
+        assertEquals(40000, bucketTotal[0]);
+        assertEquals(9999, histogram.getMaxNano());
+    }
+
+    @Test
+    public void writesCsv() throws IOException {
+        PhysicsTickMetrics metrics = new PhysicsTickMetrics();
+        metrics.record(Phase.TICK, 3);
+        metrics.record(Phase.TICK, 3);
+        metrics.record(Phase.IMPULSE_SOLVE, 100);
+        StringWriter writer = new StringWriter();
+        metrics.writeCsv(writer);
+        assertEquals("phase,lower_bound_ns,upper_bound_ns,count\n"
+            + "tick,3,3,2\n"
+            + "impulse-solve,100,103,1\n", writer.toString());
+    }
+}
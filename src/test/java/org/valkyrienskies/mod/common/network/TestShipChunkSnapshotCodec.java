@@ -0,0 +1,100 @@
+package org.valkyrienskies.mod.common.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.network.ShipChunkSnapshotCodec.SectionData;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipChunkSnapshotCodec {
+
+    @Test
+    public void sectionsRoundTrip() {
+        Random random = new Random(420);
+        for (int paletteSize : new int[]{1, 2, 3, 16, 17, 300, 4096}) {
+            int[] stateIDs = randomSection(random, paletteSize);
+            byte[] blockLight = new byte[ShipChunkSnapshotCodec.LIGHT_BYTES];
+            random.nextBytes(blockLight);
+            byte[] skyLight = new byte[ShipChunkSnapshotCodec.LIGHT_BYTES];
+            Arrays.fill(skyLight, (byte) 0xFF);
+
+            ByteBuf buf = Unpooled.buffer();
+            ShipChunkSnapshotCodec.writeSection(buf, stateIDs, blockLight, skyLight);
+            SectionData section = ShipChunkSnapshotCodec.readSection(buf);
+            assertEquals(0, buf.readableBytes());
+            assertArrayEquals(stateIDs, section.stateIDs);
+            assertArrayEquals(blockLight, section.blockLight);
+            assertArrayEquals(skyLight, section.skyLight);
+        }
+    }
+
+    @Test
+    public void worldsWithoutSkyLight() {
+        int[] stateIDs = randomSection(new Random(420), 5);
+        byte[] blockLight = new byte[ShipChunkSnapshotCodec.LIGHT_BYTES];
+        ByteBuf buf = Unpooled.buffer();
+        ShipChunkSnapshotCodec.writeSection(buf, stateIDs, blockLight, null);
+        SectionData section = ShipChunkSnapshotCodec.readSection(buf);
+        assertArrayEquals(stateIDs, section.stateIDs);
+        assertNull(section.skyLight);
+    }
+
+    @Test
+    public void sectionsAreSmall() {
+        Random random = new Random(420);
+        byte[] light = new byte[ShipChunkSnapshotCodec.LIGHT_BYTES];
+        // A solid block of one block state, with the light the same everywhere.
+        ByteBuf buf = Unpooled.buffer();
+        ShipChunkSnapshotCodec.writeSection(buf, randomSection(random, 1), light, light);
+        assertTrue(buf.readableBytes() < 10);
+        // A typical ship section, a few block states and air
+        buf = Unpooled.buffer();
+        ShipChunkSnapshotCodec.writeSection(buf, randomSection(random, 6), light, light);
+        // 3 bits per block plus the palette, against 8KB of block states in a vanilla section
+        assertTrue(buf.readableBytes() < 4096 * 3 / 8 + 100);
+    }
+
+    @Test
+    public void indicesPackWithEveryWidth() {
+        Random random = new Random(420);
+        for (int bits = 1; bits <= 12; bits++) {
+            int[] indices = new int[ShipChunkSnapshotCodec.SECTION_VOLUME];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = random.nextInt(1 << bits);
+            }
+            long[] packed = ShipChunkSnapshotCodec.packIndices(indices, bits);
+            assertArrayEquals(indices, ShipChunkSnapshotCodec.unpackIndices(packed, bits));
+        }
+    }
+
+    @Test
+    public void bitsPerEntry() {
+        assertEquals(0, ShipChunkSnapshotCodec.getBitsPerEntry(1));
+        assertEquals(1, ShipChunkSnapshotCodec.getBitsPerEntry(2));
+        assertEquals(2, ShipChunkSnapshotCodec.getBitsPerEntry(3));
+        assertEquals(4, ShipChunkSnapshotCodec.getBitsPerEntry(16));
+        assertEquals(5, ShipChunkSnapshotCodec.getBitsPerEntry(17));
+        assertEquals(12, ShipChunkSnapshotCodec.getBitsPerEntry(4096));
+    }
+
+    // Uses exactly paletteSize different block state ids.
+    private static int[] randomSection(Random random, int paletteSize) {
+        int[] palette = new int[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            // Block state ids are block id << 4 | meta, so they get big
+            palette[i] = i * 16 + random.nextInt(16) + (i == 0 ? 0 : 16);
+        }
+        int[] stateIDs = new int[ShipChunkSnapshotCodec.SECTION_VOLUME];
+        for (int i = 0; i < stateIDs.length; i++) {
+            stateIDs[i] = palette[i < paletteSize ? i : random.nextInt(paletteSize)];
+        }
+        return stateIDs;
+    }
+}
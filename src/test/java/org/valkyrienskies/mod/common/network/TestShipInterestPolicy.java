@@ -0,0 +1,78 @@
+package org.valkyrienskies.mod.common.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.network.ShipInterestPolicy.InterestTier;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipInterestPolicy {
+
+    // A 32 block wide ship around the origin.
+    private static final AxisAlignedBB SHIP_BB = new AxisAlignedBB(-16, 50, -16, 16, 70, 16);
+
+    @Test
+    public void tiersByDistanceToTheShip() {
+        ShipInterestPolicy policy = new ShipInterestPolicy(64, 192);
+        // Standing on the ship, looking away from it
+        assertEquals(InterestTier.NEAR, policy.getTier(0, 72, 0, 0, 1, 0, SHIP_BB));
+        // The distance is to the closest point, not the center
+        assertEquals(InterestTier.NEAR, policy.getTier(16 + 63, 60, 0, 1, 0, 0, SHIP_BB));
+        assertEquals(InterestTier.MID, policy.getTier(16 + 65, 60, 0, -1, 0, 0, SHIP_BB));
+        assertEquals(InterestTier.MID, policy.getTier(16 + 191, 60, 0, -1, 0, 0, SHIP_BB));
+        assertEquals(InterestTier.FAR, policy.getTier(16 + 193, 60, 0, -1, 0, 0, SHIP_BB));
+    }
+
+    @Test
+    public void shipsBehindThePlayerAreFar() {
+        ShipInterestPolicy policy = new ShipInterestPolicy(64, 192);
+        // Looking away from a mid range ship
+        assertEquals(InterestTier.FAR, policy.getTier(100, 60, 0, 1, 0, 0, SHIP_BB));
+        // Looking across it still counts as looking at it
+        assertEquals(InterestTier.MID, policy.getTier(100, 60, 0, 0, 0, 1, SHIP_BB));
+        // But near ships are always sent, whichever way the player looks
+        assertEquals(InterestTier.NEAR, policy.getTier(50, 60, 0, 1, 0, 0, SHIP_BB));
+    }
+
+    @Test
+    public void sendsEachTierAtItsInterval() {
+        for (InterestTier tier : InterestTier.values()) {
+            for (int shipID = 0; shipID < 50; shipID++) {
+                int sends = 0;
+                int lastSend = -1;
+                for (int sendIndex = 0; sendIndex < 1000; sendIndex++) {
+                    if (ShipInterestPolicy.shouldSend(tier, sendIndex, shipID)) {
+                        if (lastSend != -1) {
+                            assertEquals(tier.getSendInterval(), sendIndex - lastSend);
+                        }
+                        lastSend = sendIndex;
+                        sends++;
+                    }
+                }
+                assertEquals(1000 / tier.getSendInterval(), sends);
+            }
+        }
+    }
+
+    @Test
+    public void spreadsShipsOverDifferentTicks() {
+        // With as many ships as the interval, every send should have exactly one of them.
+        for (int sendIndex = 0; sendIndex < 100; sendIndex++) {
+            int sent = 0;
+            for (int shipID = 0; shipID < InterestTier.FAR.getSendInterval(); shipID++) {
+                if (ShipInterestPolicy.shouldSend(InterestTier.FAR, sendIndex, shipID)) {
+                    sent++;
+                }
+            }
+            assertEquals(1, sent);
+        }
+    }
+
+    @Test
+    public void rejectsBadDistances() {
+        assertThrows(IllegalArgumentException.class, () -> new ShipInterestPolicy(100, 50));
+        assertThrows(IllegalArgumentException.class, () -> new ShipInterestPolicy(-1, 50));
+    }
+}
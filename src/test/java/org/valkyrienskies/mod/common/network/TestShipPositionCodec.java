@@ -0,0 +1,133 @@
+package org.valkyrienskies.mod.common.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
+import valkyrienwarfare.api.TransformType;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipPositionCodec {
+
+    // Rounding to the nearest 1/1024 of a block, plus some room for floating point error.
+    private static final double MAX_POSITION_ERROR = .5D / ShipPositionCodec.POSITION_SCALE + 1E-9;
+    // How far a point 100 blocks from the center of rotation may move from quantizing rotation.
+    private static final double MAX_ROTATION_ERROR = 1E-3;
+    private static final double MAX_BOUNDING_BOX_ERROR = 1D / ShipPositionCodec.BOUNDING_BOX_SCALE
+        + MAX_POSITION_ERROR;
+
+    @Test
+    public void roundTripsWithinErrorBounds() {
+        Random random = new Random(420);
+        for (int i = 0; i < 10000; i++) {
+            WrapperPositionMessage keyframe = randomMessage(random, null);
+            keyframe.setKeyframeID(random.nextInt(1000));
+            WrapperPositionMessage current = randomMessage(random, keyframe);
+
+            WrapperPositionDeltaMessage sent = new WrapperPositionDeltaMessage(keyframe, current,
+                ShipPositionCodec
+                    .encodeRotation(current.getPitch(), current.getYaw(), current.getRoll()));
+            ByteBuf buf = Unpooled.buffer();
+            sent.toBytes(buf);
+            // Small moves should be a lot smaller than the ~130 bytes of a full message.
+            assertTrue(buf.readableBytes() <= 45);
+            WrapperPositionDeltaMessage received = new WrapperPositionDeltaMessage();
+            received.fromBytes(buf);
+            assertEquals(0, buf.readableBytes());
+
+            assertEquals(current.getEntityID(), received.getEntityID());
+            assertEquals(keyframe.getKeyframeID(), received.getKeyframeID());
+            WrapperPositionMessage decoded = received.decode(keyframe);
+            assertEquals(current.getRelativeTick(), decoded.getRelativeTick());
+            assertEquals(keyframe.getCenterOfMass(), decoded.getCenterOfMass());
+            assertEquals(current.getPosX(), decoded.getPosX(), MAX_POSITION_ERROR);
+            assertEquals(current.getPosY(), decoded.getPosY(), MAX_POSITION_ERROR);
+            assertEquals(current.getPosZ(), decoded.getPosZ(), MAX_POSITION_ERROR);
+            assertRotationsClose(current, decoded);
+            assertBoundingBoxClose(current.getShipBB(), decoded.getShipBB());
+        }
+    }
+
+    @Test
+    public void zigZagRoundTrips() {
+        for (long value : new long[]{0, 1, -1, 1000, -1000, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            long encoded = ShipPositionCodec.zigZagEncode(value);
+            assertEquals(value, ShipPositionCodec.zigZagDecode(encoded));
+            if (value >= -1000 && value <= 1000) {
+                // Small numbers stay small no matter the sign
+                assertTrue(encoded >= 0 && encoded <= 2 * Math.abs(value));
+            }
+        }
+    }
+
+    /**
+     * @param keyframe If not null, the new message is a small move away from this one
+     */
+    private static WrapperPositionMessage randomMessage(Random random,
+        WrapperPositionMessage keyframe) {
+        WrapperPositionMessage message = new WrapperPositionMessage();
+        message.setEntityID(42);
+        if (keyframe == null) {
+            message.setRelativeTick(random.nextInt(1000000));
+            message.setPosX((random.nextDouble() - .5) * 60000000);
+            message.setPosY(random.nextDouble() * 256);
+            message.setPosZ((random.nextDouble() - .5) * 60000000);
+            message.setCenterOfMass(new Vector(random.nextDouble() * 32, 64,
+                random.nextDouble() * 32));
+        } else {
+            message.setRelativeTick(keyframe.getRelativeTick() + random.nextInt(100));
+            message.setPosX(keyframe.getPosX() + (random.nextDouble() - .5) * 100);
+            message.setPosY(keyframe.getPosY() + (random.nextDouble() - .5) * 100);
+            message.setPosZ(keyframe.getPosZ() + (random.nextDouble() - .5) * 100);
+            message.setCenterOfMass(keyframe.getCenterOfMass());
+        }
+        message.setPitch((random.nextDouble() - .5) * 360);
+        message.setYaw((random.nextDouble() - .5) * 180);
+        message.setRoll((random.nextDouble() - .5) * 360);
+        double size = random.nextDouble() * 100;
+        message.setShipBB(new AxisAlignedBB(message.getPosX() - random.nextDouble() * size,
+            message.getPosY() - random.nextDouble() * size,
+            message.getPosZ() - random.nextDouble() * size,
+            message.getPosX() + random.nextDouble() * size,
+            message.getPosY() + random.nextDouble() * size,
+            message.getPosZ() + random.nextDouble() * size));
+        return message;
+    }
+
+    private static void assertRotationsClose(WrapperPositionMessage expected,
+        WrapperPositionMessage actual) {
+        ShipTransform expectedRotation = ShipTransform
+            .createRotationTransform(expected.getPitch(), expected.getYaw(), expected.getRoll());
+        ShipTransform actualRotation = ShipTransform
+            .createRotationTransform(actual.getPitch(), actual.getYaw(), actual.getRoll());
+        for (Vector axis : Vector.generateAxisAlignedNorms()) {
+            Vector expectedPoint = new Vector(axis, 100);
+            Vector actualPoint = new Vector(axis, 100);
+            expectedRotation.rotate(expectedPoint, TransformType.SUBSPACE_TO_GLOBAL);
+            actualRotation.rotate(actualPoint, TransformType.SUBSPACE_TO_GLOBAL);
+            assertTrue(expectedPoint.getSubtraction(actualPoint).length() < MAX_ROTATION_ERROR);
+        }
+    }
+
+    // The decoded box must contain the real one, and be at most a little bigger.
+    private static void assertBoundingBoxClose(AxisAlignedBB expected, AxisAlignedBB actual) {
+        assertTrue(actual.minX <= expected.minX + MAX_POSITION_ERROR);
+        assertTrue(actual.minY <= expected.minY + MAX_POSITION_ERROR);
+        assertTrue(actual.minZ <= expected.minZ + MAX_POSITION_ERROR);
+        assertTrue(actual.maxX >= expected.maxX - MAX_POSITION_ERROR);
+        assertTrue(actual.maxY >= expected.maxY - MAX_POSITION_ERROR);
+        assertTrue(actual.maxZ >= expected.maxZ - MAX_POSITION_ERROR);
+        assertEquals(expected.minX, actual.minX, MAX_BOUNDING_BOX_ERROR);
+        assertEquals(expected.minY, actual.minY, MAX_BOUNDING_BOX_ERROR);
+        assertEquals(expected.minZ, actual.minZ, MAX_BOUNDING_BOX_ERROR);
+        assertEquals(expected.maxX, actual.maxX, MAX_BOUNDING_BOX_ERROR);
+        assertEquals(expected.maxY, actual.maxY, MAX_BOUNDING_BOX_ERROR);
+        assertEquals(expected.maxZ, actual.maxZ, MAX_BOUNDING_BOX_ERROR);
+    }
+}
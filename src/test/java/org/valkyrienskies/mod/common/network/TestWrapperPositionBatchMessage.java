@@ -0,0 +1,94 @@
+package org.valkyrienskies.mod.common.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.math.Vector;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestWrapperPositionBatchMessage {
+
+    @Test
+    public void entriesRoundTripInOrder() {
+        WrapperPositionBatchMessage sent = new WrapperPositionBatchMessage();
+        WrapperPositionMessage[] keyframes = new WrapperPositionMessage[10];
+        for (int ship = 0; ship < 10; ship++) {
+            keyframes[ship] = createMessage(ship, ship * 100, ship * 10);
+            keyframes[ship].setKeyframeID(ship);
+            if (ship % 2 == 0) {
+                sent.addEntry(WrapperPositionBatchMessage.encodeEntry(keyframes[ship]));
+            } else {
+                WrapperPositionMessage current = createMessage(ship, ship * 100 + 5,
+                    ship * 10 + 1);
+                sent.addEntry(WrapperPositionBatchMessage.encodeEntry(
+                    new WrapperPositionDeltaMessage(keyframes[ship], current,
+                        ShipPositionCodec.encodeRotation(current.getPitch(), current.getYaw(),
+                            current.getRoll()))));
+            }
+        }
+        ByteBuf buf = Unpooled.buffer();
+        sent.toBytes(buf);
+        WrapperPositionBatchMessage received = new WrapperPositionBatchMessage();
+        received.fromBytes(buf);
+        assertEquals(0, buf.readableBytes());
+
+        assertEquals(10, received.getEntries().size());
+        for (int ship = 0; ship < 10; ship++) {
+            IMessage entry = received.getEntries().get(ship);
+            WrapperPositionMessage decoded;
+            if (ship % 2 == 0) {
+                assertTrue(entry instanceof WrapperPositionMessage);
+                decoded = (WrapperPositionMessage) entry;
+                assertEquals(ship, decoded.getKeyframeID());
+                assertEquals(ship * 100D, decoded.getPosX());
+            } else {
+                assertTrue(entry instanceof WrapperPositionDeltaMessage);
+                assertEquals(ship, ((WrapperPositionDeltaMessage) entry).getKeyframeID());
+                decoded = ((WrapperPositionDeltaMessage) entry).decode(keyframes[ship]);
+                assertEquals(ship * 100 + 5, decoded.getPosX(), 1E-3);
+            }
+            assertEquals(ship, decoded.getEntityID());
+        }
+    }
+
+    @Test
+    public void reusedEntriesAreIdentical() {
+        // Every player watching a ship gets the very same encoded entry, make sure sending it in
+        // one batch doesn't affect it for the next.
+        byte[] entry = WrapperPositionBatchMessage.encodeEntry(createMessage(1, 5, 0));
+        byte[] copy = entry.clone();
+        for (int player = 0; player < 3; player++) {
+            WrapperPositionBatchMessage batch = new WrapperPositionBatchMessage();
+            batch.addEntry(entry);
+            batch.addEntry(entry);
+            assertEquals(2 * entry.length, batch.getEncodedSize());
+            ByteBuf buf = Unpooled.buffer();
+            batch.toBytes(buf);
+            WrapperPositionBatchMessage received = new WrapperPositionBatchMessage();
+            received.fromBytes(buf);
+            assertEquals(2, received.getEntries().size());
+        }
+        assertEquals(copy.length, entry.length);
+        for (int i = 0; i < copy.length; i++) {
+            assertEquals(copy[i], entry[i]);
+        }
+    }
+
+    private static WrapperPositionMessage createMessage(int entityID, double posX, double yaw) {
+        WrapperPositionMessage message = new WrapperPositionMessage();
+        message.setEntityID(entityID);
+        message.setRelativeTick(1000);
+        message.setPosX(posX);
+        message.setPosY(64);
+        message.setPosZ(-posX);
+        message.setYaw(yaw);
+        message.setCenterOfMass(new Vector(8.5, 70.5, 8.5));
+        message.setShipBB(new AxisAlignedBB(posX - 8, 60, -posX - 8, posX + 8, 80, -posX + 8));
+        return message;
+    }
+}
@@ -0,0 +1,217 @@
+package org.valkyrienskies.mod.common.physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.math.Vector;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestInertiaAccumulator {
+
+    // Ship chunks are far out in the world, so the blocks are too.
+    private static final int CENTER_X = 20000000;
+    private static final int CENTER_Z = -3000016;
+    private static final double OFFSET = InertiaAccumulator.BLOCK_MASS_OFFSET;
+
+    @Test
+    public void singleBlock() {
+        InertiaAccumulator accumulator = new InertiaAccumulator();
+        accumulator.addBlockMassAt(CENTER_X + .5, 64.5, CENTER_Z + .5, 900);
+
+        Vector centerOfMass = new Vector();
+        accumulator.getCenterOfMass(centerOfMass);
+        assertEquals(900, accumulator.getMass());
+        assertEquals(CENTER_X + .5, centerOfMass.X);
+        assertEquals(64.5, centerOfMass.Y);
+        assertEquals(CENTER_Z + .5, centerOfMass.Z);
+
+        // 8 of the 9 points are OFFSET away from the center along the other two axes.
+        double diagonal = 8 * 100 * 2 * OFFSET * OFFSET;
+        double[] tensor = new double[9];
+        accumulator.getInertiaTensor(tensor);
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i % 4 == 0 ? diagonal : 0, tensor[i], 1e-9);
+        }
+    }
+
+    // Near the origin, where the old way of adding blocks doesn't lose precision either.
+    @RepeatedTest(25)
+    public void matchesNineMassUpdates() {
+        Random random = new Random();
+        InertiaAccumulator accumulator = new InertiaAccumulator();
+        NineMassReference reference = new NineMassReference();
+        List<double[]> added = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Never removes the last block, the old way divides by zero then.
+            if (added.size() > 1 && random.nextInt(4) == 0) {
+                double[] block = added.remove(random.nextInt(added.size()));
+                accumulator.addBlockMassAt(block[0], block[1], block[2], -block[3]);
+                reference.addBlockMass(block[0], block[1], block[2], -block[3]);
+            } else {
+                double[] block = randomBlock(random, 0, 0);
+                added.add(block);
+                accumulator.addBlockMassAt(block[0], block[1], block[2], block[3]);
+                reference.addBlockMass(block[0], block[1], block[2], block[3]);
+            }
+        }
+        assertMatches(reference, accumulator);
+    }
+
+    // Far out, the old way drifts a little with every block, so compare against the sums over
+    // the blocks that are left instead.
+    @RepeatedTest(25)
+    public void matchesDirectSumFarAway() {
+        Random random = new Random();
+        InertiaAccumulator accumulator = new InertiaAccumulator();
+        List<double[]> added = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            if (added.size() > 1 && random.nextInt(4) == 0) {
+                double[] block = added.remove(random.nextInt(added.size()));
+                accumulator.addBlockMassAt(block[0], block[1], block[2], -block[3]);
+            } else {
+                double[] block = randomBlock(random, CENTER_X, CENTER_Z);
+                added.add(block);
+                accumulator.addBlockMassAt(block[0], block[1], block[2], block[3]);
+            }
+        }
+
+        NineMassReference expected = new NineMassReference();
+        for (double[] block : added) {
+            expected.mass += block[3];
+            expected.centerOfMass.X += block[3] * (block[0] - CENTER_X);
+            expected.centerOfMass.Y += block[3] * block[1];
+            expected.centerOfMass.Z += block[3] * (block[2] - CENTER_Z);
+        }
+        expected.centerOfMass.multiply(1 / expected.mass);
+        for (double[] block : added) {
+            double x = block[0] - CENTER_X - expected.centerOfMass.X;
+            double y = block[1] - expected.centerOfMass.Y;
+            double z = block[2] - CENTER_Z - expected.centerOfMass.Z;
+            double spread = block[3] * 8 / 9 * OFFSET * OFFSET;
+            expected.tensor[0] += block[3] * (y * y + z * z) + 2 * spread;
+            expected.tensor[1] -= block[3] * x * y;
+            expected.tensor[2] -= block[3] * x * z;
+            expected.tensor[4] += block[3] * (x * x + z * z) + 2 * spread;
+            expected.tensor[5] -= block[3] * y * z;
+            expected.tensor[8] += block[3] * (x * x + y * y) + 2 * spread;
+        }
+        expected.tensor[3] = expected.tensor[1];
+        expected.tensor[6] = expected.tensor[2];
+        expected.tensor[7] = expected.tensor[5];
+        expected.centerOfMass.X += CENTER_X;
+        expected.centerOfMass.Z += CENTER_Z;
+        assertMatches(expected, accumulator);
+    }
+
+    @RepeatedTest(10)
+    public void continuesFromMassProperties() {
+        Random random = new Random();
+        InertiaAccumulator first = new InertiaAccumulator();
+        NineMassReference reference = new NineMassReference();
+        for (int i = 0; i < 500; i++) {
+            addRandomBlock(random, first, reference);
+        }
+
+        // Like a ship being saved and loaded again.
+        InertiaAccumulator loaded = new InertiaAccumulator();
+        Vector centerOfMass = new Vector();
+        double[] tensor = new double[9];
+        first.getCenterOfMass(centerOfMass);
+        first.getInertiaTensor(tensor);
+        loaded.setMassProperties(first.getMass(), centerOfMass, tensor);
+        for (int i = 0; i < 500; i++) {
+            addRandomBlock(random, loaded, reference);
+        }
+        assertMatches(reference, loaded);
+    }
+
+    // x, y, z and mass of a block around centerX, centerZ.
+    private static double[] randomBlock(Random random, int centerX, int centerZ) {
+        return new double[]{
+            centerX + random.nextInt(60) - 30 + .5,
+            random.nextInt(40) + 40 + .5,
+            centerZ + random.nextInt(20) - 10 + .5,
+            100 + random.nextInt(50) * 100};
+    }
+
+    private static void addRandomBlock(Random random, InertiaAccumulator accumulator,
+        NineMassReference reference) {
+        double[] block = randomBlock(random, 0, 0);
+        accumulator.addBlockMassAt(block[0], block[1], block[2], block[3]);
+        reference.addBlockMass(block[0], block[1], block[2], block[3]);
+    }
+
+    private static void assertMatches(NineMassReference expected, InertiaAccumulator actual) {
+        assertEquals(expected.mass, actual.getMass(), 1e-6);
+
+        Vector centerOfMass = new Vector();
+        actual.getCenterOfMass(centerOfMass);
+        assertEquals(expected.centerOfMass.X, centerOfMass.X, 1e-6);
+        assertEquals(expected.centerOfMass.Y, centerOfMass.Y, 1e-6);
+        assertEquals(expected.centerOfMass.Z, centerOfMass.Z, 1e-6);
+
+        double[] tensor = new double[9];
+        actual.getInertiaTensor(tensor);
+        double scale = expected.tensor[0] + expected.tensor[4] + expected.tensor[8];
+        for (int i = 0; i < 9; i++) {
+            assertEquals(expected.tensor[i], tensor[i], scale * 1e-9);
+        }
+    }
+
+    /**
+     * How PhysicsCalculations used to add a block: 9 point masses, each one moving the center of
+     * mass and shifting the inertia tensor over to it.
+     */
+    private static class NineMassReference {
+
+        double mass = 0;
+        Vector centerOfMass = new Vector();
+        double[] tensor = new double[9];
+
+        void addBlockMass(double x, double y, double z, double deltaMass) {
+            deltaMass /= 9D;
+            addMassAt(x, y, z, deltaMass);
+            for (int corner = 0; corner < 8; corner++) {
+                addMassAt(x + ((corner & 1) == 0 ? OFFSET : -OFFSET),
+                    y + ((corner & 2) == 0 ? OFFSET : -OFFSET),
+                    z + ((corner & 4) == 0 ? OFFSET : -OFFSET), deltaMass);
+            }
+        }
+
+        void addMassAt(double x, double y, double z, double addedMass) {
+            Vector prevCenterOfMass = new Vector(centerOfMass);
+            if (mass > .0001D) {
+                centerOfMass.multiply(mass);
+                centerOfMass.add(new Vector(x, y, z).getProduct(addedMass));
+                centerOfMass.multiply(1.0D / (mass + addedMass));
+            } else {
+                centerOfMass = new Vector(x, y, z);
+                tensor = new double[9];
+            }
+            double cmShiftX = prevCenterOfMass.X - centerOfMass.X;
+            double cmShiftY = prevCenterOfMass.Y - centerOfMass.Y;
+            double cmShiftZ = prevCenterOfMass.Z - centerOfMass.Z;
+            double rx = x - centerOfMass.X;
+            double ry = y - centerOfMass.Y;
+            double rz = z - centerOfMass.Z;
+
+            tensor[0] += (cmShiftY * cmShiftY + cmShiftZ * cmShiftZ) * mass
+                + (ry * ry + rz * rz) * addedMass;
+            tensor[1] += -cmShiftX * cmShiftY * mass - rx * ry * addedMass;
+            tensor[2] += -cmShiftX * cmShiftZ * mass - rx * rz * addedMass;
+            tensor[3] = tensor[1];
+            tensor[4] += (cmShiftX * cmShiftX + cmShiftZ * cmShiftZ) * mass
+                + (rx * rx + rz * rz) * addedMass;
+            tensor[5] += -cmShiftY * cmShiftZ * mass - ry * rz * addedMass;
+            tensor[6] = tensor[2];
+            tensor[7] = tensor[5];
+            tensor[8] += (cmShiftX * cmShiftX + cmShiftY * cmShiftY) * mass
+                + (rx * rx + ry * ry) * addedMass;
+            mass += addedMass;
+        }
+    }
+}
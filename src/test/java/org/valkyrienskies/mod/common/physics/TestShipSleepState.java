@@ -0,0 +1,108 @@
+package org.valkyrienskies.mod.common.physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipSleepState {
+
+    private static final double STILL_LINEAR = ShipSleepState.SLEEP_LINEAR_VELOCITY * .99D;
+    private static final double STILL_ANGULAR = ShipSleepState.SLEEP_ANGULAR_VELOCITY * .99D;
+
+    @Test
+    public void fallsAsleepAfterBeingStill() {
+        ShipSleepState state = new ShipSleepState();
+        for (int i = 1; i < ShipSleepState.TICKS_BEFORE_SLEEP; i++) {
+            assertFalse(tick(state, true, STILL_LINEAR, STILL_ANGULAR));
+            assertEquals(i, state.getTicksStill());
+        }
+        assertTrue(tick(state, true, STILL_LINEAR, STILL_ANGULAR));
+        assertTrue(state.isAsleep());
+    }
+
+    @Test
+    public void movingRestartsTheCount() {
+        ShipSleepState state = new ShipSleepState();
+        for (int i = 0; i < ShipSleepState.TICKS_BEFORE_SLEEP - 1; i++) {
+            tick(state, true, STILL_LINEAR, STILL_ANGULAR);
+        }
+        // Exactly at a threshold isn't still.
+        tick(state, true, ShipSleepState.SLEEP_LINEAR_VELOCITY, 0);
+        assertEquals(0, state.getTicksStill());
+        tick(state, true, STILL_LINEAR, STILL_ANGULAR);
+        tick(state, true, 0, ShipSleepState.SLEEP_ANGULAR_VELOCITY);
+        assertEquals(0, state.getTicksStill());
+        assertFalse(state.isAsleep());
+    }
+
+    @Test
+    public void neverSleepsWhenItCantSleep() {
+        // Like a ship with physics disabled, which is always still.
+        ShipSleepState state = new ShipSleepState();
+        for (int i = 0; i < ShipSleepState.TICKS_BEFORE_SLEEP * 2; i++) {
+            assertFalse(tick(state, false, 0, 0));
+        }
+        assertFalse(state.isAsleep());
+        assertEquals(0, state.getTicksStill());
+    }
+
+    @Test
+    public void wakesUpWhenItCantSleepAnymore() {
+        ShipSleepState state = asleepState();
+        state.updateSleepState(false);
+        assertFalse(state.isAsleep());
+        assertEquals(0, state.getTicksStill());
+    }
+
+    @Test
+    public void staysAsleepUntilWokenUp() {
+        ShipSleepState state = asleepState();
+        for (int i = 0; i < 10; i++) {
+            state.updateSleepState(true);
+            assertTrue(state.isAsleep());
+        }
+
+        // Like a block change or a contact on another thread, the wake up waits for the next tick.
+        state.wakeUp();
+        assertTrue(state.isAsleep());
+        state.updateSleepState(true);
+        assertFalse(state.isAsleep());
+        assertEquals(0, state.getTicksStill());
+
+        // And it has to be still for the whole time again.
+        for (int i = 1; i < ShipSleepState.TICKS_BEFORE_SLEEP; i++) {
+            assertFalse(tick(state, true, STILL_LINEAR, STILL_ANGULAR));
+        }
+        assertTrue(tick(state, true, STILL_LINEAR, STILL_ANGULAR));
+    }
+
+    @Test
+    public void wakeUpWhileAwakeRestartsTheCount() {
+        ShipSleepState state = new ShipSleepState();
+        for (int i = 0; i < ShipSleepState.TICKS_BEFORE_SLEEP - 1; i++) {
+            tick(state, true, STILL_LINEAR, STILL_ANGULAR);
+        }
+        state.wakeUp();
+        assertFalse(tick(state, true, STILL_LINEAR, STILL_ANGULAR));
+        assertEquals(1, state.getTicksStill());
+    }
+
+    private static ShipSleepState asleepState() {
+        ShipSleepState state = new ShipSleepState();
+        while (!state.isAsleep()) {
+            tick(state, true, 0, 0);
+        }
+        return state;
+    }
+
+    // One physics tick of an awake ship moving at the given speeds, like VSThread does it.
+    private static boolean tick(ShipSleepState state, boolean canSleep, double linearVelocity,
+        double angularVelocity) {
+        state.updateSleepState(canSleep);
+        return state.countTickStill(canSleep, linearVelocity * linearVelocity,
+            angularVelocity * angularVelocity);
+    }
+}
@@ -0,0 +1,102 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Random;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import org.junit.jupiter.api.RepeatedTest;
+import org.valkyrienskies.mod.common.coordinates.ShipTransform;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PhysPolygonCollider;
+import org.valkyrienskies.mod.common.physics.collision.polygons.Polygon;
+import org.valkyrienskies.mod.common.physics.collision.polygons.PolygonCollisionPointFinder;
+import org.valkyrienskies.mod.common.physics.management.ShipTransformationManager;
+import valkyrienwarfare.api.TransformType;
+
+/**
+ * Makes sure the pooled collision holders used by ShipCollisionTask give exactly the same results
+ * as creating new Polygons and a new PhysPolygonCollider for every block pair.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestCollisionInformationHolder {
+
+    @RepeatedTest(100)
+    public void pooledHolderMatchesNewCollider() {
+        Random random = new Random();
+        Vector centerCoord = new Vector(random.nextInt(64) + 320000, random.nextInt(64) + 64,
+            random.nextInt(64));
+        ShipTransform transform = new ShipTransform(random.nextDouble() * 1000 - 500,
+            random.nextDouble() * 128 + 64, random.nextDouble() * 1000 - 500,
+            random.nextDouble() * 360 - 180, random.nextDouble() * 360 - 180,
+            random.nextDouble() * 360 - 180, centerCoord);
+        Vector[] normals = ShipTransformationManager.createCollisionNormals(transform);
+
+        // A single holder reused for every check, just like the pool does for misses.
+        CollisionInformationHolder holder = new CollisionInformationHolder();
+        int collisionsFound = 0;
+        for (int i = 0; i < 1000; i++) {
+            int localX = (int) centerCoord.X + random.nextInt(16) - 8;
+            int localY = (int) centerCoord.Y + random.nextInt(16) - 8;
+            int localZ = (int) centerCoord.Z + random.nextInt(16) - 8;
+            // Pick a world block somewhere around the ship block so that we get a good mix of
+            // collisions and separations.
+            Vector inWorld = new Vector(localX + .5, localY + .5, localZ + .5);
+            transform.transform(inWorld, TransformType.SUBSPACE_TO_GLOBAL);
+            int worldX = MathHelper.floor(inWorld.X) + random.nextInt(3) - 1;
+            int worldY = MathHelper.floor(inWorld.Y) + random.nextInt(3) - 1;
+            int worldZ = MathHelper.floor(inWorld.Z) + random.nextInt(3) - 1;
+
+            Polygon shipInWorld = new Polygon(
+                new AxisAlignedBB(localX, localY, localZ, localX + 1, localY + 1, localZ + 1),
+                transform, TransformType.SUBSPACE_TO_GLOBAL);
+            Polygon worldPoly = new Polygon(
+                new AxisAlignedBB(worldX, worldY, worldZ, worldX + 1, worldY + 1, worldZ + 1));
+            PhysPolygonCollider expected = new PhysPolygonCollider(shipInWorld, worldPoly,
+                normals);
+
+            boolean colliding = holder.updateCollision(transform, normals, worldX, worldY,
+                worldZ, localX, localY, localZ, null, null);
+            PhysPolygonCollider actual = holder.getCollider();
+
+            assertEquals(!expected.seperated, colliding);
+            assertEquals(expected.seperated, actual.seperated);
+            assertArrayEquals(toArray(expected.entity.getVertices()),
+                toArray(actual.entity.getVertices()));
+            assertArrayEquals(toArray(expected.entity.getNormals()),
+                toArray(actual.entity.getNormals()));
+            assertArrayEquals(toArray(expected.block.getVertices()),
+                toArray(actual.block.getVertices()));
+            if (!expected.seperated) {
+                collisionsFound++;
+                assertEquals(expected.minDistanceIndex, actual.minDistanceIndex);
+                assertEquals(expected.minDistance, actual.minDistance);
+                for (int axis = 0; axis < normals.length; axis++) {
+                    assertEquals(expected.collisions[axis].penetrationDistance,
+                        actual.collisions[axis].penetrationDistance);
+                    assertEquals(expected.collisions[axis].getSecondContactPoint(),
+                        actual.collisions[axis].getSecondContactPoint());
+                    assertArrayEquals(toArray(PolygonCollisionPointFinder
+                            .getPointsOfCollisionForPolygons(expected.collisions[axis])),
+                        toArray(PolygonCollisionPointFinder
+                            .getPointsOfCollisionForPolygons(actual.collisions[axis])));
+                }
+            }
+        }
+        // Otherwise this test isn't testing much of anything.
+        assertNotEquals(0, collisionsFound);
+    }
+
+    private static double[] toArray(Vector[] vectors) {
+        double[] array = new double[vectors.length * 3];
+        for (int i = 0; i < vectors.length; i++) {
+            array[i * 3] = vectors[i].X;
+            array[i * 3 + 1] = vectors[i].Y;
+            array[i * 3 + 2] = vectors[i].Z;
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,173 @@
+package org.valkyrienskies.mod.common.physics.collision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.physics.collision.optimization.IBitOctree;
+import org.valkyrienskies.mod.common.physics.collision.optimization.SimpleBitOctree;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestIncrementalCollisionCache {
+
+    // The world is CHUNKS x CHUNKS chunks starting at chunk -CHUNKS / 2, and HEIGHT blocks tall.
+    private static final int CHUNKS = 6;
+    private static final int HEIGHT = 64;
+    private static final int WORLD_MIN = -CHUNKS / 2 * 16;
+    private static final int WORLD_MAX = WORLD_MIN + CHUNKS * 16 - 1;
+
+    @RepeatedTest(25)
+    public void matchesFullRebuildOverRandomMoves() {
+        Random random = new Random();
+        TestWorld world = new TestWorld(random, .1 + random.nextDouble() * .4);
+        IncrementalCollisionCache incremental = new IncrementalCollisionCache();
+        int[] bounds = {-8, 10, -8, 8, 30, 8};
+        for (int i = 0; i < 200; i++) {
+            moveRandomly(random, bounds);
+            // Some of the changes are outside the bounds, which the cache should ignore.
+            for (int j = random.nextInt(8); j > 0; j--) {
+                BlockPos pos = new BlockPos(
+                    bounds[0] - 4 + random.nextInt(bounds[3] - bounds[0] + 9),
+                    random.nextInt(HEIGHT),
+                    bounds[2] - 4 + random.nextInt(bounds[5] - bounds[2] + 9));
+                world.set(pos, random.nextBoolean());
+                incremental.onWorldBlockChanged(pos);
+            }
+            incremental.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4],
+                bounds[5]);
+            incremental.shuffleFirst(random, random.nextInt(64));
+
+            IncrementalCollisionCache full = new IncrementalCollisionCache();
+            full.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+            assertEquals(getBlocks(full), getBlocks(incremental));
+            assertEquals(world.countSolid(bounds), incremental.size());
+        }
+    }
+
+    @Test
+    public void rebuildsAfterTooManyChanges() {
+        Random random = new Random(420);
+        TestWorld world = new TestWorld(random, .3);
+        IncrementalCollisionCache cache = new IncrementalCollisionCache();
+        int[] bounds = {-8, 10, -8, 8, 30, 8};
+        cache.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        for (int i = 0; i < IncrementalCollisionCache.MAX_QUEUED_BLOCK_CHANGES * 2; i++) {
+            BlockPos pos = new BlockPos(bounds[0] + random.nextInt(17), bounds[1] + random
+                .nextInt(21), bounds[2] + random.nextInt(17));
+            world.set(pos, random.nextBoolean());
+            cache.onWorldBlockChanged(pos);
+        }
+        cache.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        assertEquals(world.countSolid(bounds), cache.size());
+    }
+
+    @Test
+    public void scansChunksOnceTheyLoad() {
+        Random random = new Random(1337);
+        TestWorld world = new TestWorld(random, .3);
+        IncrementalCollisionCache cache = new IncrementalCollisionCache();
+        int[] bounds = {-20, 10, -8, -4, 30, 8};
+        world.unloaded.add(new ChunkPos(-1, 0));
+        world.unloaded.add(new ChunkPos(-2, 0));
+        cache.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        world.unloaded.clear();
+        assertEquals(world.countSolid(new int[]{-20, 10, -8, -4, 30, -1}), cache.size());
+
+        // The chunk at -1 0 loads while the bounds move away from the one at -2 0.
+        bounds[0] += 12;
+        bounds[3] += 12;
+        cache.update(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        assertEquals(world.countSolid(bounds), cache.size());
+    }
+
+    // Moves and resizes the bounds by a few blocks, keeping them inside the world.
+    private static void moveRandomly(Random random, int[] bounds) {
+        int dx = random.nextInt(7) - 3;
+        int dy = random.nextInt(5) - 2;
+        int dz = random.nextInt(7) - 3;
+        bounds[0] = clamp(bounds[0] + dx + random.nextInt(3) - 1, WORLD_MIN, WORLD_MAX);
+        bounds[1] = clamp(bounds[1] + dy + random.nextInt(3) - 1, 0, HEIGHT - 1);
+        bounds[2] = clamp(bounds[2] + dz + random.nextInt(3) - 1, WORLD_MIN, WORLD_MAX);
+        bounds[3] = clamp(bounds[3] + dx + random.nextInt(3) - 1, bounds[0], WORLD_MAX);
+        bounds[4] = clamp(bounds[4] + dy + random.nextInt(3) - 1, bounds[1], HEIGHT - 1);
+        bounds[5] = clamp(bounds[5] + dz + random.nextInt(3) - 1, bounds[2], WORLD_MAX);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static Set<BlockPos> getBlocks(IncrementalCollisionCache cache) {
+        Set<BlockPos> blocks = new HashSet<>();
+        MutableBlockPos pos = new MutableBlockPos();
+        for (int i = 0; i < cache.size(); i++) {
+            cache.setPos(cache.get(i), pos);
+            blocks.add(pos.toImmutable());
+        }
+        // Every block is in the cache once.
+        assertEquals(cache.size(), blocks.size());
+        return blocks;
+    }
+
+    private static class TestWorld implements IncrementalCollisionCache.OctreeSource {
+
+        private final Map<BlockPos, SimpleBitOctree> sections = new HashMap<>();
+        // Chunk columns that look unloaded to the cache.
+        final Set<ChunkPos> unloaded = new HashSet<>();
+
+        TestWorld(Random random, double density) {
+            for (int x = WORLD_MIN; x <= WORLD_MAX; x++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int z = WORLD_MIN; z <= WORLD_MAX; z++) {
+                        if (random.nextDouble() < density) {
+                            set(new BlockPos(x, y, z), true);
+                        }
+                    }
+                }
+            }
+        }
+
+        void set(BlockPos pos, boolean solid) {
+            sections.computeIfAbsent(
+                new BlockPos(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4),
+                key -> new SimpleBitOctree())
+                .set(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, solid);
+        }
+
+        int countSolid(int[] bounds) {
+            int count = 0;
+            for (int x = bounds[0]; x <= bounds[3]; x++) {
+                for (int y = bounds[1]; y <= bounds[4]; y++) {
+                    for (int z = bounds[2]; z <= bounds[5]; z++) {
+                        IBitOctree octree = getOctree(x >> 4, y >> 4, z >> 4);
+                        if (octree != null && octree.get(x & 15, y & 15, z & 15)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public IBitOctree getOctree(int chunkX, int storageY, int chunkZ) {
+            if (!isChunkLoaded(chunkX, chunkZ)) {
+                return null;
+            }
+            return sections.get(new BlockPos(chunkX, storageY, chunkZ));
+        }
+
+        @Override
+        public boolean isChunkLoaded(int chunkX, int chunkZ) {
+            return !unloaded.contains(new ChunkPos(chunkX, chunkZ));
+        }
+    }
+}
@@ -6,7 +6,7 @@ import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 
 /**
- * Do not serialize.
+ * Only used for testing, as a reference for the counting AABB maker. Do not serialize.
  */
 public class NaiveVoxelFieldAABBMaker implements IVoxelFieldAABBMaker {
 
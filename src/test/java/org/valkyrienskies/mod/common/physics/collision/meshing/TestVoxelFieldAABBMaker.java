@@ -2,6 +2,7 @@ package org.valkyrienskies.mod.common.physics.collision.meshing;
 
 import net.minecraft.util.math.BlockPos;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -9,6 +10,7 @@ import java.util.List;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
 public class TestVoxelFieldAABBMaker {
@@ -16,6 +18,7 @@ public class TestVoxelFieldAABBMaker {
     @RepeatedTest(250)
     public void naiveTest1() {
         NaiveVoxelFieldAABBMaker naive = new NaiveVoxelFieldAABBMaker(0, 0);
+        CountingVoxelFieldAABBMaker counting = new CountingVoxelFieldAABBMaker(0, 0);
         ExtremelyNaiveVoxelFieldAABBMaker extreme = new ExtremelyNaiveVoxelFieldAABBMaker(0, 0);
         Random random = new Random();
         for (int i = 0; i < 100; i++) {
@@ -24,7 +27,9 @@ public class TestVoxelFieldAABBMaker {
             int randomZ = random.nextInt(512) - 256;
             assertEquals(extreme.addVoxel(randomX, randomY, randomZ),
                     naive.addVoxel(randomX, randomY, randomZ));
+            counting.addVoxel(randomX, randomY, randomZ);
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
         }
 
         for (int i = 0; i < 10000; i++) {
@@ -32,8 +37,10 @@ public class TestVoxelFieldAABBMaker {
             int randomY = random.nextInt(256);
             int randomZ = random.nextInt(512) - 256;
             naive.removeVoxel(randomX, randomY, randomZ);
+            counting.removeVoxel(randomX, randomY, randomZ);
             extreme.removeVoxel(randomX, randomY, randomZ);
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
         }
 
         for (int i = 0; i < 100; i++) {
@@ -42,7 +49,9 @@ public class TestVoxelFieldAABBMaker {
             int randomZ = random.nextInt(512) - 256;
             assertEquals(extreme.addVoxel(randomX, randomY, randomZ),
                     naive.addVoxel(randomX, randomY, randomZ));
+            counting.addVoxel(randomX, randomY, randomZ);
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
         }
 
         for (int i = 0; i < 1000; i++) {
@@ -52,11 +61,14 @@ public class TestVoxelFieldAABBMaker {
             if (random.nextBoolean()) {
                 assertEquals(extreme.addVoxel(randomX, randomY, randomZ),
                         naive.addVoxel(randomX, randomY, randomZ));
+                counting.addVoxel(randomX, randomY, randomZ);
             } else {
                 assertEquals(extreme.removeVoxel(randomX, randomY, randomZ),
                         naive.removeVoxel(randomX, randomY, randomZ));
+                counting.removeVoxel(randomX, randomY, randomZ);
             }
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
         }
     }
 
@@ -69,6 +81,8 @@ public class TestVoxelFieldAABBMaker {
                 centerPos.getZ());
         ExtremelyNaiveVoxelFieldAABBMaker extreme = new ExtremelyNaiveVoxelFieldAABBMaker(
                 centerPos.getX(), centerPos.getZ());
+        CountingVoxelFieldAABBMaker counting = new CountingVoxelFieldAABBMaker(centerPos.getX(),
+                centerPos.getZ());
 
         List<BlockPos> blockPosList = new ArrayList<>();
         for (int i = 0; i < 100; i++) {
@@ -78,7 +92,9 @@ public class TestVoxelFieldAABBMaker {
 
             assertEquals(extreme.addVoxel(randomX, randomY, randomZ),
                     naive.addVoxel(randomX, randomY, randomZ));
+            counting.addVoxel(randomX, randomY, randomZ);
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
             blockPosList.add(new BlockPos(randomX, randomY, randomZ));
         }
 
@@ -90,9 +106,80 @@ public class TestVoxelFieldAABBMaker {
             int z = pos.getZ();
             assertEquals(extreme.removeVoxel(x, y, z),
                     naive.removeVoxel(x, y, z));
+            counting.removeVoxel(x, y, z);
 
             assertEquals(extreme.makeVoxelFieldAABB(), naive.makeVoxelFieldAABB());
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
+        }
+    }
+
+    @RepeatedTest(250)
+    public void countingMatchesExtremelyNaive() {
+        Random random = new Random();
+        BlockPos centerPos = new BlockPos(random.nextInt() / 100, 0, random.nextInt() / 100);
+        CountingVoxelFieldAABBMaker counting = new CountingVoxelFieldAABBMaker(centerPos.getX(),
+                centerPos.getZ());
+        ExtremelyNaiveVoxelFieldAABBMaker extreme = new ExtremelyNaiveVoxelFieldAABBMaker(
+                centerPos.getX(), centerPos.getZ());
+        // Small ships have few voxels on every plane, so removing one often moves the bounds.
+        int radius = 1 + random.nextInt(20);
+        List<BlockPos> added = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int x, y, z;
+            if (!added.isEmpty() && random.nextInt(3) == 0) {
+                BlockPos pos = added.get(random.nextInt(added.size()));
+                x = pos.getX();
+                y = pos.getY();
+                z = pos.getZ();
+            } else {
+                x = centerPos.getX() + random.nextInt(radius * 2 + 1) - radius;
+                y = 128 + random.nextInt(radius * 2 + 1) - radius;
+                z = centerPos.getZ() + random.nextInt(radius * 2 + 1) - radius;
+            }
+            // Build up the ship for a while, then mostly tear it down.
+            boolean add = random.nextInt(4) < (i < 1000 ? 3 : 1);
+            if (add) {
+                assertEquals(extreme.addVoxel(x, y, z), counting.addVoxel(x, y, z));
+                added.add(new BlockPos(x, y, z));
+            } else {
+                assertEquals(extreme.removeVoxel(x, y, z), counting.removeVoxel(x, y, z));
+            }
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
+        }
+
+        Collections.shuffle(added, random);
+        for (BlockPos pos : added) {
+            assertEquals(extreme.removeVoxel(pos.getX(), pos.getY(), pos.getZ()),
+                    counting.removeVoxel(pos.getX(), pos.getY(), pos.getZ()));
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
+        }
+    }
+
+    @Test
+    public void countingCoversTheWholeField() {
+        CountingVoxelFieldAABBMaker counting = new CountingVoxelFieldAABBMaker(1000, -1000);
+        ExtremelyNaiveVoxelFieldAABBMaker extreme = new ExtremelyNaiveVoxelFieldAABBMaker(1000,
+                -1000);
+        int[][] corners = {
+                {1000 + IVoxelFieldAABBMaker.MIN_X, IVoxelFieldAABBMaker.MIN_Y,
+                        -1000 + IVoxelFieldAABBMaker.MIN_Z},
+                {1000 + IVoxelFieldAABBMaker.MAX_X, IVoxelFieldAABBMaker.MAX_Y,
+                        -1000 + IVoxelFieldAABBMaker.MAX_Z}
+        };
+        for (int[] corner : corners) {
+            assertEquals(extreme.addVoxel(corner[0], corner[1], corner[2]),
+                    counting.addVoxel(corner[0], corner[1], corner[2]));
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
+        }
+        for (int[] corner : corners) {
+            assertEquals(extreme.removeVoxel(corner[0], corner[1], corner[2]),
+                    counting.removeVoxel(corner[0], corner[1], corner[2]));
+            assertEquals(extreme.makeVoxelFieldAABB(), counting.makeVoxelFieldAABB());
         }
+        assertThrows(IllegalArgumentException.class,
+                () -> counting.addVoxel(1000 + IVoxelFieldAABBMaker.MAX_X + 1, 0, -1000));
+        assertThrows(IllegalArgumentException.class,
+                () -> counting.removeVoxel(1000, IVoxelFieldAABBMaker.MIN_Y - 1, -1000));
     }
 
 }
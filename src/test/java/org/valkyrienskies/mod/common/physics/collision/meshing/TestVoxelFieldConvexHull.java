@@ -0,0 +1,116 @@
+package org.valkyrienskies.mod.common.physics.collision.meshing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestVoxelFieldConvexHull {
+
+    @Test
+    public void singleBlockIsACube() {
+        VoxelFieldConvexHull hull = new VoxelFieldConvexHull(100, -100);
+        hull.addVoxel(105, 64, -90);
+        Set<BlockPos> vertices = getVertices(hull);
+        Set<BlockPos> expected = new HashSet<>();
+        for (int corner = 0; corner < 8; corner++) {
+            expected.add(new BlockPos(105 + (corner & 1), 64 + (corner >> 1 & 1),
+                -90 + (corner >> 2)));
+        }
+        assertEquals(expected, vertices);
+
+        hull.removeVoxel(105, 64, -90);
+        assertEquals(0, hull.getHullVertices().length);
+    }
+
+    @Test
+    public void boxHasEightVertices() {
+        VoxelFieldConvexHull hull = new VoxelFieldConvexHull(0, 0);
+        for (int x = -10; x < 30; x++) {
+            for (int y = 60; y < 65; y++) {
+                for (int z = 0; z < 7; z++) {
+                    hull.addVoxel(x, y, z);
+                }
+            }
+        }
+        assertEquals(8, hull.getHullVertices().length / 3);
+    }
+
+    @RepeatedTest(50)
+    public void supportsMatchAllCorners() {
+        Random random = new Random();
+        BlockPos center = new BlockPos(random.nextInt() / 100, 0, random.nextInt() / 100);
+        VoxelFieldConvexHull hull = new VoxelFieldConvexHull(center.getX(), center.getZ());
+        Set<BlockPos> voxels = new HashSet<>();
+        List<BlockPos> added = new ArrayList<>();
+        int radius = 1 + random.nextInt(30);
+        for (int i = 0; i < 1000; i++) {
+            boolean remove = !added.isEmpty() && random.nextInt(3) == 0;
+            if (remove) {
+                BlockPos pos = added.get(random.nextInt(added.size()));
+                assertEquals(voxels.remove(pos),
+                    hull.removeVoxel(pos.getX(), pos.getY(), pos.getZ()));
+            } else {
+                // Long and thin, like the ships that get the most out of a hull.
+                BlockPos pos = new BlockPos(center.getX() + random.nextInt(radius * 4) - radius * 2,
+                    128 + random.nextInt(radius + 1), center.getZ() + random.nextInt(radius + 1));
+                assertEquals(voxels.add(pos), hull.addVoxel(pos.getX(), pos.getY(), pos.getZ()));
+                added.add(pos);
+            }
+            if (i % 50 == 0) {
+                assertSupportsMatch(random, voxels, hull);
+            }
+        }
+        assertSupportsMatch(random, voxels, hull);
+    }
+
+    // The world AABB only depends on how far the hull reaches in each direction, so check that in
+    // random directions it reaches exactly as far as the corners of the voxels.
+    private static void assertSupportsMatch(Random random, Set<BlockPos> voxels,
+        VoxelFieldConvexHull hull) {
+        Set<BlockPos> vertices = getVertices(hull);
+        if (voxels.isEmpty()) {
+            assertTrue(vertices.isEmpty());
+            return;
+        }
+        Set<BlockPos> corners = new HashSet<>();
+        for (BlockPos voxel : voxels) {
+            for (int corner = 0; corner < 8; corner++) {
+                corners.add(new BlockPos(voxel.getX() + (corner & 1),
+                    voxel.getY() + (corner >> 1 & 1), voxel.getZ() + (corner >> 2)));
+            }
+        }
+        assertTrue(corners.containsAll(vertices));
+        for (int i = 0; i < 50; i++) {
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian();
+            assertEquals(getSupport(corners, dx, dy, dz), getSupport(vertices, dx, dy, dz), 1e-6);
+        }
+    }
+
+    private static double getSupport(Set<BlockPos> points, double dx, double dy, double dz) {
+        double support = Double.NEGATIVE_INFINITY;
+        for (BlockPos point : points) {
+            support = Math.max(support, point.getX() * dx + point.getY() * dy + point.getZ() * dz);
+        }
+        return support;
+    }
+
+    private static Set<BlockPos> getVertices(VoxelFieldConvexHull hull) {
+        int[] vertices = hull.getHullVertices();
+        Set<BlockPos> set = new HashSet<>();
+        for (int i = 0; i < vertices.length; i += 3) {
+            assertTrue(set.add(new BlockPos(vertices[i], vertices[i + 1], vertices[i + 2])));
+        }
+        return set;
+    }
+}
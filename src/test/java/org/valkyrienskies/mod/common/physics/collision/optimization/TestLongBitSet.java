@@ -0,0 +1,84 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestLongBitSet {
+
+    private static final int SIZE = IBitOctree.BITS_TOTAL;
+
+    @RepeatedTest(20)
+    public void matchesSmallBitSet() {
+        Random random = new Random();
+        LongBitSet longBits = new LongBitSet(SIZE);
+        SmallBitSet smallBits = new SmallBitSet(SIZE);
+        for (int i = 0; i < 5000; i++) {
+            int index = random.nextInt(SIZE);
+            boolean bit = random.nextBoolean();
+            longBits.set(index, bit);
+            smallBits.set(index, bit);
+        }
+        for (int index = 0; index < SIZE; index++) {
+            assertEquals(smallBits.get(index), longBits.get(index), "Bit " + index);
+        }
+    }
+
+    @RepeatedTest(20)
+    public void wordOperationsMatchBitSet() {
+        Random random = new Random();
+        // Sparse sets leave whole words empty, which nextSetBit() has to skip over.
+        double density = random.nextDouble() * random.nextDouble();
+        LongBitSet longBits = new LongBitSet(SIZE);
+        BitSet expected = new BitSet(SIZE);
+        for (int index = 0; index < SIZE; index++) {
+            if (random.nextDouble() < density) {
+                longBits.set(index);
+                expected.set(index);
+            }
+        }
+
+        for (int from = 0; from <= SIZE; from++) {
+            int next = expected.nextSetBit(from);
+            assertEquals(next < SIZE ? next : -1, longBits.nextSetBit(from), "From " + from);
+        }
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(SIZE + 1);
+            int to = from + random.nextInt(SIZE + 1 - from);
+            assertEquals(expected.get(from, to).cardinality(), longBits.cardinality(from, to),
+                from + " to " + to);
+        }
+        for (int from = 0; from < SIZE; from++) {
+            int count = 1 + random.nextInt(Math.min(32, SIZE - from));
+            int bits = 0;
+            for (int i = 0; i < count; i++) {
+                if (expected.get(from + i)) {
+                    bits |= 1 << i;
+                }
+            }
+            assertEquals(bits, longBits.getBits(from, count), count + " bits from " + from);
+        }
+    }
+
+    @Test
+    public void wordsAreLowestBitFirst() {
+        LongBitSet bits = new LongBitSet(128);
+        bits.setWord(1, 0x8000000000000001L);
+        assertTrue(bits.get(64));
+        assertTrue(bits.get(127));
+        assertEquals(64, bits.nextSetBit(0));
+        assertEquals(127, bits.nextSetBit(65));
+        assertEquals(-1, bits.nextSetBit(128));
+        assertEquals(2, bits.cardinality(0, 128));
+        // A range ending on a word boundary
+        assertEquals(0, bits.cardinality(0, 64));
+        assertEquals(0b10, bits.getBits(126, 2));
+        bits.clear(127);
+        assertEquals(1L, bits.getWord(1));
+    }
+}
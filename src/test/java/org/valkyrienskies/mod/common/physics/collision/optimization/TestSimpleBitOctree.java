@@ -0,0 +1,178 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestSimpleBitOctree {
+
+    @RepeatedTest(20)
+    public void setAllMatchesSettingEveryBlock() {
+        Random random = new Random();
+        // Mostly empty sections are the common case, and leave some tree nodes empty.
+        double density = random.nextDouble() * random.nextDouble();
+        boolean[] solid = new boolean[IBitOctree.BLOCKS_TOTAL];
+        SimpleBitOctree expected = new SimpleBitOctree();
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    boolean bit = random.nextDouble() < density;
+                    solid[x | (y << 4) | (z << 8)] = bit;
+                    expected.set(x, y, z, bit);
+                }
+            }
+        }
+
+        SimpleBitOctree bulk = new SimpleBitOctree();
+        bulk.setAll(solid);
+        assertSameBits(expected, bulk);
+
+        // Still updates correctly afterwards
+        for (int i = 0; i < 500; i++) {
+            int x = random.nextInt(16);
+            int y = random.nextInt(16);
+            int z = random.nextInt(16);
+            boolean bit = random.nextBoolean();
+            expected.set(x, y, z, bit);
+            bulk.set(x, y, z, bit);
+        }
+        assertSameBits(expected, bulk);
+    }
+
+    @Test
+    public void setAllReplacesOldBits() {
+        SimpleBitOctree octree = new SimpleBitOctree();
+        boolean[] solid = new boolean[IBitOctree.BLOCKS_TOTAL];
+        solid[1234] = true;
+        octree.setAll(solid);
+        solid[1234] = false;
+        octree.setAll(solid);
+        assertSameBits(new SimpleBitOctree(), octree);
+    }
+
+    @RepeatedTest(20)
+    public void nodesAreSetIfAnyBlockInThemIs() {
+        Random random = new Random();
+        double density = random.nextDouble() * random.nextDouble() * random.nextDouble();
+        SimpleBitOctree octree = new SimpleBitOctree();
+        boolean[] solid = new boolean[IBitOctree.BLOCKS_TOTAL];
+        for (int i = 0; i < solid.length; i++) {
+            solid[i] = random.nextDouble() < density;
+        }
+        octree.setAll(solid);
+        // Uses the mask loops IBitOctree falls back on, rather than the word reads
+        IBitOctree bitByBit = new BitByBitOctree(octree);
+
+        int[] setCounts = new int[4];
+        for (int i = 0; i < solid.length; i++) {
+            if (solid[i]) {
+                setCounts[0]++;
+            }
+        }
+        assertEquals(bitByBit.getLevelThreeMask(), octree.getLevelThreeMask());
+        for (int levelThree = 0; levelThree < 8; levelThree++) {
+            int levelThreeIndex = octree.getOctreeLevelThreeIndex(levelThree);
+            boolean levelThreeSet = anySolid(solid, cubeCorner(levelThree, 0, 0), 8);
+            assertEquals(levelThreeSet, octree.getAtIndex(levelThreeIndex));
+            setCounts[3] += levelThreeSet ? 1 : 0;
+            assertEquals(bitByBit.getLevelTwoMask(levelThreeIndex),
+                octree.getLevelTwoMask(levelThreeIndex));
+            for (int levelTwo = 0; levelTwo < 8; levelTwo++) {
+                int levelTwoIndex = octree.getOctreeLevelTwoIndex(levelThreeIndex, levelTwo);
+                boolean levelTwoSet = anySolid(solid, cubeCorner(levelThree, levelTwo, 0), 4);
+                assertEquals(levelTwoSet, octree.getAtIndex(levelTwoIndex));
+                setCounts[2] += levelTwoSet ? 1 : 0;
+                assertEquals(bitByBit.getLevelOneMask(levelTwoIndex),
+                    octree.getLevelOneMask(levelTwoIndex));
+                for (int levelOne = 0; levelOne < 8; levelOne++) {
+                    int levelOneIndex = octree.getOctreeLevelOneIndex(levelTwoIndex, levelOne);
+                    boolean levelOneSet = anySolid(solid,
+                        cubeCorner(levelThree, levelTwo, levelOne), 2);
+                    assertEquals(levelOneSet, octree.getAtIndex(levelOneIndex));
+                    setCounts[1] += levelOneSet ? 1 : 0;
+                }
+            }
+        }
+        for (int level = 0; level < 4; level++) {
+            assertEquals(setCounts[level], octree.countSetAtLevel(level), "Level " + level);
+        }
+
+        int expectedNext = -1;
+        for (int from = IBitOctree.BLOCKS_TOTAL - 1; from >= 0; from--) {
+            if (solid[from]) {
+                expectedNext = from;
+            }
+            assertEquals(expectedNext, octree.nextSolidBlock(from), "From " + from);
+        }
+    }
+
+    // The x | y << 4 | z << 8 index of the lowest corner of the given node.
+    private static int cubeCorner(int levelThree, int levelTwo, int levelOne) {
+        int x = (levelThree & 1) * 8 + (levelTwo & 1) * 4 + (levelOne & 1) * 2;
+        int y = (levelThree >> 1 & 1) * 8 + (levelTwo >> 1 & 1) * 4 + (levelOne >> 1 & 1) * 2;
+        int z = (levelThree >> 2) * 8 + (levelTwo >> 2) * 4 + (levelOne >> 2) * 2;
+        return x | (y << 4) | (z << 8);
+    }
+
+    private static boolean anySolid(boolean[] solid, int corner, int size) {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (solid[corner + (x | (y << 4) | (z << 8))]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void assertSameBits(SimpleBitOctree expected, SimpleBitOctree actual) {
+        for (int index = 0; index < IBitOctree.BITS_TOTAL; index++) {
+            assertEquals(expected.getAtIndex(index), actual.getAtIndex(index), "Bit " + index);
+        }
+    }
+
+    // Only implements what IBitOctree requires, so the default mask methods get used.
+    private static class BitByBitOctree implements IBitOctree {
+
+        private final IBitOctree octree;
+
+        BitByBitOctree(IBitOctree octree) {
+            this.octree = octree;
+        }
+
+        @Override
+        public void set(int x, int y, int z, boolean bit) {
+            octree.set(x, y, z, bit);
+        }
+
+        @Override
+        public boolean get(int x, int y, int z) {
+            return octree.get(x, y, z);
+        }
+
+        @Override
+        public boolean getAtIndex(int index) {
+            return octree.getAtIndex(index);
+        }
+
+        @Override
+        public int getOctreeLevelOneIndex(int levelTwoIndex, int offset) {
+            return octree.getOctreeLevelOneIndex(levelTwoIndex, offset);
+        }
+
+        @Override
+        public int getOctreeLevelTwoIndex(int levelThreeIndex, int offset) {
+            return octree.getOctreeLevelTwoIndex(levelThreeIndex, offset);
+        }
+
+        @Override
+        public int getOctreeLevelThreeIndex(int offset) {
+            return octree.getOctreeLevelThreeIndex(offset);
+        }
+    }
+}
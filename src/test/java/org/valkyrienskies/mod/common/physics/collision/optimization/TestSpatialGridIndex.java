@@ -0,0 +1,95 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestSpatialGridIndex {
+
+    @RepeatedTest(50)
+    public void matchesLinearScan() {
+        Random random = new Random();
+        SpatialGridIndex<MovingBox> index = new SpatialGridIndex<>();
+        List<MovingBox> boxes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            MovingBox box = new MovingBox(random);
+            boxes.add(box);
+            index.put(box, box.bounds);
+        }
+
+        for (int tick = 0; tick < 100; tick++) {
+            for (MovingBox box : boxes) {
+                box.move(random);
+                index.update(box, box.bounds);
+            }
+            // Ships get loaded and unloaded
+            if (random.nextInt(5) == 0) {
+                index.remove(boxes.remove(random.nextInt(boxes.size())));
+            }
+            if (random.nextInt(5) == 0) {
+                MovingBox box = new MovingBox(random);
+                boxes.add(box);
+                index.put(box, box.bounds);
+            }
+            assertEquals(boxes.size(), index.size());
+
+            for (int query = 0; query < 20; query++) {
+                AxisAlignedBB area = randomBox(random, random.nextInt(10) == 0 ? 2000 : 20);
+                Set<MovingBox> expected = new HashSet<>();
+                for (MovingBox box : boxes) {
+                    if (box.bounds.intersects(area)) {
+                        expected.add(box);
+                    }
+                }
+                List<MovingBox> found = new ArrayList<>();
+                index.query(area, found);
+                // Every box should only be found once
+                assertEquals(expected.size(), found.size());
+                assertEquals(expected, new HashSet<>(found));
+            }
+        }
+    }
+
+    @Test
+    public void updateIgnoresUnknownObjects() {
+        SpatialGridIndex<String> index = new SpatialGridIndex<>();
+        index.update("ship", new AxisAlignedBB(0, 0, 0, 1, 1, 1));
+        assertEquals(0, index.size());
+        List<String> found = new ArrayList<>();
+        index.query(new AxisAlignedBB(-10, -10, -10, 10, 10, 10), found);
+        assertEquals(0, found.size());
+    }
+
+    private static AxisAlignedBB randomBox(Random random, double maxSize) {
+        double x = (random.nextDouble() - .5) * 2000;
+        double y = random.nextDouble() * 256;
+        double z = (random.nextDouble() - .5) * 2000;
+        return new AxisAlignedBB(x, y, z, x + random.nextDouble() * maxSize,
+            y + random.nextDouble() * maxSize, z + random.nextDouble() * maxSize);
+    }
+
+    private static class MovingBox {
+
+        AxisAlignedBB bounds;
+        final double velocityX, velocityZ;
+
+        MovingBox(Random random) {
+            // Mostly ship sized, with the occasional giant that spans too many cells
+            bounds = randomBox(random, random.nextInt(20) == 0 ? 3000 : 60);
+            velocityX = (random.nextDouble() - .5) * 10;
+            velocityZ = (random.nextDouble() - .5) * 10;
+        }
+
+        void move(Random random) {
+            bounds = bounds.offset(velocityX, random.nextDouble() - .5, velocityZ);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.valkyrienskies.mod.common.physics.collision.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestSweepAndPruneBroadphase {
+
+    @RepeatedTest(50)
+    public void matchesBruteForce() {
+        Random random = new Random();
+        SweepAndPruneBroadphase<MovingBox> broadphase = new SweepAndPruneBroadphase<>(
+            box -> box.bounds);
+        List<MovingBox> boxes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            boxes.add(new MovingBox(random));
+        }
+
+        for (int tick = 0; tick < 100; tick++) {
+            for (MovingBox box : boxes) {
+                box.move(random);
+            }
+            // Ships get loaded and unloaded
+            if (random.nextInt(5) == 0) {
+                boxes.remove(random.nextInt(boxes.size()));
+            }
+            if (random.nextInt(5) == 0) {
+                boxes.add(random.nextInt(boxes.size()), new MovingBox(random));
+            }
+
+            broadphase.update(boxes);
+            assertEquals(boxes.size(), broadphase.getObjectCount());
+
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < boxes.size(); i++) {
+                for (int j = i + 1; j < boxes.size(); j++) {
+                    if (boxes.get(i).bounds.intersects(boxes.get(j).bounds)) {
+                        expected.add(pairKey(boxes.get(i), boxes.get(j)));
+                    }
+                }
+            }
+            Set<String> actual = new HashSet<>();
+            for (int pair = 0; pair < broadphase.getCandidatePairCount(); pair++) {
+                // No pair should ever be found twice
+                assertTrue(actual.add(
+                    pairKey(broadphase.getCandidateA(pair), broadphase.getCandidateB(pair))));
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void touchingBoxesDontIntersect() {
+        SweepAndPruneBroadphase<MovingBox> broadphase = new SweepAndPruneBroadphase<>(
+            box -> box.bounds);
+        List<MovingBox> boxes = new ArrayList<>();
+        boxes.add(new MovingBox(new AxisAlignedBB(0, 0, 0, 1, 1, 1)));
+        boxes.add(new MovingBox(new AxisAlignedBB(1, 0, 0, 2, 1, 1)));
+        broadphase.update(boxes);
+        assertEquals(0, broadphase.getCandidatePairCount());
+
+        boxes.get(1).bounds = new AxisAlignedBB(.5, .5, .5, 2, 1, 1);
+        broadphase.update(boxes);
+        assertEquals(1, broadphase.getCandidatePairCount());
+    }
+
+    private static String pairKey(MovingBox a, MovingBox b) {
+        return Math.min(a.id, b.id) + ":" + Math.max(a.id, b.id);
+    }
+
+    private static class MovingBox {
+
+        private static int nextId = 0;
+        final int id;
+        AxisAlignedBB bounds;
+
+        MovingBox(AxisAlignedBB bounds) {
+            this.id = nextId++;
+            this.bounds = bounds;
+        }
+
+        MovingBox(Random random) {
+            this(new AxisAlignedBB(0, 0, 0, random.nextDouble() * 30 + 1,
+                random.nextDouble() * 30 + 1, random.nextDouble() * 30 + 1)
+                .offset(random.nextDouble() * 500, random.nextDouble() * 200,
+                    random.nextDouble() * 500));
+        }
+
+        void move(Random random) {
+            bounds = bounds.offset(random.nextGaussian() * 2, random.nextGaussian(),
+                random.nextGaussian() * 2);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.valkyrienskies.mod.common.physics.management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipBlockPosSet {
+
+    // Ship chunks are far out in the world, so the center is too.
+    private static final int CENTER_X = 20000000;
+    private static final int CENTER_Z = -3000016;
+
+    @RepeatedTest(20)
+    public void matchesHashSet() {
+        Random random = new Random();
+        ShipBlockPosSet set = new ShipBlockPosSet(CENTER_X, CENTER_Z);
+        Set<BlockPos> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            BlockPos pos = randomPos(random, 20);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(pos), set.remove(pos));
+            } else {
+                assertEquals(expected.add(pos), set.add(pos));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int i = 0; i < 1000; i++) {
+            BlockPos pos = randomPos(random, 20);
+            assertEquals(expected.contains(pos), set.contains(pos));
+        }
+
+        Set<BlockPos> iterated = new HashSet<>();
+        for (BlockPos pos : set) {
+            assertTrue(iterated.add(pos));
+        }
+        assertEquals(expected, iterated);
+
+        Set<BlockPos> unpacked = new HashSet<>();
+        MutableBlockPos temp = new MutableBlockPos();
+        for (int packed : set.toPackedArray()) {
+            unpacked.add(set.unpack(packed, temp).toImmutable());
+        }
+        assertEquals(expected, unpacked);
+    }
+
+    @Test
+    public void coversTheWholeRange() {
+        ShipBlockPosSet set = new ShipBlockPosSet(CENTER_X, CENTER_Z);
+        int min = -ShipBlockPosSet.MAX_HORIZONTAL_OFFSET;
+        int max = ShipBlockPosSet.MAX_HORIZONTAL_OFFSET - 1;
+        BlockPos[] corners = {
+            new BlockPos(CENTER_X + min, 0, CENTER_Z + min),
+            new BlockPos(CENTER_X + max, 255, CENTER_Z + max),
+            new BlockPos(CENTER_X + min, 255, CENTER_Z + max),
+            new BlockPos(CENTER_X + max, 0, CENTER_Z + min)
+        };
+        for (BlockPos corner : corners) {
+            assertTrue(set.add(corner));
+        }
+        for (BlockPos corner : corners) {
+            assertTrue(set.contains(corner));
+        }
+        assertEquals(corners.length, set.size());
+
+        assertThrows(IllegalArgumentException.class,
+            () -> set.add(CENTER_X + max + 1, 0, CENTER_Z));
+        assertThrows(IllegalArgumentException.class,
+            () -> set.add(CENTER_X, 256, CENTER_Z));
+        assertThrows(IllegalArgumentException.class,
+            () -> set.add(CENTER_X, 0, CENTER_Z + min - 1));
+        // Nothing out of range can be in the set
+        assertFalse(set.remove(CENTER_X, -1, CENTER_Z));
+        assertFalse(set.contains(CENTER_X + max + 1, 0, CENTER_Z));
+    }
+
+    @Test
+    public void iteratesOverASnapshot() {
+        ShipBlockPosSet set = new ShipBlockPosSet(CENTER_X, CENTER_Z);
+        for (int y = 0; y < 10; y++) {
+            set.add(CENTER_X, y, CENTER_Z);
+        }
+        Iterator<BlockPos> iterator = set.iterator();
+        set.clear();
+        assertTrue(set.isEmpty());
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    private static BlockPos randomPos(Random random, int radius) {
+        return new BlockPos(CENTER_X + random.nextInt(radius * 2) - radius,
+            100 + random.nextInt(20), CENTER_Z + random.nextInt(radius * 2) - radius);
+    }
+}
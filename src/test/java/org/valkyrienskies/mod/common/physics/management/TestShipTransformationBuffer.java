@@ -0,0 +1,236 @@
+package org.valkyrienskies.mod.common.physics.management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.math.Vector;
+import org.valkyrienskies.mod.common.network.WrapperPositionMessage;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipTransformationBuffer {
+
+    private static final long MS = 1000000L;
+    // The synthetic ship moves this many blocks along x every physics tick.
+    private static final double SPEED = .1D;
+
+    @Test
+    public void emptyBufferHasNothingToShow() {
+        assertNull(new ShipTransformationBuffer().pollForClientTransform(0));
+    }
+
+    @Test
+    public void interpolatesSteadyStream() {
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        List<Packet> packets = new ArrayList<>();
+        for (int tick = 0; tick < 500; tick++) {
+            packets.add(new Packet(movingShip(tick), tick * 10 * MS + 30 * MS));
+        }
+        List<Sample> samples = play(buffer, packets, 3 * MS);
+        for (Sample sample : samples) {
+            // A steady stream never needs extrapolating
+            assertTrue(sample.renderTick <= sample.newestTick);
+            assertEquals(SPEED * sample.renderTick, sample.message.getPosX(), 1E-9);
+        }
+        assertMovesSmoothly(samples, 3);
+    }
+
+    @Test
+    public void jitterAndReorderingStaySmooth() {
+        Random random = new Random(420);
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        List<Packet> packets = new ArrayList<>();
+        for (int tick = 0; tick < 2000; tick++) {
+            long latency = 20 * MS + (long) (random.nextDouble() * 40 * MS);
+            packets.add(new Packet(movingShip(tick), tick * 10 * MS + latency));
+        }
+        List<Sample> samples = play(buffer, packets, 5 * MS);
+        int extrapolated = 0;
+        for (Sample sample : samples) {
+            // Linear motion is reproduced exactly, even when extrapolating.
+            double expectedTick = Math.min(sample.renderTick,
+                sample.newestTick + ShipTransformationBuffer.MAX_EXTRAPOLATION_TICKS);
+            assertEquals(SPEED * expectedTick, sample.message.getPosX(), 1E-9);
+            if (sample.renderTick > sample.newestTick) {
+                extrapolated++;
+            }
+        }
+        assertTrue(extrapolated < samples.size() / 20);
+        assertMovesSmoothly(samples, 5);
+    }
+
+    @Test
+    public void lostPacketsAreInterpolatedOver() {
+        Random random = new Random(420);
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        List<Packet> packets = new ArrayList<>();
+        for (int tick = 0; tick < 2000; tick++) {
+            if (tick == 0 || random.nextInt(10) >= 3) {
+                packets.add(new Packet(movingShip(tick), tick * 10 * MS + 30 * MS));
+            }
+        }
+        List<Sample> samples = play(buffer, packets, 5 * MS);
+        for (Sample sample : samples) {
+            double expectedTick = Math.min(sample.renderTick,
+                sample.newestTick + ShipTransformationBuffer.MAX_EXTRAPOLATION_TICKS);
+            assertEquals(SPEED * expectedTick, sample.message.getPosX(), 1E-9);
+        }
+        assertMovesSmoothly(samples, 5);
+    }
+
+    @Test
+    public void lowerSendRateIncreasesDelay() {
+        Random random = new Random(420);
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        List<Packet> packets = new ArrayList<>();
+        for (int tick = 0; tick < 2000; tick += 5) {
+            long latency = 20 * MS + (long) (random.nextDouble() * 20 * MS);
+            packets.add(new Packet(movingShip(tick), tick * 10 * MS + latency));
+        }
+        List<Sample> samples = play(buffer, packets, 5 * MS);
+        int extrapolated = 0;
+        for (Sample sample : samples) {
+            if (sample.renderTick > sample.newestTick) {
+                extrapolated++;
+            }
+            assertEquals(SPEED * sample.renderTick, sample.message.getPosX(), 1E-9);
+        }
+        assertTrue(extrapolated < samples.size() / 20);
+        assertMovesSmoothly(samples, 5);
+    }
+
+    @Test
+    public void extrapolationIsBounded() {
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        for (int tick = 0; tick <= 100; tick++) {
+            buffer.pushMessage(movingShip(tick), tick * 10 * MS);
+        }
+        // Long after the packets stopped coming
+        WrapperPositionMessage shown = buffer.pollForClientTransform(5000 * MS);
+        assertEquals(SPEED * (100 + ShipTransformationBuffer.MAX_EXTRAPOLATION_TICKS),
+            shown.getPosX(), 1E-9);
+        assertEquals(SPEED * (100 + ShipTransformationBuffer.MAX_EXTRAPOLATION_TICKS),
+            shown.getShipBB().minX + 8, 1E-9);
+    }
+
+    @Test
+    public void rotationIsSlerped() {
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        WrapperPositionMessage first = movingShip(0);
+        WrapperPositionMessage second = movingShip(10);
+        second.setYaw(60);
+        buffer.pushMessage(first, 0);
+        buffer.pushMessage(second, 100 * MS);
+        // Halfway between the two snapshots
+        long now = (long) ((5 + 10 + ShipTransformationBuffer.JITTER_DELAY_TICKS) * 10 * MS);
+        assertEquals(5, buffer.getRenderTick(now), 1E-9);
+        WrapperPositionMessage shown = buffer.pollForClientTransform(now);
+        assertEquals(30, shown.getYaw(), 1E-6);
+        assertEquals(0, Math.abs(shown.getPitch()), 1E-6);
+        assertEquals(0, Math.abs(shown.getRoll()), 1E-6);
+    }
+
+    @Test
+    public void doesNotInterpolateAcrossCenterOfMassChanges() {
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        WrapperPositionMessage first = movingShip(0);
+        WrapperPositionMessage second = movingShip(10);
+        second.setCenterOfMass(new Vector(9.5, 70.5, 8.5));
+        buffer.pushMessage(first, 0);
+        buffer.pushMessage(second, 100 * MS);
+        long now = (long) ((5 + 10 + ShipTransformationBuffer.JITTER_DELAY_TICKS) * 10 * MS);
+        assertEquals(0, buffer.pollForClientTransform(now).getPosX(), 1E-9);
+    }
+
+    @Test
+    public void duplicatesAreIgnored() {
+        ShipTransformationBuffer buffer = new ShipTransformationBuffer();
+        buffer.pushMessage(movingShip(0), 0);
+        buffer.pushMessage(movingShip(2), 20 * MS);
+        WrapperPositionMessage duplicate = movingShip(2);
+        duplicate.setPosX(1000);
+        buffer.pushMessage(duplicate, 21 * MS);
+        buffer.pushMessage(movingShip(1), 22 * MS);
+        long now = (long) ((1.5 + 2 + ShipTransformationBuffer.JITTER_DELAY_TICKS) * 10 * MS);
+        double renderTick = buffer.getRenderTick(now);
+        assertTrue(renderTick > 1 && renderTick < 2);
+        assertEquals(SPEED * renderTick, buffer.pollForClientTransform(now).getPosX(), 1E-9);
+    }
+
+    // Delivers the packets in the order they arrive, and samples the buffer in between.
+    private static List<Sample> play(ShipTransformationBuffer buffer, List<Packet> packets,
+        long sampleInterval) {
+        packets.sort(Comparator.comparingLong(packet -> packet.arrivalNano));
+        List<Sample> samples = new ArrayList<>();
+        int newestTick = Integer.MIN_VALUE;
+        int next = 0;
+        long end = packets.get(packets.size() - 1).arrivalNano;
+        for (long now = packets.get(0).arrivalNano; now <= end; now += sampleInterval) {
+            while (next < packets.size() && packets.get(next).arrivalNano <= now) {
+                buffer.pushMessage(packets.get(next).message, packets.get(next).arrivalNano);
+                newestTick = Math.max(newestTick, packets.get(next).message.getRelativeTick());
+                next++;
+            }
+            double renderTick = buffer.getRenderTick(now);
+            // Skip the start, before there's anything to interpolate between.
+            if (now > packets.get(0).arrivalNano + 200 * MS) {
+                samples.add(new Sample(buffer.pollForClientTransform(now), renderTick,
+                    newestTick));
+            }
+        }
+        return samples;
+    }
+
+    // The ship should move forward steadily, about as far as time has passed.
+    private static void assertMovesSmoothly(List<Sample> samples, long sampleIntervalMs) {
+        double expectedStep = SPEED * sampleIntervalMs / 10D;
+        for (int i = 1; i < samples.size(); i++) {
+            double step = samples.get(i).message.getPosX() - samples.get(i - 1).message.getPosX();
+            assertTrue(step >= 0, "The ship moved backwards");
+            assertTrue(step < expectedStep * 3, "The ship jumped forwards");
+        }
+    }
+
+    private static WrapperPositionMessage movingShip(int tick) {
+        WrapperPositionMessage message = new WrapperPositionMessage();
+        message.setEntityID(1);
+        message.setRelativeTick(tick);
+        message.setPosX(SPEED * tick);
+        message.setPosY(64);
+        message.setPosZ(0);
+        message.setCenterOfMass(new Vector(8.5, 70.5, 8.5));
+        message.setShipBB(new AxisAlignedBB(message.getPosX() - 8, 56, -8,
+            message.getPosX() + 8, 72, 8));
+        return message;
+    }
+
+    private static class Packet {
+
+        final WrapperPositionMessage message;
+        final long arrivalNano;
+
+        Packet(WrapperPositionMessage message, long arrivalNano) {
+            this.message = message;
+            this.arrivalNano = arrivalNano;
+        }
+    }
+
+    private static class Sample {
+
+        final WrapperPositionMessage message;
+        final double renderTick;
+        final int newestTick;
+
+        Sample(WrapperPositionMessage message, double renderTick, int newestTick) {
+            this.message = message;
+            this.renderTick = renderTick;
+            this.newestTick = newestTick;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.valkyrienskies.mod.common.physmanagement.chunk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.nbt.NBTTagCompound;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.valkyrienskies.mod.common.physmanagement.chunk.ShipChunkAllocator.ChunkAllocation;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipChunkAllocator {
+
+    @Test
+    public void allocatesSquaresInOrder() {
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        for (int i = 0; i < 10; i++) {
+            ChunkAllocation allocation = allocator.allocateChunks("ship", 3);
+            assertEquals(ShipChunkAllocator.SHIP_CHUNK_X_START, allocation.lowerChunkX);
+            assertEquals(ShipChunkAllocator.SHIP_CHUNK_Z_START
+                + i * ShipChunkAllocator.MAX_SHIP_CHUNK_LENGTH, allocation.lowerChunkZ);
+            assertTrue(allocator.isAllocated(allocation));
+        }
+        assertEquals(10, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void reusesFreedSquares() {
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        List<ChunkAllocation> allocations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            allocations.add(allocator.allocateChunks("ship", 3));
+        }
+        assertTrue(allocator.free(allocations.get(3)));
+        assertTrue(allocator.free(allocations.get(1)));
+        assertFalse(allocator.isAllocated(allocations.get(1)));
+        // Freeing twice, or something that was never allocated, does nothing
+        assertFalse(allocator.free(allocations.get(1)));
+        assertFalse(allocator.free(ChunkAllocation.fromClaim(new VSChunkClaim(0, -1870000, 3))));
+
+        // The closest free square comes first
+        assertEquals(allocations.get(1), allocator.allocateChunks("ship", 3));
+        assertEquals(allocations.get(3), allocator.allocateChunks("ship", 3));
+        assertEquals(5, allocator.getSlotsSpanned());
+    }
+
+    @Test
+    public void freesClaims() {
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        allocator.allocateChunks("ship", 3);
+        ChunkAllocation allocation = allocator.allocateChunks("ship", 3);
+        // The claim PhysicsChunkManager makes for the allocation
+        VSChunkClaim claim = new VSChunkClaim(
+            allocation.lowerChunkX + ShipChunkAllocator.MAX_SHIP_CHUNK_RADIUS,
+            allocation.lowerChunkZ + ShipChunkAllocator.MAX_SHIP_CHUNK_RADIUS, 3);
+        assertTrue(allocator.free(ChunkAllocation.fromClaim(claim)));
+        assertFalse(allocator.isAllocated(allocation));
+    }
+
+    @Test
+    public void persists() {
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        List<ChunkAllocation> allocations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            allocations.add(allocator.allocateChunks("ship", 3));
+        }
+        for (int i = 0; i < 100; i += 3) {
+            allocator.free(allocations.get(i));
+        }
+        NBTTagCompound compound = new NBTTagCompound();
+        allocator.writeToNBT(compound);
+
+        ShipChunkAllocator loaded = new ShipChunkAllocator();
+        loaded.readFromNBT(compound);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 3 != 0, loaded.isAllocated(allocations.get(i)));
+        }
+        assertEquals(allocations.get(0), loaded.allocateChunks("ship", 3));
+    }
+
+    @Test
+    public void loadsWorldsSavedBeforeReuse() {
+        NBTTagCompound compound = new NBTTagCompound();
+        compound.setInteger("nextChunkX", ShipChunkAllocator.SHIP_CHUNK_X_START);
+        compound.setInteger("nextChunkZ", ShipChunkAllocator.SHIP_CHUNK_Z_START
+            + 7 * ShipChunkAllocator.MAX_SHIP_CHUNK_LENGTH);
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        allocator.readFromNBT(compound);
+        // Every square handed out before might still be in use
+        assertEquals(7, allocator.getAllocatedCount());
+        assertEquals(ShipChunkAllocator.SHIP_CHUNK_Z_START
+                + 7 * ShipChunkAllocator.MAX_SHIP_CHUNK_LENGTH,
+            allocator.allocateChunks("ship", 3).lowerChunkZ);
+
+        // Older versions opening the world still put new ships after every square in use
+        NBTTagCompound saved = new NBTTagCompound();
+        allocator.writeToNBT(saved);
+        assertEquals(ShipChunkAllocator.SHIP_CHUNK_Z_START
+            + 8 * ShipChunkAllocator.MAX_SHIP_CHUNK_LENGTH, saved.getInteger("nextChunkZ"));
+    }
+
+    @RepeatedTest(20)
+    public void fragmentationStaysBounded() {
+        Random random = new Random();
+        ShipChunkAllocator allocator = new ShipChunkAllocator();
+        List<ChunkAllocation> live = new ArrayList<>();
+        int mostLive = 0;
+        // Ships being made and destroyed in random order
+        for (int i = 0; i < 5000; i++) {
+            if (live.isEmpty() || random.nextInt(100) < 55) {
+                ChunkAllocation allocation = allocator.allocateChunks("ship", 3);
+                assertFalse(live.contains(allocation));
+                live.add(allocation);
+            } else {
+                assertTrue(allocator.free(live.remove(random.nextInt(live.size()))));
+            }
+            mostLive = Math.max(mostLive, live.size());
+            // The region never grows past the most ships there have been at once
+            assertTrue(allocator.getSlotsSpanned() <= mostLive);
+        }
+        assertEquals(live.size(), allocator.getAllocatedCount());
+    }
+}
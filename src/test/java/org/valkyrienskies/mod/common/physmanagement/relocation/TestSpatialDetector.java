@@ -0,0 +1,130 @@
+package org.valkyrienskies.mod.common.physmanagement.relocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestSpatialDetector {
+
+    private static final int SIDE = 24;
+    // Ship chunks are far out in the world, so the blocks are too.
+    private static final BlockPos START = new BlockPos(20000000, 64, -3000016);
+
+    @RepeatedTest(25)
+    public void findsConnectedBlocks() {
+        Random random = new Random();
+        boolean[] solid = randomShape(random, 55 + random.nextInt(30));
+        for (boolean corners : new boolean[]{false, true}) {
+            GridDetector detector = new GridDetector(solid, Integer.MAX_VALUE, corners);
+            detector.startDetection();
+            assertEquals(floodFill(solid, corners), new HashSet<>(detector.getBlockPosArrayList()));
+        }
+    }
+
+    @Test
+    public void stopsAtMaxSize() {
+        boolean[] solid = randomShape(new Random(420), 100);
+        GridDetector detector = new GridDetector(solid, 1000, true);
+        detector.startDetection();
+        assertEquals(1000, detector.foundSet.size());
+        for (BlockPos pos : detector.getBlockPosArrayList()) {
+            assertTrue(detector.isValidExpansion(pos.getX(), pos.getY(), pos.getZ()));
+        }
+    }
+
+    @Test
+    public void alwaysFindsFirstBlock() {
+        GridDetector detector = new GridDetector(new boolean[SIDE * SIDE * SIDE], 1000, true);
+        detector.startDetection();
+        assertEquals(1, detector.foundSet.size());
+        assertEquals(START, detector.getBlockPosArrayList().get(0));
+    }
+
+    @Test
+    public void cleanHouseClearsFoundBlocks() {
+        boolean[] solid = randomShape(new Random(420), 100);
+        GridDetector detector = new GridDetector(solid, Integer.MAX_VALUE, false) {
+            @Override
+            public boolean isValidExpansion(int x, int y, int z) {
+                if (y - START.getY() == SIDE - 1) {
+                    cleanHouse = true;
+                }
+                return super.isValidExpansion(x, y, z);
+            }
+        };
+        detector.startDetection();
+        assertTrue(detector.cleanHouse);
+        assertTrue(detector.foundSet.isEmpty());
+    }
+
+    // A SIDE^3 grid with percent of its blocks solid, starting at START.
+    private static boolean[] randomShape(Random random, int percent) {
+        boolean[] solid = new boolean[SIDE * SIDE * SIDE];
+        for (int i = 0; i < solid.length; i++) {
+            solid[i] = random.nextInt(100) < percent;
+        }
+        solid[0] = true;
+        return solid;
+    }
+
+    // A plain breadth first fill of the solid blocks connected to START.
+    private static Set<BlockPos> floodFill(boolean[] solid, boolean corners) {
+        Set<BlockPos> found = new HashSet<>();
+        Queue<BlockPos> queue = new ArrayDeque<>();
+        found.add(START);
+        queue.add(START);
+        while (!queue.isEmpty()) {
+            BlockPos pos = queue.poll();
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        int distance = Math.abs(dx) + Math.abs(dy) + Math.abs(dz);
+                        if (distance == 0 || (!corners && distance > 1)) {
+                            continue;
+                        }
+                        BlockPos neighbor = pos.add(dx, dy, dz);
+                        if (isSolid(solid, neighbor.getX(), neighbor.getY(), neighbor.getZ())
+                            && found.add(neighbor)) {
+                            queue.add(neighbor);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean isSolid(boolean[] solid, int x, int y, int z) {
+        x -= START.getX();
+        y -= START.getY();
+        z -= START.getZ();
+        if (x < 0 || y < 0 || z < 0 || x >= SIDE || y >= SIDE || z >= SIDE) {
+            return false;
+        }
+        return solid[x + SIDE * (y + SIDE * z)];
+    }
+
+    private static class GridDetector extends SpatialDetector {
+
+        private final boolean[] solid;
+
+        GridDetector(boolean[] solid, int maximum, boolean corners) {
+            super(START, maximum, corners);
+            this.solid = solid;
+        }
+
+        @Override
+        public boolean isValidExpansion(int x, int y, int z) {
+            return isSolid(solid, x, y, z);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.valkyrienskies.mod.common.physmanagement.shipdata;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"})
+public class TestShipDataLog {
+
+    private File file;
+
+    @BeforeEach
+    public void createFile() throws IOException {
+        file = File.createTempFile("ships", ".log");
+        Files.delete(file.toPath());
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(new File(file.getPath() + ".tmp").toPath());
+    }
+
+    @Test
+    public void savesAndLoads() throws IOException {
+        Random random = new Random(420);
+        Map<UUID, byte[]> ships = new HashMap<>();
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertTrue(log.load().isEmpty());
+            for (int i = 0; i < 20; i++) {
+                appendRandomChanges(random, log, ships);
+            }
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(ships, log.load());
+        }
+    }
+
+    @RepeatedTest(100)
+    public void recoversFromTruncation() throws IOException {
+        Random random = new Random();
+        Map<UUID, byte[]> ships = new HashMap<>();
+        // The size of the log and the ships in it after every save.
+        List<Long> savedSizes = new ArrayList<>();
+        List<Map<UUID, byte[]>> savedShips = new ArrayList<>();
+        savedSizes.add(0L);
+        savedShips.add(new HashMap<>());
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            log.load();
+            for (int i = 0; i < 10; i++) {
+                appendRandomChanges(random, log, ships);
+                savedSizes.add(log.size());
+                savedShips.add(new HashMap<>(ships));
+            }
+        }
+
+        // Crash at a random point while writing
+        long crashOffset = (long) (random.nextDouble() * (file.length() + 1));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(crashOffset);
+        }
+        int lastSave = 0;
+        while (lastSave + 1 < savedSizes.size() && savedSizes.get(lastSave + 1) <= crashOffset) {
+            lastSave++;
+        }
+        Map<UUID, byte[]> expected = savedShips.get(lastSave);
+
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(expected, log.load());
+            // The log should still work after recovering
+            appendRandomChanges(random, log, expected);
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(expected, log.load());
+        }
+    }
+
+    @RepeatedTest(20)
+    public void ignoresCorruptSave() throws IOException {
+        Random random = new Random();
+        Map<UUID, byte[]> ships = new HashMap<>();
+        long sizeBeforeLastSave;
+        Map<UUID, byte[]> shipsBeforeLastSave;
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            log.load();
+            for (int i = 0; i < 5; i++) {
+                appendRandomChanges(random, log, ships);
+            }
+            sizeBeforeLastSave = log.size();
+            shipsBeforeLastSave = new HashMap<>(ships);
+            appendRandomChanges(random, log, ships);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long offset = sizeBeforeLastSave
+                + (long) (random.nextDouble() * (raf.length() - sizeBeforeLastSave));
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ (1 + random.nextInt(255)));
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(shipsBeforeLastSave, log.load());
+        }
+    }
+
+    @Test
+    public void compactsOldRecords() throws IOException {
+        Random random = new Random(420);
+        Map<UUID, byte[]> ships = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            ships.put(UUID.randomUUID(), randomData(random));
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            log.load();
+            log.append(ships, Collections.emptyList());
+            assertFalse(log.shouldCompact());
+            // Keep moving the same ships around
+            while (log.size() <= ShipDataLog.MIN_COMPACTION_BYTES) {
+                for (UUID uuid : ships.keySet()) {
+                    ships.put(uuid, randomData(random));
+                }
+                log.append(ships, Collections.emptyList());
+            }
+            assertTrue(log.shouldCompact());
+
+            long sizeBefore = log.size();
+            log.compact(ships);
+            assertTrue(log.size() < sizeBefore / 10);
+            assertFalse(log.shouldCompact());
+            appendRandomChanges(random, log, ships);
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(ships, log.load());
+        }
+    }
+
+    @Test
+    public void keepsWorkingAfterFailedCompaction() throws IOException {
+        Random random = new Random(420);
+        Map<UUID, byte[]> ships = new HashMap<>();
+        File compacted = new File(file.getPath() + ".tmp");
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            log.load();
+            while (log.size() <= ShipDataLog.MIN_COMPACTION_BYTES) {
+                appendRandomChanges(random, log, ships);
+            }
+            assertTrue(log.shouldCompact());
+
+            // A directory in the way of the compacted log makes writing it fail.
+            assertTrue(compacted.mkdir());
+            long sizeBefore = log.size();
+            assertThrows(IOException.class, () -> log.compact(ships));
+            assertEquals(sizeBefore, log.size());
+            assertTrue(log.shouldCompact());
+            appendRandomChanges(random, log, ships);
+
+            Files.delete(compacted.toPath());
+            log.compact(ships);
+            assertFalse(log.shouldCompact());
+            appendRandomChanges(random, log, ships);
+        }
+        try (ShipDataLog log = new ShipDataLog(file)) {
+            assertShipsEqual(ships, log.load());
+        }
+    }
+
+    // Adds, changes and removes a few ships, like a save would.
+    private static void appendRandomChanges(Random random, ShipDataLog log,
+        Map<UUID, byte[]> ships) throws IOException {
+        Map<UUID, byte[]> changed = new HashMap<>();
+        List<UUID> removed = new ArrayList<>();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            changed.put(UUID.randomUUID(), randomData(random));
+        }
+        for (UUID uuid : ships.keySet()) {
+            int choice = random.nextInt(4);
+            if (choice == 0) {
+                changed.put(uuid, randomData(random));
+            } else if (choice == 1) {
+                removed.add(uuid);
+            }
+        }
+        log.append(changed, removed);
+        ships.putAll(changed);
+        ships.keySet().removeAll(removed);
+    }
+
+    private static byte[] randomData(Random random) {
+        byte[] data = new byte[random.nextInt(300)];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static void assertShipsEqual(Map<UUID, byte[]> expected, Map<UUID, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<UUID, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}